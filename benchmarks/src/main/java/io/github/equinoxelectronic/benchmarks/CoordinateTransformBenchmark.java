@@ -0,0 +1,92 @@
+package io.github.equinoxelectronic.benchmarks;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.Vector2;
+import io.github.equinoxelectronic.rendering.Renderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts points between screen and world coordinates one at a time into a reused
+ * {@link Vector2}, and in bulk over arrays, with a zoomed and moved camera on a 1280x720 screen.
+ * Scores are per point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoordinateTransformBenchmark {
+    private static final int POINTS = 10000;
+
+    private final float[] screen = new float[POINTS * 2];
+    private final float[] world = new float[POINTS * 2];
+    private final float[] out = new float[POINTS * 2];
+    private final Vector2 point = new Vector2();
+
+    @Setup
+    public void setup() {
+        GdxMocks.install();
+        Renderer.init();
+        Renderer.setDebugMode(false);
+        Renderer.resize(1280, 720);
+        OrthographicCamera camera = Renderer.getCamera();
+        camera.zoom = 1.5f;
+        camera.position.set(40f, 25f, 0);
+        camera.update();
+
+        Random random = new Random(17);
+        for (int i = 0; i < POINTS; i++) {
+            screen[i * 2] = random.nextInt(1280);
+            screen[i * 2 + 1] = random.nextInt(720);
+        }
+        Renderer.screenToWorld(screen, world, POINTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public float screenToWorldPerPoint() {
+        float sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            sum += Renderer.screenToWorld(screen[i * 2], screen[i * 2 + 1], point).x;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public float[] screenToWorldBulk() {
+        Renderer.screenToWorld(screen, out, POINTS);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public float worldToScreenPerPoint() {
+        float sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            sum += Renderer.worldToScreen(world[i * 2], world[i * 2 + 1], point).x;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public float[] worldToScreenBulk() {
+        Renderer.worldToScreen(world, out, POINTS);
+        return out;
+    }
+}
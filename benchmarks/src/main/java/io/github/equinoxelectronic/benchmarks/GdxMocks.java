@@ -0,0 +1,156 @@
+package io.github.equinoxelectronic.benchmarks;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.backends.headless.HeadlessNativesLoader;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import com.badlogic.gdx.backends.headless.mock.input.MockInput;
+import com.badlogic.gdx.graphics.GL20;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+
+/**
+ * Sets up enough of libGDX to run core code without a window: the native libraries, files from
+ * the working directory, input whose keys are pressed by the benchmark, and an application and GL
+ * that do nothing.
+ *
+ * The GL is a proxy that answers every call with zero, except that it hands out ids for new
+ * objects and reports shaders as compiled and linked, so batches, meshes and textures can be
+ * created and drawn with. Every GL call goes through reflection, so benchmarks should measure
+ * the work around GL calls, not the calls themselves.
+ */
+public final class GdxMocks {
+    private static boolean installed;
+    private static final BenchmarkInput input = new BenchmarkInput();
+
+    private GdxMocks() {
+    }
+
+    /**
+     * Installs the mocks into {@link Gdx}. Safe to call more than once.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        HeadlessNativesLoader.load();
+        // Shaders, meshes and textures register themselves with the application to be restored
+        Gdx.app = (Application) Proxy.newProxyInstance(Application.class.getClassLoader(), new Class<?>[] { Application.class }, new NoOp());
+        Gdx.files = new HeadlessFiles();
+        Gdx.input = input;
+        GL20 gl = (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] { GL20.class }, new MockGL());
+        Gdx.graphics = new BenchmarkGraphics(gl);
+        Gdx.gl = gl;
+        Gdx.gl20 = gl;
+        installed = true;
+    }
+
+    /**
+     * Presses or releases a key for {@link com.badlogic.gdx.Input#isKeyPressed(int)}
+     * @param keyCode the key
+     * @param pressed true to press it
+     */
+    public static void setKeyPressed(int keyCode, boolean pressed) {
+        input.pressed[keyCode] = pressed;
+    }
+
+    /**
+     * Graphics that hand out the mocked GL, so the GL profiler wraps it rather than nothing
+     */
+    private static final class BenchmarkGraphics extends MockGraphics {
+        private GL20 gl;
+
+        BenchmarkGraphics(GL20 gl) {
+            this.gl = gl;
+        }
+
+        @Override
+        public GL20 getGL20() {
+            return gl;
+        }
+
+        @Override
+        public void setGL20(GL20 gl20) {
+            this.gl = gl20;
+        }
+    }
+
+    /**
+     * Input with keys set by the benchmark, everything else comes from the headless backend
+     */
+    private static final class BenchmarkInput extends MockInput {
+        private final boolean[] pressed = new boolean[256];
+
+        @Override
+        public boolean isKeyPressed(int key) {
+            return key >= 0 && key < pressed.length && pressed[key];
+        }
+
+        @Override
+        public boolean isKeyJustPressed(int key) {
+            return isKeyPressed(key);
+        }
+    }
+
+    /**
+     * Answers every call with zero, false, null or an empty string
+     */
+    private static class NoOp implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Mock" + proxy.getClass().getInterfaces()[0].getSimpleName();
+            }
+            Class<?> type = method.getReturnType();
+            if (type == int.class) {
+                return 0;
+            } else if (type == boolean.class) {
+                return false;
+            } else if (type == float.class) {
+                return 0f;
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type == String.class) {
+                return "";
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Answers GL calls, handing out ids and letting shaders compile
+     */
+    private static final class MockGL extends NoOp {
+        private int nextId = 1;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "glCreateShader":
+                case "glCreateProgram":
+                case "glGenTexture":
+                case "glGenBuffer":
+                case "glGenFramebuffer":
+                case "glGenRenderbuffer":
+                    return nextId++;
+                case "glGetShaderiv":
+                case "glGetProgramiv":
+                    // Compile and link status succeed, and no attributes or uniforms are reported
+                    int parameter = (Integer) args[1];
+                    ((IntBuffer) args[2]).put(0, parameter == GL20.GL_COMPILE_STATUS || parameter == GL20.GL_LINK_STATUS ? 1 : 0);
+                    return null;
+                default:
+                    return super.invoke(proxy, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.equinoxelectronic.benchmarks;
+
+import com.badlogic.gdx.Input;
+import io.github.equinoxelectronic.controlling.KeyBindManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up key bindings the way input handling does every frame: by action name for a bound and
+ * an unbound action, and by key code without a binding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyBindManagerBenchmark {
+    private static final int BOUND_ACTIONS = 32;
+
+    private KeyBindManager keyBinds;
+
+    @Setup
+    public void setup() {
+        GdxMocks.install();
+        keyBinds = KeyBindManager.getInstance();
+        // Enough bindings that the lookup is not into a nearly empty map
+        for (int i = 0; i < BOUND_ACTIONS; i++) {
+            keyBinds.setKeyBinding("action" + i, Input.Keys.A + i % 26);
+        }
+        keyBinds.setKeyBinding("moveUp", Input.Keys.W);
+        GdxMocks.setKeyPressed(Input.Keys.W, true);
+    }
+
+    @Benchmark
+    public boolean boundAction() {
+        return keyBinds.isKeyPressed("moveUp");
+    }
+
+    @Benchmark
+    public boolean unboundAction() {
+        return keyBinds.isKeyPressed("notBound");
+    }
+
+    @Benchmark
+    public boolean keyCode() {
+        return keyBinds.isKeyPressed(Input.Keys.W);
+    }
+}
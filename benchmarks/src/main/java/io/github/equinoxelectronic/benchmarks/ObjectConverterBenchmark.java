@@ -0,0 +1,93 @@
+package io.github.equinoxelectronic.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import io.github.equinoxelectronic.utility.ObjectConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts a file of each common asset type, from reading it to the finished object. Images are
+ * uploaded to the mocked GL, so they measure the decode and the texture setup but not the upload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectConverterBenchmark {
+    private static final int IMAGE_SIZE = 64;
+    private static final int ENTRIES = 100;
+
+    @Param({ "png", "json", "txt" })
+    public String type;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        GdxMocks.install();
+        file = File.createTempFile("asset", "." + type);
+        switch (type) {
+            case "png":
+                BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                for (int y = 0; y < IMAGE_SIZE; y++) {
+                    for (int x = 0; x < IMAGE_SIZE; x++) {
+                        image.setRGB(x, y, 0xff000000 | x * 4 << 16 | y * 4 << 8);
+                    }
+                }
+                ImageIO.write(image, "png", file);
+                break;
+            case "json":
+                StringBuilder json = new StringBuilder("{\"entries\":[");
+                for (int i = 0; i < ENTRIES; i++) {
+                    json.append(i == 0 ? "" : ",").append("{\"id\":").append(i)
+                        .append(",\"name\":\"entry").append(i).append("\",\"weight\":").append(i * 0.5).append('}');
+                }
+                write(json.append("]}"));
+                break;
+            default:
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < ENTRIES; i++) {
+                    text.append("Line ").append(i).append(" of the text asset\n");
+                }
+                write(text);
+        }
+    }
+
+    private void write(CharSequence text) throws IOException {
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Object convert() {
+        Object converted = ObjectConverter.convert(file);
+        if (converted instanceof TextureRegion) {
+            ((TextureRegion) converted).getTexture().dispose();
+        }
+        return converted;
+    }
+}
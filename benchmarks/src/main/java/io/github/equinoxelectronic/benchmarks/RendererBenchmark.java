@@ -0,0 +1,65 @@
+package io.github.equinoxelectronic.benchmarks;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import io.github.equinoxelectronic.rendering.Renderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws a sprite through {@link Renderer#drawTexturePreserveAspect} into a batch that stays begun,
+ * scaled by width and by height. The batch flushes to the mocked GL whenever it fills, so this
+ * includes the share of a flush each sprite costs, but not any GPU work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RendererBenchmark {
+    private SpriteBatch batch;
+    private Texture texture;
+    private TextureRegion region;
+
+    @Setup
+    public void setup() {
+        GdxMocks.install();
+        batch = new SpriteBatch();
+        Pixmap pixmap = new Pixmap(64, 32, Pixmap.Format.RGBA8888);
+        texture = new Texture(pixmap);
+        pixmap.dispose();
+        region = new TextureRegion(texture);
+        batch.begin();
+    }
+
+    @TearDown
+    public void tearDown() {
+        batch.end();
+        batch.dispose();
+        texture.dispose();
+    }
+
+    @Benchmark
+    public void byWidth() {
+        Renderer.drawTexturePreserveAspect(batch, region, Renderer.WORLD_CENTER_WIDTH, Renderer.WORLD_CENTER_HEIGHT, 2f, true);
+    }
+
+    @Benchmark
+    public void byHeight() {
+        Renderer.drawTexturePreserveAspect(batch, region, Renderer.WORLD_CENTER_WIDTH, Renderer.WORLD_CENTER_HEIGHT, 2f, false);
+    }
+}
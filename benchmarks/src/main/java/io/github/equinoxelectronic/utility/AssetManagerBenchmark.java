@@ -0,0 +1,64 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import io.github.equinoxelectronic.benchmarks.GdxMocks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up texture regions by path and through a handle, with small and large numbers of loaded
+ * assets. The regions have no texture, since only the lookup is measured, so this sits in the
+ * utility package to add them without loading files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AssetManagerBenchmark {
+    @Param({ "100", "10000" })
+    public int assets;
+
+    private AssetManager assetManager;
+    private String[] paths;
+    private AssetHandle<TextureRegion> handle;
+    private int next;
+
+    @Setup
+    public void setup() {
+        GdxMocks.install();
+        assetManager = AssetManager.getInstance();
+        paths = new String[assets];
+        for (int i = 0; i < assets; i++) {
+            // New strings like paths built at runtime, so equals has to compare them
+            paths[i] = new String("assets/textures/sprite" + i + ".png");
+            assetManager.putAsset("assets/textures/sprite" + i + ".png", new TextureRegion());
+        }
+        handle = assetManager.getTextureHandle(paths[assets / 2]);
+    }
+
+    @Benchmark
+    public TextureRegion byPath() {
+        // Different paths each call, so the lookups are not all into the same cache lines
+        String path = paths[next];
+        next = next + 1 == paths.length ? 0 : next + 1;
+        return assetManager.getTextureRegion(path);
+    }
+
+    @Benchmark
+    public TextureRegion byHandle() {
+        return assetManager.get(handle);
+    }
+}
@@ -3,19 +3,35 @@ package io.github.equinoxelectronic;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.utils.Logger;
 import com.badlogic.gdx.utils.ScreenUtils;
 import io.github.equinoxelectronic.controlling.KeyBindManager;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.profiling.Profiler;
 import io.github.equinoxelectronic.rendering.Renderer;
+import io.github.equinoxelectronic.save.SaveWriter;
+import io.github.equinoxelectronic.simulation.GameLoop;
 import io.github.equinoxelectronic.utility.AssetManager;
+import io.github.equinoxelectronic.utility.AssetPack;
+import io.github.equinoxelectronic.world.TileMap;
+import io.github.equinoxelectronic.world.WorldGeneration;
+import io.github.equinoxelectronic.world.WorldGenerator;
+
+import java.io.IOException;
 
 /** {@link com.badlogic.gdx.ApplicationListener} implementation shared by all platforms. */
 public class Chancellor extends ApplicationAdapter {
     private SpriteBatch batch;
-    private static final Logger logger = new Logger("Chancellor", Logger.DEBUG);
+    private GameLoop gameLoop;
+    // Started once the terrain definitions are loaded, then copied into the map a few chunks per frame
+    private WorldGeneration worldGeneration;
+    // Writes the world in the background every AUTOSAVE_INTERVAL seconds, only the chunks that changed
+    private SaveWriter autosave;
+    private float autosaveTimer;
+    private static final Log logger = new Log("Chancellor");
 
     //========================================================
     //========================================================
@@ -25,6 +41,22 @@ public class Chancellor extends ApplicationAdapter {
     public static final String APPLICATION_TITLE = "Chancellor";
     public static final String VERSION = "1.0.0";
 
+    // System property that enables reloading assets when their files change
+    public static final String HOT_RELOAD_PROPERTY = "chancellor.hotReload";
+    // System property with the seed of the generated world, random if not set
+    public static final String SEED_PROPERTY = "chancellor.seed";
+    // Width and height of the generated world in tiles
+    public static final int WORLD_SIZE = 1024;
+    // Seconds between autosaves
+    public static final float AUTOSAVE_INTERVAL = 300f;
+    // Path of the autosave, relative to the local storage
+    public static final String AUTOSAVE_PATH = "saves/autosave.sav";
+    // Directory profiler exports are written to, relative to the local storage
+    public static final String PROFILE_DIRECTORY = "profiles";
+    // Key bound actions
+    public static final String TOGGLE_DEBUG_ACTION = "toggleDebug";
+    public static final String EXPORT_PROFILE_ACTION = "exportProfile";
+
     //========================================================
     //========================================================
     //========================================================
@@ -34,16 +66,118 @@ public class Chancellor extends ApplicationAdapter {
     public void create() {
         logger.info("Starting Chancellor...");
         batch = new SpriteBatch();
-        AssetManager.getInstance().loadAssets("assets");
+
+        // Release builds ship every asset baked into one pack file
+        FileHandle packFile = Gdx.files.internal(AssetPack.DEFAULT_NAME);
+        if (packFile.exists()) {
+            AssetManager.getInstance().openAssetPack(packFile);
+        }
+
+        // Assets are decoded in the background and finished a few at a time in render()
+        AssetManager.getInstance().loadAssetsAsync("assets");
+        // Set by the run task, so assets edited during development show up without a restart
+        if (Boolean.getBoolean(HOT_RELOAD_PROPERTY)) {
+            AssetManager.getInstance().enableHotReload("assets");
+        }
         Renderer.init();
+        gameLoop = new GameLoop();
+        Profiler.addSource(gameLoop);
+        KeyBindManager.getInstance().setKeyBinding(TOGGLE_DEBUG_ACTION, Input.Keys.F3);
+        KeyBindManager.getInstance().setKeyBinding(EXPORT_PROFILE_ACTION, Input.Keys.F4);
+        autosave = new SaveWriter(Gdx.files.local(AUTOSAVE_PATH).file().toPath());
     }
 
     @Override
     public void render() {
+        Profiler.beginFrame();
         ScreenUtils.clear(0.15f, 0.15f, 0.2f, 1f);
-        batch.begin();
+        Profiler.begin(Profiler.ASSETS);
+        boolean loaded = AssetManager.getInstance().update();
+        Profiler.end(Profiler.ASSETS);
+        if (!loaded) {
+            // Still loading, AssetManager.getProgress() can drive a loading screen here
+            Profiler.endFrame();
+            return;
+        }
+        if (worldGeneration == null) {
+            startWorldGeneration();
+        } else if (!worldGeneration.isDone()) {
+            Profiler.begin(Profiler.WORLD);
+            worldGeneration.update();
+            Profiler.end(Profiler.WORLD);
+        } else {
+            Profiler.begin(Profiler.AUTOSAVE);
+            autosave();
+            Profiler.end(Profiler.AUTOSAVE);
+        }
+        // Game logic runs at its own tick rate; the renderer interpolates between ticks
+        Profiler.begin(Profiler.SIMULATION);
+        gameLoop.update(Gdx.graphics.getDeltaTime());
+        Profiler.end(Profiler.SIMULATION);
         Renderer.render(batch);
-        batch.end();
+        handleDebugKeys();
+        Profiler.endFrame();
+    }
+
+    /**
+     * Toggles debug mode, which shows the profiler overlay, and exports the frames the profiler
+     * recorded to a CSV file in {@link #PROFILE_DIRECTORY}
+     */
+    private void handleDebugKeys() {
+        KeyBindManager keys = KeyBindManager.getInstance();
+        if (keys.isKeyJustPressed(TOGGLE_DEBUG_ACTION)) {
+            Renderer.setDebugMode(!Renderer.isDebugMode());
+        }
+        if (keys.isKeyJustPressed(EXPORT_PROFILE_ACTION) && Profiler.getHistoryCount() > 0) {
+            FileHandle file = Gdx.files.local(PROFILE_DIRECTORY + "/frames-" + System.currentTimeMillis() + ".csv");
+            try {
+                Profiler.exportCsv(file.file().toPath());
+            } catch (IOException e) {
+                logger.error("Could not export profile to {}", file.path(), e);
+            }
+        }
+    }
+
+    /**
+     * Starts generating the world on worker threads, starting where the camera looks, and shows
+     * the map straight away so chunks appear as they are finished
+     */
+    private void startWorldGeneration() {
+        long seed = Long.getLong(SEED_PROPERTY, System.nanoTime());
+        TileMap map = new TileMap(WORLD_SIZE, WORLD_SIZE);
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        int focusX = (int) (Renderer.WORLD_WIDTH / 2f / TileMap.TILE_SIZE);
+        int focusY = (int) (Renderer.WORLD_HEIGHT / 2f / TileMap.TILE_SIZE);
+        worldGeneration = new WorldGenerator(seed).start(map, threads, focusX, focusY);
+        Renderer.setTileMap(map);
+    }
+
+    /**
+     * Saves the world once the autosave interval has passed. Only the snapshot is taken here,
+     * the writing happens on the save writer's thread.
+     */
+    private void autosave() {
+        autosaveTimer += Gdx.graphics.getDeltaTime();
+        if (autosaveTimer >= AUTOSAVE_INTERVAL
+            && autosave.save(worldGeneration.getMap(), worldGeneration.getHeights(), worldGeneration.getResources(), null)) {
+            autosaveTimer = 0f;
+        }
+    }
+
+    /**
+     * Gets the world being generated or done generating, with the height and resource layers
+     * @return the generation, or null before the assets have loaded
+     */
+    public WorldGeneration getWorldGeneration() {
+        return worldGeneration;
+    }
+
+    /**
+     * Gets the loop running the simulation, to add simulations to and change the game speed
+     * @return the game loop
+     */
+    public GameLoop getGameLoop() {
+        return gameLoop;
     }
 
     @Override
@@ -55,10 +189,18 @@ public class Chancellor extends ApplicationAdapter {
     @Override
     public void dispose() {
         logger.info("Disposing Chancellor...");
+        if (worldGeneration != null) {
+            worldGeneration.cancel();
+        }
+        if (autosave != null) {
+            // Lets a save that is being written finish, so the file isn't left half written
+            autosave.dispose();
+        }
         Renderer.dispose();
         if (batch != null) {
             batch.dispose();
         }
+        AssetManager.getInstance().disableHotReload();
         AssetManager.getInstance().dispose();
     }
 }
@@ -0,0 +1,14 @@
+package io.github.equinoxelectronic.data;
+
+/**
+ * A type of building, loaded from {@code definitions/buildings}.
+ */
+public class BuildingDefinition extends Definition {
+    public String name;
+    public int cost;
+    public int upkeep;
+    // Turns it takes to build
+    public int buildTime;
+    // Ids of the units this building can train
+    public String[] produces = new String[0];
+}
@@ -0,0 +1,26 @@
+package io.github.equinoxelectronic.data;
+
+/**
+ * Base class of every game definition: a nation, unit, building or terrain type loaded from a
+ * definitions file and looked up by its id.
+ */
+public abstract class Definition {
+    /** The unique id other definitions and save files refer to this definition by */
+    public String id;
+
+    // Position in the definition table, assigned when the definition is added to one
+    transient int index = -1;
+
+    /**
+     * Gets the position of this definition in its table, for storing compact references
+     * @return the index, or -1 if the definition is not in a table
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + id + "]";
+    }
+}
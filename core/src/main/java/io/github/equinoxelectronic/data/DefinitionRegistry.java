@@ -0,0 +1,211 @@
+package io.github.equinoxelectronic.data;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds every game definition, one {@link DefinitionTable} per type.
+ *
+ * Definitions are JSON files in a folder per type under {@code definitions/}, for example
+ * {@code definitions/units/infantry.json}. A file holds either one definition object or an
+ * array of them. Files are parsed straight into the definition classes with a shared Gson
+ * instance and a streaming reader, without building an intermediate tree.
+ *
+ * Parsing is safe from any thread, so it happens on the asset loader's workers; adding the
+ * parsed definitions to the tables happens on the GL thread along with the other assets.
+ */
+public class DefinitionRegistry {
+    /** The folder definition files are in, inside the asset directory */
+    public static final String DEFINITIONS_FOLDER = "definitions";
+
+    // Gson and its type adapters are thread-safe and expensive to create, so one is shared
+    private static final Gson GSON = new Gson();
+
+    // Singleton instance, created eagerly because loader threads may be the first to use it
+    private static final DefinitionRegistry instance = new DefinitionRegistry();
+
+    // Definition type of every folder under definitions/
+    private final Map<String, Class<? extends Definition>> folders = new ConcurrentHashMap<>();
+    private final HashMap<Class<? extends Definition>, DefinitionTable<?>> tables = new HashMap<>();
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private DefinitionRegistry() {
+        register(TerrainDefinition.class, "terrain");
+        register(UnitDefinition.class, "units");
+        register(BuildingDefinition.class, "buildings");
+        register(NationDefinition.class, "nations");
+    }
+
+    /**
+     * Get the singleton instance of DefinitionRegistry
+     * @return the singleton instance
+     */
+    public static DefinitionRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers a definition type. Must be done before the assets are loaded.
+     * @param type the definition class
+     * @param folder the folder under {@code definitions/} its files are in
+     * @param <T> the type of the definitions
+     * @return the table the definitions will be stored in
+     */
+    public synchronized <T extends Definition> DefinitionTable<T> register(Class<T> type, String folder) {
+        folders.put(folder, type);
+        return tableFor(type);
+    }
+
+    /**
+     * Gets the table of a definition type, creating it if needed
+     * @param type the definition class
+     * @param <T> the type of the definitions
+     * @return the table
+     */
+    private <T extends Definition> DefinitionTable<T> tableFor(Class<T> type) {
+        DefinitionTable<T> table = getTable(type);
+        if (table == null) {
+            table = new DefinitionTable<>(type);
+            tables.put(type, table);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the table of a definition type
+     * @param type the definition class
+     * @param <T> the type of the definitions
+     * @return the table, or null if the type was never registered
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Definition> DefinitionTable<T> getTable(Class<T> type) {
+        return (DefinitionTable<T>) tables.get(type);
+    }
+
+    /**
+     * Gets a definition by its id
+     * @param type the definition class
+     * @param id the id
+     * @param <T> the type of the definitions
+     * @return the definition, or null if there is none
+     */
+    public <T extends Definition> T get(Class<T> type, String id) {
+        DefinitionTable<T> table = getTable(type);
+        return table == null ? null : table.get(id);
+    }
+
+    /**
+     * Gets the definition type of a file, judging by the folder it is in
+     * @param file the file
+     * @return the definition class, or null if the file is not a definitions file
+     */
+    public Class<? extends Definition> typeFor(FileHandle file) {
+        if (!"json".equals(file.extension())) {
+            return null;
+        }
+        String path = "/" + file.path();
+        int start = path.lastIndexOf("/" + DEFINITIONS_FOLDER + "/");
+        if (start < 0) {
+            return null;
+        }
+        start += DEFINITIONS_FOLDER.length() + 2;
+        int end = path.indexOf('/', start);
+        return end < 0 ? null : folders.get(path.substring(start, end));
+    }
+
+    /**
+     * Parses a definitions file. Safe to call from any thread.
+     * @param file the file
+     * @param type the definition class
+     * @param <T> the type of the definitions
+     * @return the parsed definitions
+     * @throws IOException if the file could not be read or is not valid
+     */
+    public static <T extends Definition> DefinitionSet<T> parse(FileHandle file, Class<T> type) throws IOException {
+        try (Reader reader = file.reader(8192, "UTF-8")) {
+            return new DefinitionSet<>(type, parse(reader, type));
+        }
+    }
+
+    /**
+     * Parses definitions from a stream, either a single object or an array of objects
+     * @param reader the JSON contents
+     * @param type the definition class
+     * @param <T> the type of the definitions
+     * @return the parsed definitions
+     * @throws IOException if the contents could not be read or are not valid
+     */
+    public static <T extends Definition> Array<T> parse(Reader reader, Class<T> type) throws IOException {
+        TypeAdapter<T> adapter = GSON.getAdapter(type);
+        JsonReader json = new JsonReader(reader);
+        Array<T> definitions = new Array<>(type);
+        if (json.peek() == JsonToken.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                definitions.add(checkId(adapter.read(json)));
+            }
+            json.endArray();
+        } else {
+            definitions.add(checkId(adapter.read(json)));
+        }
+        return definitions;
+    }
+
+    private static <T extends Definition> T checkId(T definition) throws IOException {
+        if (definition == null || definition.id == null || definition.id.isEmpty()) {
+            throw new IOException("Definition without an id: " + definition);
+        }
+        return definition;
+    }
+
+    /**
+     * Adds the definitions parsed from a file to their table
+     * @param set the parsed definitions
+     * @param <T> the type of the definitions
+     */
+    public synchronized <T extends Definition> void add(DefinitionSet<T> set) {
+        DefinitionTable<T> table = tableFor(set.type);
+        for (T definition : set.definitions) {
+            table.add(definition);
+        }
+    }
+
+    /**
+     * Removes the definitions parsed from a file from their table
+     * @param set the parsed definitions
+     * @param <T> the type of the definitions
+     */
+    public synchronized <T extends Definition> void remove(DefinitionSet<T> set) {
+        DefinitionTable<T> table = getTable(set.type);
+        if (table == null) {
+            return;
+        }
+        for (T definition : set.definitions) {
+            // Only if it was not replaced by a definition from another file
+            if (table.get(definition.id) == definition) {
+                table.remove(definition.id);
+            }
+        }
+    }
+
+    /**
+     * Removes every definition. Indices stay reserved for their ids.
+     */
+    public synchronized void clear() {
+        for (DefinitionTable<?> table : tables.values()) {
+            table.clear();
+        }
+    }
+}
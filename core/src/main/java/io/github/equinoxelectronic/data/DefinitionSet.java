@@ -0,0 +1,17 @@
+package io.github.equinoxelectronic.data;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * The definitions parsed from one file, waiting to be added to the {@link DefinitionRegistry}.
+ * @param <T> the type of the definitions
+ */
+public class DefinitionSet<T extends Definition> {
+    public final Class<T> type;
+    public final Array<T> definitions;
+
+    public DefinitionSet(Class<T> type, Array<T> definitions) {
+        this.type = type;
+        this.definitions = definitions;
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.equinoxelectronic.data;
+
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import java.util.Arrays;
+
+/**
+ * Compact storage for every definition of one type, looked up by id or by index.
+ *
+ * Every id gets an index the first time a definition with that id is added and keeps it for
+ * the lifetime of the table, so indices can be stored instead of ids (in tiles, units, save
+ * files) and stay valid when definitions are reloaded. Removed definitions leave their slot empty.
+ * @param <T> the type of the definitions
+ */
+public class DefinitionTable<T extends Definition> {
+    private final Class<T> type;
+    private final ObjectIntMap<String> indices = new ObjectIntMap<>();
+    private T[] items;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public DefinitionTable(Class<T> type) {
+        this.type = type;
+        this.items = (T[]) java.lang.reflect.Array.newInstance(type, 16);
+    }
+
+    /**
+     * Adds a definition, replacing the one with the same id if there is one
+     * @param definition the definition
+     */
+    public void add(T definition) {
+        int index = indices.get(definition.id, -1);
+        if (index < 0) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            index = size++;
+            indices.put(definition.id, index);
+        }
+        definition.index = index;
+        items[index] = definition;
+    }
+
+    /**
+     * Removes a definition, keeping its index reserved
+     * @param id the id of the definition
+     */
+    public void remove(String id) {
+        int index = indices.get(id, -1);
+        if (index >= 0) {
+            items[index] = null;
+        }
+    }
+
+    /**
+     * Gets a definition by its id
+     * @param id the id
+     * @return the definition, or null if there is none
+     */
+    public T get(String id) {
+        int index = indices.get(id, -1);
+        return index < 0 ? null : items[index];
+    }
+
+    /**
+     * Gets a definition by its index
+     * @param index the index, as returned by {@link Definition#getIndex()}
+     * @return the definition, or null if it was removed
+     */
+    public T get(int index) {
+        return items[index];
+    }
+
+    /**
+     * Gets the index of a definition
+     * @param id the id
+     * @return the index, or -1 if no definition with that id was ever added
+     */
+    public int indexOf(String id) {
+        return indices.get(id, -1);
+    }
+
+    /**
+     * Gets the number of slots, including those of removed definitions
+     * @return the size of the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the type of the definitions
+     * @return the definition class
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Empties every slot, keeping the indices of every id
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.equinoxelectronic.data;
+
+/**
+ * A playable nation, loaded from {@code definitions/nations}.
+ */
+public class NationDefinition extends Definition {
+    public String name;
+    public String adjective;
+    // Color on the map, as a hex string like "3a7d2c"
+    public String color;
+    public String capital;
+    // Ids of the units the nation starts the game with
+    public String[] startingUnits = new String[0];
+}
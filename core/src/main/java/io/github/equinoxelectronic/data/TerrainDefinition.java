@@ -0,0 +1,15 @@
+package io.github.equinoxelectronic.data;
+
+/**
+ * A type of terrain tiles can have, loaded from {@code definitions/terrain}.
+ */
+public class TerrainDefinition extends Definition {
+    public String name;
+    // Movement points it takes to enter a tile of this terrain
+    public float movementCost = 1f;
+    // Multiplier applied to the defense of units standing on this terrain
+    public float defenseBonus = 1f;
+    public boolean passable = true;
+    // Color on the map, as a hex string like "3a7d2c"
+    public String color;
+}
@@ -0,0 +1,16 @@
+package io.github.equinoxelectronic.data;
+
+/**
+ * A type of unit, loaded from {@code definitions/units}.
+ */
+public class UnitDefinition extends Definition {
+    public String name;
+    public int cost;
+    public int upkeep;
+    public int attack;
+    public int defense;
+    // Movement points per turn
+    public int movement;
+    // Id of the building needed to train this unit, or null
+    public String requires;
+}
@@ -0,0 +1,89 @@
+package io.github.equinoxelectronic.entities;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A column of byte values, one per entity.
+ */
+public class ByteColumn extends Column {
+    private byte[] data;
+    private final byte defaultValue;
+
+    ByteColumn(String name, int capacity, byte defaultValue) {
+        super(name);
+        this.data = new byte[capacity];
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Gets the backing array, for loops over every entity. Only the first {@link EntityStore#size()} values are used.
+     * @return the values, indexed by dense index
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Gets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @return the value
+     */
+    public byte get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Sets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @param value the value
+     */
+    public void set(int index, byte value) {
+        data[index] = value;
+    }
+
+    @Override
+    void resize(int capacity) {
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    @Override
+    void move(int from, int to) {
+        data[to] = data[from];
+    }
+
+    @Override
+    void reset(int index) {
+        data[index] = defaultValue;
+    }
+
+    @Override
+    ByteColumn copy(Column reuse, int count) {
+        ByteColumn copy = reuse instanceof ByteColumn ? (ByteColumn) reuse : new ByteColumn(getName(), data.length, defaultValue);
+        if (copy.data.length != data.length) {
+            copy.data = new byte[data.length];
+        }
+        System.arraycopy(data, 0, copy.data, 0, count);
+        return copy;
+    }
+
+    @Override
+    char getType() {
+        return 'b';
+    }
+
+    @Override
+    int getValueSize() {
+        return 1;
+    }
+
+    @Override
+    void write(ByteBuffer buffer, int count) {
+        buffer.put(data, 0, count);
+    }
+
+    @Override
+    void read(ByteBuffer buffer, int count) {
+        buffer.get(data, 0, count);
+    }
+}
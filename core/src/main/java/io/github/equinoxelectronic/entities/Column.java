@@ -0,0 +1,79 @@
+package io.github.equinoxelectronic.entities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One component of every entity in an {@link EntityStore}, stored as a primitive array.
+ *
+ * Values are indexed by the entity's dense index, so a system updating every entity walks each
+ * column front to back. The backing array is replaced when the store grows, so fetch it again
+ * after creating entities instead of keeping it across frames.
+ */
+public abstract class Column {
+    private final String name;
+
+    protected Column(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name the column was added with
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Resizes the backing array, keeping the values that fit
+     * @param capacity the new length
+     */
+    abstract void resize(int capacity);
+
+    /**
+     * Copies a value to another index, used when an entity is moved into a removed entity's place
+     * @param from the index to copy from
+     * @param to the index to copy to
+     */
+    abstract void move(int from, int to);
+
+    /**
+     * Sets the value at an index to the column's default, for a newly created entity
+     * @param index the index
+     */
+    abstract void reset(int index);
+
+    /**
+     * Copies the column, reusing another copy's array if it is the same type and size
+     * @param reuse an earlier copy, or null
+     * @param count the number of values to copy
+     * @return the copy
+     */
+    abstract Column copy(Column reuse, int count);
+
+    /**
+     * Gets a letter naming the value type, so a saved column is only read back into the same type
+     * @return the type letter
+     */
+    abstract char getType();
+
+    /**
+     * Gets the size of one value
+     * @return the size in bytes
+     */
+    abstract int getValueSize();
+
+    /**
+     * Writes the first values to a buffer in one bulk copy
+     * @param buffer the buffer to write to
+     * @param count the number of values
+     */
+    abstract void write(ByteBuffer buffer, int count);
+
+    /**
+     * Reads the first values from a buffer in one bulk copy
+     * @param buffer the buffer to read from
+     * @param count the number of values
+     */
+    abstract void read(ByteBuffer buffer, int count);
+}
@@ -0,0 +1,436 @@
+package io.github.equinoxelectronic.entities;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores large numbers of entities (citizens, units, buildings) as columns of primitive values
+ * instead of one object per entity.
+ *
+ * Living entities are packed at dense indices 0 to {@link #size()} - 1 in every column, so a
+ * system is a plain loop over a few arrays:
+ * <pre>
+ * float[] x = positionX.getData();
+ * float[] vx = velocityX.getData();
+ * for (int i = 0; i &lt; store.size(); i++) {
+ *     x[i] += vx[i] * delta;
+ * }
+ * </pre>
+ * Destroying an entity moves the last entity into its place, so dense indices change and must
+ * not be kept. Keep entity ids instead: an id holds a slot and a generation, so an id of a
+ * destroyed entity stays invalid even after its slot is reused. Slots are stable while an entity
+ * lives and small, which makes them usable as ids in a {@link io.github.equinoxelectronic.world.SpatialIndex}.
+ *
+ * Not thread safe; systems may read and write columns from several threads as long as they don't
+ * create or destroy entities at the same time.
+ */
+public class EntityStore {
+    /** Id that never refers to an entity */
+    public static final int NONE = -1;
+
+    private static final int SLOT_BITS = 22;
+    private static final int GENERATION_BITS = 9;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << GENERATION_BITS) - 1;
+    /** Maximum number of entities alive at once */
+    public static final int MAX_ENTITIES = 1 << SLOT_BITS;
+    // Slots are only reused once this many are free, so a slot's generation wraps around slowly
+    private static final int MIN_FREE_SLOTS = 1024;
+
+    private final Map<String, Column> columnsByName = new LinkedHashMap<>();
+    private Column[] columns = new Column[0];
+    private int capacity;
+    private int size;
+
+    // Dense index to slot
+    private int[] slots;
+    // Per slot: dense index (NONE if free) and generation
+    private int[] indices;
+    private int[] generations;
+    private int slotCount;
+
+    // Free slots, oldest first, as a ring buffer
+    private int[] freeSlots;
+    private int freeHead;
+    private int freeCount;
+
+    /**
+     * Creates an empty store
+     * @param initialCapacity the number of entities to make room for up front
+     */
+    public EntityStore(int initialCapacity) {
+        capacity = Math.max(16, initialCapacity);
+        slots = new int[capacity];
+        indices = new int[capacity];
+        generations = new int[capacity];
+        freeSlots = new int[capacity];
+    }
+
+    /**
+     * Adds a float column; existing entities get the default value
+     * @param name a name unique in this store
+     * @param defaultValue the value of new entities
+     * @return the column
+     */
+    public FloatColumn addFloatColumn(String name, float defaultValue) {
+        return addColumn(new FloatColumn(name, capacity, defaultValue));
+    }
+
+    /**
+     * Adds an int column; existing entities get the default value
+     * @param name a name unique in this store
+     * @param defaultValue the value of new entities
+     * @return the column
+     */
+    public IntColumn addIntColumn(String name, int defaultValue) {
+        return addColumn(new IntColumn(name, capacity, defaultValue));
+    }
+
+    /**
+     * Adds a short column, such as a definition index; existing entities get the default value
+     * @param name a name unique in this store
+     * @param defaultValue the value of new entities
+     * @return the column
+     */
+    public ShortColumn addShortColumn(String name, short defaultValue) {
+        return addColumn(new ShortColumn(name, capacity, defaultValue));
+    }
+
+    /**
+     * Adds a byte column, such as flags or a state; existing entities get the default value
+     * @param name a name unique in this store
+     * @param defaultValue the value of new entities
+     * @return the column
+     */
+    public ByteColumn addByteColumn(String name, byte defaultValue) {
+        return addColumn(new ByteColumn(name, capacity, defaultValue));
+    }
+
+    private <T extends Column> T addColumn(T column) {
+        if (columnsByName.containsKey(column.getName())) {
+            throw new IllegalArgumentException("Column already exists: " + column.getName());
+        }
+        for (int i = 0; i < size; i++) {
+            column.reset(i);
+        }
+        columnsByName.put(column.getName(), column);
+        columns = columnsByName.values().toArray(new Column[0]);
+        return column;
+    }
+
+    /**
+     * Gets a column by name
+     * @param name the name it was added with
+     * @return the column, or null if there is none
+     * @param <T> the column type
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Column> T getColumn(String name) {
+        return (T) columnsByName.get(name);
+    }
+
+    /**
+     * Creates an entity with every column set to its default value
+     * @return the new entity's id
+     */
+    public int create() {
+        if (size == capacity) {
+            if (capacity == MAX_ENTITIES) {
+                throw new IllegalStateException("Too many entities: " + MAX_ENTITIES);
+            }
+            grow(Math.min(MAX_ENTITIES, capacity * 2));
+        }
+
+        int slot;
+        if (freeCount > MIN_FREE_SLOTS || slotCount == capacity) {
+            slot = freeSlots[freeHead];
+            freeHead = (freeHead + 1) % freeSlots.length;
+            freeCount--;
+        } else {
+            slot = slotCount++;
+        }
+
+        int index = size++;
+        slots[index] = slot;
+        indices[slot] = index;
+        for (Column column : columns) {
+            column.reset(index);
+        }
+        return generations[slot] << SLOT_BITS | slot;
+    }
+
+    /**
+     * Destroys an entity, moving the last entity into its dense index
+     * @param id the entity's id
+     * @return false if the entity was already destroyed
+     */
+    public boolean destroy(int id) {
+        int index = indexOf(id);
+        if (index == NONE) {
+            return false;
+        }
+        int slot = id & SLOT_MASK;
+        int last = --size;
+        if (index != last) {
+            int movedSlot = slots[last];
+            slots[index] = movedSlot;
+            indices[movedSlot] = index;
+            for (Column column : columns) {
+                column.move(last, index);
+            }
+        }
+        release(slot);
+        return true;
+    }
+
+    private void release(int slot) {
+        indices[slot] = NONE;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        freeSlots[(freeHead + freeCount) % freeSlots.length] = slot;
+        freeCount++;
+    }
+
+    /**
+     * Checks if an id refers to a living entity
+     * @param id the id
+     * @return false if the entity was destroyed or the id is {@link #NONE}
+     */
+    public boolean isAlive(int id) {
+        return indexOf(id) != NONE;
+    }
+
+    /**
+     * Gets the current dense index of an entity, to read and write its columns
+     * @param id the entity's id
+     * @return the index, or {@link #NONE} if the entity is not alive
+     */
+    public int indexOf(int id) {
+        if (id < 0) {
+            return NONE;
+        }
+        int slot = id & SLOT_MASK;
+        if (slot >= slotCount || generations[slot] != id >>> SLOT_BITS) {
+            return NONE;
+        }
+        return indices[slot];
+    }
+
+    /**
+     * Gets the id of the entity at a dense index
+     * @param index the index, below {@link #size()}
+     * @return the entity's id
+     */
+    public int getId(int index) {
+        int slot = slots[index];
+        return generations[slot] << SLOT_BITS | slot;
+    }
+
+    /**
+     * Gets the slot of an entity, a small number that stays the same while it lives
+     * @param id the entity's id
+     * @return the slot
+     */
+    public static int slotOf(int id) {
+        return id & SLOT_MASK;
+    }
+
+    /**
+     * Gets the number of living entities
+     * @return the entity count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of entities the columns have room for
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Destroys every entity
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            release(slots[i]);
+        }
+        size = 0;
+    }
+
+    /**
+     * Copies every entity into a new store, with the same ids. The copy is a consistent snapshot
+     * another thread can read, or {@link #write(ByteBuffer)}, while this store carries on changing.
+     * @return the copy
+     */
+    public EntityStore copy() {
+        return copy(null);
+    }
+
+    /**
+     * Copies every entity into a store, like {@link #copy()}, reusing the arrays of an earlier
+     * copy so taking snapshots regularly doesn't allocate
+     * @param target a store returned by an earlier copy, or null for a new one
+     * @return the copy
+     */
+    public EntityStore copy(EntityStore target) {
+        EntityStore copy = target != null ? target : new EntityStore(capacity);
+        Map<String, Column> copied = new LinkedHashMap<>();
+        for (Column column : columns) {
+            copied.put(column.getName(), column.copy(copy.columnsByName.get(column.getName()), size));
+        }
+        copy.columnsByName.clear();
+        copy.columnsByName.putAll(copied);
+        copy.columns = copied.values().toArray(new Column[0]);
+
+        copy.capacity = capacity;
+        copy.size = size;
+        copy.slotCount = slotCount;
+        copy.slots = copyOf(slots, copy.slots, size);
+        copy.indices = copyOf(indices, copy.indices, slotCount);
+        copy.generations = copyOf(generations, copy.generations, slotCount);
+        // The free ring is unrolled to the front of the copy
+        if (copy.freeSlots.length != freeSlots.length) {
+            copy.freeSlots = new int[freeSlots.length];
+        }
+        int untilEnd = Math.min(freeCount, freeSlots.length - freeHead);
+        System.arraycopy(freeSlots, freeHead, copy.freeSlots, 0, untilEnd);
+        System.arraycopy(freeSlots, 0, copy.freeSlots, untilEnd, freeCount - untilEnd);
+        copy.freeHead = 0;
+        copy.freeCount = freeCount;
+        return copy;
+    }
+
+    private static int[] copyOf(int[] source, int[] target, int count) {
+        if (target.length != source.length) {
+            target = new int[source.length];
+        }
+        System.arraycopy(source, 0, target, 0, count);
+        return target;
+    }
+
+    /**
+     * Gets the number of bytes {@link #write(ByteBuffer)} needs
+     * @return the size in bytes
+     */
+    public int getWriteSize() {
+        int bytes = 16 + (size + slotCount + freeCount) * 4;
+        for (Column column : columns) {
+            bytes += 3 + column.getName().getBytes(StandardCharsets.UTF_8).length + size * column.getValueSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes every entity to a buffer, column by column, along with what is needed to keep their
+     * ids valid when read back. Used for saving.
+     * @param buffer the buffer to write to, with {@link #getWriteSize()} bytes remaining
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(size);
+        buffer.putInt(slotCount);
+        buffer.putInt(freeCount);
+        buffer.putInt(columns.length);
+        buffer.asIntBuffer().put(slots, 0, size);
+        buffer.position(buffer.position() + size * 4);
+        buffer.asIntBuffer().put(generations, 0, slotCount);
+        buffer.position(buffer.position() + slotCount * 4);
+        for (int i = 0; i < freeCount; i++) {
+            buffer.putInt(freeSlots[(freeHead + i) % freeSlots.length]);
+        }
+        for (Column column : columns) {
+            byte[] name = column.getName().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+            buffer.put((byte) column.getType());
+            column.write(buffer, size);
+        }
+    }
+
+    /**
+     * Replaces every entity with the ones written by {@link #write(ByteBuffer)}. Saved ids stay
+     * valid. Columns are matched by name: saved columns this store doesn't have, or has with
+     * another type, are skipped, and columns that weren't saved get their default value.
+     * @param buffer the buffer to read from
+     */
+    public void read(ByteBuffer buffer) {
+        int newSize = buffer.getInt();
+        int newSlotCount = buffer.getInt();
+        int newFreeCount = buffer.getInt();
+        int columnCount = buffer.getInt();
+        if (newSlotCount > capacity) {
+            grow(Math.min(MAX_ENTITIES, Integer.highestOneBit(newSlotCount - 1) * 2));
+        }
+
+        size = newSize;
+        slotCount = newSlotCount;
+        buffer.asIntBuffer().get(slots, 0, size);
+        buffer.position(buffer.position() + size * 4);
+        buffer.asIntBuffer().get(generations, 0, slotCount);
+        buffer.position(buffer.position() + slotCount * 4);
+        freeHead = 0;
+        freeCount = newFreeCount;
+        for (int i = 0; i < freeCount; i++) {
+            freeSlots[i] = buffer.getInt();
+        }
+        Arrays.fill(indices, 0, slotCount, NONE);
+        for (int i = 0; i < size; i++) {
+            indices[slots[i]] = i;
+        }
+
+        boolean[] loaded = new boolean[columns.length];
+        for (int i = 0; i < columnCount; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            char type = (char) buffer.get();
+            Column column = columnsByName.get(new String(name, StandardCharsets.UTF_8));
+            if (column != null && column.getType() == type) {
+                column.read(buffer, size);
+                loaded[Arrays.asList(columns).indexOf(column)] = true;
+            } else {
+                buffer.position(buffer.position() + size * valueSize(type));
+            }
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (!loaded[i]) {
+                for (int index = 0; index < size; index++) {
+                    columns[i].reset(index);
+                }
+            }
+        }
+    }
+
+    private static int valueSize(char type) {
+        switch (type) {
+            case 'b':
+                return 1;
+            case 's':
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    private void grow(int newCapacity) {
+        for (Column column : columns) {
+            column.resize(newCapacity);
+        }
+        slots = Arrays.copyOf(slots, newCapacity);
+        indices = Arrays.copyOf(indices, newCapacity);
+        generations = Arrays.copyOf(generations, newCapacity);
+
+        // Unroll the ring buffer into the new array
+        int[] free = new int[newCapacity];
+        for (int i = 0; i < freeCount; i++) {
+            free[i] = freeSlots[(freeHead + i) % freeSlots.length];
+        }
+        freeSlots = free;
+        freeHead = 0;
+        capacity = newCapacity;
+    }
+}
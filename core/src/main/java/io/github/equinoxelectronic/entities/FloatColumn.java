@@ -0,0 +1,91 @@
+package io.github.equinoxelectronic.entities;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A column of float values, one per entity.
+ */
+public class FloatColumn extends Column {
+    private float[] data;
+    private final float defaultValue;
+
+    FloatColumn(String name, int capacity, float defaultValue) {
+        super(name);
+        this.data = new float[capacity];
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Gets the backing array, for loops over every entity. Only the first {@link EntityStore#size()} values are used.
+     * @return the values, indexed by dense index
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /**
+     * Gets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @return the value
+     */
+    public float get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Sets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @param value the value
+     */
+    public void set(int index, float value) {
+        data[index] = value;
+    }
+
+    @Override
+    void resize(int capacity) {
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    @Override
+    void move(int from, int to) {
+        data[to] = data[from];
+    }
+
+    @Override
+    void reset(int index) {
+        data[index] = defaultValue;
+    }
+
+    @Override
+    FloatColumn copy(Column reuse, int count) {
+        FloatColumn copy = reuse instanceof FloatColumn ? (FloatColumn) reuse : new FloatColumn(getName(), data.length, defaultValue);
+        if (copy.data.length != data.length) {
+            copy.data = new float[data.length];
+        }
+        System.arraycopy(data, 0, copy.data, 0, count);
+        return copy;
+    }
+
+    @Override
+    char getType() {
+        return 'f';
+    }
+
+    @Override
+    int getValueSize() {
+        return 4;
+    }
+
+    @Override
+    void write(ByteBuffer buffer, int count) {
+        buffer.asFloatBuffer().put(data, 0, count);
+        buffer.position(buffer.position() + count * 4);
+    }
+
+    @Override
+    void read(ByteBuffer buffer, int count) {
+        buffer.asFloatBuffer().get(data, 0, count);
+        buffer.position(buffer.position() + count * 4);
+    }
+}
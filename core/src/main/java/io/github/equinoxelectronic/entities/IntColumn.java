@@ -0,0 +1,91 @@
+package io.github.equinoxelectronic.entities;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A column of int values, one per entity.
+ */
+public class IntColumn extends Column {
+    private int[] data;
+    private final int defaultValue;
+
+    IntColumn(String name, int capacity, int defaultValue) {
+        super(name);
+        this.data = new int[capacity];
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Gets the backing array, for loops over every entity. Only the first {@link EntityStore#size()} values are used.
+     * @return the values, indexed by dense index
+     */
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * Gets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @return the value
+     */
+    public int get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Sets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @param value the value
+     */
+    public void set(int index, int value) {
+        data[index] = value;
+    }
+
+    @Override
+    void resize(int capacity) {
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    @Override
+    void move(int from, int to) {
+        data[to] = data[from];
+    }
+
+    @Override
+    void reset(int index) {
+        data[index] = defaultValue;
+    }
+
+    @Override
+    IntColumn copy(Column reuse, int count) {
+        IntColumn copy = reuse instanceof IntColumn ? (IntColumn) reuse : new IntColumn(getName(), data.length, defaultValue);
+        if (copy.data.length != data.length) {
+            copy.data = new int[data.length];
+        }
+        System.arraycopy(data, 0, copy.data, 0, count);
+        return copy;
+    }
+
+    @Override
+    char getType() {
+        return 'i';
+    }
+
+    @Override
+    int getValueSize() {
+        return 4;
+    }
+
+    @Override
+    void write(ByteBuffer buffer, int count) {
+        buffer.asIntBuffer().put(data, 0, count);
+        buffer.position(buffer.position() + count * 4);
+    }
+
+    @Override
+    void read(ByteBuffer buffer, int count) {
+        buffer.asIntBuffer().get(data, 0, count);
+        buffer.position(buffer.position() + count * 4);
+    }
+}
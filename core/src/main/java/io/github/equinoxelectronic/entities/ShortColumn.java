@@ -0,0 +1,91 @@
+package io.github.equinoxelectronic.entities;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A column of short values, one per entity.
+ */
+public class ShortColumn extends Column {
+    private short[] data;
+    private final short defaultValue;
+
+    ShortColumn(String name, int capacity, short defaultValue) {
+        super(name);
+        this.data = new short[capacity];
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Gets the backing array, for loops over every entity. Only the first {@link EntityStore#size()} values are used.
+     * @return the values, indexed by dense index
+     */
+    public short[] getData() {
+        return data;
+    }
+
+    /**
+     * Gets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @return the value
+     */
+    public short get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Sets the value of one entity
+     * @param index the entity's dense index, from {@link EntityStore#indexOf(int)}
+     * @param value the value
+     */
+    public void set(int index, short value) {
+        data[index] = value;
+    }
+
+    @Override
+    void resize(int capacity) {
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    @Override
+    void move(int from, int to) {
+        data[to] = data[from];
+    }
+
+    @Override
+    void reset(int index) {
+        data[index] = defaultValue;
+    }
+
+    @Override
+    ShortColumn copy(Column reuse, int count) {
+        ShortColumn copy = reuse instanceof ShortColumn ? (ShortColumn) reuse : new ShortColumn(getName(), data.length, defaultValue);
+        if (copy.data.length != data.length) {
+            copy.data = new short[data.length];
+        }
+        System.arraycopy(data, 0, copy.data, 0, count);
+        return copy;
+    }
+
+    @Override
+    char getType() {
+        return 's';
+    }
+
+    @Override
+    int getValueSize() {
+        return 2;
+    }
+
+    @Override
+    void write(ByteBuffer buffer, int count) {
+        buffer.asShortBuffer().put(data, 0, count);
+        buffer.position(buffer.position() + count * 2);
+    }
+
+    @Override
+    void read(ByteBuffer buffer, int count) {
+        buffer.asShortBuffer().get(data, 0, count);
+        buffer.position(buffer.position() + count * 2);
+    }
+}
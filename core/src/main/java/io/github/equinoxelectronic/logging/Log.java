@@ -0,0 +1,565 @@
+package io.github.equinoxelectronic.logging;
+
+/**
+ * Logs messages for one part of the game, in place of {@code com.badlogic.gdx.utils.Logger}.
+ *
+ * Messages take {@code {}} placeholders instead of being concatenated by the caller, and every
+ * method checks the level first, so a disabled message costs a comparison:
+ * <pre>
+ * private static final Log logger = new Log("Renderer");
+ * logger.debug("Drew {} sprites in {} batches", sprites, batches);
+ * </pre>
+ * There are overloads taking {@code long} and {@code double} so numbers aren't boxed before the
+ * level is checked; for other combinations of numbers in code that runs every frame, check
+ * {@link #isDebugEnabled()} first. Messages with more than three values go through a varargs
+ * overload, which allocates its array even when the level is off.
+ *
+ * An enabled message is formatted on the calling thread into an entry of a lock-free ring,
+ * reusing the entry's buffer, and printed by a background thread. The last lines printed are
+ * kept for crash reports, see {@link #getRecentLines()}.
+ *
+ * The level is shared by every log. It starts at {@link #INFO}, or at the level named by the
+ * {@value #LEVEL_PROPERTY} system property ({@code none}, {@code error}, {@code info} or {@code debug}).
+ */
+public class Log {
+    /** System property with the name of the starting level */
+    public static final String LEVEL_PROPERTY = "chancellor.logLevel";
+
+    /** Logs nothing */
+    public static final int NONE = 0;
+    /** Logs errors */
+    public static final int ERROR = 1;
+    /** Logs errors and information */
+    public static final int INFO = 2;
+    /** Logs everything */
+    public static final int DEBUG = 3;
+
+    private static volatile int level = parseLevel(System.getProperty(LEVEL_PROPERTY), INFO);
+
+    private final String tag;
+
+    /**
+     * Creates a log
+     * @param tag the name printed with every message, usually the class name
+     */
+    public Log(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Sets the level of every log
+     * @param newLevel {@link #NONE}, {@link #ERROR}, {@link #INFO} or {@link #DEBUG}
+     */
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * Gets the level of every log
+     * @return {@link #NONE}, {@link #ERROR}, {@link #INFO} or {@link #DEBUG}
+     */
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the last lines printed by every log, after printing anything still waiting. Used for
+     * crash reports; safe to call from any thread.
+     * @return up to the last 256 lines, oldest first
+     */
+    public static String[] getRecentLines() {
+        return LogBuffer.INSTANCE.getHistory();
+    }
+
+    /**
+     * Prints every message logged so far before returning
+     */
+    public static void flush() {
+        LogBuffer.INSTANCE.drain();
+    }
+
+    /**
+     * Checks if debug messages are logged, to skip building expensive arguments
+     * @return true if they are
+     */
+    public boolean isDebugEnabled() {
+        return level >= DEBUG;
+    }
+
+    /**
+     * Checks if information messages are logged
+     * @return true if they are
+     */
+    public boolean isInfoEnabled() {
+        return level >= INFO;
+    }
+
+    /**
+     * Logs a debug message
+     * @param message the message
+     */
+    public void debug(String message) {
+        if (level >= DEBUG) {
+            log(DEBUG, message, 0, null, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     */
+    public void debug(String format, Object a) {
+        if (level >= DEBUG) {
+            log(DEBUG, format, 1, a, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     */
+    public void debug(String format, Object a, Object b) {
+        if (level >= DEBUG) {
+            log(DEBUG, format, 2, a, b, null, null);
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     * @param c the third value
+     */
+    public void debug(String format, Object a, Object b, Object c) {
+        if (level >= DEBUG) {
+            log(DEBUG, format, 3, a, b, c, null);
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param values the values
+     */
+    public void debug(String format, Object... values) {
+        if (level >= DEBUG) {
+            log(DEBUG, format, values, null);
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     */
+    public void debug(String format, long a) {
+        if (level >= DEBUG) {
+            LogBuffer.Entry entry = begin(DEBUG, null);
+            if (entry != null) {
+                int next = -1;
+                try {
+                    next = appendText(entry.text, format, 0);
+                    if (next >= 0) {
+                        entry.text.append(a);
+                    }
+                } finally {
+                    end(entry, format, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     */
+    public void debug(String format, long a, long b) {
+        if (level >= DEBUG) {
+            LogBuffer.Entry entry = begin(DEBUG, null);
+            if (entry != null) {
+                int next = -1;
+                try {
+                    next = appendText(entry.text, format, 0);
+                    if (next >= 0) {
+                        entry.text.append(a);
+                    }
+                    next = appendText(entry.text, format, next);
+                    if (next >= 0) {
+                        entry.text.append(b);
+                    }
+                } finally {
+                    end(entry, format, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     */
+    public void debug(String format, Object a, long b) {
+        if (level >= DEBUG) {
+            LogBuffer.Entry entry = begin(DEBUG, null);
+            if (entry != null) {
+                int next = -1;
+                try {
+                    next = appendText(entry.text, format, 0);
+                    if (next >= 0) {
+                        entry.text.append(a);
+                    }
+                    next = appendText(entry.text, format, next);
+                    if (next >= 0) {
+                        entry.text.append(b);
+                    }
+                } finally {
+                    end(entry, format, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     */
+    public void debug(String format, double a) {
+        if (level >= DEBUG) {
+            LogBuffer.Entry entry = begin(DEBUG, null);
+            if (entry != null) {
+                int next = -1;
+                try {
+                    next = appendText(entry.text, format, 0);
+                    if (next >= 0) {
+                        entry.text.append(a);
+                    }
+                } finally {
+                    end(entry, format, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs a debug message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     */
+    public void debug(String format, double a, double b) {
+        if (level >= DEBUG) {
+            LogBuffer.Entry entry = begin(DEBUG, null);
+            if (entry != null) {
+                int next = -1;
+                try {
+                    next = appendText(entry.text, format, 0);
+                    if (next >= 0) {
+                        entry.text.append(a);
+                    }
+                    next = appendText(entry.text, format, next);
+                    if (next >= 0) {
+                        entry.text.append(b);
+                    }
+                } finally {
+                    end(entry, format, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs an information message
+     * @param message the message
+     */
+    public void info(String message) {
+        if (level >= INFO) {
+            log(INFO, message, 0, null, null, null, null);
+        }
+    }
+
+    /**
+     * Logs an information message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     */
+    public void info(String format, Object a) {
+        if (level >= INFO) {
+            log(INFO, format, 1, a, null, null, null);
+        }
+    }
+
+    /**
+     * Logs an information message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     */
+    public void info(String format, Object a, Object b) {
+        if (level >= INFO) {
+            log(INFO, format, 2, a, b, null, null);
+        }
+    }
+
+    /**
+     * Logs an information message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     * @param c the third value
+     */
+    public void info(String format, Object a, Object b, Object c) {
+        if (level >= INFO) {
+            log(INFO, format, 3, a, b, c, null);
+        }
+    }
+
+    /**
+     * Logs an info message
+     * @param format the message, with a {} placeholder for each value
+     * @param values the values
+     */
+    public void info(String format, Object... values) {
+        if (level >= INFO) {
+            log(INFO, format, values, null);
+        }
+    }
+
+    /**
+     * Logs an information message
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     */
+    public void info(String format, long a) {
+        if (level >= INFO) {
+            LogBuffer.Entry entry = begin(INFO, null);
+            if (entry != null) {
+                int next = -1;
+                try {
+                    next = appendText(entry.text, format, 0);
+                    if (next >= 0) {
+                        entry.text.append(a);
+                    }
+                } finally {
+                    end(entry, format, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs an error
+     * @param message the message
+     */
+    public void error(String message) {
+        if (level >= ERROR) {
+            log(ERROR, message, 0, null, null, null, null);
+        }
+    }
+
+    /**
+     * Logs an error
+     * @param message the message
+     * @param throwable the exception, printed with its stack trace
+     */
+    public void error(String message, Throwable throwable) {
+        if (level >= ERROR) {
+            log(ERROR, message, 0, null, null, null, throwable);
+        }
+    }
+
+    /**
+     * Logs an error
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     */
+    public void error(String format, Object a) {
+        if (level >= ERROR) {
+            log(ERROR, format, 1, a, null, null, null);
+        }
+    }
+
+    /**
+     * Logs an error
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param throwable the exception, printed with its stack trace
+     */
+    public void error(String format, Object a, Throwable throwable) {
+        if (level >= ERROR) {
+            log(ERROR, format, 1, a, null, null, throwable);
+        }
+    }
+
+    /**
+     * Logs an error
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     */
+    public void error(String format, Object a, Object b) {
+        if (level >= ERROR) {
+            log(ERROR, format, 2, a, b, null, null);
+        }
+    }
+
+    /**
+     * Logs an error
+     * @param format the message, with a {} placeholder for each value
+     * @param a the first value
+     * @param b the second value
+     * @param throwable the exception, printed with its stack trace
+     */
+    public void error(String format, Object a, Object b, Throwable throwable) {
+        if (level >= ERROR) {
+            log(ERROR, format, 2, a, b, null, throwable);
+        }
+    }
+
+    /**
+     * Formats a message with up to three object arguments into a ring entry
+     * @param count the number of arguments given
+     */
+    private void log(int messageLevel, String format, int count, Object a, Object b, Object c, Throwable throwable) {
+        LogBuffer.Entry entry = begin(messageLevel, throwable);
+        if (entry == null) {
+            return;
+        }
+        StringBuilder text = entry.text;
+        int next = 0;
+        try {
+            if (count >= 1) {
+                next = appendText(text, format, next);
+                if (next >= 0) {
+                    text.append(a);
+                }
+            }
+            if (count >= 2) {
+                next = appendText(text, format, next);
+                if (next >= 0) {
+                    text.append(b);
+                }
+            }
+            if (count >= 3) {
+                next = appendText(text, format, next);
+                if (next >= 0) {
+                    text.append(c);
+                }
+            }
+        } catch (RuntimeException e) {
+            // A value's toString() failed, log what there is rather than losing the message
+            text.append(" [could not format: ").append(e).append(']');
+            next = -1;
+        } finally {
+            end(entry, format, next);
+        }
+    }
+
+    /**
+     * Formats a message with any number of object arguments into a ring entry
+     */
+    private void log(int messageLevel, String format, Object[] values, Throwable throwable) {
+        LogBuffer.Entry entry = begin(messageLevel, throwable);
+        if (entry == null) {
+            return;
+        }
+        StringBuilder text = entry.text;
+        int next = 0;
+        try {
+            for (Object value : values) {
+                next = appendText(text, format, next);
+                if (next >= 0) {
+                    text.append(value);
+                }
+            }
+        } catch (RuntimeException e) {
+            // A value's toString() failed, log what there is rather than losing the message
+            text.append(" [could not format: ").append(e).append(']');
+            next = -1;
+        } finally {
+            end(entry, format, next);
+        }
+    }
+
+    private LogBuffer.Entry begin(int messageLevel, Throwable throwable) {
+        LogBuffer.Entry entry = LogBuffer.INSTANCE.claim();
+        if (entry != null) {
+            entry.level = messageLevel;
+            entry.tag = tag;
+            entry.thread = Thread.currentThread();
+            entry.time = System.currentTimeMillis();
+            entry.throwable = throwable;
+        }
+        return entry;
+    }
+
+    /**
+     * Appends the rest of the format and publishes the entry. A claimed entry must always be
+     * published, or the drain thread stops at it and never prints anything again.
+     * @param next the index in the format after the last placeholder filled, or -1 if it has none left
+     */
+    private static void end(LogBuffer.Entry entry, String format, int next) {
+        try {
+            if (next >= 0) {
+                entry.text.append(format, next, format.length());
+            }
+        } finally {
+            LogBuffer.INSTANCE.publish(entry);
+        }
+    }
+
+    /**
+     * Appends the format up to its next placeholder
+     * @param from the index to start at, or -1 if there are no placeholders left
+     * @return the index after the placeholder, or -1 if there was none and the rest was appended
+     */
+    private static int appendText(StringBuilder text, String format, int from) {
+        if (from < 0) {
+            return -1;
+        }
+        int placeholder = format.indexOf("{}", from);
+        if (placeholder < 0) {
+            text.append(format, from, format.length());
+            return -1;
+        }
+        text.append(format, from, placeholder);
+        return placeholder + 2;
+    }
+
+    static String levelName(int messageLevel) {
+        switch (messageLevel) {
+            case ERROR:
+                return "ERROR";
+            case INFO:
+                return "INFO ";
+            default:
+                return "DEBUG";
+        }
+    }
+
+    private static int parseLevel(String name, int defaultLevel) {
+        if (name == null) {
+            return defaultLevel;
+        }
+        switch (name.toLowerCase()) {
+            case "none":
+                return NONE;
+            case "error":
+                return ERROR;
+            case "info":
+                return INFO;
+            case "debug":
+                return DEBUG;
+            default:
+                return defaultLevel;
+        }
+    }
+}
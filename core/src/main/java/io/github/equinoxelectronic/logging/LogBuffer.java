@@ -0,0 +1,165 @@
+package io.github.equinoxelectronic.logging;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The ring of log entries between the threads logging and the thread printing them.
+ *
+ * Any number of threads claim entries without locking: a thread takes the next position with a
+ * compare-and-set, formats its message into the entry's own builder and publishes it by setting
+ * the entry's sequence number. If the ring is full the message is counted as dropped instead of
+ * waiting, so logging never blocks the game. One daemon thread drains published entries in
+ * order, prints them and keeps the last {@link #HISTORY_SIZE} lines for crash reports.
+ */
+final class LogBuffer {
+    static final int CAPACITY = 1024;
+    static final int HISTORY_SIZE = 256;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    static final LogBuffer INSTANCE = new LogBuffer();
+
+    private final Entry[] entries = new Entry[CAPACITY];
+    // Per entry: the position it can be claimed at, or that position + 1 once published
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Only touched while holding the lock on this buffer
+    private long head;
+    private final String[] history = new String[HISTORY_SIZE];
+    private long historyCount;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+    private final Date date = new Date();
+
+    private LogBuffer() {
+        for (int i = 0; i < CAPACITY; i++) {
+            entries[i] = new Entry(i);
+            sequences.set(i, i);
+        }
+        Thread drainer = new Thread(() -> {
+            while (true) {
+                drain();
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            }
+        }, "log-drain");
+        drainer.setDaemon(true);
+        drainer.start();
+        // The drain thread is a daemon, so whatever is still in the ring is printed on the way out
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "log-flush"));
+    }
+
+    /**
+     * Claims the next entry to write a message into
+     * @return the entry, or null if the ring is full
+     */
+    Entry claim() {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & (CAPACITY - 1));
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Entry entry = entries[index];
+                    entry.position = position;
+                    return entry;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // Still holds a message from a lap ago that hasn't been drained
+                dropped.incrementAndGet();
+                return null;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hands a filled entry to the drain thread
+     */
+    void publish(Entry entry) {
+        sequences.lazySet(entry.index, entry.position + 1);
+    }
+
+    /**
+     * Prints every published entry, in order
+     */
+    synchronized void drain() {
+        while (true) {
+            int index = (int) (head & (CAPACITY - 1));
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Entry entry = entries[index];
+            print(entry);
+            entry.text.setLength(0);
+            entry.throwable = null;
+            entry.thread = null;
+            sequences.lazySet(index, head + CAPACITY);
+            head++;
+        }
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            addHistory(System.err, "[Log] Dropped " + count + " messages, the log buffer was full");
+        }
+    }
+
+    private void print(Entry entry) {
+        date.setTime(entry.time);
+        String line = timeFormat.format(date) + " " + Log.levelName(entry.level) + " [" + entry.thread.getName() + "] "
+            + entry.tag + ": " + entry.text;
+        PrintStream out = entry.level == Log.ERROR ? System.err : System.out;
+        addHistory(out, line);
+        if (entry.throwable != null) {
+            entry.throwable.printStackTrace(out);
+            addHistory(null, "    " + entry.throwable);
+        }
+    }
+
+    private void addHistory(PrintStream out, String line) {
+        if (out != null) {
+            out.println(line);
+        }
+        history[(int) (historyCount++ % HISTORY_SIZE)] = line;
+    }
+
+    /**
+     * Drains the ring and copies the last lines printed
+     * @return the lines, oldest first
+     */
+    synchronized String[] getHistory() {
+        drain();
+        int count = (int) Math.min(historyCount, HISTORY_SIZE);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = history[(int) ((historyCount - count + i) % HISTORY_SIZE)];
+        }
+        return lines;
+    }
+
+    /**
+     * One message on its way to being printed. The builder is kept and reused, so formatting a
+     * message doesn't allocate once every entry has been used once.
+     */
+    static final class Entry {
+        final int index;
+        long position;
+        final StringBuilder text = new StringBuilder(128);
+        int level;
+        String tag;
+        // Named when printed, Java 8 copies the name every time it's asked for
+        Thread thread;
+        long time;
+        Throwable throwable;
+
+        Entry(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.equinoxelectronic.navigation;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * The open set of the flow field searches: a bucket per cost, in a ring.
+ *
+ * Costs are small whole numbers and every step adds at most a fixed amount, so the tiles waiting
+ * at any moment have costs within one step of each other and fit in a ring of buckets one step
+ * long. Pushing and popping are then constant time, instead of the log time of a heap.
+ *
+ * Tiles that start the search at their own cost, like the edge of a repaired area, are given as
+ * seeds, which are sorted once and join their bucket when the search reaches their cost.
+ */
+class BucketQueue {
+    private final IntArray[] buckets;
+    private final int mask;
+    private int current;
+    private int count;
+
+    // Cost in the high bits and tile in the low bits, sorted when the search starts
+    private long[] seeds = new long[64];
+    private int seedCount;
+    private int seedIndex;
+
+    /**
+     * Creates a queue
+     * @param maxStep the highest cost a single step can add
+     */
+    BucketQueue(int maxStep) {
+        int size = Integer.highestOneBit(maxStep) * 2;
+        buckets = new IntArray[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new IntArray();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Empties the queue and the seeds
+     */
+    void clear() {
+        for (IntArray bucket : buckets) {
+            bucket.clear();
+        }
+        count = 0;
+        seedCount = 0;
+        seedIndex = 0;
+        current = 0;
+    }
+
+    /**
+     * Adds a tile the search starts from. Must be called before the first {@link #pop()}.
+     * @param tile the tile index
+     * @param cost its cost
+     */
+    void seed(int tile, int cost) {
+        if (seedCount == seeds.length) {
+            seeds = Arrays.copyOf(seeds, seeds.length * 2);
+        }
+        seeds[seedCount++] = (long) cost << 32 | tile;
+    }
+
+    /**
+     * Sorts the seeds; call after adding them and before the first {@link #pop()}
+     */
+    void start() {
+        Arrays.sort(seeds, 0, seedCount);
+        current = seedCount > 0 ? (int) (seeds[0] >>> 32) : 0;
+    }
+
+    /**
+     * Adds a tile reached during the search
+     * @param tile the tile index
+     * @param cost its cost, at most one step more than {@link #getCurrentCost()}
+     */
+    void push(int tile, int cost) {
+        buckets[cost & mask].add(tile);
+        count++;
+    }
+
+    /**
+     * Takes a tile with the lowest cost. A tile pushed several times comes out several times;
+     * only the time its cost matches {@link #getCurrentCost()} is current.
+     * @return the tile index, or -1 once the queue and the seeds are empty
+     */
+    int pop() {
+        while (true) {
+            while (seedIndex < seedCount && (int) (seeds[seedIndex] >>> 32) == current) {
+                push((int) seeds[seedIndex++], current);
+            }
+            IntArray bucket = buckets[current & mask];
+            if (bucket.size > 0) {
+                count--;
+                return bucket.pop();
+            }
+            if (count == 0) {
+                if (seedIndex == seedCount) {
+                    return -1;
+                }
+                // Nothing left before the next seed
+                current = (int) (seeds[seedIndex] >>> 32);
+            } else {
+                current++;
+            }
+        }
+    }
+
+    /**
+     * Gets the cost of the tiles {@link #pop()} is returning
+     * @return the cost
+     */
+    int getCurrentCost() {
+        return current;
+    }
+}
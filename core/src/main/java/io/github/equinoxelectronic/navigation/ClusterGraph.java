@@ -0,0 +1,359 @@
+package io.github.equinoxelectronic.navigation;
+
+import com.badlogic.gdx.utils.IntArray;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.util.Arrays;
+
+/**
+ * The abstract graph hierarchical A* searches before working out the tiles of a path.
+ *
+ * The map is split into clusters, one per chunk of the {@link TileMap}. Where a run of passable
+ * tiles crosses the border between two clusters there is an entrance: a node on each side of
+ * the border, joined by a single step. Within a cluster, every pair of nodes is joined by the
+ * cost of the cheapest path between them that stays inside the cluster. Searching this graph
+ * visits a few nodes per cluster instead of every tile, and the tiles of the path are then
+ * found with short searches inside one cluster at a time. Paths found this way are usually a
+ * few percent longer than the best path.
+ *
+ * Clusters are rebuilt when the version of their chunk changes, together with their neighbors,
+ * which share their borders.
+ */
+class ClusterGraph {
+    // Runs of crossings at least this long get an entrance at each end instead of one in the middle
+    private static final int LONG_ENTRANCE = 6;
+    private static final int SIZE = TileMap.CHUNK_SIZE;
+
+    private final TileMap map;
+    private final MovementCosts costs;
+    private final PathSearch search;
+    private final int width;
+    private final int clustersX;
+    private final int clustersY;
+
+    // Tile of every node, per cluster
+    private final int[][] nodes;
+    // Cost between every pair of nodes in a cluster, row by row, or -1 if there is no path
+    private final int[][] distances;
+    // Node, tile across the border and cost of every crossing, per cluster
+    private final int[][] crossings;
+    // Index of every tile in its cluster's nodes, or -1 if it is not a node
+    private final int[] localIndex;
+    // Chunk version every cluster was built from
+    private final int[] builtVersions;
+    private int builtMapVersion = -1;
+
+    // Scratch
+    private final boolean[] dirty;
+    private final IntArray nodeScratch = new IntArray();
+    private final IntArray crossingScratch = new IntArray();
+    private final IntArray abstractPath = new IntArray();
+    private int[] startDistances = new int[16];
+    private int[] goalDistances = new int[16];
+
+    // Metrics
+    private int nodeCount;
+
+    ClusterGraph(TileMap map, MovementCosts costs, PathSearch search) {
+        this.map = map;
+        this.costs = costs;
+        this.search = search;
+        this.width = map.getWidth();
+        this.clustersX = map.getChunksX();
+        this.clustersY = map.getChunksY();
+        int clusters = clustersX * clustersY;
+        this.nodes = new int[clusters][0];
+        this.distances = new int[clusters][0];
+        this.crossings = new int[clusters][0];
+        this.localIndex = new int[map.getWidth() * map.getHeight()];
+        this.builtVersions = new int[clusters];
+        this.dirty = new boolean[clusters];
+        Arrays.fill(localIndex, -1);
+        Arrays.fill(builtVersions, -1);
+    }
+
+    /**
+     * Rebuilds the clusters whose tiles changed since the last call, and their neighbors
+     * @return the number of clusters rebuilt
+     */
+    int update() {
+        if (builtMapVersion == map.getVersion()) {
+            return 0;
+        }
+        for (int cluster = 0; cluster < builtVersions.length; cluster++) {
+            int version = map.getChunkVersion(cluster % clustersX, cluster / clustersX);
+            if (builtVersions[cluster] != version) {
+                builtVersions[cluster] = version;
+                markDirty(cluster % clustersX, cluster / clustersX);
+            }
+        }
+        // All node sets first, as crossings lead to the nodes of neighboring clusters
+        for (int cluster = 0; cluster < dirty.length; cluster++) {
+            if (dirty[cluster]) {
+                buildNodes(cluster);
+            }
+        }
+        int rebuilt = 0;
+        for (int cluster = 0; cluster < dirty.length; cluster++) {
+            if (dirty[cluster]) {
+                buildDistances(cluster);
+                dirty[cluster] = false;
+                rebuilt++;
+            }
+        }
+        builtMapVersion = map.getVersion();
+        return rebuilt;
+    }
+
+    private void markDirty(int clusterX, int clusterY) {
+        dirty[clusterY * clustersX + clusterX] = true;
+        if (clusterX > 0) {
+            dirty[clusterY * clustersX + clusterX - 1] = true;
+        }
+        if (clusterX < clustersX - 1) {
+            dirty[clusterY * clustersX + clusterX + 1] = true;
+        }
+        if (clusterY > 0) {
+            dirty[(clusterY - 1) * clustersX + clusterX] = true;
+        }
+        if (clusterY < clustersY - 1) {
+            dirty[(clusterY + 1) * clustersX + clusterX] = true;
+        }
+    }
+
+    /**
+     * Finds the entrances on the four borders of a cluster
+     */
+    private void buildNodes(int cluster) {
+        for (int tile : nodes[cluster]) {
+            localIndex[tile] = -1;
+        }
+        nodeCount -= nodes[cluster].length;
+        nodeScratch.clear();
+        crossingScratch.clear();
+
+        int clusterX = cluster % clustersX;
+        int clusterY = cluster / clustersX;
+        int minX = clusterX * SIZE;
+        int minY = clusterY * SIZE;
+        int maxX = Math.min(width, minX + SIZE) - 1;
+        int maxY = Math.min(map.getHeight(), minY + SIZE) - 1;
+        if (clusterX > 0) {
+            scanBorder(minX, minY, -1, 0, 0, 1, maxY - minY + 1);
+        }
+        if (clusterX < clustersX - 1) {
+            scanBorder(maxX, minY, 1, 0, 0, 1, maxY - minY + 1);
+        }
+        if (clusterY > 0) {
+            scanBorder(minX, minY, 0, -1, 1, 0, maxX - minX + 1);
+        }
+        if (clusterY < clustersY - 1) {
+            scanBorder(minX, maxY, 0, 1, 1, 0, maxX - minX + 1);
+        }
+        nodes[cluster] = nodeScratch.toArray();
+        crossings[cluster] = crossingScratch.toArray();
+        nodeCount += nodes[cluster].length;
+    }
+
+    /**
+     * Adds an entrance for every run of tiles that can cross a border
+     * @param x the column of the first tile on this side of the border
+     * @param y the row of the first tile on this side of the border
+     * @param acrossX the column step to the tile on the other side
+     * @param acrossY the row step to the tile on the other side
+     * @param alongX the column step along the border
+     * @param alongY the row step along the border
+     * @param length the length of the border in tiles
+     */
+    private void scanBorder(int x, int y, int acrossX, int acrossY, int alongX, int alongY, int length) {
+        short[] tiles = map.getTiles();
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean open = false;
+            if (i < length) {
+                int tile = (y + alongY * i) * width + x + alongX * i;
+                int other = tile + acrossY * width + acrossX;
+                open = costs.isPassable(tiles[tile]) && costs.isPassable(tiles[other]);
+            }
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= LONG_ENTRANCE) {
+                    addCrossing(x, y, acrossX, acrossY, alongX, alongY, runStart);
+                    addCrossing(x, y, acrossX, acrossY, alongX, alongY, runEnd);
+                } else {
+                    addCrossing(x, y, acrossX, acrossY, alongX, alongY, (runStart + runEnd) / 2);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private void addCrossing(int x, int y, int acrossX, int acrossY, int alongX, int alongY, int position) {
+        int tile = (y + alongY * position) * width + x + alongX * position;
+        int other = tile + acrossY * width + acrossX;
+        // Corner tiles sit on two borders, but are one node
+        if (localIndex[tile] < 0) {
+            localIndex[tile] = nodeScratch.size;
+            nodeScratch.add(tile);
+        }
+        short[] tiles = map.getTiles();
+        crossingScratch.add(localIndex[tile]);
+        crossingScratch.add(other);
+        crossingScratch.add(PathSearch.ORTHOGONAL * (costs.getCost(tiles[tile]) + costs.getCost(tiles[other])));
+    }
+
+    /**
+     * Finds the cost between every pair of nodes of a cluster, with one search per node
+     */
+    private void buildDistances(int cluster) {
+        int[] clusterNodes = nodes[cluster];
+        int count = clusterNodes.length;
+        int[] result = new int[count * count];
+        for (int i = 0; i < count; i++) {
+            result[i * count + i] = 0;
+            if (i == count - 1) {
+                break;
+            }
+            exploreCluster(clusterNodes[i], cluster);
+            // Steps cost the same both ways, so each search fills a row and a column
+            for (int j = i + 1; j < count; j++) {
+                int cost = search.getCost(clusterNodes[j]);
+                result[i * count + j] = cost;
+                result[j * count + i] = cost;
+            }
+        }
+        distances[cluster] = result;
+    }
+
+    /**
+     * Finds a path with hierarchical A*
+     * @param start the start tile index, which must be passable
+     * @param goal the goal tile index, which must be passable
+     * @param path receives the tile indices from start to goal
+     * @return the cost of the path, or -1 if there is none
+     */
+    int findPath(int start, int goal, IntArray path) {
+        int startCluster = clusterOf(start);
+        int goalCluster = clusterOf(goal);
+        // Within one cluster the direct search is cheap, and better than going through entrances
+        if (startCluster == goalCluster) {
+            int cost = searchCluster(start, goal, startCluster);
+            if (cost >= 0) {
+                search.appendPath(goal, path, false);
+                return cost;
+            }
+        }
+
+        // Connect the start and the goal to the entrances of their clusters
+        startDistances = connect(start, startCluster, startDistances);
+        goalDistances = connect(goal, goalCluster, goalDistances);
+
+        int goalX = goal % width;
+        int goalY = goal / width;
+        search.reset();
+        search.relax(start, 0, -1, search.heuristic(start % width, start / width, goalX, goalY));
+        int tile;
+        while ((tile = search.poll()) >= 0 && tile != goal) {
+            int cost = search.getCost(tile);
+            if (tile == start) {
+                relaxAll(nodes[startCluster], startDistances, 0, cost, tile, goalX, goalY);
+            }
+            int local = localIndex[tile];
+            if (local < 0) {
+                continue;
+            }
+            int cluster = clusterOf(tile);
+            int[] clusterNodes = nodes[cluster];
+            relaxAll(clusterNodes, distances[cluster], local * clusterNodes.length, cost, tile, goalX, goalY);
+            int[] clusterCrossings = crossings[cluster];
+            for (int i = 0; i < clusterCrossings.length; i += 3) {
+                if (clusterCrossings[i] == local) {
+                    int target = clusterCrossings[i + 1];
+                    search.relax(target, cost + clusterCrossings[i + 2], tile,
+                        search.heuristic(target % width, target / width, goalX, goalY));
+                }
+            }
+            if (cluster == goalCluster && goalDistances[local] >= 0) {
+                search.relax(goal, cost + goalDistances[local], tile, 0);
+            }
+        }
+        if (tile != goal) {
+            return -1;
+        }
+        int total = search.getCost(goal);
+
+        // Work out the tiles between every two nodes
+        abstractPath.clear();
+        search.appendPath(goal, abstractPath, false);
+        path.add(start);
+        for (int i = 1; i < abstractPath.size; i++) {
+            int from = abstractPath.get(i - 1);
+            int to = abstractPath.get(i);
+            int cluster = clusterOf(from);
+            if (cluster == clusterOf(to)) {
+                searchCluster(from, to, cluster);
+                search.appendPath(to, path, true);
+            } else {
+                // Crossings are a single step across the border
+                path.add(to);
+            }
+        }
+        return total;
+    }
+
+    private void relaxAll(int[] targets, int[] costs, int offset, int cost, int from, int goalX, int goalY) {
+        for (int i = 0; i < targets.length; i++) {
+            int distance = costs[offset + i];
+            if (distance > 0) {
+                int target = targets[i];
+                search.relax(target, cost + distance, from, search.heuristic(target % width, target / width, goalX, goalY));
+            }
+        }
+    }
+
+    /**
+     * Finds the cost from a tile to every node of its cluster
+     * @return the costs, indexed like the nodes, -1 where there is no path
+     */
+    private int[] connect(int tile, int cluster, int[] result) {
+        int[] clusterNodes = nodes[cluster];
+        if (result.length < clusterNodes.length) {
+            result = new int[clusterNodes.length * 2];
+        }
+        exploreCluster(tile, cluster);
+        for (int i = 0; i < clusterNodes.length; i++) {
+            result[i] = search.getCost(clusterNodes[i]);
+        }
+        return result;
+    }
+
+    private int searchCluster(int start, int goal, int cluster) {
+        int minX = cluster % clustersX * SIZE;
+        int minY = cluster / clustersX * SIZE;
+        return search.search(start, goal, minX, minY, Math.min(width, minX + SIZE) - 1,
+            Math.min(map.getHeight(), minY + SIZE) - 1);
+    }
+
+    private void exploreCluster(int start, int cluster) {
+        searchCluster(start, -1, cluster);
+    }
+
+    /**
+     * Gets the cluster a tile is in
+     * @param tile the tile index
+     * @return the cluster index, the same as its chunk's
+     */
+    int clusterOf(int tile) {
+        return tile / width / SIZE * clustersX + tile % width / SIZE;
+    }
+
+    /**
+     * Gets the number of entrance nodes in the graph
+     * @return the node count
+     */
+    int getNodeCount() {
+        return nodeCount;
+    }
+}
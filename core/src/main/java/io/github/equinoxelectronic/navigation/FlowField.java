@@ -0,0 +1,307 @@
+package io.github.equinoxelectronic.navigation;
+
+import com.badlogic.gdx.utils.IntArray;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.util.Arrays;
+
+/**
+ * The way to one target tile from every tile of a map, shared by every unit heading there.
+ *
+ * The field holds the cost of reaching the target from each tile, found with one Dijkstra search
+ * spreading out from the target, and the direction of the next step, so a unit only has to look
+ * up the tile it stands on to know where to go. Get fields from {@link FlowFields}, which caches
+ * them and repairs them when the map changes.
+ *
+ * A field dropped from the cache is reused for the next new target, so a kept reference may
+ * start leading somewhere else. Units that keep a field should keep its {@link #getGeneration()}
+ * with it and get the field again from {@link FlowFields} once the generation has changed.
+ */
+public class FlowField {
+    /** Cost of tiles the target can't be reached from */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    /** Direction of tiles with no next step: the target, and tiles it can't be reached from */
+    public static final int NONE = -1;
+
+    // A repair touching more than this part of the map builds the field again instead
+    private static final int REBUILD_FRACTION = 8;
+
+    private final TileMap map;
+    private final MovementCosts costs;
+    private final int width;
+    private int target;
+
+    private final int[] integration;
+    private final byte[] directions;
+    // Chunk versions the field was last built or repaired from
+    private final int[] chunkVersions;
+    private int mapVersion;
+    // Changes whenever the field is dropped from the cache
+    private int generation;
+
+    // Scratch for repairs
+    private final IntArray invalid = new IntArray();
+
+    FlowField(TileMap map, MovementCosts costs, int target) {
+        this.map = map;
+        this.costs = costs;
+        this.width = map.getWidth();
+        this.target = target;
+        this.integration = new int[map.getWidth() * map.getHeight()];
+        this.directions = new byte[integration.length];
+        this.chunkVersions = new int[map.getChunksX() * map.getChunksY()];
+    }
+
+    /**
+     * Points the field at another target, reusing its arrays. Must be built again afterwards.
+     */
+    void retarget(int target) {
+        this.target = target;
+    }
+
+    /**
+     * Marks the field as dropped from the cache, so holders can tell it may no longer lead to their target
+     */
+    void retire() {
+        generation++;
+    }
+
+    /**
+     * Computes the whole field. If the target can't be entered, no tile can reach it.
+     * @param queue the open set to use
+     */
+    void build(BucketQueue queue) {
+        Arrays.fill(integration, UNREACHABLE);
+        Arrays.fill(directions, (byte) NONE);
+        recordVersions();
+        queue.clear();
+        if (costs.isPassable(map.getTiles()[target])) {
+            integration[target] = 0;
+            queue.seed(target, 0);
+        }
+        queue.start();
+        propagate(queue);
+    }
+
+    /**
+     * Brings the field up to date with the map by searching again only where it changed: the
+     * changed chunks, the tiles whose way to the target led through them, and tiles that now
+     * have a cheaper way. If that turns out to be a large part of the map, the whole field is
+     * built again instead, which is quicker by then.
+     * @param queue the open set to use
+     * @return the number of tiles that had to be searched again, 0 if the field was current
+     */
+    int repair(BucketQueue queue) {
+        if (mapVersion == map.getVersion()) {
+            return 0;
+        }
+        invalid.clear();
+        int chunksX = map.getChunksX();
+        for (int chunk = 0; chunk < chunkVersions.length; chunk++) {
+            int version = map.getChunkVersion(chunk % chunksX, chunk / chunksX);
+            if (version != chunkVersions[chunk]) {
+                invalidateChunk(chunk % chunksX, chunk / chunksX);
+            }
+        }
+
+        // Everything downstream of an invalid tile is invalid too, and the valid tiles around
+        // them are where the search starts again. Tiles seeded here and invalidated later are
+        // skipped by the search, as their cost no longer matches.
+        queue.clear();
+        int height = map.getHeight();
+        for (int i = 0; i < invalid.size; i++) {
+            if (invalid.size > integration.length / REBUILD_FRACTION) {
+                build(queue);
+                return integration.length;
+            }
+            int tile = invalid.get(i);
+            int x = tile % width;
+            int y = tile / width;
+            for (int direction = 0; direction < 8; direction++) {
+                int nextX = x + PathSearch.STEP_X[direction];
+                int nextY = y + PathSearch.STEP_Y[direction];
+                if (nextX < 0 || nextY < 0 || nextX >= width || nextY >= height) {
+                    continue;
+                }
+                int next = nextY * width + nextX;
+                if (integration[next] == UNREACHABLE) {
+                    continue;
+                }
+                if (directions[next] == PathSearch.OPPOSITE[direction]) {
+                    invalidate(next);
+                } else {
+                    queue.seed(next, integration[next]);
+                }
+            }
+        }
+        recordVersions();
+
+        if (integration[target] == UNREACHABLE && costs.isPassable(map.getTiles()[target])) {
+            integration[target] = 0;
+            queue.seed(target, 0);
+        }
+        queue.start();
+        propagate(queue);
+        return invalid.size;
+    }
+
+    private void invalidateChunk(int chunkX, int chunkY) {
+        // One tile further, as diagonal steps past a changed tile may no longer be allowed
+        int startX = Math.max(0, chunkX * TileMap.CHUNK_SIZE - 1);
+        int startY = Math.max(0, chunkY * TileMap.CHUNK_SIZE - 1);
+        int endX = Math.min(width, (chunkX + 1) * TileMap.CHUNK_SIZE + 1);
+        int endY = Math.min(map.getHeight(), (chunkY + 1) * TileMap.CHUNK_SIZE + 1);
+        for (int y = startY; y < endY; y++) {
+            for (int x = startX; x < endX; x++) {
+                if (integration[y * width + x] != UNREACHABLE) {
+                    invalidate(y * width + x);
+                }
+            }
+        }
+    }
+
+    private void invalidate(int tile) {
+        integration[tile] = UNREACHABLE;
+        directions[tile] = NONE;
+        invalid.add(tile);
+    }
+
+    /**
+     * Runs Dijkstra from the seeds in the queue, lowering the cost of every tile it can
+     */
+    private void propagate(BucketQueue queue) {
+        short[] tiles = map.getTiles();
+        int tile;
+        while ((tile = queue.pop()) >= 0) {
+            int cost = queue.getCurrentCost();
+            if (integration[tile] != cost) {
+                continue;
+            }
+            int x = tile % width;
+            int y = tile / width;
+            int tileCost = costs.getCost(tiles[tile]);
+            for (int direction = 0; direction < 8; direction++) {
+                int nextX = x + PathSearch.STEP_X[direction];
+                int nextY = y + PathSearch.STEP_Y[direction];
+                if (nextX < 0 || nextY < 0 || nextX >= width || nextY >= map.getHeight()) {
+                    continue;
+                }
+                int next = nextY * width + nextX;
+                int nextCost = costs.getCost(tiles[next]);
+                if (nextCost == MovementCosts.IMPASSABLE) {
+                    continue;
+                }
+                int step;
+                if (direction < 4) {
+                    step = PathSearch.ORTHOGONAL * (tileCost + nextCost);
+                } else {
+                    if (!costs.isPassable(tiles[y * width + nextX]) || !costs.isPassable(tiles[nextY * width + x])) {
+                        continue;
+                    }
+                    step = PathSearch.DIAGONAL * (tileCost + nextCost);
+                }
+                if (cost + step < integration[next]) {
+                    integration[next] = cost + step;
+                    // The next tile steps back the way the search came
+                    directions[next] = (byte) PathSearch.OPPOSITE[direction];
+                    queue.push(next, cost + step);
+                }
+            }
+        }
+    }
+
+    private void recordVersions() {
+        int chunksX = map.getChunksX();
+        for (int chunk = 0; chunk < chunkVersions.length; chunk++) {
+            chunkVersions[chunk] = map.getChunkVersion(chunk % chunksX, chunk / chunksX);
+        }
+        mapVersion = map.getVersion();
+    }
+
+    /**
+     * Checks if the map has changed since the field was built or repaired
+     * @return true if the field is up to date
+     */
+    public boolean isCurrent() {
+        return mapVersion == map.getVersion();
+    }
+
+    /**
+     * Gets the generation of the field, which changes when the field is dropped from the cache.
+     * Once it differs from the generation the field had when it was handed out, the field may
+     * have been rebuilt for another target and should be asked for again.
+     * @return the generation
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the direction of the next step from a tile
+     * @param x the tile column
+     * @param y the tile row
+     * @return the direction from 0 to 7, or {@link #NONE}; {@link #getStepX(int, int)} and
+     *         {@link #getStepY(int, int)} turn it into a step
+     */
+    public int getDirection(int x, int y) {
+        return directions[y * width + x];
+    }
+
+    /**
+     * Gets the column step towards the target from a tile
+     * @param x the tile column
+     * @param y the tile row
+     * @return -1, 0 or 1; 0 on the target and where it can't be reached
+     */
+    public int getStepX(int x, int y) {
+        int direction = directions[y * width + x];
+        return direction == NONE ? 0 : PathSearch.STEP_X[direction];
+    }
+
+    /**
+     * Gets the row step towards the target from a tile
+     * @param x the tile column
+     * @param y the tile row
+     * @return -1, 0 or 1; 0 on the target and where it can't be reached
+     */
+    public int getStepY(int x, int y) {
+        int direction = directions[y * width + x];
+        return direction == NONE ? 0 : PathSearch.STEP_Y[direction];
+    }
+
+    /**
+     * Gets the cost of reaching the target from a tile
+     * @param x the tile column
+     * @param y the tile row
+     * @return the cost in hundredths of a movement point, or {@link #UNREACHABLE}
+     */
+    public int getCost(int x, int y) {
+        return integration[y * width + x];
+    }
+
+    /**
+     * Checks if the target can be reached from a tile
+     * @param x the tile column
+     * @param y the tile row
+     * @return true if reachable
+     */
+    public boolean isReachable(int x, int y) {
+        return integration[y * width + x] != UNREACHABLE;
+    }
+
+    /**
+     * Gets the target tile's column
+     * @return the tile column
+     */
+    public int getTargetX() {
+        return target % width;
+    }
+
+    /**
+     * Gets the target tile's row
+     * @return the tile row
+     */
+    public int getTargetY() {
+        return target / width;
+    }
+}
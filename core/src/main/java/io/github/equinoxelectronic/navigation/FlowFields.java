@@ -0,0 +1,169 @@
+package io.github.equinoxelectronic.navigation;
+
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.profiling.Profiler;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hands out {@link FlowField flow fields} by target, for groups of units heading to the same place.
+ *
+ * Computing a field costs about as much as one long search over the whole map, however many
+ * units then follow it, so an army of thousands moving to one province costs one field instead
+ * of thousands of paths. Fields are cached by target; the least recently used one is dropped
+ * once more than the cache size are kept, and its arrays go to the next new field. A cached
+ * field whose map changed is repaired where it changed when it is next asked for.
+ *
+ * Since dropped fields are reused, a field is only guaranteed to lead to the target it was asked
+ * for while its {@link FlowField#getGeneration() generation} stays the same. Either ask for the
+ * field again each tick, which is a map lookup while it is cached, or keep its generation and
+ * ask again once it has changed.
+ *
+ * Each field holds an int and a byte per tile, about 5 megabytes on a 1024x1024 map, which is
+ * what the cache size should be weighed against.
+ */
+public class FlowFields implements Profiler.Source {
+    private static final Log logger = new Log("FlowFields");
+
+    /**
+     * Default number of fields kept
+     */
+    public static final int DEFAULT_CACHE_SIZE = 8;
+
+    private final TileMap map;
+    private final MovementCosts costs;
+    private final BucketQueue queue;
+    private final LinkedHashMap<Integer, FlowField> cache;
+    // Arrays of the last field dropped from the cache, reused by the next new one
+    private FlowField spare;
+
+    // Metrics
+    private long builds;
+    private long repairs;
+    private long cacheHits;
+    private long lastUpdateNanos;
+
+    /**
+     * Creates a cache with the costs of the loaded terrain definitions
+     * @param map the map the fields cover
+     */
+    public FlowFields(TileMap map) {
+        this(map, new MovementCosts(), DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a cache
+     * @param map the map the fields cover
+     * @param costs the cost of entering each terrain
+     * @param cacheSize the number of fields to keep
+     */
+    public FlowFields(TileMap map, MovementCosts costs, final int cacheSize) {
+        this.map = map;
+        this.costs = costs;
+        this.queue = new BucketQueue(PathSearch.DIAGONAL * 2 * costs.getMaxCost());
+        this.cache = new LinkedHashMap<Integer, FlowField>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FlowField> eldest) {
+                if (size() > cacheSize) {
+                    spare = eldest.getValue();
+                    spare.retire();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the field leading to a tile, building it or bringing it up to date first if needed
+     * @param targetX the target tile column
+     * @param targetY the target tile row
+     * @return the field, or null if the target can't be entered
+     */
+    public FlowField get(int targetX, int targetY) {
+        if (!map.contains(targetX, targetY) || !costs.isPassable(map.getTile(targetX, targetY))) {
+            return null;
+        }
+        int target = targetY * map.getWidth() + targetX;
+        long start = System.nanoTime();
+        FlowField field = cache.get(target);
+        if (field != null) {
+            if (field.isCurrent()) {
+                cacheHits++;
+                return field;
+            }
+            int tiles = field.repair(queue);
+            repairs++;
+            lastUpdateNanos = System.nanoTime() - start;
+            if (logger.isDebugEnabled()) {
+                logger.debug("Repaired flow field to {}, {}: {} tiles in {}us", targetX, targetY, tiles, lastUpdateNanos / 1000);
+            }
+            return field;
+        }
+
+        if (spare != null) {
+            field = spare;
+            spare = null;
+            field.retarget(target);
+        } else {
+            field = new FlowField(map, costs, target);
+        }
+        field.build(queue);
+        builds++;
+        cache.put(target, field);
+        lastUpdateNanos = System.nanoTime() - start;
+        return field;
+    }
+
+    /**
+     * Drops every cached field
+     */
+    public void clear() {
+        for (FlowField field : cache.values()) {
+            field.retire();
+        }
+        cache.clear();
+        spare = null;
+    }
+
+    /**
+     * Gets the number of fields built from scratch
+     * @return the build count
+     */
+    public long getBuilds() {
+        return builds;
+    }
+
+    /**
+     * Gets the number of cached fields repaired after the map changed
+     * @return the repair count
+     */
+    public long getRepairs() {
+        return repairs;
+    }
+
+    /**
+     * Gets the number of times an up to date field was taken from the cache
+     * @return the hit count
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Gets the time the last build or repair took
+     * @return the time in nanoseconds
+     */
+    public long getLastUpdateNanos() {
+        return lastUpdateNanos;
+    }
+
+    @Override
+    public void appendStats(StringBuilder text) {
+        text.append("Flow fields: ").append(cache.size()).append(" cached, ").append(builds).append(" builds, ")
+            .append(repairs).append(" repairs, ").append(cacheHits).append(" cache hits, last update ");
+        Profiler.appendMillis(text, lastUpdateNanos).append(" ms");
+    }
+}
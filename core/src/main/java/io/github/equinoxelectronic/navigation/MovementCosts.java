@@ -0,0 +1,91 @@
+package io.github.equinoxelectronic.navigation;
+
+import io.github.equinoxelectronic.data.DefinitionRegistry;
+import io.github.equinoxelectronic.data.DefinitionTable;
+import io.github.equinoxelectronic.data.TerrainDefinition;
+
+/**
+ * The cost of entering each terrain type, as whole numbers so searches stay exact.
+ *
+ * Costs are in tenths of a movement point, so plains with a movement cost of 1 cost 10.
+ * A cost of {@link #IMPASSABLE} means units can't enter the terrain at all.
+ */
+public class MovementCosts {
+    /** Cost of terrain that can't be entered */
+    public static final int IMPASSABLE = 0;
+
+    private final int[] costs;
+    private final int minCost;
+    private final int maxCost;
+
+    /**
+     * Creates costs from the loaded terrain definitions
+     */
+    public MovementCosts() {
+        this(fromDefinitions());
+    }
+
+    /**
+     * Creates costs from an array
+     * @param costs the cost of every terrain index in tenths of a movement point, or {@link #IMPASSABLE}
+     */
+    public MovementCosts(int[] costs) {
+        this.costs = costs.clone();
+        int min = Integer.MAX_VALUE;
+        int max = 1;
+        for (int cost : costs) {
+            if (cost != IMPASSABLE) {
+                min = Math.min(min, cost);
+                max = Math.max(max, cost);
+            }
+        }
+        this.minCost = min == Integer.MAX_VALUE ? 1 : min;
+        this.maxCost = max;
+    }
+
+    private static int[] fromDefinitions() {
+        DefinitionTable<TerrainDefinition> table = DefinitionRegistry.getInstance().getTable(TerrainDefinition.class);
+        int[] costs = new int[table == null ? 0 : table.size()];
+        for (int i = 0; i < costs.length; i++) {
+            TerrainDefinition definition = table.get(i);
+            if (definition != null && definition.passable) {
+                costs[i] = Math.max(1, Math.round(definition.movementCost * 10f));
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Gets the cost of entering a terrain
+     * @param terrain the terrain index
+     * @return the cost in tenths of a movement point, or {@link #IMPASSABLE}
+     */
+    public int getCost(int terrain) {
+        return terrain < costs.length ? costs[terrain] : IMPASSABLE;
+    }
+
+    /**
+     * Checks if a terrain can be entered
+     * @param terrain the terrain index
+     * @return true if passable
+     */
+    public boolean isPassable(int terrain) {
+        return getCost(terrain) != IMPASSABLE;
+    }
+
+    /**
+     * Gets the cost of the cheapest passable terrain, which search heuristics are scaled by
+     * @return the lowest cost
+     */
+    public int getMinCost() {
+        return minCost;
+    }
+
+    /**
+     * Gets the cost of the most expensive passable terrain
+     * @return the highest cost
+     */
+    public int getMaxCost() {
+        return maxCost;
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.equinoxelectronic.navigation;
+
+import com.badlogic.gdx.utils.IntArray;
+import io.github.equinoxelectronic.world.TileMap;
+
+/**
+ * A path over the tiles of a map, from the start tile to the goal tile.
+ *
+ * Paths remember the version of every chunk they pass through, so a cached path can tell
+ * when the terrain under it has changed.
+ */
+public class Path {
+    private final int[] tiles;
+    private final int cost;
+    private final int mapWidth;
+    // Chunks the path passes through, and their versions when it was found
+    private final int[] chunks;
+    private final int[] chunkVersions;
+
+    /**
+     * Creates a path
+     * @param map the map the path is on
+     * @param tiles the tile indices, from start to goal
+     * @param cost the cost of the path
+     */
+    Path(TileMap map, IntArray tiles, int cost) {
+        this.tiles = tiles.toArray();
+        this.cost = cost;
+        this.mapWidth = map.getWidth();
+
+        IntArray chunkList = new IntArray();
+        int last = -1;
+        for (int tile : this.tiles) {
+            int chunk = tile / mapWidth / TileMap.CHUNK_SIZE * map.getChunksX() + tile % mapWidth / TileMap.CHUNK_SIZE;
+            if (chunk != last) {
+                chunkList.add(chunk);
+                last = chunk;
+            }
+        }
+        this.chunks = chunkList.toArray();
+        this.chunkVersions = new int[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            chunkVersions[i] = map.getChunkVersion(chunks[i] % map.getChunksX(), chunks[i] / map.getChunksX());
+        }
+    }
+
+    /**
+     * Checks if no chunk the path passes through has changed since it was found
+     * @param map the map the path is on
+     * @return true if the path can still be followed as it is
+     */
+    boolean isCurrent(TileMap map) {
+        for (int i = 0; i < chunks.length; i++) {
+            if (map.getChunkVersion(chunks[i] % map.getChunksX(), chunks[i] / map.getChunksX()) != chunkVersions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of tiles on the path, including the start and the goal
+     * @return the tile count
+     */
+    public int getLength() {
+        return tiles.length;
+    }
+
+    /**
+     * Gets the tile column of a step
+     * @param step the step, 0 for the start
+     * @return the tile column
+     */
+    public int getX(int step) {
+        return tiles[step] % mapWidth;
+    }
+
+    /**
+     * Gets the tile row of a step
+     * @param step the step, 0 for the start
+     * @return the tile row
+     */
+    public int getY(int step) {
+        return tiles[step] / mapWidth;
+    }
+
+    /**
+     * Gets the tile index of a step, as used by {@link TileMap#getTiles()}
+     * @param step the step, 0 for the start
+     * @return the tile index
+     */
+    public int getTile(int step) {
+        return tiles[step];
+    }
+
+    /**
+     * Gets the cost of following the path, in hundredths of a movement point
+     * @return the cost
+     */
+    public int getCost() {
+        return cost;
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.equinoxelectronic.navigation;
+
+/**
+ * A path queued with {@link Pathfinder#request(int, int, int, int)}, found during a later tick.
+ */
+public class PathRequest {
+    final int startX;
+    final int startY;
+    final int goalX;
+    final int goalY;
+    private Path path;
+    private boolean done;
+    private boolean cancelled;
+
+    PathRequest(int startX, int startY, int goalX, int goalY) {
+        this.startX = startX;
+        this.startY = startY;
+        this.goalX = goalX;
+        this.goalY = goalY;
+    }
+
+    void complete(Path path) {
+        this.path = path;
+        this.done = true;
+    }
+
+    /**
+     * Checks if the search has run
+     * @return true once {@link #getPath()} holds the result
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Gets the path that was found
+     * @return the path, or null if there is none or the search hasn't run yet
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Drops the request if it hasn't run yet, for example because the unit died
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if the request was cancelled
+     * @return true if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,258 @@
+package io.github.equinoxelectronic.navigation;
+
+import com.badlogic.gdx.utils.IntArray;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.util.Arrays;
+
+/**
+ * A* and Dijkstra searches over the tiles of a map, and the open and closed sets they share with
+ * searches over the cluster graph.
+ *
+ * Nothing is allocated per search. Costs and parents live in arrays with a slot for every tile,
+ * which are marked valid with a stamp instead of being cleared, and the open set is a binary heap
+ * of longs holding the priority in the high bits and the tile in the low bits.
+ *
+ * Moving between two tiles costs {@link #ORTHOGONAL} or {@link #DIAGONAL} times the sum of their
+ * {@link MovementCosts}, so a step costs the same both ways. A step across open plains costs 100.
+ */
+class PathSearch {
+    /** Multiplier of the tile costs for a horizontal or vertical step */
+    static final int ORTHOGONAL = 5;
+    /** Multiplier of the tile costs for a diagonal step, about sqrt(2) times {@link #ORTHOGONAL} */
+    static final int DIAGONAL = 7;
+
+    // The eight steps to neighboring tiles, orthogonal ones first, and the opposite of each
+    static final int[] STEP_X = { 1, -1, 0, 0, 1, -1, 1, -1 };
+    static final int[] STEP_Y = { 0, 0, 1, -1, 1, 1, -1, -1 };
+    static final int[] OPPOSITE = { 1, 0, 3, 2, 7, 6, 5, 4 };
+
+    private final TileMap map;
+    private final MovementCosts costs;
+    private final int width;
+
+    private final int[] cost;
+    private final int[] parent;
+    // A tile's cost and parent are valid when its seen entry equals the stamp, it is closed when
+    // its closed entry does
+    private final int[] seen;
+    private final int[] closed;
+    private int stamp;
+
+    private long[] heap = new long[1024];
+    private int heapSize;
+
+    // Metrics
+    private int expanded;
+
+    PathSearch(TileMap map, MovementCosts costs) {
+        this.map = map;
+        this.costs = costs;
+        this.width = map.getWidth();
+        int tiles = map.getWidth() * map.getHeight();
+        this.cost = new int[tiles];
+        this.parent = new int[tiles];
+        this.seen = new int[tiles];
+        this.closed = new int[tiles];
+    }
+
+    /**
+     * Starts a new search, forgetting every cost and emptying the open set
+     */
+    void reset() {
+        stamp++;
+        if (stamp == 0) {
+            // Wrapped around after four billion searches; old stamps could match again
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            stamp = 1;
+        }
+        heapSize = 0;
+    }
+
+    /**
+     * Offers a cost for a tile, opening it if the cost is lower than any found before
+     * @param tile the tile index
+     * @param tileCost the cost of reaching it
+     * @param from the tile it is reached from, or -1
+     * @param heuristic the estimated remaining cost, added for its priority
+     */
+    void relax(int tile, int tileCost, int from, int heuristic) {
+        if (closed[tile] == stamp || (seen[tile] == stamp && cost[tile] <= tileCost)) {
+            return;
+        }
+        seen[tile] = stamp;
+        cost[tile] = tileCost;
+        parent[tile] = from;
+        push((long) (tileCost + heuristic) << 32 | tile);
+    }
+
+    /**
+     * Takes the open tile with the lowest priority and closes it
+     * @return the tile index, or -1 once the open set is empty
+     */
+    int poll() {
+        while (heapSize > 0) {
+            int tile = (int) pop();
+            // A tile is pushed again every time its cost drops; only the first one counts
+            if (closed[tile] != stamp) {
+                closed[tile] = stamp;
+                expanded++;
+                return tile;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the cost found for a tile in the current search
+     * @param tile the tile index
+     * @return the cost, or -1 if the tile was not reached
+     */
+    int getCost(int tile) {
+        return seen[tile] == stamp ? cost[tile] : -1;
+    }
+
+    /**
+     * Gets the tile a tile was reached from in the current search
+     * @param tile the tile index
+     * @return the previous tile, or -1 for the start
+     */
+    int getParent(int tile) {
+        return parent[tile];
+    }
+
+    /**
+     * Searches for the cheapest way between two tiles, only through tiles inside a rectangle.
+     * With no goal, searches every tile in the rectangle reachable from the start instead, after
+     * which {@link #getCost(int)} gives the distance to each.
+     * @param start the start tile index
+     * @param goal the goal tile index, or -1 to search everything
+     * @param minX the leftmost tile column that may be used
+     * @param minY the bottom tile row that may be used
+     * @param maxX the rightmost tile column that may be used
+     * @param maxY the top tile row that may be used
+     * @return the cost of the path, or -1 if there is none
+     */
+    int search(int start, int goal, int minX, int minY, int maxX, int maxY) {
+        reset();
+        short[] tiles = map.getTiles();
+        int goalX = goal < 0 ? 0 : goal % width;
+        int goalY = goal < 0 ? 0 : goal / width;
+        relax(start, 0, -1, goal < 0 ? 0 : heuristic(start % width, start / width, goalX, goalY));
+
+        int tile;
+        while ((tile = poll()) >= 0) {
+            if (tile == goal) {
+                return cost[tile];
+            }
+            int x = tile % width;
+            int y = tile / width;
+            int tileCost = costs.getCost(tiles[tile]);
+            for (int direction = 0; direction < 8; direction++) {
+                int nextX = x + STEP_X[direction];
+                int nextY = y + STEP_Y[direction];
+                if (nextX < minX || nextY < minY || nextX > maxX || nextY > maxY) {
+                    continue;
+                }
+                int next = nextY * width + nextX;
+                int nextCost = costs.getCost(tiles[next]);
+                if (nextCost == MovementCosts.IMPASSABLE) {
+                    continue;
+                }
+                int step;
+                if (direction < 4) {
+                    step = ORTHOGONAL * (tileCost + nextCost);
+                } else {
+                    // No cutting corners past impassable tiles
+                    if (!costs.isPassable(tiles[y * width + nextX]) || !costs.isPassable(tiles[nextY * width + x])) {
+                        continue;
+                    }
+                    step = DIAGONAL * (tileCost + nextCost);
+                }
+                relax(next, cost[tile] + step, tile, goal < 0 ? 0 : heuristic(nextX, nextY, goalX, goalY));
+            }
+        }
+        return goal < 0 ? 0 : -1;
+    }
+
+    /**
+     * Adds the tiles of the path to a tile found by the last search, from its start to the tile
+     * @param tile the last tile of the path
+     * @param path receives the tile indices; the start is left out if skipStart is true
+     * @param skipStart true to leave out the first tile, when appending to a path ending there
+     */
+    void appendPath(int tile, IntArray path, boolean skipStart) {
+        int length = 0;
+        for (int current = tile; current >= 0; current = parent[current]) {
+            length++;
+        }
+        if (skipStart) {
+            length--;
+        }
+        int[] items = path.ensureCapacity(length);
+        int index = path.size + length - 1;
+        for (int current = tile; index >= path.size; current = parent[current]) {
+            items[index--] = current;
+        }
+        path.size += length;
+    }
+
+    /**
+     * Estimates the cost between two tiles as if every tile had the lowest cost, which never
+     * overestimates and so keeps paths optimal
+     */
+    int heuristic(int x, int y, int goalX, int goalY) {
+        int dx = Math.abs(goalX - x);
+        int dy = Math.abs(goalY - y);
+        int diagonal = Math.min(dx, dy);
+        int straight = Math.max(dx, dy) - diagonal;
+        return costs.getMinCost() * 2 * (ORTHOGONAL * straight + DIAGONAL * diagonal);
+    }
+
+    /**
+     * Gets the number of tiles closed since the last call, for stats
+     * @return the tile count
+     */
+    int takeExpanded() {
+        int count = expanded;
+        expanded = 0;
+        return count;
+    }
+
+    private void push(long entry) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        int index = heapSize++;
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            if (heap[parentIndex] <= entry) {
+                break;
+            }
+            heap[index] = heap[parentIndex];
+            index = parentIndex;
+        }
+        heap[index] = entry;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int index = 0;
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = last;
+        return top;
+    }
+}
@@ -0,0 +1,296 @@
+package io.github.equinoxelectronic.navigation;
+
+import com.badlogic.gdx.utils.IntArray;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.profiling.Profiler;
+import io.github.equinoxelectronic.simulation.Simulation;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds paths for units over a {@link TileMap}.
+ *
+ * Long paths are found with hierarchical A* over a {@link ClusterGraph}, which is kept up to
+ * date as chunks of the map change. Found paths are cached by start and goal, and a cached path
+ * is dropped as soon as any chunk it passes through changes. Searches that found nothing are
+ * cached too, as proving a goal unreachable is the most expensive search of all, until any
+ * tile of the map changes.
+ *
+ * Units should usually {@link #request(int, int, int, int) queue} their searches rather than
+ * {@link #findPath(int, int, int, int) search} straight away. Added to the
+ * {@link io.github.equinoxelectronic.simulation.GameLoop}, the pathfinder works through the
+ * queue for a limited time every tick, so a thousand units ordered to move at once spread
+ * their searches over several ticks instead of stalling one. Everything runs on the thread
+ * of the game loop.
+ */
+public class Pathfinder implements Simulation, Profiler.Source {
+    private static final Log logger = new Log("Pathfinder");
+
+    /**
+     * Default time each tick may spend on queued requests (2 milliseconds)
+     */
+    public static final long DEFAULT_TICK_BUDGET_NANOS = 2_000_000L;
+    /**
+     * Default number of paths kept in the cache
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final TileMap map;
+    private final MovementCosts costs;
+    private final PathSearch search;
+    private final ClusterGraph graph;
+    private final LinkedHashMap<Long, Path> cache;
+    // Map version every unreachable goal was searched at
+    private final LinkedHashMap<Long, Integer> unreachable;
+    private final ArrayDeque<PathRequest> queue = new ArrayDeque<>();
+    private final IntArray scratch = new IntArray();
+    private long tickBudgetNanos = DEFAULT_TICK_BUDGET_NANOS;
+
+    // Metrics
+    private long searches;
+    private long failedSearches;
+    private long cacheHits;
+    private int requestsLastTick;
+    private long lastSearchNanos;
+
+    /**
+     * Creates a pathfinder with the costs of the loaded terrain definitions
+     * @param map the map to find paths on
+     */
+    public Pathfinder(TileMap map) {
+        this(map, new MovementCosts(), DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a pathfinder
+     * @param map the map to find paths on
+     * @param costs the cost of entering each terrain
+     * @param cacheSize the number of paths to keep
+     */
+    public Pathfinder(TileMap map, MovementCosts costs, final int cacheSize) {
+        this.map = map;
+        this.costs = costs;
+        this.search = new PathSearch(map, costs);
+        this.graph = new ClusterGraph(map, costs, search);
+        this.cache = new LinkedHashMap<Long, Path>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Path> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.unreachable = new LinkedHashMap<Long, Integer>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Finds a path right away
+     * @param startX the start tile column
+     * @param startY the start tile row
+     * @param goalX the goal tile column
+     * @param goalY the goal tile row
+     * @return the path, or null if the goal can't be reached
+     */
+    public Path findPath(int startX, int startY, int goalX, int goalY) {
+        if (!isPassable(startX, startY) || !isPassable(goalX, goalY)) {
+            return null;
+        }
+        int start = startY * map.getWidth() + startX;
+        int goal = goalY * map.getWidth() + goalX;
+        Long key = (long) start << 32 | goal;
+        Path cached = cache.get(key);
+        if (cached != null) {
+            if (cached.isCurrent(map)) {
+                cacheHits++;
+                return cached;
+            }
+            cache.remove(key);
+        }
+        Integer unreachableVersion = unreachable.get(key);
+        if (unreachableVersion != null) {
+            if (unreachableVersion == map.getVersion()) {
+                cacheHits++;
+                return null;
+            }
+            unreachable.remove(key);
+        }
+
+        updateGraph();
+        long searchStart = System.nanoTime();
+        scratch.clear();
+        int cost = graph.findPath(start, goal, scratch);
+        lastSearchNanos = System.nanoTime() - searchStart;
+        searches++;
+        if (cost < 0) {
+            failedSearches++;
+            unreachable.put(key, map.getVersion());
+            return null;
+        }
+        Path path = new Path(map, scratch, cost);
+        cache.put(key, path);
+        return path;
+    }
+
+    /**
+     * Finds the best path with plain A* over every tile, ignoring the cache. Much slower than
+     * {@link #findPath(int, int, int, int)} over long distances.
+     * @param startX the start tile column
+     * @param startY the start tile row
+     * @param goalX the goal tile column
+     * @param goalY the goal tile row
+     * @return the path, or null if the goal can't be reached
+     */
+    public Path findExactPath(int startX, int startY, int goalX, int goalY) {
+        if (!isPassable(startX, startY) || !isPassable(goalX, goalY)) {
+            return null;
+        }
+        int goal = goalY * map.getWidth() + goalX;
+        int cost = search.search(startY * map.getWidth() + startX, goal, 0, 0, map.getWidth() - 1, map.getHeight() - 1);
+        if (cost < 0) {
+            return null;
+        }
+        scratch.clear();
+        search.appendPath(goal, scratch, false);
+        return new Path(map, scratch, cost);
+    }
+
+    /**
+     * Queues a search to run during a later tick
+     * @param startX the start tile column
+     * @param startY the start tile row
+     * @param goalX the goal tile column
+     * @param goalY the goal tile row
+     * @return the request, which holds the path once it is done
+     */
+    public PathRequest request(int startX, int startY, int goalX, int goalY) {
+        PathRequest request = new PathRequest(startX, startY, goalX, goalY);
+        queue.add(request);
+        return request;
+    }
+
+    /**
+     * Works through queued requests until the tick budget is used up. At least one request is
+     * handled per tick, so the queue always makes progress.
+     */
+    @Override
+    public void tick(float delta) {
+        requestsLastTick = 0;
+        long start = System.nanoTime();
+        PathRequest request;
+        while ((request = queue.poll()) != null) {
+            if (request.isCancelled()) {
+                continue;
+            }
+            request.complete(findPath(request.startX, request.startY, request.goalX, request.goalY));
+            requestsLastTick++;
+            if (System.nanoTime() - start >= tickBudgetNanos) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the parts of the cluster graph whose chunks changed. Happens before every search
+     * anyway; call it after generating or loading a map to take the first build out of the first search.
+     */
+    public void updateGraph() {
+        long start = System.nanoTime();
+        int rebuilt = graph.update();
+        if (rebuilt > 0) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Rebuilt {} clusters in {}us, {} nodes", rebuilt, (System.nanoTime() - start) / 1000,
+                    graph.getNodeCount());
+            }
+        }
+    }
+
+    private boolean isPassable(int x, int y) {
+        return map.contains(x, y) && costs.isPassable(map.getTile(x, y));
+    }
+
+    /**
+     * Sets how long each tick may spend on queued requests
+     * @param nanos the budget in nanoseconds
+     */
+    public void setTickBudgetNanos(long nanos) {
+        this.tickBudgetNanos = nanos;
+    }
+
+    /**
+     * Drops every cached path
+     */
+    public void clearCache() {
+        cache.clear();
+        unreachable.clear();
+    }
+
+    /**
+     * Gets the number of requests waiting for a tick
+     * @return the request count
+     */
+    public int getQueuedRequests() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of requests handled during the last tick
+     * @return the request count
+     */
+    public int getRequestsLastTick() {
+        return requestsLastTick;
+    }
+
+    /**
+     * Gets the number of searches run, not counting paths taken from the cache
+     * @return the search count
+     */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * Gets the number of searches that found no path
+     * @return the search count
+     */
+    public long getFailedSearches() {
+        return failedSearches;
+    }
+
+    /**
+     * Gets the number of paths taken from the cache
+     * @return the hit count
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Gets the time the last search took
+     * @return the time in nanoseconds
+     */
+    public long getLastSearchNanos() {
+        return lastSearchNanos;
+    }
+
+    /**
+     * Gets the number of entrance nodes in the cluster graph
+     * @return the node count
+     */
+    public int getNodeCount() {
+        return graph.getNodeCount();
+    }
+
+    @Override
+    public void appendStats(StringBuilder text) {
+        text.append("Pathfinder: ").append(queue.size()).append(" queued, ").append(requestsLastTick)
+            .append(" last tick, ").append(searches).append(" searches (").append(failedSearches).append(" failed), ")
+            .append(cacheHits).append(" cache hits, last search ");
+        Profiler.appendMillis(text, lastSearchNanos).append(" ms, ").append(graph.getNodeCount()).append(" nodes");
+    }
+}
@@ -0,0 +1,503 @@
+package io.github.equinoxelectronic.profiling;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures where the time of every frame goes.
+ *
+ * Code wraps the work it wants measured in a named scope:
+ * <pre>
+ * Profiler.begin(Profiler.SIMULATION);
+ * gameLoop.update(delta);
+ * Profiler.end(Profiler.SIMULATION);
+ * </pre>
+ * and the game calls {@link #beginFrame()} and {@link #endFrame()} around each frame. At the end
+ * of a frame the scope times are recorded with the frame time, the GL calls counted by libGDX's
+ * {@link GLProfiler}, the heap in use and the garbage collections since the last frame. The last
+ * {@link #HISTORY_SIZE} frames are kept for the {@link #exportCsv(Path) CSV export}, and frame
+ * time percentiles are worked out from the last {@link #PERCENTILE_WINDOW} frames.
+ *
+ * While disabled, every method returns after checking a flag, and the GL calls aren't counted.
+ * Enabled, recording a frame doesn't allocate. Everything here must be called on the render thread.
+ */
+public class Profiler {
+    private static final Log logger = new Log("Profiler");
+
+    /** Number of frames kept for the CSV export */
+    public static final int HISTORY_SIZE = 3600;
+    /** Number of recent frames the percentiles are worked out from */
+    public static final int PERCENTILE_WINDOW = 256;
+    /** Most scopes that can be added */
+    public static final int MAX_SCOPES = 16;
+
+    private static final String[] scopeNames = new String[MAX_SCOPES];
+    private static int scopeCount;
+
+    /** Ticking the simulation */
+    public static final int SIMULATION = addScope("sim");
+    /** Finishing assets loaded in the background */
+    public static final int ASSETS = addScope("assets");
+    /** Copying generated chunks into the map */
+    public static final int WORLD = addScope("world");
+    /** Snapshotting the world for an autosave */
+    public static final int AUTOSAVE = addScope("autosave");
+    /** Drawing the terrain meshes */
+    public static final int TERRAIN = addScope("terrain");
+    /** Sorting and drawing the render queue */
+    public static final int RENDER_QUEUE = addScope("queue");
+    /** Sending the last of the batch to the GPU */
+    public static final int BATCH_FLUSH = addScope("flush");
+
+    private static boolean enabled;
+    private static GLProfiler glProfiler;
+    private static List<GarbageCollectorMXBean> collectors;
+
+    // The frame being measured
+    private static long frameStart;
+    private static long previousFrameStart;
+    private static final long[] scopeStarts = new long[MAX_SCOPES];
+    private static final long[] scopeTotals = new long[MAX_SCOPES];
+    private static long lastCollections;
+    private static long lastCollectionMillis;
+
+    // The recorded frames, allocated when first enabled
+    private static long frames;
+    private static long[] frameNanos;
+    private static long[] workNanos;
+    private static long[][] scopeNanos;
+    private static int[] glCalls;
+    private static int[] drawCalls;
+    private static int[] textureBindings;
+    private static int[] shaderSwitches;
+    private static long[] heapBytes;
+    private static int[] collections;
+    private static int[] collectionMillis;
+
+    private static final long[] sortedFrames = new long[PERCENTILE_WINDOW];
+    private static final Array<Source> sources = new Array<>();
+
+    /**
+     * Something with stats worth showing on the debug overlay
+     */
+    public interface Source {
+        /**
+         * Appends one line describing the last frame or the totals so far, without a line break.
+         * Called a few times a second while the overlay is shown, so it shouldn't allocate.
+         * @param text the overlay text
+         */
+        void appendStats(StringBuilder text);
+    }
+
+    /**
+     * Adds a named scope, for work not covered by the built-in ones
+     * @param name the name shown on the overlay and in the CSV header
+     * @return the scope, to pass to {@link #begin(int)} and {@link #end(int)}
+     */
+    public static int addScope(String name) {
+        if (scopeCount == MAX_SCOPES) {
+            throw new IllegalStateException("Too many profiler scopes, at most " + MAX_SCOPES);
+        }
+        scopeNames[scopeCount] = name;
+        return scopeCount++;
+    }
+
+    /**
+     * Turns measuring on or off. Turning it on the first time allocates the history.
+     * @param enable true to measure
+     */
+    public static void setEnabled(boolean enable) {
+        if (enable == enabled) {
+            return;
+        }
+        enabled = enable;
+        if (enable) {
+            if (frameNanos == null) {
+                allocateHistory();
+            }
+            // Without a window, for example in benchmarks, there are no GL calls to count
+            if (glProfiler == null && Gdx.graphics != null) {
+                glProfiler = new GLProfiler(Gdx.graphics);
+            }
+            if (glProfiler != null) {
+                glProfiler.enable();
+                glProfiler.reset();
+            }
+            if (collectors == null) {
+                collectors = ManagementFactory.getGarbageCollectorMXBeans();
+            }
+            lastCollections = countCollections();
+            lastCollectionMillis = countCollectionMillis();
+            frameStart = 0;
+            previousFrameStart = 0;
+        } else if (glProfiler != null) {
+            glProfiler.disable();
+        }
+        logger.info("Profiler {}", enable ? "enabled" : "disabled");
+    }
+
+    /**
+     * Checks if frames are being measured
+     * @return true if they are
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    private static void allocateHistory() {
+        frameNanos = new long[HISTORY_SIZE];
+        workNanos = new long[HISTORY_SIZE];
+        scopeNanos = new long[MAX_SCOPES][HISTORY_SIZE];
+        glCalls = new int[HISTORY_SIZE];
+        drawCalls = new int[HISTORY_SIZE];
+        textureBindings = new int[HISTORY_SIZE];
+        shaderSwitches = new int[HISTORY_SIZE];
+        heapBytes = new long[HISTORY_SIZE];
+        collections = new int[HISTORY_SIZE];
+        collectionMillis = new int[HISTORY_SIZE];
+    }
+
+    /**
+     * Starts measuring a frame. Call first thing every frame.
+     */
+    public static void beginFrame() {
+        if (!enabled) {
+            return;
+        }
+        previousFrameStart = frameStart;
+        frameStart = System.nanoTime();
+        Arrays.fill(scopeTotals, 0, scopeCount, 0L);
+    }
+
+    /**
+     * Starts timing a scope. A scope can be entered more than once a frame; its times are added up.
+     * @param scope one of the scope constants, or a scope from {@link #addScope(String)}
+     */
+    public static void begin(int scope) {
+        if (enabled) {
+            scopeStarts[scope] = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stops timing a scope
+     * @param scope the scope passed to {@link #begin(int)}
+     */
+    public static void end(int scope) {
+        if (enabled) {
+            scopeTotals[scope] += System.nanoTime() - scopeStarts[scope];
+        }
+    }
+
+    /**
+     * Records the frame. Call last thing every frame, after everything has been drawn.
+     */
+    public static void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        if (previousFrameStart == 0) {
+            // The first frame has no frame time yet, it only starts the clock
+            if (glProfiler != null) {
+                glProfiler.reset();
+            }
+            return;
+        }
+        int index = (int) (frames % HISTORY_SIZE);
+        frameNanos[index] = frameStart - previousFrameStart;
+        workNanos[index] = System.nanoTime() - frameStart;
+        for (int scope = 0; scope < scopeCount; scope++) {
+            scopeNanos[scope][index] = scopeTotals[scope];
+        }
+
+        if (glProfiler != null) {
+            glCalls[index] = glProfiler.getCalls();
+            drawCalls[index] = glProfiler.getDrawCalls();
+            textureBindings[index] = glProfiler.getTextureBindings();
+            shaderSwitches[index] = glProfiler.getShaderSwitches();
+            glProfiler.reset();
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        heapBytes[index] = runtime.totalMemory() - runtime.freeMemory();
+        long totalCollections = countCollections();
+        long totalMillis = countCollectionMillis();
+        collections[index] = (int) (totalCollections - lastCollections);
+        collectionMillis[index] = (int) (totalMillis - lastCollectionMillis);
+        lastCollections = totalCollections;
+        lastCollectionMillis = totalMillis;
+        frames++;
+    }
+
+    private static long countCollections() {
+        long count = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            count += Math.max(0, collectors.get(i).getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long countCollectionMillis() {
+        long millis = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            millis += Math.max(0, collectors.get(i).getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Adds a source of stats shown on the debug overlay
+     * @param source the source
+     */
+    public static void addSource(Source source) {
+        if (!sources.contains(source, true)) {
+            sources.add(source);
+        }
+    }
+
+    /**
+     * Removes a source of stats
+     * @param source the source
+     */
+    public static void removeSource(Source source) {
+        sources.removeValue(source, true);
+    }
+
+    /**
+     * Gets the sources of stats shown on the debug overlay
+     * @return the sources, not to be changed
+     */
+    public static Array<Source> getSources() {
+        return sources;
+    }
+
+    /**
+     * Gets the number of frames recorded since the profiler was first enabled
+     * @return the frame count
+     */
+    public static long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Gets the number of frames kept in the history
+     * @return the count, at most {@link #HISTORY_SIZE}
+     */
+    public static int getHistoryCount() {
+        return (int) Math.min(frames, HISTORY_SIZE);
+    }
+
+    /**
+     * Gets the number of scopes
+     * @return the count of built-in and added scopes
+     */
+    public static int getScopeCount() {
+        return scopeCount;
+    }
+
+    /**
+     * Gets the name of a scope
+     * @param scope the scope
+     * @return the name
+     */
+    public static String getScopeName(int scope) {
+        return scopeNames[scope];
+    }
+
+    /**
+     * Gets a recorded frame's index in the history arrays
+     * @param age 0 for the last frame recorded, 1 for the one before, up to {@link #getHistoryCount()} - 1
+     */
+    private static int index(int age) {
+        if (age < 0 || age >= getHistoryCount()) {
+            throw new IndexOutOfBoundsException("No recorded frame " + age + " frames ago");
+        }
+        return (int) ((frames - 1 - age) % HISTORY_SIZE);
+    }
+
+    /**
+     * Gets the time between the start of a recorded frame and the start of the one before
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the time in nanoseconds
+     */
+    public static long getFrameNanos(int age) {
+        return frameNanos[index(age)];
+    }
+
+    /**
+     * Gets the time between {@link #beginFrame()} and {@link #endFrame()} of a recorded frame,
+     * leaving out the time spent waiting for vsync and swapping buffers
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the time in nanoseconds
+     */
+    public static long getWorkNanos(int age) {
+        return workNanos[index(age)];
+    }
+
+    /**
+     * Gets the time spent in a scope during a recorded frame
+     * @param scope the scope
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the time in nanoseconds
+     */
+    public static long getScopeNanos(int scope, int age) {
+        return scopeNanos[scope][index(age)];
+    }
+
+    /**
+     * Gets the number of GL calls made during a recorded frame
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the call count
+     */
+    public static int getGlCalls(int age) {
+        return glCalls[index(age)];
+    }
+
+    /**
+     * Gets the number of draw calls made during a recorded frame
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the draw call count
+     */
+    public static int getDrawCalls(int age) {
+        return drawCalls[index(age)];
+    }
+
+    /**
+     * Gets the number of textures bound during a recorded frame
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the binding count
+     */
+    public static int getTextureBindings(int age) {
+        return textureBindings[index(age)];
+    }
+
+    /**
+     * Gets the number of times the shader changed during a recorded frame
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the switch count
+     */
+    public static int getShaderSwitches(int age) {
+        return shaderSwitches[index(age)];
+    }
+
+    /**
+     * Gets the heap in use at the end of a recorded frame
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the size in bytes, including garbage not collected yet
+     */
+    public static long getHeapBytes(int age) {
+        return heapBytes[index(age)];
+    }
+
+    /**
+     * Gets the number of garbage collections that finished during a recorded frame
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the collection count
+     */
+    public static int getCollections(int age) {
+        return collections[index(age)];
+    }
+
+    /**
+     * Gets the time the garbage collections of a recorded frame took, as reported by the JVM
+     * @param age 0 for the last frame recorded, 1 for the one before and so on
+     * @return the time in milliseconds
+     */
+    public static int getCollectionMillis(int age) {
+        return collectionMillis[index(age)];
+    }
+
+    /**
+     * Works out frame time percentiles over the last {@link #PERCENTILE_WINDOW} frames
+     * @param percentiles the percentiles to work out, between 0 and 100
+     * @param out the array to write the frame times in nanoseconds to, one per percentile
+     * @return the number of frames they were worked out from, 0 if none have been recorded
+     */
+    public static int getFramePercentiles(float[] percentiles, long[] out) {
+        int count = Math.min(getHistoryCount(), PERCENTILE_WINDOW);
+        for (int age = 0; age < count; age++) {
+            sortedFrames[age] = frameNanos[index(age)];
+        }
+        Arrays.sort(sortedFrames, 0, count);
+        for (int i = 0; i < percentiles.length; i++) {
+            // Nearest rank
+            int rank = (int) Math.ceil(percentiles[i] / 100f * count);
+            out[i] = count == 0 ? 0 : sortedFrames[Math.min(count - 1, Math.max(0, rank - 1))];
+        }
+        return count;
+    }
+
+    /**
+     * Writes every frame in the history to a CSV file, oldest first, one column per measurement
+     * @param path the file to write, replaced if it exists
+     * @throws IOException if the file could not be written
+     */
+    public static void exportCsv(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        int count = getHistoryCount();
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            out.write("frame,frame_ms,work_ms");
+            for (int scope = 0; scope < scopeCount; scope++) {
+                out.write(',');
+                out.write(scopeNames[scope]);
+                out.write("_ms");
+            }
+            out.write(",gl_calls,draw_calls,texture_bindings,shader_switches,heap_mb,gc_count,gc_ms");
+            out.newLine();
+
+            StringBuilder line = new StringBuilder(256);
+            for (int age = count - 1; age >= 0; age--) {
+                int index = index(age);
+                line.setLength(0);
+                line.append(frames - 1 - age).append(',');
+                appendMillis(line, frameNanos[index]).append(',');
+                appendMillis(line, workNanos[index]);
+                for (int scope = 0; scope < scopeCount; scope++) {
+                    appendMillis(line.append(','), scopeNanos[scope][index]);
+                }
+                line.append(',').append(glCalls[index])
+                    .append(',').append(drawCalls[index])
+                    .append(',').append(textureBindings[index])
+                    .append(',').append(shaderSwitches[index])
+                    .append(',').append(heapBytes[index] / (1024 * 1024))
+                    .append(',').append(collections[index])
+                    .append(',').append(collectionMillis[index]);
+                out.append(line);
+                out.newLine();
+            }
+        }
+        logger.info("Exported {} frames to {}", count, path);
+    }
+
+    /**
+     * Appends a time in milliseconds with three decimals, without going through a double
+     * @param text the text to append to
+     * @param nanos the time in nanoseconds
+     * @return text, for chaining
+     */
+    public static StringBuilder appendMillis(StringBuilder text, long nanos) {
+        long micros = nanos / 1000;
+        text.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            text.append('0');
+        }
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction);
+    }
+}
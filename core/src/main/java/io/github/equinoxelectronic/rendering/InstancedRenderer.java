@@ -0,0 +1,261 @@
+package io.github.equinoxelectronic.rendering;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+import io.github.equinoxelectronic.logging.Log;
+
+/**
+ * Draws large numbers of same-sized sprites, such as units, with GPU instancing.
+ *
+ * Each sprite only sends its position, the index of its region and its tint (16 bytes) to the
+ * GPU, which expands them into quads from a single shared quad mesh. The region rectangles are
+ * kept in a uniform array, so all regions must be on one texture, typically an atlas page.
+ *
+ * Instancing needs OpenGL ES 3.0. On the default {@code ANGLE_GLES20} context (or if the
+ * instanced shader does not compile) the same calls fall back to drawing through a SpriteBatch.
+ * Start the game with {@code -Dchancellor.gl30=true} to get a GL30 context.
+ */
+public class InstancedRenderer implements Disposable {
+    private static final Log logger = new Log("InstancedRenderer");
+
+    /** Maximum number of regions sprites can choose from */
+    public static final int MAX_REGIONS = 64;
+
+    // x, y, region index, packed tint
+    private static final int INSTANCE_SIZE = 4;
+
+    private static final String VERTEX_SHADER =
+        "attribute vec2 a_position;\n"
+            + "attribute vec2 a_offset;\n"
+            + "attribute float a_region;\n"
+            + "attribute vec4 a_tint;\n"
+            + "uniform mat4 u_projTrans;\n"
+            + "uniform vec2 u_size;\n"
+            + "uniform vec4 u_regions[" + MAX_REGIONS + "];\n"
+            + "varying vec2 v_texCoords;\n"
+            + "varying vec4 v_color;\n"
+            + "void main() {\n"
+            + "    vec4 region = u_regions[int(a_region)];\n"
+            + "    v_texCoords = vec2(mix(region.x, region.z, a_position.x), mix(region.w, region.y, a_position.y));\n"
+            + "    v_color = a_tint;\n"
+            + "    v_color.a = v_color.a * (255.0 / 254.0);\n"
+            + "    gl_Position = u_projTrans * vec4(a_offset + (a_position - 0.5) * u_size, 0.0, 1.0);\n"
+            + "}\n";
+
+    private static final String FRAGMENT_SHADER =
+        "#ifdef GL_ES\n"
+            + "precision mediump float;\n"
+            + "#endif\n"
+            + "varying vec2 v_texCoords;\n"
+            + "varying vec4 v_color;\n"
+            + "uniform sampler2D u_texture;\n"
+            + "void main() {\n"
+            + "    gl_FragColor = v_color * texture2D(u_texture, v_texCoords);\n"
+            + "}\n";
+
+    private final TextureRegion[] regions;
+    private final Texture texture;
+    private final float[] regionUniforms;
+    private final int maxInstances;
+    private final float width;
+    private final float height;
+
+    // Instanced path, or null when falling back to the batch
+    private Mesh mesh;
+    private ShaderProgram shader;
+    private final float[] instances;
+    private int count;
+
+    // Stats of the last frame
+    private int drawn;
+    private int drawCalls;
+
+    /**
+     * Creates a renderer for sprites of one size
+     * @param regions the regions sprites can use, all on the same texture, at most {@link #MAX_REGIONS}
+     * @param width the width of every sprite in meters
+     * @param height the height of every sprite in meters
+     * @param maxInstances the number of sprites drawn per draw call
+     * @param allowInstancing false to always draw through the batch, for comparison
+     */
+    public InstancedRenderer(TextureRegion[] regions, float width, float height, int maxInstances, boolean allowInstancing) {
+        if (regions.length == 0 || regions.length > MAX_REGIONS) {
+            throw new IllegalArgumentException("Need between 1 and " + MAX_REGIONS + " regions, got " + regions.length);
+        }
+        this.regions = regions;
+        this.texture = regions[0].getTexture();
+        this.width = width;
+        this.height = height;
+        this.maxInstances = maxInstances;
+        this.regionUniforms = new float[regions.length * 4];
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i].getTexture() != texture) {
+                throw new IllegalArgumentException("Regions must all be on the same texture");
+            }
+            regionUniforms[i * 4] = regions[i].getU();
+            regionUniforms[i * 4 + 1] = regions[i].getV();
+            regionUniforms[i * 4 + 2] = regions[i].getU2();
+            regionUniforms[i * 4 + 3] = regions[i].getV2();
+        }
+        this.instances = new float[maxInstances * INSTANCE_SIZE];
+
+        if (allowInstancing && Gdx.gl30 != null) {
+            createInstancedPath();
+        } else {
+            logger.info("GL30 is not available, drawing sprites through the SpriteBatch");
+        }
+    }
+
+    /**
+     * Creates the shared quad, its instance buffer and the shader
+     */
+    private void createInstancedPath() {
+        ShaderProgram program = new ShaderProgram(header(true) + VERTEX_SHADER, header(false) + FRAGMENT_SHADER);
+        if (!program.isCompiled()) {
+            logger.error("Instanced shader did not compile, drawing sprites through the SpriteBatch:\n{}", program.getLog());
+            program.dispose();
+            return;
+        }
+        shader = program;
+
+        mesh = new Mesh(true, 4, 6, new VertexAttribute(VertexAttributes.Usage.Position, 2, "a_position"));
+        mesh.setVertices(new float[] { 0, 0, 0, 1, 1, 1, 1, 0 });
+        mesh.setIndices(new short[] { 0, 1, 2, 2, 3, 0 });
+        mesh.enableInstancedRendering(false, maxInstances,
+            new VertexAttribute(VertexAttributes.Usage.Generic, 2, "a_offset"),
+            new VertexAttribute(VertexAttributes.Usage.Generic, 1, "a_region"),
+            new VertexAttribute(VertexAttributes.Usage.ColorPacked, 4, GL20.GL_UNSIGNED_BYTE, true, "a_tint"));
+        logger.info("Drawing sprites with instancing, {} per draw call", maxInstances);
+    }
+
+    /**
+     * Gets the header that lets the GLSL 1.0 shaders compile on a desktop GL 3.2 core context,
+     * unless the backend already prepends one
+     */
+    private static String header(boolean vertex) {
+        if (Gdx.app.getType() != Application.ApplicationType.Desktop
+            || (ShaderProgram.prependVertexCode != null && !ShaderProgram.prependVertexCode.isEmpty())) {
+            return "";
+        }
+        return vertex
+            ? "#version 150\n#define attribute in\n#define varying out\n"
+            : "#version 150\n#define varying in\n#define texture2D texture\n#define gl_FragColor fragColor\nout vec4 fragColor;\n";
+    }
+
+    /**
+     * Adds a sprite to draw this frame
+     * @param x the center in world coordinates (meters)
+     * @param y the center in world coordinates (meters)
+     * @param region the index of the region to draw
+     * @param packedTint the tint, as returned by {@link com.badlogic.gdx.graphics.Color#toFloatBits()}
+     */
+    public void add(float x, float y, int region, float packedTint) {
+        if (count == maxInstances) {
+            throw new IllegalStateException("More than " + maxInstances + " sprites added; call render() in between");
+        }
+        int offset = count * INSTANCE_SIZE;
+        instances[offset] = x;
+        instances[offset + 1] = y;
+        instances[offset + 2] = region;
+        instances[offset + 3] = packedTint;
+        count++;
+    }
+
+    /**
+     * Gets the number of sprites that can still be added before {@link #render(Matrix4, SpriteBatch)} is needed
+     * @return the free capacity
+     */
+    public int getRemaining() {
+        return maxInstances - count;
+    }
+
+    /**
+     * Draws every added sprite and starts over. Must not be called between the batch's begin and end.
+     * @param projection the camera's combined matrix
+     * @param batch the batch to fall back to when instancing is not available
+     */
+    public void render(Matrix4 projection, SpriteBatch batch) {
+        if (count == 0) {
+            return;
+        }
+        if (mesh != null) {
+            mesh.setInstanceData(instances, 0, count * INSTANCE_SIZE);
+            Gdx.gl.glEnable(GL20.GL_BLEND);
+            Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+            texture.bind(0);
+            shader.bind();
+            shader.setUniformMatrix("u_projTrans", projection);
+            shader.setUniformi("u_texture", 0);
+            shader.setUniformf("u_size", width, height);
+            shader.setUniform4fv("u_regions", regionUniforms, 0, regionUniforms.length);
+            mesh.render(shader, GL20.GL_TRIANGLES);
+            drawCalls++;
+        } else {
+            batch.setProjectionMatrix(projection);
+            batch.begin();
+            float previousColor = batch.getPackedColor();
+            for (int i = 0; i < count; i++) {
+                int offset = i * INSTANCE_SIZE;
+                batch.setPackedColor(instances[offset + 3]);
+                batch.draw(regions[(int) instances[offset + 2]], instances[offset] - width / 2f,
+                    instances[offset + 1] - height / 2f, width, height);
+            }
+            batch.setPackedColor(previousColor);
+            batch.end();
+            drawCalls += batch.renderCalls;
+        }
+        drawn += count;
+        count = 0;
+    }
+
+    /**
+     * Resets the per-frame counters; call once at the start of every frame
+     */
+    public void resetStats() {
+        drawn = 0;
+        drawCalls = 0;
+    }
+
+    /**
+     * Checks if sprites are drawn with instancing
+     * @return false if drawing falls back to the SpriteBatch
+     */
+    public boolean isInstanced() {
+        return mesh != null;
+    }
+
+    /**
+     * Gets the number of sprites drawn since the stats were reset
+     * @return the sprite count
+     */
+    public int getDrawn() {
+        return drawn;
+    }
+
+    /**
+     * Gets the number of draw calls since the stats were reset
+     * @return the draw call count
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    @Override
+    public void dispose() {
+        if (mesh != null) {
+            mesh.dispose();
+            shader.dispose();
+            mesh = null;
+        }
+    }
+}
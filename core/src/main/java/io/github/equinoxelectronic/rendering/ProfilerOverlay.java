@@ -0,0 +1,135 @@
+package io.github.equinoxelectronic.rendering;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.profiling.Profiler;
+
+/**
+ * Draws the {@link Profiler}'s measurements in the top left corner of the screen, in debug mode.
+ *
+ * The text is rebuilt every {@link #REFRESH_FRAMES} frames into a font cache, so frames in between
+ * only draw the cached glyphs, and times are averaged over those frames so they can be read.
+ */
+class ProfilerOverlay {
+    /** Frames between updates of the text */
+    static final int REFRESH_FRAMES = 15;
+    private static final float MARGIN = 8f;
+    private static final float[] PERCENTILES = { 50f, 95f, 99f, 100f };
+
+    private final BitmapFont font;
+    private final BitmapFontCache cache;
+    private final Matrix4 projection = new Matrix4();
+    private final StringBuilder text = new StringBuilder(1024);
+    private final long[] percentiles = new long[PERCENTILES.length];
+    private long refreshedAt = -1;
+    private float height;
+
+    ProfilerOverlay() {
+        font = new BitmapFont();
+        cache = font.newFontCache();
+        resize(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+    }
+
+    /**
+     * Keeps the text in the corner after the window is resized
+     */
+    void resize(int width, int height) {
+        projection.setToOrtho2D(0, 0, width, height);
+        this.height = height;
+        refreshedAt = -1;
+    }
+
+    /**
+     * Draws the overlay in screen coordinates
+     * @param batch the batch, which must not have been begun
+     */
+    void draw(SpriteBatch batch) {
+        long frames = Profiler.getFrameCount();
+        if (refreshedAt < 0 || frames - refreshedAt >= REFRESH_FRAMES) {
+            refresh();
+            refreshedAt = frames;
+        }
+        batch.setProjectionMatrix(projection);
+        batch.begin();
+        cache.draw(batch);
+        batch.end();
+    }
+
+    private void refresh() {
+        text.setLength(0);
+        int history = Profiler.getHistoryCount();
+        if (history == 0) {
+            text.append("Profiling...");
+        } else {
+            appendFrames();
+            appendScopes(Math.min(history, REFRESH_FRAMES));
+            appendGl();
+            appendMemory(Math.min(history, Profiler.PERCENTILE_WINDOW));
+            Array<Profiler.Source> sources = Profiler.getSources();
+            for (int i = 0; i < sources.size; i++) {
+                text.append('\n');
+                sources.get(i).appendStats(text);
+            }
+        }
+        cache.setText(text, MARGIN, height - MARGIN);
+    }
+
+    private void appendFrames() {
+        int count = Profiler.getFramePercentiles(PERCENTILES, percentiles);
+        long total = 0;
+        for (int age = 0; age < count; age++) {
+            total += Profiler.getFrameNanos(age);
+        }
+        text.append(total == 0 ? 0 : Math.round(count * 1e9 / total)).append(" fps   frame p50 ");
+        Profiler.appendMillis(text, percentiles[0]).append("  p95 ");
+        Profiler.appendMillis(text, percentiles[1]).append("  p99 ");
+        Profiler.appendMillis(text, percentiles[2]).append("  max ");
+        Profiler.appendMillis(text, percentiles[3]).append(" ms over ").append(count).append(" frames\n");
+    }
+
+    private void appendScopes(int count) {
+        long work = 0;
+        for (int age = 0; age < count; age++) {
+            work += Profiler.getWorkNanos(age);
+        }
+        text.append("work ");
+        Profiler.appendMillis(text, work / count).append(" ms:");
+        for (int scope = 0; scope < Profiler.getScopeCount(); scope++) {
+            long total = 0;
+            for (int age = 0; age < count; age++) {
+                total += Profiler.getScopeNanos(scope, age);
+            }
+            text.append("  ").append(Profiler.getScopeName(scope)).append(' ');
+            Profiler.appendMillis(text, total / count);
+        }
+        text.append('\n');
+    }
+
+    private void appendGl() {
+        text.append("GL ").append(Profiler.getGlCalls(0)).append(" calls, ")
+            .append(Profiler.getDrawCalls(0)).append(" draw calls, ")
+            .append(Profiler.getTextureBindings(0)).append(" texture bindings, ")
+            .append(Profiler.getShaderSwitches(0)).append(" shader switches\n");
+    }
+
+    private void appendMemory(int count) {
+        int collections = 0;
+        long collectionMillis = 0;
+        for (int age = 0; age < count; age++) {
+            collections += Profiler.getCollections(age);
+            collectionMillis += Profiler.getCollectionMillis(age);
+        }
+        text.append("heap ").append(Profiler.getHeapBytes(0) / (1024 * 1024)).append(" / ")
+            .append(Runtime.getRuntime().maxMemory() / (1024 * 1024)).append(" MB, ")
+            .append(collections).append(" GCs taking ").append(collectionMillis).append(" ms over ")
+            .append(count).append(" frames");
+    }
+
+    void dispose() {
+        font.dispose();
+    }
+}
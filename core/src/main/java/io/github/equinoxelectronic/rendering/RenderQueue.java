@@ -0,0 +1,310 @@
+package io.github.equinoxelectronic.rendering;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import io.github.equinoxelectronic.profiling.Profiler;
+
+import java.util.Arrays;
+
+/**
+ * Collects draw commands during a frame and issues them sorted, so sprites sharing a texture
+ * and shader are drawn together instead of flushing the batch every time the texture changes.
+ *
+ * Commands are sorted by layer first, so lower layers are always drawn under higher ones. Within
+ * a layer they are grouped by shader and then by texture, and commands with the same texture keep
+ * their submission order. Sprites on the same layer that overlap may therefore be drawn in a
+ * different order than they were submitted; put them on different layers if that matters.
+ *
+ * Commands are kept in flat primitive arrays and sorted with a radix sort, so a frame allocates
+ * nothing once the arrays have grown to the number of commands used.
+ */
+public class RenderQueue implements Profiler.Source {
+    /** Lowest layer a command can be drawn on */
+    public static final int MIN_LAYER = -2048;
+    /** Highest layer a command can be drawn on */
+    public static final int MAX_LAYER = 2047;
+
+    // Bits of the sort key, from most to least significant: layer, shader, texture, command index
+    private static final int INDEX_BITS = 24;
+    private static final int TEXTURE_BITS = 20;
+    private static final int SHADER_BITS = 8;
+    private static final int TEXTURE_SHIFT = INDEX_BITS;
+    private static final int SHADER_SHIFT = TEXTURE_SHIFT + TEXTURE_BITS;
+    private static final int LAYER_SHIFT = SHADER_SHIFT + SHADER_BITS;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    // The command index is already in order, so only the bytes above it need sorting
+    private static final int FIRST_SORTED_BYTE = INDEX_BITS / 8;
+
+    private int size;
+    private TextureRegion[] regions = new TextureRegion[256];
+    private ShaderProgram[] shaders = new ShaderProgram[256];
+    // x, y, width, height, rotation, packed color per command
+    private float[] transforms = new float[256 * 6];
+    private long[] keys = new long[256];
+    private long[] sortBuffer = new long[256];
+    private final int[] counts = new int[256];
+
+    // Small ids for the textures and shaders used this frame, in order of first use
+    private final ObjectIntMap<Texture> textureIds = new ObjectIntMap<>();
+    private final ObjectIntMap<ShaderProgram> shaderIds = new ObjectIntMap<>();
+
+    // Stats of the last flush
+    private int commands;
+    private int flushes;
+    private int textureSwitches;
+    private int shaderSwitches;
+    private long sortNanos;
+
+    /**
+     * Queues a region to be drawn untinted and unrotated with the batch's shader
+     * @param region the region to draw
+     * @param x the left edge in world coordinates (meters)
+     * @param y the bottom edge in world coordinates (meters)
+     * @param width the width in meters
+     * @param height the height in meters
+     * @param layer the layer, between {@link #MIN_LAYER} and {@link #MAX_LAYER}
+     */
+    public void draw(TextureRegion region, float x, float y, float width, float height, int layer) {
+        draw(region, x, y, width, height, 0f, layer, Color.WHITE_FLOAT_BITS, null);
+    }
+
+    /**
+     * Queues a region to be drawn
+     * @param region the region to draw
+     * @param x the left edge in world coordinates (meters)
+     * @param y the bottom edge in world coordinates (meters)
+     * @param width the width in meters
+     * @param height the height in meters
+     * @param rotation the rotation around the center in degrees, counter-clockwise
+     * @param layer the layer, between {@link #MIN_LAYER} and {@link #MAX_LAYER}
+     * @param tint the tint
+     */
+    public void draw(TextureRegion region, float x, float y, float width, float height, float rotation, int layer, Color tint) {
+        draw(region, x, y, width, height, rotation, layer, tint.toFloatBits(), null);
+    }
+
+    /**
+     * Queues a region to be drawn
+     * @param region the region to draw
+     * @param x the left edge in world coordinates (meters)
+     * @param y the bottom edge in world coordinates (meters)
+     * @param width the width in meters
+     * @param height the height in meters
+     * @param rotation the rotation around the center in degrees, counter-clockwise
+     * @param layer the layer, between {@link #MIN_LAYER} and {@link #MAX_LAYER}
+     * @param packedTint the tint, as returned by {@link Color#toFloatBits()}
+     * @param shader the shader to draw with, or null for the batch's default shader
+     */
+    public void draw(TextureRegion region, float x, float y, float width, float height, float rotation, int layer,
+                     float packedTint, ShaderProgram shader) {
+        if (size == regions.length) {
+            grow();
+        }
+        int index = size++;
+        regions[index] = region;
+        shaders[index] = shader;
+        int offset = index * 6;
+        transforms[offset] = x;
+        transforms[offset + 1] = y;
+        transforms[offset + 2] = width;
+        transforms[offset + 3] = height;
+        transforms[offset + 4] = rotation;
+        transforms[offset + 5] = packedTint;
+
+        int clampedLayer = Math.max(MIN_LAYER, Math.min(MAX_LAYER, layer)) - MIN_LAYER;
+        long textureId = idFor(textureIds, region.getTexture(), (1 << TEXTURE_BITS) - 1);
+        long shaderId = shader == null ? 0 : 1 + idFor(shaderIds, shader, (1 << SHADER_BITS) - 2);
+        keys[index] = (long) clampedLayer << LAYER_SHIFT | shaderId << SHADER_SHIFT | textureId << TEXTURE_SHIFT | index;
+    }
+
+    private static <T> int idFor(ObjectIntMap<T> ids, T item, int maxId) {
+        int id = ids.get(item, -1);
+        if (id < 0) {
+            id = Math.min(ids.size, maxId);
+            ids.put(item, id);
+        }
+        return id;
+    }
+
+    /**
+     * Sorts and draws every queued command, then empties the queue.
+     * @param batch the batch to draw with, which must have been begun
+     */
+    public void flush(SpriteBatch batch) {
+        commands = size;
+        textureSwitches = 0;
+        shaderSwitches = 0;
+        if (size == 0) {
+            flushes = 0;
+            sortNanos = 0;
+            return;
+        }
+
+        long start = System.nanoTime();
+        sort();
+        sortNanos = System.nanoTime() - start;
+
+        int callsBefore = batch.renderCalls;
+        ShaderProgram defaultShader = batch.getShader();
+        Texture lastTexture = null;
+        ShaderProgram lastShader = defaultShader;
+        float previousColor = batch.getPackedColor();
+        for (int i = 0; i < size; i++) {
+            int index = (int) (keys[i] & INDEX_MASK);
+            TextureRegion region = regions[index];
+            ShaderProgram shader = shaders[index] == null ? defaultShader : shaders[index];
+            if (shader != lastShader) {
+                batch.setShader(shader);
+                lastShader = shader;
+                shaderSwitches++;
+            }
+            if (region.getTexture() != lastTexture) {
+                if (lastTexture != null) {
+                    textureSwitches++;
+                }
+                lastTexture = region.getTexture();
+            }
+
+            int offset = index * 6;
+            float width = transforms[offset + 2];
+            float height = transforms[offset + 3];
+            batch.setPackedColor(transforms[offset + 5]);
+            batch.draw(region, transforms[offset], transforms[offset + 1], width / 2f, height / 2f,
+                width, height, 1f, 1f, transforms[offset + 4]);
+        }
+        batch.flush();
+        if (shaderSwitches > 0) {
+            batch.setShader(defaultShader);
+        }
+        batch.setPackedColor(previousColor);
+        flushes = batch.renderCalls - callsBefore;
+
+        clear();
+    }
+
+    /**
+     * Sorts the keys with a least significant digit radix sort, one byte per pass.
+     * Passes where every key has the same byte are skipped, which is most of them when few
+     * layers, shaders and textures are in use.
+     */
+    private void sort() {
+        long[] from = keys;
+        long[] to = sortBuffer;
+        for (int pass = FIRST_SORTED_BYTE; pass < 8; pass++) {
+            int shift = pass * 8;
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (from[i] >>> shift) & 0xFF]++;
+            }
+            if (counts[(int) (from[0] >>> shift) & 0xFF] == size) {
+                continue;
+            }
+            int total = 0;
+            for (int b = 0; b < 256; b++) {
+                int count = counts[b];
+                counts[b] = total;
+                total += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long key = from[i];
+                to[counts[(int) (key >>> shift) & 0xFF]++] = key;
+            }
+            long[] swap = from;
+            from = to;
+            to = swap;
+        }
+        keys = from;
+        sortBuffer = to;
+    }
+
+    /**
+     * Doubles the capacity of every command array
+     */
+    private void grow() {
+        int capacity = regions.length * 2;
+        if (capacity > INDEX_MASK + 1) {
+            throw new IllegalStateException("Too many draw commands in one frame: " + size);
+        }
+        regions = Arrays.copyOf(regions, capacity);
+        shaders = Arrays.copyOf(shaders, capacity);
+        transforms = Arrays.copyOf(transforms, capacity * 6);
+        keys = Arrays.copyOf(keys, capacity);
+        sortBuffer = new long[capacity];
+    }
+
+    /**
+     * Drops every queued command without drawing it
+     */
+    public void clear() {
+        Arrays.fill(regions, 0, size, null);
+        Arrays.fill(shaders, 0, size, null);
+        size = 0;
+        textureIds.clear();
+        shaderIds.clear();
+    }
+
+    /**
+     * Gets the number of commands waiting to be drawn
+     * @return the queue size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of commands drawn by the last flush
+     * @return the command count
+     */
+    public int getCommands() {
+        return commands;
+    }
+
+    /**
+     * Gets the number of times the batch was flushed to the GPU while drawing the last queue
+     * @return the flush count
+     */
+    public int getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Gets the number of texture changes while drawing the last queue
+     * @return the texture switch count
+     */
+    public int getTextureSwitches() {
+        return textureSwitches;
+    }
+
+    /**
+     * Gets the number of shader changes while drawing the last queue
+     * @return the shader switch count
+     */
+    public int getShaderSwitches() {
+        return shaderSwitches;
+    }
+
+    /**
+     * Gets the time it took to sort the last queue
+     * @return the sort time in nanoseconds
+     */
+    public long getSortNanos() {
+        return sortNanos;
+    }
+
+    @Override
+    public void appendStats(StringBuilder text) {
+        text.append("Render queue: ").append(commands).append(" commands, ").append(flushes).append(" flushes, ")
+            .append(textureSwitches).append(" texture switches, ").append(shaderSwitches).append(" shader switches, sorted in ");
+        Profiler.appendMillis(text, sortNanos).append(" ms");
+    }
+
+    @Override
+    public String toString() {
+        return "RenderQueue[" + commands + " commands, " + flushes + " flushes, " + textureSwitches
+            + " texture switches, " + shaderSwitches + " shader switches, sorted in " + sortNanos / 1000 + "us]";
+    }
+}
@@ -1,12 +1,19 @@
 package io.github.equinoxelectronic.rendering;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.profiling.Profiler;
+import io.github.equinoxelectronic.utility.AssetHandle;
 import io.github.equinoxelectronic.utility.AssetManager;
+import io.github.equinoxelectronic.world.TileMap;
 
 /**
  * The Renderer class handles all rendering operations for the game.
@@ -22,7 +29,7 @@ import io.github.equinoxelectronic.utility.AssetManager;
  * through the use of viewports.
  */
 public class Renderer {
-    private static final Logger logger = new Logger("Chancellor Renderer", Logger.DEBUG);
+    private static final Log logger = new Log("Chancellor Renderer");
 
     // The world dimensions in meters
     public static final float WORLD_WIDTH = 16f;  // 16 meters wide (standard for 16:9 aspect ratio)
@@ -38,9 +45,27 @@ public class Renderer {
     private static OrthographicCamera camera;
     private static Viewport viewport;
 
+    // Scratch vector for single point transforms, so they neither allocate nor touch the camera
+    private static final Vector3 scratch = new Vector3();
+
     // Debug mode flag
     private static boolean debugMode = false;
 
+    // Frame times and GL stats from the Profiler, drawn over everything in debug mode
+    private static ProfilerOverlay profilerOverlay;
+
+    // Handle to the debug logo, resolved once so drawing it doesn't look up a path every frame
+    private static AssetHandle<TextureRegion> logoHandle;
+
+    // Draws the terrain under everything else, if a map is set
+    private static TileMapRenderer tileMapRenderer;
+
+    // Draw commands submitted by game code during the frame, sorted before they are drawn
+    private static final RenderQueue renderQueue = new RenderQueue();
+
+    // How far the simulation is between its previous and current tick, set by the GameLoop
+    private static float interpolationAlpha = 1f;
+
     /**
      * Initializes the renderer with default settings.
      * Sets up the camera and viewport for rendering.
@@ -58,26 +83,39 @@ public class Renderer {
         // Set the camera position to the center of the world
         camera.position.set(WORLD_WIDTH / 2f, WORLD_HEIGHT / 2f, 0);
 
+        logoHandle = AssetManager.getInstance().getTextureHandle("libgdx.png");
+
+        profilerOverlay = new ProfilerOverlay();
+        Profiler.addSource(renderQueue);
+
         //TODO remove this eventually
         debugMode = true;
+        Profiler.setEnabled(true);
 
         logger.info("Debug mode enabled by default");
 
-        logger.info("Renderer initialized with world dimensions: " +
-                    WORLD_WIDTH + "m x " + WORLD_HEIGHT + "m");
+        logger.info("Renderer initialized with world dimensions: {}m x {}m", WORLD_WIDTH, WORLD_HEIGHT);
     }
 
     /**
      * Renders the game world using the provided SpriteBatch.
+     * The terrain is drawn first with its own meshes, then the batch is begun for everything on top of it.
      *
-     * @param batch The SpriteBatch to use for rendering
+     * @param batch The SpriteBatch to use for rendering, which must not have been begun yet
      */
     public static void render(SpriteBatch batch) {
         // Update the camera
         camera.update();
 
+        if (tileMapRenderer != null) {
+            Profiler.begin(Profiler.TERRAIN);
+            tileMapRenderer.render(camera);
+            Profiler.end(Profiler.TERRAIN);
+        }
+
         // Set the projection matrix of the batch to the camera's combined matrix
         batch.setProjectionMatrix(camera.combined);
+        batch.begin();
 
         // Rendering code will go here
         // This is where you would draw sprites, backgrounds, etc.
@@ -92,6 +130,88 @@ public class Renderer {
         if (debugMode) {
             renderDebugInfo(batch);
         }
+
+        // Everything submitted this frame, sorted by layer and texture
+        Profiler.begin(Profiler.RENDER_QUEUE);
+        renderQueue.flush(batch);
+        Profiler.end(Profiler.RENDER_QUEUE);
+
+        Profiler.begin(Profiler.BATCH_FLUSH);
+        batch.end();
+        Profiler.end(Profiler.BATCH_FLUSH);
+
+        // Drawn last, in screen coordinates
+        if (debugMode) {
+            profilerOverlay.draw(batch);
+        }
+    }
+
+    /**
+     * Gets the queue game code submits sprites to. Queued sprites are drawn at the end of
+     * {@link #render(SpriteBatch)}, after anything drawn directly with the batch.
+     *
+     * @return The RenderQueue instance, which also holds the stats of the last frame
+     */
+    public static RenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+
+    /**
+     * Sets how far game time is between the previous and the current simulation tick.
+     * Called by the {@link io.github.equinoxelectronic.simulation.GameLoop} every frame.
+     *
+     * @param alpha The fraction of a tick, between 0 and 1
+     */
+    public static void setInterpolationAlpha(float alpha) {
+        interpolationAlpha = alpha;
+    }
+
+    /**
+     * Gets how far game time is between the previous and the current simulation tick.
+     *
+     * @return The fraction of a tick, between 0 and 1
+     */
+    public static float getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
+    /**
+     * Interpolates a simulated value for drawing, so movement looks smooth even though the
+     * simulation only updates it on ticks.
+     *
+     * @param previous The value after the previous tick
+     * @param current The value after the current tick
+     * @return The value to draw this frame
+     */
+    public static float interpolate(float previous, float current) {
+        return previous + (current - previous) * interpolationAlpha;
+    }
+
+    /**
+     * Sets the map drawn under everything else, replacing the previous one
+     *
+     * @param map The map to draw, or null to draw no terrain
+     */
+    public static void setTileMap(TileMap map) {
+        if (tileMapRenderer != null) {
+            Profiler.removeSource(tileMapRenderer);
+            tileMapRenderer.dispose();
+            tileMapRenderer = null;
+        }
+        if (map != null) {
+            tileMapRenderer = new TileMapRenderer(map);
+            Profiler.addSource(tileMapRenderer);
+            logger.info("Tile map set: {}x{} tiles", map.getWidth(), map.getHeight());
+        }
+    }
+
+    /**
+     * Gets the renderer drawing the current map.
+     *
+     * @return The TileMapRenderer, or null if no map is set
+     */
+    public static TileMapRenderer getTileMapRenderer() {
+        return tileMapRenderer;
     }
 
     /**
@@ -102,14 +222,14 @@ public class Renderer {
      */
     private static void renderDebugInfo(SpriteBatch batch) {
         // Get the libGDX logo texture for demonstration
-        TextureRegion logo = AssetManager.getInstance().getTextureRegion("libgdx.png");
+        TextureRegion logo = AssetManager.getInstance().get(logoHandle);
 
         if (logo != null) {
             // Draw the logo at the center of the world
             drawTexturePreserveAspect(batch, logo, WORLD_CENTER_WIDTH, WORLD_CENTER_HEIGHT, 2f, false);
 
             // Draw text to indicate coordinates (would need a BitmapFont in a real implementation)
-            logger.debug("Logo drawn at world coordinates: (" + WORLD_CENTER_WIDTH + "m, " + WORLD_CENTER_HEIGHT + "m)");
+            logger.debug("Logo drawn at world coordinates: ({}m, {}m)", WORLD_CENTER_WIDTH, WORLD_CENTER_HEIGHT);
             logger.debug("Logo size: 2m x 2m");
         }
     }
@@ -122,47 +242,179 @@ public class Renderer {
      * @param height The new screen height in pixels
      */
     public static void resize(int width, int height) {
-        logger.info("Resizing viewport to: " + width + "x" + height);
+        logger.info("Resizing viewport to: {}x{}", width, height);
         viewport.update(width, height, true);
         camera.position.set(WORLD_WIDTH / 2f, WORLD_HEIGHT / 2f, 0);
+        if (profilerOverlay != null) {
+            profilerOverlay.resize(width, height);
+        }
     }
 
     /**
      * Converts screen coordinates to world coordinates.
      * Useful for handling input that needs to interact with the game world.
+     * This allocates a new array on every call; prefer {@link #screenToWorld(float, float, Vector2)} in code run every frame.
      *
      * @param screenX The x-coordinate in screen space (pixels)
      * @param screenY The y-coordinate in screen space (pixels)
      * @return float[] Array containing the world x and y coordinates in meters
      */
     public static float[] screenToWorld(int screenX, int screenY) {
-        // Unproject the screen coordinates to world coordinates
-        camera.unproject(camera.position.set(screenX, screenY, 0));
-        return new float[] { camera.position.x, camera.position.y };
+        Vector2 world = screenToWorld(screenX, screenY, new Vector2());
+        return new float[] { world.x, world.y };
     }
 
     /**
      * Converts world coordinates to screen coordinates.
+     * This allocates a new array on every call; prefer {@link #worldToScreen(float, float, Vector2)} in code run every frame.
      *
      * @param worldX The x-coordinate in world space (meters)
      * @param worldY The y-coordinate in world space (meters)
-     * @return int[] Array containing the screen x and y coordinates in pixels
+     * @return int[] Array containing the screen x and y coordinates in pixels, measured from the bottom-left corner
      */
     public static int[] worldToScreen(float worldX, float worldY) {
-        // Project the world coordinates to screen coordinates
-        camera.project(camera.position.set(worldX, worldY, 0));
-        return new int[] { (int)camera.position.x, (int)camera.position.y };
+        Vector2 screen = worldToScreen(worldX, worldY, new Vector2());
+        return new int[] { (int) screen.x, (int) screen.y };
+    }
+
+    /**
+     * Converts screen coordinates to world coordinates without allocating.
+     * Must be called on the render thread.
+     *
+     * @param screenX The x-coordinate in screen space (pixels), as received from input
+     * @param screenY The y-coordinate in screen space (pixels, from the top), as received from input
+     * @param out The vector to write the world coordinates (meters) to
+     * @return out, for chaining
+     */
+    public static Vector2 screenToWorld(float screenX, float screenY, Vector2 out) {
+        // The scratch vector keeps the camera's own position untouched
+        camera.unproject(scratch.set(screenX, screenY, 0), viewport.getScreenX(), viewport.getScreenY(),
+            viewport.getScreenWidth(), viewport.getScreenHeight());
+        return out.set(scratch.x, scratch.y);
+    }
+
+    /**
+     * Converts world coordinates to screen coordinates without allocating.
+     * Must be called on the render thread.
+     *
+     * @param worldX The x-coordinate in world space (meters)
+     * @param worldY The y-coordinate in world space (meters)
+     * @param out The vector to write the screen coordinates (pixels, from the bottom-left corner) to
+     * @return out, for chaining
+     */
+    public static Vector2 worldToScreen(float worldX, float worldY, Vector2 out) {
+        camera.project(scratch.set(worldX, worldY, 0), viewport.getScreenX(), viewport.getScreenY(),
+            viewport.getScreenWidth(), viewport.getScreenHeight());
+        return out.set(scratch.x, scratch.y);
+    }
+
+    /**
+     * Converts many screen points to world coordinates in one pass, for example the corners of a
+     * selection box. Points are stored as x, y pairs; the arrays may be the same.
+     * Uses the matrices from the last camera update, so call this after {@link #render(SpriteBatch)}
+     * or after updating the camera yourself.
+     *
+     * @param screen The screen points (pixels, y from the top, as received from input)
+     * @param world The array to write the world points (meters) to
+     * @param count The number of points
+     */
+    public static void screenToWorld(float[] screen, float[] world, int count) {
+        float[] inverse = camera.invProjectionView.val;
+        // Screen to normalized device coordinates, folded into the inverse projection
+        float scaleX = 2f / viewport.getScreenWidth();
+        float scaleY = -2f / viewport.getScreenHeight();
+        float offsetX = -viewport.getScreenX() * scaleX - 1f;
+        float offsetY = (Gdx.graphics.getHeight() - viewport.getScreenY()) * -scaleY - 1f;
+
+        float xx = inverse[Matrix4.M00] * scaleX;
+        float xy = inverse[Matrix4.M01] * scaleY;
+        float x0 = inverse[Matrix4.M00] * offsetX + inverse[Matrix4.M01] * offsetY - inverse[Matrix4.M02] + inverse[Matrix4.M03];
+        float yx = inverse[Matrix4.M10] * scaleX;
+        float yy = inverse[Matrix4.M11] * scaleY;
+        float y0 = inverse[Matrix4.M10] * offsetX + inverse[Matrix4.M11] * offsetY - inverse[Matrix4.M12] + inverse[Matrix4.M13];
+        float wx = inverse[Matrix4.M30] * scaleX;
+        float wy = inverse[Matrix4.M31] * scaleY;
+        float w0 = inverse[Matrix4.M30] * offsetX + inverse[Matrix4.M31] * offsetY - inverse[Matrix4.M32] + inverse[Matrix4.M33];
+
+        transform(screen, world, count, xx, xy, x0, yx, yy, y0, wx, wy, w0);
+    }
+
+    /**
+     * Converts many world points to screen coordinates in one pass, for example to place labels.
+     * Points are stored as x, y pairs; the arrays may be the same.
+     * Uses the matrices from the last camera update, like {@link #screenToWorld(float[], float[], int)}.
+     *
+     * @param world The world points (meters)
+     * @param screen The array to write the screen points (pixels, from the bottom-left corner) to
+     * @param count The number of points
+     */
+    public static void worldToScreen(float[] world, float[] screen, int count) {
+        float[] combined = camera.combined.val;
+        // Normalized device coordinates to screen, folded into the projection. The divide by w is
+        // left to transform(), so the offsets are scaled by w instead of added afterwards.
+        float scaleX = viewport.getScreenWidth() / 2f;
+        float scaleY = viewport.getScreenHeight() / 2f;
+        float offsetX = scaleX + viewport.getScreenX();
+        float offsetY = scaleY + viewport.getScreenY();
+
+        float wx = combined[Matrix4.M30];
+        float wy = combined[Matrix4.M31];
+        float w0 = combined[Matrix4.M33];
+        float xx = combined[Matrix4.M00] * scaleX + wx * offsetX;
+        float xy = combined[Matrix4.M01] * scaleX + wy * offsetX;
+        float x0 = combined[Matrix4.M03] * scaleX + w0 * offsetX;
+        float yx = combined[Matrix4.M10] * scaleY + wx * offsetY;
+        float yy = combined[Matrix4.M11] * scaleY + wy * offsetY;
+        float y0 = combined[Matrix4.M13] * scaleY + w0 * offsetY;
+
+        transform(world, screen, count, xx, xy, x0, yx, yy, y0, wx, wy, w0);
+    }
+
+    /**
+     * Applies a 2D projective transform to x, y pairs
+     */
+    private static void transform(float[] from, float[] to, int count, float xx, float xy, float x0,
+                                  float yx, float yy, float y0, float wx, float wy, float w0) {
+        int end = count * 2;
+        if (wx == 0f && wy == 0f && w0 == 1f) {
+            // Orthographic cameras never need the divide
+            for (int i = 0; i < end; i += 2) {
+                float x = from[i];
+                float y = from[i + 1];
+                to[i] = xx * x + xy * y + x0;
+                to[i + 1] = yx * x + yy * y + y0;
+            }
+            return;
+        }
+        for (int i = 0; i < end; i += 2) {
+            float x = from[i];
+            float y = from[i + 1];
+            float w = 1f / (wx * x + wy * y + w0);
+            to[i] = (xx * x + xy * y + x0) * w;
+            to[i + 1] = (yx * x + yy * y + y0) * w;
+        }
     }
 
     /**
      * Toggles debug mode on/off.
-     * When debug mode is enabled, additional visual information is rendered.
+     * When debug mode is enabled, additional visual information is rendered,
+     * and the {@link Profiler} measures every frame for the overlay.
      *
      * @param enabled Whether debug mode should be enabled
      */
     public static void setDebugMode(boolean enabled) {
         debugMode = enabled;
-        logger.info("Debug mode " + (enabled ? "enabled" : "disabled"));
+        Profiler.setEnabled(enabled);
+        logger.info("Debug mode {}", enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * Checks if debug mode is enabled.
+     *
+     * @return True if debug information and the profiler overlay are drawn
+     */
+    public static boolean isDebugMode() {
+        return debugMode;
     }
 
     /**
@@ -245,7 +497,11 @@ public class Renderer {
      */
     public static void dispose() {
         logger.info("Disposing Renderer...");
-        // No resources to dispose currently, but this is where you would dispose
-        // of any resources that the renderer owns (textures, shaders, etc.)
+        setTileMap(null);
+        Profiler.removeSource(renderQueue);
+        if (profilerOverlay != null) {
+            profilerOverlay.dispose();
+            profilerOverlay = null;
+        }
     }
 }
@@ -0,0 +1,472 @@
+package io.github.equinoxelectronic.rendering;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.NumberUtils;
+import io.github.equinoxelectronic.data.DefinitionRegistry;
+import io.github.equinoxelectronic.data.DefinitionTable;
+import io.github.equinoxelectronic.data.TerrainDefinition;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.profiling.Profiler;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Draws a {@link TileMap}.
+ *
+ * Up close, every chunk of the map is drawn from its own static mesh, which is built the first
+ * time the chunk is visible and only rebuilt when one of its tiles changes. Chunks outside the
+ * camera's view are skipped, and the meshes of chunks that have not been seen for a while are
+ * released once more than {@link #MAX_RESIDENT_CHUNKS} are built.
+ *
+ * Zoomed out to the point where a tile covers fewer than {@link #OVERVIEW_PIXELS_PER_TILE}
+ * pixels, the whole map is drawn as a single quad textured with one pixel per tile instead.
+ */
+public class TileMapRenderer implements Disposable, Profiler.Source {
+    private static final Log logger = new Log("TileMapRenderer");
+
+    /** Below this many pixels per tile, the map is drawn from the overview texture */
+    public static final float OVERVIEW_PIXELS_PER_TILE = 4f;
+    /** Maximum number of chunk meshes kept on the GPU at once */
+    public static final int MAX_RESIDENT_CHUNKS = 512;
+
+    // Position (2), packed color (1), texture coordinates (2)
+    private static final int VERTEX_SIZE = 5;
+    private static final int TILES_PER_CHUNK = TileMap.CHUNK_SIZE * TileMap.CHUNK_SIZE;
+
+    private final TileMap map;
+    private final ShaderProgram shader;
+
+    // Tint and texture region of every terrain type
+    private float[] terrainColors = new float[0];
+    private TextureRegion[] terrainRegions;
+    private final Texture whitePixel;
+
+    // One mesh per chunk, or null if the chunk has not been built
+    private final Mesh[] chunks;
+    // Map version each chunk was built from
+    private final int[] builtVersions;
+    // Frame each chunk was last drawn in
+    private final long[] lastDrawn;
+    private int residentChunks;
+    private long frame;
+
+    // Scratch buffer for building one chunk
+    private final float[] vertices = new float[TILES_PER_CHUNK * 4 * VERTEX_SIZE];
+    private final short[] indices = new short[TILES_PER_CHUNK * 6];
+
+    // One pixel per tile, for drawing the whole map when zoomed out
+    private Texture overviewTexture;
+    // The pixels of one chunk, uploaded into the overview texture on their own when the chunk changes
+    private ByteBuffer overviewPixels;
+    private IntBuffer overviewColors;
+    private Mesh overviewMesh;
+    private int[] overviewVersions;
+    private int overviewMapVersion = -1;
+
+    // Stats of the last frame
+    private int chunksDrawn;
+    private int chunksBuilt;
+    private boolean overviewDrawn;
+
+    /**
+     * Creates a renderer for a map, with terrain colors taken from the terrain definitions
+     * @param map the map to draw
+     */
+    public TileMapRenderer(TileMap map) {
+        this.map = map;
+        this.shader = SpriteBatch.createDefaultShader();
+        this.chunks = new Mesh[map.getChunksX() * map.getChunksY()];
+        this.builtVersions = new int[chunks.length];
+        this.lastDrawn = new long[chunks.length];
+
+        Pixmap pixel = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
+        pixel.setColor(Color.WHITE);
+        pixel.fill();
+        whitePixel = new Texture(pixel);
+        pixel.dispose();
+
+        // Every quad is two triangles, the same for every chunk
+        for (int i = 0, vertex = 0; i < indices.length; i += 6, vertex += 4) {
+            indices[i] = (short) vertex;
+            indices[i + 1] = (short) (vertex + 1);
+            indices[i + 2] = (short) (vertex + 2);
+            indices[i + 3] = (short) (vertex + 2);
+            indices[i + 4] = (short) (vertex + 3);
+            indices[i + 5] = (short) vertex;
+        }
+
+        DefinitionTable<TerrainDefinition> terrain = DefinitionRegistry.getInstance().getTable(TerrainDefinition.class);
+        Color[] colors = new Color[terrain == null ? 0 : terrain.size()];
+        for (int i = 0; i < colors.length; i++) {
+            TerrainDefinition definition = terrain.get(i);
+            colors[i] = definition == null || definition.color == null ? Color.MAGENTA : Color.valueOf(definition.color);
+        }
+        setTerrainColors(colors);
+    }
+
+    /**
+     * Sets the color of every terrain type, indexed by terrain. Tiles with a texture region are
+     * tinted with this color, tiles without one are filled with it.
+     * @param colors the colors
+     */
+    public void setTerrainColors(Color[] colors) {
+        terrainColors = new float[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            terrainColors[i] = colors[i].toFloatBits();
+        }
+        invalidate();
+    }
+
+    /**
+     * Sets the texture region of every terrain type, indexed by terrain. All regions must be on
+     * the same texture, for example an atlas page.
+     * @param regions the regions, or null to draw tiles as plain colors
+     */
+    public void setTerrainRegions(TextureRegion[] regions) {
+        if (regions != null) {
+            for (TextureRegion region : regions) {
+                if (region != null && region.getTexture() != regions[0].getTexture()) {
+                    throw new IllegalArgumentException("Terrain regions must all be on the same texture");
+                }
+            }
+        }
+        terrainRegions = regions;
+        invalidate();
+    }
+
+    /**
+     * Draws the part of the map visible to a camera. Must not be called between a batch's begin and end.
+     * @param camera the camera, with its matrices already updated
+     */
+    public void render(OrthographicCamera camera) {
+        frame++;
+        chunksDrawn = 0;
+        chunksBuilt = 0;
+        overviewDrawn = false;
+
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        shader.bind();
+        shader.setUniformMatrix("u_projTrans", camera.combined);
+        shader.setUniformi("u_texture", 0);
+
+        float pixelsPerTile = TileMap.TILE_SIZE / camera.zoom * Gdx.graphics.getWidth() / camera.viewportWidth;
+        if (pixelsPerTile < OVERVIEW_PIXELS_PER_TILE) {
+            renderOverview();
+        } else {
+            renderChunks(camera);
+        }
+    }
+
+    /**
+     * Draws every chunk intersecting the camera's view, building chunks that are missing or out of date
+     * @param camera the camera
+     */
+    private void renderChunks(OrthographicCamera camera) {
+        // The view of an unrotated orthographic camera is a rectangle, so the visible chunks are a range
+        float chunkMeters = TileMap.CHUNK_SIZE * TileMap.TILE_SIZE;
+        float halfWidth = camera.viewportWidth * camera.zoom / 2f;
+        float halfHeight = camera.viewportHeight * camera.zoom / 2f;
+        int startX = Math.max(0, (int) Math.floor((camera.position.x - halfWidth) / chunkMeters));
+        int startY = Math.max(0, (int) Math.floor((camera.position.y - halfHeight) / chunkMeters));
+        int endX = Math.min(map.getChunksX() - 1, (int) Math.floor((camera.position.x + halfWidth) / chunkMeters));
+        int endY = Math.min(map.getChunksY() - 1, (int) Math.floor((camera.position.y + halfHeight) / chunkMeters));
+
+        getTexture().bind(0);
+        for (int chunkY = startY; chunkY <= endY; chunkY++) {
+            for (int chunkX = startX; chunkX <= endX; chunkX++) {
+                int index = chunkY * map.getChunksX() + chunkX;
+                Mesh mesh = chunks[index];
+                if (mesh == null || builtVersions[index] != map.getChunkVersion(chunkX, chunkY)) {
+                    mesh = buildChunk(chunkX, chunkY);
+                }
+                mesh.render(shader, GL20.GL_TRIANGLES);
+                lastDrawn[index] = frame;
+                chunksDrawn++;
+            }
+        }
+
+        if (residentChunks > MAX_RESIDENT_CHUNKS) {
+            releaseStaleChunks();
+        }
+    }
+
+    /**
+     * Builds or rebuilds the mesh of a chunk
+     * @param chunkX the chunk column
+     * @param chunkY the chunk row
+     * @return the mesh
+     */
+    private Mesh buildChunk(int chunkX, int chunkY) {
+        int startX = chunkX * TileMap.CHUNK_SIZE;
+        int startY = chunkY * TileMap.CHUNK_SIZE;
+        int endX = Math.min(map.getWidth(), startX + TileMap.CHUNK_SIZE);
+        int endY = Math.min(map.getHeight(), startY + TileMap.CHUNK_SIZE);
+        short[] tiles = map.getTiles();
+        int width = map.getWidth();
+        float size = TileMap.TILE_SIZE;
+
+        int offset = 0;
+        for (int y = startY; y < endY; y++) {
+            float y0 = y * size;
+            float y1 = y0 + size;
+            for (int x = startX; x < endX; x++) {
+                int terrain = tiles[y * width + x];
+                float color = terrain < terrainColors.length ? terrainColors[terrain] : Color.WHITE_FLOAT_BITS;
+                float u = 0, v = 0, u2 = 1, v2 = 1;
+                if (terrainRegions != null && terrain < terrainRegions.length && terrainRegions[terrain] != null) {
+                    TextureRegion region = terrainRegions[terrain];
+                    u = region.getU();
+                    v = region.getV();
+                    u2 = region.getU2();
+                    v2 = region.getV2();
+                }
+                float x0 = x * size;
+                float x1 = x0 + size;
+                offset = putVertex(offset, x0, y0, color, u, v2);
+                offset = putVertex(offset, x0, y1, color, u, v);
+                offset = putVertex(offset, x1, y1, color, u2, v);
+                offset = putVertex(offset, x1, y0, color, u2, v2);
+            }
+        }
+
+        int index = chunkY * map.getChunksX() + chunkX;
+        Mesh mesh = chunks[index];
+        if (mesh == null) {
+            int tileCount = (endX - startX) * (endY - startY);
+            mesh = new Mesh(true, tileCount * 4, tileCount * 6,
+                new VertexAttribute(VertexAttributes.Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+                VertexAttribute.ColorPacked(),
+                new VertexAttribute(VertexAttributes.Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+            mesh.setIndices(indices, 0, tileCount * 6);
+            chunks[index] = mesh;
+            residentChunks++;
+        }
+        mesh.setVertices(vertices, 0, offset);
+        builtVersions[index] = map.getChunkVersion(chunkX, chunkY);
+        chunksBuilt++;
+        return mesh;
+    }
+
+    private int putVertex(int offset, float x, float y, float color, float u, float v) {
+        vertices[offset] = x;
+        vertices[offset + 1] = y;
+        vertices[offset + 2] = color;
+        vertices[offset + 3] = u;
+        vertices[offset + 4] = v;
+        return offset + VERTEX_SIZE;
+    }
+
+    /**
+     * Releases the meshes of the chunks that were drawn longest ago, down to half the resident limit
+     */
+    private void releaseStaleChunks() {
+        long[] sorted = new long[residentChunks];
+        int count = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                sorted[count++] = lastDrawn[i];
+            }
+        }
+        Arrays.sort(sorted);
+        long cutoff = Math.min(sorted[count - MAX_RESIDENT_CHUNKS / 2], frame - 1);
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null && lastDrawn[i] < cutoff) {
+                chunks[i].dispose();
+                chunks[i] = null;
+                residentChunks--;
+            }
+        }
+        logger.debug("Released chunk meshes, {} resident", residentChunks);
+    }
+
+    /**
+     * Draws the whole map as one quad with a pixel per tile, uploading the pixels of changed chunks
+     */
+    private void renderOverview() {
+        if (overviewTexture == null) {
+            createOverview();
+        }
+        if (overviewMapVersion != map.getVersion()) {
+            overviewTexture.bind(0);
+            for (int chunkY = 0; chunkY < map.getChunksY(); chunkY++) {
+                for (int chunkX = 0; chunkX < map.getChunksX(); chunkX++) {
+                    int index = chunkY * map.getChunksX() + chunkX;
+                    if (overviewVersions[index] != map.getChunkVersion(chunkX, chunkY)) {
+                        updateOverview(chunkX, chunkY);
+                        overviewVersions[index] = map.getChunkVersion(chunkX, chunkY);
+                    }
+                }
+            }
+            overviewMapVersion = map.getVersion();
+        }
+        overviewTexture.bind(0);
+        overviewMesh.render(shader, GL20.GL_TRIANGLES);
+        overviewDrawn = true;
+    }
+
+    /**
+     * Creates the overview texture and the quad it is drawn on
+     */
+    private void createOverview() {
+        // Filled in chunk by chunk, every chunk is out of date at first
+        overviewTexture = new Texture(map.getWidth(), map.getHeight(), Pixmap.Format.RGBA8888);
+        overviewPixels = BufferUtils.newByteBuffer(TILES_PER_CHUNK * 4);
+        // Little endian, so the ABGR colors come out as the RGBA bytes the texture expects on any platform
+        overviewColors = overviewPixels.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        overviewVersions = new int[chunks.length];
+        Arrays.fill(overviewVersions, -1);
+        overviewMapVersion = -1;
+
+        float width = map.getWorldWidth();
+        float height = map.getWorldHeight();
+        float color = Color.WHITE_FLOAT_BITS;
+        // Pixmap rows go top to bottom, so the top of the texture is the top of the map
+        float[] quad = {
+            0, 0, color, 0, 1,
+            0, height, color, 0, 0,
+            width, height, color, 1, 0,
+            width, 0, color, 1, 1
+        };
+        overviewMesh = new Mesh(true, 4, 6,
+            new VertexAttribute(VertexAttributes.Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+            VertexAttribute.ColorPacked(),
+            new VertexAttribute(VertexAttributes.Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+        overviewMesh.setVertices(quad);
+        overviewMesh.setIndices(indices, 0, 6);
+    }
+
+    /**
+     * Uploads the pixels of one chunk into the overview texture, which must be bound
+     * @param chunkX the chunk column
+     * @param chunkY the chunk row
+     */
+    private void updateOverview(int chunkX, int chunkY) {
+        int startX = chunkX * TileMap.CHUNK_SIZE;
+        int startY = chunkY * TileMap.CHUNK_SIZE;
+        int endX = Math.min(map.getWidth(), startX + TileMap.CHUNK_SIZE);
+        int endY = Math.min(map.getHeight(), startY + TileMap.CHUNK_SIZE);
+        short[] tiles = map.getTiles();
+        overviewColors.clear();
+        // Texture rows go top to bottom, so the chunk's top row comes first
+        for (int y = endY - 1; y >= startY; y--) {
+            for (int x = startX; x < endX; x++) {
+                int terrain = tiles[y * map.getWidth() + x];
+                overviewColors.put(terrain < terrainColors.length ? NumberUtils.floatToIntColor(terrainColors[terrain]) : 0xffffffff);
+            }
+        }
+        // Edge chunks are smaller, their rows are packed just as tightly
+        overviewPixels.position(0);
+        Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, startX, map.getHeight() - endY, endX - startX, endY - startY,
+            GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, overviewPixels);
+    }
+
+    /**
+     * Gets the texture tiles are drawn with
+     * @return the terrain texture, or a white pixel when tiles are plain colors
+     */
+    private Texture getTexture() {
+        if (terrainRegions != null && terrainRegions.length > 0 && terrainRegions[0] != null) {
+            return terrainRegions[0].getTexture();
+        }
+        return whitePixel;
+    }
+
+    /**
+     * Marks every chunk as out of date, after the colors or regions changed
+     */
+    private void invalidate() {
+        Arrays.fill(builtVersions, -1);
+        if (overviewVersions != null) {
+            Arrays.fill(overviewVersions, -1);
+        }
+        overviewMapVersion = -1;
+    }
+
+    /**
+     * Gets the number of chunks drawn in the last frame
+     * @return the chunk count, 0 if the overview was drawn
+     */
+    public int getChunksDrawn() {
+        return chunksDrawn;
+    }
+
+    /**
+     * Gets the number of chunks built or rebuilt in the last frame
+     * @return the chunk count
+     */
+    public int getChunksBuilt() {
+        return chunksBuilt;
+    }
+
+    /**
+     * Gets the number of chunk meshes on the GPU
+     * @return the chunk count
+     */
+    public int getResidentChunks() {
+        return residentChunks;
+    }
+
+    /**
+     * Checks if the last frame drew the overview instead of chunks
+     * @return true if the map was zoomed out far enough for the overview
+     */
+    public boolean isOverviewDrawn() {
+        return overviewDrawn;
+    }
+
+    /**
+     * Gets the map being drawn
+     * @return the map
+     */
+    public TileMap getMap() {
+        return map;
+    }
+
+    @Override
+    public void appendStats(StringBuilder text) {
+        text.append("Terrain: ");
+        if (overviewDrawn) {
+            text.append("overview");
+        } else {
+            text.append(chunksDrawn).append(" chunks drawn");
+        }
+        text.append(", ").append(chunksBuilt).append(" built, ").append(residentChunks).append(" on the GPU");
+    }
+
+    @Override
+    public void dispose() {
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                chunks[i].dispose();
+                chunks[i] = null;
+            }
+        }
+        residentChunks = 0;
+        if (overviewTexture != null) {
+            overviewTexture.dispose();
+            overviewMesh.dispose();
+            overviewTexture = null;
+            overviewPixels = null;
+            overviewColors = null;
+        }
+        whitePixel.dispose();
+        shader.dispose();
+    }
+}
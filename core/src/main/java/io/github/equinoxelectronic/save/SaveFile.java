@@ -0,0 +1,208 @@
+package io.github.equinoxelectronic.save;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import io.github.equinoxelectronic.entities.EntityStore;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A save written by {@link SaveWriter}, memory-mapped for reading.
+ *
+ * Opening only reads the header and the chunk table. Blocks are read straight from the mapped
+ * file, so uncompressed blocks are copied once, into the map, and compressed ones are inflated
+ * from it. Call {@link #dispose()} once the save has been read to free the inflater and let the
+ * mapping go.
+ */
+public class SaveFile {
+    private static final Log logger = new Log("SaveFile");
+
+    private final Path path;
+    // The mapped file, null once disposed so the mapping can be collected
+    private ByteBuffer data;
+    private final int flags;
+    private final int width;
+    private final int height;
+    private final long savedAt;
+    private final long entityOffset;
+    private final int entityLength;
+    private final int entityRawLength;
+
+    private final Inflater inflater = new Inflater();
+    private byte[] inflateBuffer = new byte[0];
+
+    private SaveFile(Path path, ByteBuffer data) throws IOException {
+        this.path = path;
+        this.data = data.order(SaveFormat.ORDER);
+        if (data.capacity() < SaveFormat.HEADER_SIZE || data.getInt(0) != SaveFormat.MAGIC) {
+            throw new IOException("Not a save file");
+        }
+        int version = data.getInt(4);
+        if (version != SaveFormat.VERSION) {
+            throw new IOException("Unsupported save version: " + version);
+        }
+        flags = data.getInt(8);
+        width = data.getInt(12);
+        height = data.getInt(16);
+        int chunkSize = data.getInt(20);
+        if (chunkSize != TileMap.CHUNK_SIZE) {
+            throw new IOException("Unsupported chunk size: " + chunkSize);
+        }
+        savedAt = data.getLong(24);
+        entityOffset = data.getLong(32);
+        entityLength = data.getInt(40);
+        entityRawLength = data.getInt(44);
+    }
+
+    /**
+     * Opens a save by memory-mapping it
+     * @param path the save file
+     * @return the opened save
+     */
+    public static SaveFile open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SaveFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not open save: " + path, e);
+        }
+    }
+
+    /**
+     * Reads the terrain and the layers saved with it
+     * @param map the map to fill, {@link #getWidth()} by {@link #getHeight()} tiles
+     * @param heights the array to fill with heights, or null to skip them
+     * @param resources the array to fill with resources, or null to skip them
+     */
+    public void readWorld(TileMap map, float[] heights, byte[] resources) {
+        checkOpen();
+        if (map.getWidth() != width || map.getHeight() != height) {
+            throw new IllegalArgumentException("Map is " + map.getWidth() + "x" + map.getHeight() + ", save is " + width + "x" + height);
+        }
+        long start = System.nanoTime();
+        int chunksX = map.getChunksX();
+        int chunkCount = chunksX * map.getChunksY();
+        short[] tiles = map.getTiles();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int entry = SaveFormat.HEADER_SIZE + chunk * SaveFormat.TABLE_ENTRY_SIZE;
+            ByteBuffer block = readBlock(data.getLong(entry), data.getInt(entry + 8), data.getInt(entry + 12));
+            SaveFormat.readChunk(block, tiles, (flags & SaveFormat.FLAG_HEIGHTS) != 0 ? heights : null,
+                (flags & SaveFormat.FLAG_RESOURCES) != 0 ? resources : null, flags, width, height, chunk % chunksX, chunk / chunksX);
+        }
+        map.markChanged(0, 0, width, height);
+        logger.debug("Read {} chunks from {} in {}ms", chunkCount, path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Replaces the entities of a store with the saved ones
+     * @param store the store, with its columns already added
+     */
+    public void readEntities(EntityStore store) {
+        if (entityRawLength == 0) {
+            store.clear();
+            return;
+        }
+        checkOpen();
+        store.read(readBlock(entityOffset, entityLength, entityRawLength));
+    }
+
+    /**
+     * Gets the bytes of a block, inflated if it was compressed
+     */
+    private ByteBuffer readBlock(long offset, int length, int rawLength) {
+        // The table comes from the file, so a damaged one must not be able to wrap an int or read past the end
+        if (offset < SaveFormat.HEADER_SIZE || length < 0 || rawLength < 0 || offset + length > data.capacity()) {
+            throw new GdxRuntimeException("Block outside of save: " + path);
+        }
+        ByteBuffer stored = data.duplicate();
+        stored.limit((int) (offset + length)).position((int) offset);
+        stored = stored.slice().order(SaveFormat.ORDER);
+        if (length == rawLength) {
+            return stored;
+        }
+
+        // Java 8's inflater only takes arrays, so the mapped bytes are copied out first
+        byte[] input = new byte[length];
+        stored.get(input);
+        if (inflateBuffer.length < rawLength) {
+            inflateBuffer = new byte[rawLength];
+        }
+        inflater.reset();
+        inflater.setInput(input);
+        try {
+            int inflated = 0;
+            while (inflated < rawLength) {
+                int count = inflater.inflate(inflateBuffer, inflated, rawLength - inflated);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new GdxRuntimeException("Truncated block in save: " + path);
+                }
+                inflated += count;
+            }
+        } catch (DataFormatException e) {
+            throw new GdxRuntimeException("Corrupt block in save: " + path, e);
+        }
+        return ByteBuffer.wrap(inflateBuffer, 0, rawLength).order(SaveFormat.ORDER);
+    }
+
+    /**
+     * Releases the inflater and the mapped file. The save can't be read afterwards.
+     */
+    public void dispose() {
+        inflater.end();
+        inflateBuffer = new byte[0];
+        // Java 8 can't unmap a buffer directly, the mapping is released once it is collected
+        data = null;
+    }
+
+    private void checkOpen() {
+        if (data == null) {
+            throw new GdxRuntimeException("Save has been disposed: " + path);
+        }
+    }
+
+    /**
+     * Gets the width of the saved map
+     * @return the width in tiles
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the saved map
+     * @return the height in tiles
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Checks if the save holds heights
+     * @return true if it does
+     */
+    public boolean hasHeights() {
+        return (flags & SaveFormat.FLAG_HEIGHTS) != 0;
+    }
+
+    /**
+     * Checks if the save holds resources
+     * @return true if it does
+     */
+    public boolean hasResources() {
+        return (flags & SaveFormat.FLAG_RESOURCES) != 0;
+    }
+
+    /**
+     * Gets the time the save was written
+     * @return the time in milliseconds since the epoch
+     */
+    public long getSavedAt() {
+        return savedAt;
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.equinoxelectronic.save;
+
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The layout of a save file, shared by {@link SaveWriter} and {@link SaveFile}.
+ *
+ * Layout (little-endian, like the machines the game runs on, so columns are copied without
+ * swapping bytes):
+ * <pre>
+ * header      magic, version, flags, width, height, chunk size, save time,
+ *             entity block offset, length and uncompressed length, padded to {@link #HEADER_SIZE}
+ * chunk table per chunk, row by row from the bottom: block offset, length and uncompressed length
+ * blocks      the chunk and entity blocks, in any order
+ * </pre>
+ * A chunk block holds the chunk's tiles, then its heights and resources if the flags say so,
+ * each row by row. The entity block is what {@link io.github.equinoxelectronic.entities.EntityStore#write}
+ * writes. A block whose length equals its uncompressed length is stored as-is, otherwise it is
+ * deflated.
+ *
+ * The table has a fixed place for every chunk, so an incremental save appends the chunks that
+ * changed and points their table entries at them, leaving the rest of the file alone.
+ */
+final class SaveFormat {
+    static final int MAGIC = 0x43485356; // "CHSV"
+    static final int VERSION = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_SIZE = 64;
+    static final int TABLE_ENTRY_SIZE = 16;
+
+    /** Blocks are deflated where it makes them smaller */
+    static final int FLAG_COMPRESSED = 1;
+    /** Chunk blocks hold heights */
+    static final int FLAG_HEIGHTS = 2;
+    /** Chunk blocks hold resources */
+    static final int FLAG_RESOURCES = 4;
+
+    private SaveFormat() {
+    }
+
+    /**
+     * Gets the uncompressed size of a chunk block
+     * @param tiles the number of tiles in the chunk
+     * @param flags the file's flags
+     * @return the size in bytes
+     */
+    static int chunkSize(int tiles, int flags) {
+        int size = tiles * 2;
+        if ((flags & FLAG_HEIGHTS) != 0) {
+            size += tiles * 4;
+        }
+        if ((flags & FLAG_RESOURCES) != 0) {
+            size += tiles;
+        }
+        return size;
+    }
+
+    /**
+     * Gets the width of a chunk, which is smaller at the right edge of maps not a whole number of chunks wide
+     * @param chunkX the chunk column
+     * @param mapWidth the map width in tiles
+     * @return the width in tiles
+     */
+    static int chunkWidth(int chunkX, int mapWidth) {
+        return Math.min(TileMap.CHUNK_SIZE, mapWidth - chunkX * TileMap.CHUNK_SIZE);
+    }
+
+    /**
+     * Gets the height of a chunk, which is smaller at the top edge of maps not a whole number of chunks high
+     * @param chunkY the chunk row
+     * @param mapHeight the map height in tiles
+     * @return the height in tiles
+     */
+    static int chunkHeight(int chunkY, int mapHeight) {
+        return Math.min(TileMap.CHUNK_SIZE, mapHeight - chunkY * TileMap.CHUNK_SIZE);
+    }
+
+    /**
+     * Copies the rows of one chunk out of a layer
+     * @param layer the layer, a short, float or byte array with one value per tile
+     * @param chunk an array of the same type with one value per tile of the chunk
+     * @param width the map width in tiles
+     * @param height the map height in tiles
+     */
+    static void copyChunk(Object layer, Object chunk, int width, int height, int chunkX, int chunkY) {
+        int startX = chunkX * TileMap.CHUNK_SIZE;
+        int startY = chunkY * TileMap.CHUNK_SIZE;
+        int chunkWidth = chunkWidth(chunkX, width);
+        int chunkHeight = chunkHeight(chunkY, height);
+        for (int y = 0; y < chunkHeight; y++) {
+            System.arraycopy(layer, (startY + y) * width + startX, chunk, y * chunkWidth, chunkWidth);
+        }
+    }
+
+    /**
+     * Writes the layers of one chunk as a block
+     * @param buffer the buffer to write to
+     * @param tiles the chunk's tiles
+     * @param heights the chunk's heights, or null if the flags leave them out
+     * @param resources the chunk's resources, or null if the flags leave them out
+     */
+    static void writeChunk(ByteBuffer buffer, short[] tiles, float[] heights, byte[] resources) {
+        buffer.asShortBuffer().put(tiles);
+        buffer.position(buffer.position() + tiles.length * 2);
+        if (heights != null) {
+            buffer.asFloatBuffer().put(heights);
+            buffer.position(buffer.position() + heights.length * 4);
+        }
+        if (resources != null) {
+            buffer.put(resources);
+        }
+    }
+
+    /**
+     * Copies a block back into one chunk of every layer
+     * @param buffer the uncompressed block
+     * @param heights the heights to fill, or null to skip them
+     * @param resources the resources to fill, or null to skip them
+     * @param flags the file's flags, saying which layers the block holds
+     */
+    static void readChunk(ByteBuffer buffer, short[] tiles, float[] heights, byte[] resources, int flags,
+                          int width, int height, int chunkX, int chunkY) {
+        int startX = chunkX * TileMap.CHUNK_SIZE;
+        int startY = chunkY * TileMap.CHUNK_SIZE;
+        int chunkWidth = chunkWidth(chunkX, width);
+        int chunkHeight = chunkHeight(chunkY, height);
+        for (int y = 0; y < chunkHeight; y++) {
+            buffer.asShortBuffer().get(tiles, (startY + y) * width + startX, chunkWidth);
+            buffer.position(buffer.position() + chunkWidth * 2);
+        }
+        if ((flags & FLAG_HEIGHTS) != 0) {
+            for (int y = 0; y < chunkHeight; y++) {
+                if (heights != null) {
+                    buffer.asFloatBuffer().get(heights, (startY + y) * width + startX, chunkWidth);
+                }
+                buffer.position(buffer.position() + chunkWidth * 4);
+            }
+        }
+        if ((flags & FLAG_RESOURCES) != 0 && resources != null) {
+            for (int y = 0; y < chunkHeight; y++) {
+                buffer.get(resources, (startY + y) * width + startX, chunkWidth);
+            }
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package io.github.equinoxelectronic.save;
+
+import io.github.equinoxelectronic.entities.EntityStore;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Saves the world and its entities to one file without pausing the game.
+ *
+ * {@link #save} copies the chunks that changed and the entity columns on the calling thread,
+ * which is only an array copy per chunk row and column, so the game carries on while a
+ * background thread encodes, compresses and writes the consistent snapshot.
+ *
+ * The writer remembers the chunk versions it last wrote, so the next save of the same map to
+ * the same file only appends the chunks that changed since and points the chunk table at them.
+ * Entities change every tick and are always written whole. Replaced blocks stay in the file as
+ * dead space until it makes up half the file, when the next save writes a fresh copy next to it
+ * and moves it over the old one. If the file was deleted since the last save, the writer thread
+ * writes it whole again from the copies of unchanged chunks kept from earlier saves.
+ *
+ * The snapshot's arrays are kept and reused by the next save, so a writer holds on to a copy
+ * of the world. Heights and resources are saved with their chunk, so call
+ * {@link TileMap#markChanged} after editing them.
+ */
+public class SaveWriter {
+    private static final Log logger = new Log("SaveWriter");
+
+    private final Path file;
+    private final ExecutorService executor;
+    private boolean compressed = true;
+    private Future<?> pending;
+
+    // What the file holds, only touched by the writer thread or while no write is pending
+    private TileMap savedMap;
+    private int savedFlags;
+    private int[] savedVersions;
+    private long[] blockOffsets;
+    private int[] blockLengths;
+    private int[] blockRawLengths;
+    private long fileSize;
+    private long liveBytes;
+    // Reused by every save, as copying into existing arrays is several times quicker than allocating new ones
+    private Snapshot snapshot;
+
+    // Writer thread scratch
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressBuffer = new byte[0];
+
+    // Metrics of the last save
+    private volatile long lastSnapshotNanos;
+    private volatile long lastWriteNanos;
+    private volatile long lastBytesWritten;
+    private volatile int lastChunksWritten;
+    private volatile IOException lastError;
+
+    /**
+     * Creates a writer for one save file
+     * @param file the file to save to
+     */
+    public SaveWriter(Path file) {
+        this.file = file;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "save-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets whether blocks are deflated, which makes saves about half the size for more time on
+     * the writer thread. Changing it makes the next save a full one.
+     * @param compressed true to compress (the default)
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Takes a snapshot of the world and writes it in the background. Must be called between
+     * ticks, from the thread changing the map and entities.
+     * @param map the terrain
+     * @param heights the height of every tile, or null to leave heights out
+     * @param resources the resource of every tile, or null to leave resources out
+     * @param entities the entities, or null to save none
+     * @return false if the previous save is still being written, in which case nothing is saved
+     */
+    public boolean save(TileMap map, float[] heights, byte[] resources, EntityStore entities) {
+        if (isBusy()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        int flags = (compressed ? SaveFormat.FLAG_COMPRESSED : 0)
+            | (heights != null ? SaveFormat.FLAG_HEIGHTS : 0)
+            | (resources != null ? SaveFormat.FLAG_RESOURCES : 0);
+        // Whether the file still exists is checked on the writer thread, to keep file system calls off this one
+        boolean full = map != savedMap || flags != savedFlags || fileSize > liveBytes * 2;
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int chunksX = map.getChunksX();
+        int chunkCount = chunksX * map.getChunksY();
+        if (snapshot == null || snapshot.versions.length != chunkCount) {
+            snapshot = new Snapshot(chunkCount);
+        }
+        snapshot.map = map;
+        snapshot.flags = flags;
+        snapshot.full = full;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int chunkX = chunk % chunksX;
+            int chunkY = chunk / chunksX;
+            snapshot.versions[chunk] = map.getChunkVersion(chunkX, chunkY);
+            snapshot.changed[chunk] = full || snapshot.versions[chunk] != savedVersions[chunk];
+            if (!snapshot.changed[chunk]) {
+                continue;
+            }
+            int tiles = SaveFormat.chunkWidth(chunkX, width) * SaveFormat.chunkHeight(chunkY, height);
+            if (snapshot.tiles[chunk] == null) {
+                snapshot.tiles[chunk] = new short[tiles];
+            }
+            SaveFormat.copyChunk(map.getTiles(), snapshot.tiles[chunk], width, height, chunkX, chunkY);
+            if (heights != null) {
+                if (snapshot.heights[chunk] == null) {
+                    snapshot.heights[chunk] = new float[tiles];
+                }
+                SaveFormat.copyChunk(heights, snapshot.heights[chunk], width, height, chunkX, chunkY);
+            }
+            if (resources != null) {
+                if (snapshot.resources[chunk] == null) {
+                    snapshot.resources[chunk] = new byte[tiles];
+                }
+                SaveFormat.copyChunk(resources, snapshot.resources[chunk], width, height, chunkX, chunkY);
+            }
+        }
+        snapshot.entities = entities == null ? null : entities.copy(snapshot.entities);
+        lastSnapshotNanos = System.nanoTime() - start;
+
+        Snapshot taken = snapshot;
+        pending = executor.submit(() -> write(taken));
+        return true;
+    }
+
+    /**
+     * Checks if a save is still being written
+     * @return true while the writer thread is busy
+     */
+    public boolean isBusy() {
+        return pending != null && !pending.isDone();
+    }
+
+    /**
+     * Waits for the save being written, if any
+     */
+    public void finish() {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Save failed", e.getCause());
+        }
+    }
+
+    /**
+     * Finishes the save being written, stops the writer thread and frees the compressor
+     */
+    public void dispose() {
+        finish();
+        executor.shutdown();
+        boolean stopped = false;
+        try {
+            stopped = executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The writer thread may still be compressing if it didn't stop, so the deflater is left to finalization
+        if (stopped) {
+            deflater.end();
+        }
+    }
+
+    private void write(Snapshot snapshot) {
+        long start = System.nanoTime();
+        try {
+            // Every chunk's copy is up to date with the last save, so a missing file can be written whole from them
+            if (snapshot.full || !Files.exists(file)) {
+                writeFull(snapshot);
+            } else {
+                writeChanges(snapshot);
+            }
+            savedMap = snapshot.map;
+            savedFlags = snapshot.flags;
+            savedVersions = snapshot.versions.clone();
+            lastError = null;
+            lastWriteNanos = System.nanoTime() - start;
+            if (logger.isDebugEnabled()) {
+                logger.debug("Saved {} chunks to {} ({}KB written, {}KB file) in {}ms", lastChunksWritten, file, lastBytesWritten / 1024,
+                    fileSize / 1024, lastWriteNanos / 1_000_000);
+            }
+        } catch (IOException e) {
+            // The next save starts over with a full one
+            savedMap = null;
+            lastError = e;
+            logger.error("Could not save to {}", file, e);
+        }
+    }
+
+    /**
+     * Writes every block to a new file next to the old one, then moves it over the old one, so
+     * a save interrupted half way leaves the last one intact
+     */
+    private void writeFull(Snapshot snapshot) throws IOException {
+        int chunkCount = snapshot.versions.length;
+        blockOffsets = new long[chunkCount + 1];
+        blockLengths = new int[chunkCount + 1];
+        blockRawLengths = new int[chunkCount + 1];
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = SaveFormat.HEADER_SIZE + (long) chunkCount * SaveFormat.TABLE_ENTRY_SIZE;
+            for (int chunk = 0; chunk <= chunkCount; chunk++) {
+                position = writeBlock(channel, chunk, encode(snapshot, chunk), snapshot.flags, position);
+            }
+            writeIndex(channel, snapshot, false);
+            channel.force(false);
+            fileSize = position;
+            liveBytes = position;
+            lastChunksWritten = chunkCount;
+            lastBytesWritten = position;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Appends the changed chunks and the entities to the end of the file, then points the table
+     * at them. The old blocks are left where they are until the table no longer needs them.
+     */
+    private void writeChanges(Snapshot snapshot) throws IOException {
+        int chunkCount = snapshot.versions.length;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long position = fileSize;
+            int chunks = 0;
+            for (int chunk = 0; chunk <= chunkCount; chunk++) {
+                if (chunk < chunkCount && !snapshot.changed[chunk]) {
+                    continue;
+                }
+                liveBytes -= blockLengths[chunk];
+                position = writeBlock(channel, chunk, encode(snapshot, chunk), snapshot.flags, position);
+                liveBytes += blockLengths[chunk];
+                chunks += chunk < chunkCount ? 1 : 0;
+            }
+            // The new blocks must be on disk before anything points at them
+            channel.force(false);
+            writeIndex(channel, snapshot, true);
+            channel.force(false);
+            lastBytesWritten = position - fileSize;
+            lastChunksWritten = chunks;
+            fileSize = position;
+        }
+    }
+
+    /**
+     * Turns a chunk or the entities of a snapshot into an uncompressed block
+     * @param index the chunk index, or the chunk count for the entity block
+     * @return the block
+     */
+    private ByteBuffer encode(Snapshot snapshot, int index) {
+        ByteBuffer block;
+        if (index == snapshot.versions.length) {
+            block = ByteBuffer.allocate(snapshot.entities == null ? 0 : snapshot.entities.getWriteSize()).order(SaveFormat.ORDER);
+            if (snapshot.entities != null) {
+                snapshot.entities.write(block);
+            }
+        } else {
+            block = ByteBuffer.allocate(SaveFormat.chunkSize(snapshot.tiles[index].length, snapshot.flags)).order(SaveFormat.ORDER);
+            SaveFormat.writeChunk(block, snapshot.tiles[index],
+                (snapshot.flags & SaveFormat.FLAG_HEIGHTS) != 0 ? snapshot.heights[index] : null,
+                (snapshot.flags & SaveFormat.FLAG_RESOURCES) != 0 ? snapshot.resources[index] : null);
+        }
+        block.flip();
+        return block;
+    }
+
+    /**
+     * Compresses a block if the file is compressed and writes it
+     * @param index the chunk index, or the chunk count for the entity block
+     * @return the position after the block
+     */
+    private long writeBlock(FileChannel channel, int index, ByteBuffer block, int flags, long position) throws IOException {
+        int rawLength = block.remaining();
+        ByteBuffer stored = (flags & SaveFormat.FLAG_COMPRESSED) != 0 ? compress(block) : block;
+        blockOffsets[index] = position;
+        blockLengths[index] = stored.remaining();
+        blockRawLengths[index] = rawLength;
+        while (stored.hasRemaining()) {
+            position += channel.write(stored, position);
+        }
+        return position;
+    }
+
+    /**
+     * Deflates a block if that makes it smaller
+     * @param block the uncompressed block
+     * @return the block itself, or a buffer over the compressed bytes
+     */
+    private ByteBuffer compress(ByteBuffer block) {
+        int length = block.remaining();
+        if (compressBuffer.length < length) {
+            compressBuffer = new byte[length];
+        }
+        deflater.reset();
+        deflater.setInput(block.array(), block.arrayOffset() + block.position(), length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished() && compressedLength < length) {
+            compressedLength += deflater.deflate(compressBuffer, compressedLength, length - compressedLength);
+        }
+        if (!deflater.finished() || compressedLength >= length) {
+            // Didn't shrink, so it is stored as-is
+            return block;
+        }
+        return ByteBuffer.wrap(compressBuffer, 0, compressedLength);
+    }
+
+    /**
+     * Writes the header and the table entries of the written chunks
+     * @param changesOnly true to only write the entries of the chunks in the snapshot
+     */
+    private void writeIndex(FileChannel channel, Snapshot snapshot, boolean changesOnly) throws IOException {
+        int chunkCount = snapshot.versions.length;
+        ByteBuffer header = ByteBuffer.allocate(SaveFormat.HEADER_SIZE).order(SaveFormat.ORDER);
+        header.putInt(SaveFormat.MAGIC);
+        header.putInt(SaveFormat.VERSION);
+        header.putInt(snapshot.flags);
+        header.putInt(snapshot.map.getWidth());
+        header.putInt(snapshot.map.getHeight());
+        header.putInt(TileMap.CHUNK_SIZE);
+        header.putLong(System.currentTimeMillis());
+        header.putLong(blockOffsets[chunkCount]);
+        header.putInt(blockLengths[chunkCount]);
+        header.putInt(blockRawLengths[chunkCount]);
+        header.position(0);
+
+        ByteBuffer table = ByteBuffer.allocate(chunkCount * SaveFormat.TABLE_ENTRY_SIZE).order(SaveFormat.ORDER);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            table.putLong(blockOffsets[chunk]);
+            table.putInt(blockLengths[chunk]);
+            table.putInt(blockRawLengths[chunk]);
+        }
+        if (!changesOnly) {
+            table.position(0);
+            writeFully(channel, table, SaveFormat.HEADER_SIZE);
+        } else {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                if (snapshot.changed[chunk]) {
+                    int offset = chunk * SaveFormat.TABLE_ENTRY_SIZE;
+                    table.limit(offset + SaveFormat.TABLE_ENTRY_SIZE).position(offset);
+                    writeFully(channel, table, SaveFormat.HEADER_SIZE + offset);
+                }
+            }
+        }
+        writeFully(channel, header, 0);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Gets the file this writer saves to
+     * @return the path
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the time the game thread spent copying the last snapshot
+     * @return the time in nanoseconds
+     */
+    public long getLastSnapshotNanos() {
+        return lastSnapshotNanos;
+    }
+
+    /**
+     * Gets the time the writer thread spent on the last save
+     * @return the time in nanoseconds
+     */
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * Gets the number of bytes the last save wrote
+     * @return the byte count
+     */
+    public long getLastBytesWritten() {
+        return lastBytesWritten;
+    }
+
+    /**
+     * Gets the number of chunks the last save wrote
+     * @return the chunk count
+     */
+    public int getLastChunksWritten() {
+        return lastChunksWritten;
+    }
+
+    /**
+     * Gets the size of the save file, dead space included
+     * @return the size in bytes
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Gets the error of the last save
+     * @return the error, or null if it succeeded
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * What {@link #save} copied on the game thread, for the writer thread. The arrays of a chunk
+     * are kept for the next save once it has been copied.
+     */
+    private static class Snapshot {
+        TileMap map;
+        int flags;
+        boolean full;
+        final int[] versions;
+        final boolean[] changed;
+        final short[][] tiles;
+        final float[][] heights;
+        final byte[][] resources;
+        EntityStore entities;
+
+        Snapshot(int chunkCount) {
+            this.versions = new int[chunkCount];
+            this.changed = new boolean[chunkCount];
+            this.tiles = new short[chunkCount][];
+            this.heights = new float[chunkCount][];
+            this.resources = new byte[chunkCount][];
+        }
+    }
+}
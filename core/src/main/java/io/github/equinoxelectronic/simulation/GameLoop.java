@@ -0,0 +1,238 @@
+package io.github.equinoxelectronic.simulation;
+
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.profiling.Profiler;
+import io.github.equinoxelectronic.rendering.Renderer;
+
+/**
+ * Runs the simulation at a fixed tick rate, however fast frames are drawn.
+ *
+ * Every frame, the real time that passed (times the game speed) is added to an accumulator,
+ * and as many ticks as fit are run. What is left over, as a fraction of a tick, is handed to
+ * the {@link Renderer} as the interpolation alpha, so things can be drawn between their
+ * previous and current simulated positions and move smoothly at any frame rate.
+ *
+ * If ticks take longer than the time they simulate, catching up would make every frame slower
+ * than the last. To avoid that, only {@link #setMaxTicksPerFrame(int) a few} ticks run per frame
+ * and the rest of the backlog is dropped, so the game slows down instead of freezing.
+ */
+public class GameLoop implements Profiler.Source {
+    private static final Log logger = new Log("GameLoop");
+
+    /** Default number of ticks per second of game time */
+    public static final int DEFAULT_TICK_RATE = 30;
+    /** Game speeds offered to the player */
+    public static final float[] SPEEDS = { 1f, 2f, 5f };
+    // Longer frames (a breakpoint, dragging the window) count as this long
+    private static final float MAX_FRAME_DELTA = 0.25f;
+    // Weight of the newest tick in the average tick time
+    private static final double AVERAGE_WEIGHT = 0.05;
+
+    private final Array<Simulation> simulations = new Array<>();
+    private final int tickRate;
+    private final double tickLength;
+    private double accumulator;
+    private float speed = 1f;
+    private boolean paused;
+    private int maxTicksPerFrame = 8;
+
+    // Metrics
+    private long totalTicks;
+    private long droppedTicks;
+    private int ticksLastFrame;
+    private long lastTickNanos;
+    private double averageTickNanos;
+    private long frameTickNanos;
+
+    /**
+     * Creates a loop running at {@link #DEFAULT_TICK_RATE}
+     */
+    public GameLoop() {
+        this(DEFAULT_TICK_RATE);
+    }
+
+    /**
+     * Creates a loop
+     * @param tickRate the number of ticks per second of game time
+     */
+    public GameLoop(int tickRate) {
+        if (tickRate <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive: " + tickRate);
+        }
+        this.tickRate = tickRate;
+        this.tickLength = 1.0 / tickRate;
+    }
+
+    /**
+     * Adds a simulation to run every tick, after the ones added before it
+     * @param simulation the simulation
+     */
+    public void addSimulation(Simulation simulation) {
+        simulations.add(simulation);
+    }
+
+    /**
+     * Removes a simulation
+     * @param simulation the simulation
+     */
+    public void removeSimulation(Simulation simulation) {
+        simulations.removeValue(simulation, true);
+    }
+
+    /**
+     * Runs the ticks due for this frame and updates the renderer's interpolation alpha.
+     * Call once per frame, before rendering.
+     * @param frameDelta the real time since the last frame in seconds
+     */
+    public void update(float frameDelta) {
+        ticksLastFrame = 0;
+        frameTickNanos = 0;
+        if (!paused) {
+            accumulator += Math.min(frameDelta, MAX_FRAME_DELTA) * speed;
+        }
+
+        float delta = (float) tickLength;
+        while (accumulator >= tickLength && ticksLastFrame < maxTicksPerFrame) {
+            long start = System.nanoTime();
+            for (int i = 0; i < simulations.size; i++) {
+                simulations.get(i).tick(delta);
+            }
+            lastTickNanos = System.nanoTime() - start;
+            frameTickNanos += lastTickNanos;
+            averageTickNanos = totalTicks == 0 ? lastTickNanos
+                : averageTickNanos + (lastTickNanos - averageTickNanos) * AVERAGE_WEIGHT;
+            accumulator -= tickLength;
+            ticksLastFrame++;
+            totalTicks++;
+        }
+
+        if (accumulator >= tickLength) {
+            // Too far behind to catch up; keep the partial tick and let the game run slower
+            long behind = (long) (accumulator / tickLength);
+            droppedTicks += behind;
+            accumulator -= behind * tickLength;
+            logger.debug("Simulation fell behind, dropped {} ticks (last tick took {}us)", behind, lastTickNanos / 1000);
+        }
+
+        for (int i = 0; i < simulations.size; i++) {
+            simulations.get(i).endFrame();
+        }
+        Renderer.setInterpolationAlpha((float) (accumulator / tickLength));
+    }
+
+    /**
+     * Sets how fast game time passes compared to real time, for example one of {@link #SPEEDS}
+     * @param speed the multiplier, 1 for normal speed
+     */
+    public void setSpeed(float speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Speed must be positive, pause the loop instead: " + speed);
+        }
+        this.speed = speed;
+        logger.info("Game speed set to {}x", speed);
+    }
+
+    /**
+     * Gets how fast game time passes compared to real time
+     * @return the multiplier
+     */
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Stops or resumes game time. While paused no ticks run and the interpolation alpha stays put.
+     * @param paused true to pause
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Checks if game time is stopped
+     * @return true if paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Sets how many ticks may run in one frame before the rest of the backlog is dropped.
+     * Should allow a few times the ticks of a normal frame at the highest speed.
+     * @param maxTicksPerFrame the limit
+     */
+    public void setMaxTicksPerFrame(int maxTicksPerFrame) {
+        this.maxTicksPerFrame = Math.max(1, maxTicksPerFrame);
+    }
+
+    /**
+     * Gets the number of ticks per second of game time
+     * @return the tick rate
+     */
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * Gets the number of ticks run since the loop was created, which is also the current game time in ticks
+     * @return the tick count
+     */
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    /**
+     * Gets the number of ticks skipped because the simulation could not keep up
+     * @return the dropped tick count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Gets the number of ticks run during the last frame
+     * @return the tick count
+     */
+    public int getTicksLastFrame() {
+        return ticksLastFrame;
+    }
+
+    /**
+     * Gets the time the last tick took to run
+     * @return the time in nanoseconds
+     */
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    /**
+     * Gets the recent average time of a tick
+     * @return the time in nanoseconds
+     */
+    public long getAverageTickNanos() {
+        return (long) averageTickNanos;
+    }
+
+    /**
+     * Gets the time spent running ticks during the last frame
+     * @return the time in nanoseconds
+     */
+    public long getFrameTickNanos() {
+        return frameTickNanos;
+    }
+
+    @Override
+    public void appendStats(StringBuilder text) {
+        text.append("Game loop: ").append(tickRate).append(" Hz, ").append(speed).append('x').append(paused ? " paused" : "")
+            .append(", ").append(ticksLastFrame).append(" ticks last frame taking ");
+        Profiler.appendMillis(text, frameTickNanos).append(" ms, average tick ");
+        Profiler.appendMillis(text, getAverageTickNanos()).append(" ms, ").append(droppedTicks).append(" dropped");
+    }
+
+    @Override
+    public String toString() {
+        return "GameLoop[" + tickRate + "Hz, " + speed + "x" + (paused ? " paused" : "") + ", " + ticksLastFrame
+            + " ticks last frame, tick " + getAverageTickNanos() / 1000 + "us, " + droppedTicks + " dropped]";
+    }
+}
@@ -0,0 +1,482 @@
+package io.github.equinoxelectronic.simulation;
+
+import com.badlogic.gdx.utils.Disposable;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.rendering.Renderer;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs ticks on a fork-join pool, with the world split into square regions that are updated in parallel.
+ *
+ * The world is kept in four {@link SimulationState snapshots}. The renderer reads the two
+ * newest finished ones ({@link #getPrevious()} and {@link #getCurrent()}) and interpolates
+ * between them, while the pool reads the current one and writes the next into the other two.
+ * Ticks requested by the {@link GameLoop} are queued and run in the background; finished work
+ * is only picked up at the end of a frame on the render thread, so the renderer never waits for
+ * the simulation and never sees a half-written snapshot. The price is that what is drawn lags
+ * up to a frame behind the tick count.
+ *
+ * If the pool cannot keep up with the tick rate, the {@link GameLoop} would keep queueing ticks
+ * that are cheap to request, and the backlog would grow without end. Only
+ * {@link #setMaxTicksBehind(int) a few} ticks may be queued or running at once; further ticks are
+ * dropped, so the game slows down instead of falling ever further behind.
+ *
+ * Each entity is written by exactly one region, reading only the previous snapshot, so results
+ * are the same for any number of threads. Every few ticks the entities are sorted by region,
+ * moving each region's entities next to each other in memory, which makes updating a region
+ * several times faster than reaching for entities spread over the whole world. Between sorts a
+ * region can hold entities that have just left it.
+ */
+public class ParallelSimulation implements Simulation, Disposable {
+    private static final Log logger = new Log("ParallelSimulation");
+
+    // Below this many entities a task updates its regions itself instead of splitting further
+    private static final int MIN_ENTITIES_PER_TASK = 4096;
+
+    private final ForkJoinPool pool;
+    private final RegionUpdater updater;
+    private final int xField;
+    private final int yField;
+    private final float regionSize;
+    private final int regionsX;
+    private final int regionsY;
+    private int repartitionInterval = 8;
+    private int maxTicksBehind = 8;
+
+    // Read by the renderer
+    private SimulationState previous;
+    private SimulationState current;
+    // Written by the pool
+    private SimulationState work;
+    private SimulationState spare;
+
+    // Where each entity comes from when sorting by region, or the identity between sorts,
+    // and where each region starts; owned by the running job
+    private int[] order = new int[0];
+    private int[] identity = new int[0];
+    private final int[] regionStarts;
+    private final int[] regionCursors;
+    private int[] regionOf = new int[0];
+    private int ticksSincePartition;
+
+    private int pendingTicks;
+    private float pendingDelta;
+    private ForkJoinTask<SimulationState> job;
+    private int jobTicks;
+    private long jobStart;
+
+    // Metrics
+    private long completedTicks;
+    private long droppedTicks;
+    private int droppedThisFrame;
+    private long lastJobNanos;
+    private int lastJobTicks;
+
+    /**
+     * Creates a simulation with no entities
+     * @param updater the code that advances each region
+     * @param fieldCount the number of float fields per entity
+     * @param xField the field holding the x position in meters
+     * @param yField the field holding the y position in meters
+     * @param worldWidth the width of the world in meters; entities outside count as being on the nearest edge
+     * @param worldHeight the height of the world in meters
+     * @param regionSize the width and height of a region in meters
+     * @param parallelism the number of threads, usually the number of cores
+     */
+    public ParallelSimulation(RegionUpdater updater, int fieldCount, int xField, int yField, float worldWidth,
+                              float worldHeight, float regionSize, int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.updater = updater;
+        this.xField = xField;
+        this.yField = yField;
+        this.regionSize = regionSize;
+        this.regionsX = Math.max(1, (int) Math.ceil(worldWidth / regionSize));
+        this.regionsY = Math.max(1, (int) Math.ceil(worldHeight / regionSize));
+        this.regionStarts = new int[regionsX * regionsY + 1];
+        this.regionCursors = new int[regionsX * regionsY];
+
+        previous = new SimulationState(fieldCount, 0);
+        current = new SimulationState(fieldCount, 0);
+        work = new SimulationState(fieldCount, 0);
+        spare = new SimulationState(fieldCount, 0);
+        logger.info("Simulating {}x{} regions on {} threads", regionsX, regionsY, parallelism);
+    }
+
+    /**
+     * Queues a tick; it runs in the background and shows up at the end of a later frame.
+     * The tick is dropped if {@link #getMaxTicksBehind()} ticks are already queued or running.
+     */
+    @Override
+    public void tick(float delta) {
+        if (getTicksBehind() >= maxTicksBehind) {
+            droppedThisFrame++;
+            return;
+        }
+        pendingTicks++;
+        pendingDelta = delta;
+    }
+
+    /**
+     * Picks up finished ticks and starts the queued ones
+     */
+    @Override
+    public void endFrame() {
+        if (droppedThisFrame > 0) {
+            droppedTicks += droppedThisFrame;
+            logger.debug("Simulation fell behind, dropped {} ticks (last job ran {} ticks in {}us)", droppedThisFrame,
+                lastJobTicks, lastJobNanos / 1000);
+            droppedThisFrame = 0;
+        }
+        if (job != null && job.isDone()) {
+            finishJob();
+        }
+        if (job == null && pendingTicks > 0) {
+            startJob();
+        }
+    }
+
+    private void startJob() {
+        jobTicks = pendingTicks;
+        pendingTicks = 0;
+        jobStart = System.nanoTime();
+        final int ticks = jobTicks;
+        final float delta = pendingDelta;
+        final SimulationState source = current;
+        final SimulationState first = work;
+        final SimulationState second = spare;
+        job = pool.submit(() -> {
+            SimulationState read = source;
+            SimulationState write = first;
+            for (int i = 0; i < ticks; i++) {
+                runTick(read, write, delta, i > 0);
+                read = write;
+                write = write == first ? second : first;
+            }
+            return read;
+        });
+    }
+
+    /**
+     * Picks up the result of the job, which must be done
+     */
+    private void finishJob() {
+        SimulationState result;
+        try {
+            // join rather than get, which would fail on a pending interrupt even though the job is done
+            result = job.join();
+        } catch (RuntimeException | Error e) {
+            job = null;
+            throw new RuntimeException("Simulation tick failed", e);
+        }
+        job = null;
+        lastJobNanos = System.nanoTime() - jobStart;
+        lastJobTicks = jobTicks;
+        completedTicks += jobTicks;
+
+        // The oldest snapshot is no longer drawn and becomes a work buffer
+        SimulationState released = previous;
+        previous = current;
+        current = result;
+        work = result == work ? spare : work;
+        spare = released;
+    }
+
+    /**
+     * Runs one tick on the pool: sorts entities by region if due, then updates every region
+     * @param compose true if read was itself written by this job, so the previous indices the
+     *                renderer uses have to be followed back through it
+     */
+    private void runTick(SimulationState read, SimulationState write, float delta, boolean compose) {
+        int count = read.getCount();
+        write.setCount(count);
+        int[] sources = identity;
+        if (identity.length != count || ticksSincePartition >= repartitionInterval) {
+            partition(read);
+            sources = order;
+            ticksSincePartition = 0;
+        }
+        ticksSincePartition++;
+        new RegionTask(read, write, sources, compose, delta, 0, regionStarts.length - 1).invoke();
+        write.invalidateIndex();
+    }
+
+    /**
+     * Sorts entity indices by region with a counting sort. Finding each entity's region is done
+     * in parallel; the counting itself is cheap enough to do on one thread.
+     */
+    private void partition(SimulationState state) {
+        int count = state.getCount();
+        if (order.length != count) {
+            order = new int[count];
+            regionOf = new int[count];
+            identity = new int[count];
+            for (int i = 0; i < count; i++) {
+                identity[i] = i;
+            }
+        }
+        new RegionOfTask(state, 0, count).invoke();
+
+        int regions = regionStarts.length - 1;
+        Arrays.fill(regionStarts, 0);
+        for (int i = 0; i < count; i++) {
+            regionStarts[regionOf[i] + 1]++;
+        }
+        for (int r = 0; r < regions; r++) {
+            regionStarts[r + 1] += regionStarts[r];
+        }
+        // Scatter in index order, so entities keep their relative order within a region
+        System.arraycopy(regionStarts, 0, regionCursors, 0, regions);
+        for (int i = 0; i < count; i++) {
+            order[regionCursors[regionOf[i]]++] = i;
+        }
+    }
+
+    private int regionAt(float x, float y) {
+        int regionX = Math.min(regionsX - 1, Math.max(0, (int) (x / regionSize)));
+        int regionY = Math.min(regionsY - 1, Math.max(0, (int) (y / regionSize)));
+        return regionY * regionsX + regionX;
+    }
+
+    /**
+     * Finds the region of a range of entities, splitting the range across threads
+     */
+    private class RegionOfTask extends RecursiveAction {
+        private final SimulationState state;
+        private final int from;
+        private final int to;
+
+        RegionOfTask(SimulationState state, int from, int to) {
+            this.state = state;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MIN_ENTITIES_PER_TASK * 4) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RegionOfTask(state, from, middle), new RegionOfTask(state, middle, to));
+                return;
+            }
+            float[] xs = state.getField(xField);
+            float[] ys = state.getField(yField);
+            for (int i = from; i < to; i++) {
+                regionOf[i] = regionAt(xs[i], ys[i]);
+            }
+        }
+    }
+
+    /**
+     * Updates a range of regions, splitting it across threads while it holds enough entities
+     */
+    private class RegionTask extends RecursiveAction {
+        private final SimulationState read;
+        private final SimulationState write;
+        private final int[] sources;
+        private final boolean compose;
+        private final float delta;
+        private final int from;
+        private final int to;
+
+        RegionTask(SimulationState read, SimulationState write, int[] sources, boolean compose, float delta, int from, int to) {
+            this.read = read;
+            this.write = write;
+            this.sources = sources;
+            this.compose = compose;
+            this.delta = delta;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && regionStarts[to] - regionStarts[from] > MIN_ENTITIES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RegionTask(read, write, sources, compose, delta, from, middle),
+                    new RegionTask(read, write, sources, compose, delta, middle, to));
+                return;
+            }
+            int fields = read.getFieldCount();
+            int[] readIds = read.getIds();
+            int[] writeIds = write.getIds();
+            int[] readPrevious = read.getPreviousIndices();
+            int[] writePrevious = write.getPreviousIndices();
+            for (int region = from; region < to; region++) {
+                int start = regionStarts[region];
+                int end = regionStarts[region + 1];
+                if (start == end) {
+                    continue;
+                }
+                for (int field = 0; field < fields; field++) {
+                    float[] source = read.getField(field);
+                    float[] target = write.getField(field);
+                    for (int i = start; i < end; i++) {
+                        target[i] = source[sources[i]];
+                    }
+                }
+                for (int i = start; i < end; i++) {
+                    int source = sources[i];
+                    writeIds[i] = readIds[source];
+                    writePrevious[i] = compose ? readPrevious[source] : source;
+                }
+                updater.update(region, read, write, sources, start, end, delta);
+            }
+        }
+    }
+
+    /**
+     * Waits for the running job, then returns the current snapshot so entities can be added,
+     * removed or changed outside of a tick. Call {@link #endEdit()} when done.
+     * @return the snapshot to edit; {@link SimulationState#setCount(int)} may be used on it
+     * @throws IllegalStateException if the thread was interrupted while waiting; the job is kept
+     *                               and the interrupt flag is set again
+     */
+    public SimulationState beginEdit() {
+        if (job != null) {
+            try {
+                job.get();
+            } catch (InterruptedException e) {
+                // The job is still writing to the work snapshots, so it can't be given up on
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the simulation", e);
+            } catch (ExecutionException e) {
+                logger.error("Simulation tick failed", e.getCause());
+            }
+            finishJob();
+        }
+        return current;
+    }
+
+    /**
+     * Finishes an edit, copying it to the previous snapshot as well so interpolation doesn't jump
+     */
+    public void endEdit() {
+        current.invalidateIndex();
+        previous.copyFrom(current);
+        int[] previousIndices = current.getPreviousIndices();
+        for (int i = 0; i < current.getCount(); i++) {
+            previousIndices[i] = i;
+        }
+    }
+
+    /**
+     * Runs every queued tick and waits for them, for tests, benchmarks and saving
+     */
+    public void flush() {
+        while (job != null || pendingTicks > 0) {
+            beginEdit();
+            endFrame();
+        }
+    }
+
+    /**
+     * Gets the newest finished snapshot, the one to draw at interpolation alpha 1
+     * @return the snapshot; only read it on the render thread
+     */
+    public SimulationState getCurrent() {
+        return current;
+    }
+
+    /**
+     * Gets the snapshot before the current one, the one to draw at interpolation alpha 0
+     * @return the snapshot; only read it on the render thread
+     */
+    public SimulationState getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Gets a field of an entity interpolated between the previous and current snapshot with the
+     * renderer's interpolation alpha, for drawing
+     * @param field the field number
+     * @param index the entity's index in the current snapshot
+     * @return the value to draw this frame
+     */
+    public float getInterpolated(int field, int index) {
+        float before = previous.getField(field)[current.getPreviousIndices()[index]];
+        return Renderer.interpolate(before, current.getField(field)[index]);
+    }
+
+    /**
+     * Sets how many ticks pass between sorting entities by region
+     * @param ticks the interval, 1 to sort every tick
+     */
+    public void setRepartitionInterval(int ticks) {
+        this.repartitionInterval = Math.max(1, ticks);
+    }
+
+    /**
+     * Sets how many ticks may be queued or running before further ticks are dropped.
+     * Should allow a few times the ticks of a normal frame at the highest speed.
+     * @param ticks the limit
+     */
+    public void setMaxTicksBehind(int ticks) {
+        this.maxTicksBehind = Math.max(1, ticks);
+    }
+
+    /**
+     * Gets how many ticks may be queued or running before further ticks are dropped
+     * @return the limit
+     */
+    public int getMaxTicksBehind() {
+        return maxTicksBehind;
+    }
+
+    /**
+     * Gets the number of regions the world is split into
+     * @return the region count
+     */
+    public int getRegionCount() {
+        return regionStarts.length - 1;
+    }
+
+    /**
+     * Gets the number of ticks finished and picked up so far
+     * @return the tick count
+     */
+    public long getCompletedTicks() {
+        return completedTicks;
+    }
+
+    /**
+     * Gets the number of ticks requested but not yet picked up
+     * @return the tick count
+     */
+    public int getTicksBehind() {
+        return pendingTicks + (job != null ? jobTicks : 0);
+    }
+
+    /**
+     * Gets the number of ticks dropped because the pool could not keep up
+     * @return the dropped tick count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Gets how long the last background job took, from start until it was picked up
+     * @return the time in nanoseconds
+     */
+    public long getLastJobNanos() {
+        return lastJobNanos;
+    }
+
+    /**
+     * Gets the number of ticks the last background job ran
+     * @return the tick count
+     */
+    public int getLastJobTicks() {
+        return lastJobTicks;
+    }
+
+    @Override
+    public void dispose() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.equinoxelectronic.simulation;
+
+/**
+ * Advances the entities of one region by a tick, for the {@link ParallelSimulation}.
+ *
+ * Regions are updated at the same time on different threads. To keep results the same however
+ * many threads there are, an updater may read anything from the previous snapshot but must only
+ * write the entities of the region it was given, and must not keep state between calls other
+ * than per region.
+ */
+public interface RegionUpdater {
+    /**
+     * Updates the entities of one region, which are at indices start to end - 1 in the next
+     * snapshot. Entities may have been reordered since the previous snapshot, so the entity at
+     * index i in next was at index sources[i] in previous:
+     * <pre>
+     * for (int i = start; i &lt; end; i++) {
+     *     nextX[i] = previousX[sources[i]] + previousVelocityX[sources[i]] * delta;
+     * }
+     * </pre>
+     * @param region the region number
+     * @param previous the snapshot after the last tick, read only
+     * @param next the snapshot to write; the region's entities already hold a copy of their previous values
+     * @param sources the index in previous of every entity in next
+     * @param start the first index in next that belongs to this region
+     * @param end one past the last index in next that belongs to this region
+     * @param delta the length of a tick in seconds
+     */
+    void update(int region, SimulationState previous, SimulationState next, int[] sources, int start, int end, float delta);
+}
@@ -0,0 +1,19 @@
+package io.github.equinoxelectronic.simulation;
+
+/**
+ * Game logic advanced by the {@link GameLoop} in fixed steps, independent of the frame rate.
+ */
+public interface Simulation {
+    /**
+     * Advances the simulation by one tick
+     * @param delta the length of a tick in seconds of game time, the same on every call
+     */
+    void tick(float delta);
+
+    /**
+     * Called once per frame after that frame's ticks, even if there were none.
+     * Simulations that run in the background use this to pick up finished work.
+     */
+    default void endFrame() {
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.equinoxelectronic.simulation;
+
+import java.util.Arrays;
+
+/**
+ * One snapshot of the simulated world: a number of float fields (position, velocity, health...)
+ * for every entity, each stored as its own array indexed by entity.
+ *
+ * The {@link ParallelSimulation} keeps several snapshots, so the renderer can read the last
+ * finished ticks while the next one is written. It also reorders entities now and then so
+ * entities in the same region sit next to each other in memory, so an entity's index is not
+ * stable: use its id, which moves along with it, to find it again.
+ */
+public class SimulationState {
+    private final float[][] fields;
+    private int[] ids;
+    private int[] previousIndices;
+    private int count;
+
+    // Index of every id, built when first needed after the order changed
+    private int[] indexById = new int[0];
+    private boolean indexValid;
+
+    /**
+     * Creates an empty snapshot
+     * @param fieldCount the number of fields per entity
+     * @param capacity the number of entities to make room for up front
+     */
+    public SimulationState(int fieldCount, int capacity) {
+        int size = Math.max(16, capacity);
+        fields = new float[fieldCount][size];
+        ids = new int[size];
+        previousIndices = new int[size];
+    }
+
+    /**
+     * Gets the values of one field for every entity. The array is replaced when the count grows
+     * past the capacity, so don't keep it.
+     * @param field the field number
+     * @return the values, indexed by entity; only the first {@link #getCount()} are used
+     */
+    public float[] getField(int field) {
+        return fields[field];
+    }
+
+    /**
+     * Gets the id of every entity, which stays with the entity when it is moved to another index.
+     * Ids are set by the game when adding entities, for example to an EntityStore slot.
+     * @return the ids, indexed by entity
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * Gets where every entity was in the snapshot before this one, to interpolate between them
+     * @return the previous indices, indexed by entity
+     */
+    public int[] getPreviousIndices() {
+        return previousIndices;
+    }
+
+    /**
+     * Finds an entity by id. The first call after the order changed takes time proportional to
+     * the number of entities; further calls are constant time.
+     * @param id the id, which must not be negative
+     * @return the entity's index, or -1 if no entity has the id
+     */
+    public int indexOf(int id) {
+        if (!indexValid) {
+            int maxId = -1;
+            for (int i = 0; i < count; i++) {
+                maxId = Math.max(maxId, ids[i]);
+            }
+            if (indexById.length <= maxId) {
+                indexById = new int[maxId + 1];
+            }
+            Arrays.fill(indexById, -1);
+            for (int i = 0; i < count; i++) {
+                if (ids[i] >= 0) {
+                    indexById[ids[i]] = i;
+                }
+            }
+            indexValid = true;
+        }
+        return id < indexById.length ? indexById[id] : -1;
+    }
+
+    /**
+     * Must be called after ids are changed or entities are moved, so {@link #indexOf(int)} looks again
+     */
+    public void invalidateIndex() {
+        indexValid = false;
+    }
+
+    /**
+     * Gets the number of fields per entity
+     * @return the field count
+     */
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * Gets the number of entities
+     * @return the entity count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of entities, growing the arrays if needed. New entities start with every
+     * field at 0 and an id of -1.
+     * @param count the entity count
+     */
+    public void setCount(int count) {
+        if (count > ids.length) {
+            int capacity = Math.max(count, ids.length * 2);
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = Arrays.copyOf(fields[i], capacity);
+            }
+            ids = Arrays.copyOf(ids, capacity);
+            previousIndices = Arrays.copyOf(previousIndices, capacity);
+        }
+        if (count > this.count) {
+            for (float[] field : fields) {
+                Arrays.fill(field, this.count, count, 0f);
+            }
+            Arrays.fill(ids, this.count, count, -1);
+            for (int i = this.count; i < count; i++) {
+                previousIndices[i] = i;
+            }
+        }
+        this.count = count;
+        indexValid = false;
+    }
+
+    /**
+     * Makes this snapshot an exact copy of another, with every entity at the same index as before
+     * @param other the snapshot to copy, with the same field count
+     */
+    public void copyFrom(SimulationState other) {
+        setCount(other.count);
+        for (int i = 0; i < fields.length; i++) {
+            System.arraycopy(other.fields[i], 0, fields[i], 0, count);
+        }
+        System.arraycopy(other.ids, 0, ids, 0, count);
+        for (int i = 0; i < count; i++) {
+            previousIndices[i] = i;
+        }
+        indexValid = false;
+    }
+}
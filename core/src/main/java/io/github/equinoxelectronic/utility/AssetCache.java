@@ -0,0 +1,242 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of which lazily loaded assets are resident and how much memory they use,
+ * and decides which ones to evict once the memory budget is exceeded.
+ * The least recently used asset is evicted first.
+ *
+ * The cache only does the bookkeeping; the {@link AssetManager} owns the assets themselves
+ * and disposes them when they are evicted.
+ */
+public class AssetCache {
+    // Stream buffers held by a playing Music
+    private static final long MUSIC_BYTES = 128 * 1024;
+    // Compressed audio expands to roughly this many times its size once decoded to PCM
+    private static final long COMPRESSED_AUDIO_RATIO = 10;
+
+    /**
+     * Called when an asset has been evicted and should be disposed.
+     */
+    public interface EvictionListener {
+        /**
+         * @param path the path to the asset
+         * @return false if the asset is still in use and was kept, in which case it counts as just used
+         */
+        boolean evicted(String path);
+    }
+
+    // Estimated size of every resident asset, in least recently used order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final EvictionListener listener;
+
+    private long budgetBytes;
+    private long estimatedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a new cache
+     * @param budgetBytes the memory budget in bytes
+     * @param listener told about every eviction
+     */
+    public AssetCache(long budgetBytes, EvictionListener listener) {
+        this.budgetBytes = budgetBytes;
+        this.listener = listener;
+    }
+
+    /**
+     * Records an access to an asset that is already resident
+     * @param path the path to the asset
+     */
+    void recordHit(String path) {
+        entries.get(path);
+        hits++;
+    }
+
+    /**
+     * Records an access to an asset that had to be loaded
+     */
+    void recordMiss() {
+        misses++;
+    }
+
+    /**
+     * Adds a newly loaded asset, evicting older ones if the budget is exceeded.
+     * The asset that was just added is never evicted, even if it is bigger than the budget.
+     * @param path the path to the asset
+     * @param bytes the estimated size of the asset
+     */
+    void admit(String path, long bytes) {
+        Long previous = entries.put(path, bytes);
+        if (previous != null) {
+            estimatedBytes -= previous;
+        }
+        estimatedBytes += bytes;
+        evictOverBudget(path);
+    }
+
+    /**
+     * Forgets an asset without evicting it, for example when it was unloaded by hand
+     * @param path the path to the asset
+     */
+    void remove(String path) {
+        Long bytes = entries.remove(path);
+        if (bytes != null) {
+            estimatedBytes -= bytes;
+        }
+    }
+
+    /**
+     * Forgets every asset and resets the counters
+     */
+    void clear() {
+        entries.clear();
+        estimatedBytes = 0;
+        resetStats();
+    }
+
+    /**
+     * Evicts least recently used assets until the cache fits in its budget
+     * @param keep an asset that must not be evicted, or null
+     */
+    private void evictOverBudget(String keep) {
+        ArrayList<String> kept = null;
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (estimatedBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            if (!listener.evicted(eldest.getKey())) {
+                if (kept == null) {
+                    kept = new ArrayList<>();
+                }
+                kept.add(eldest.getKey());
+                continue;
+            }
+            iterator.remove();
+            estimatedBytes -= eldest.getValue();
+            evictions++;
+        }
+        // Touched after iterating, since an access reorders the map
+        if (kept != null) {
+            for (String path : kept) {
+                entries.get(path);
+            }
+        }
+    }
+
+    /**
+     * Estimates how much memory an asset uses, on the GPU for textures and on the CPU otherwise
+     * @param asset the loaded asset
+     * @param file the file it was loaded from
+     * @return the estimated size in bytes
+     */
+    public static long estimateBytes(Object asset, FileHandle file) {
+        if (asset instanceof TextureRegion) {
+            Texture texture = ((TextureRegion) asset).getTexture();
+            return texture == null ? 0 : (long) texture.getWidth() * texture.getHeight() * 4;
+        }
+        if (asset instanceof Texture) {
+            Texture texture = (Texture) asset;
+            return (long) texture.getWidth() * texture.getHeight() * 4;
+        }
+        if (asset instanceof Sound) {
+            return "wav".equals(file.extension()) ? file.length() : file.length() * COMPRESSED_AUDIO_RATIO;
+        }
+        if (asset instanceof Music) {
+            return MUSIC_BYTES;
+        }
+        if (asset instanceof ObjectConverter.ShaderSource) {
+            return 2L * ((ObjectConverter.ShaderSource) asset).code.length();
+        }
+        if (asset instanceof String) {
+            return 2L * ((String) asset).length();
+        }
+        return file.length();
+    }
+
+    /**
+     * Changes the memory budget, evicting assets right away if the new budget is smaller
+     * @param budgetBytes the memory budget in bytes
+     */
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evictOverBudget(null);
+    }
+
+    /**
+     * Gets the memory budget
+     * @return the memory budget in bytes
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Gets the estimated memory used by all resident assets
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Gets the number of resident assets
+     * @return the number of resident assets
+     */
+    public int getResidentCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of accesses that found the asset resident
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of accesses that had to load the asset
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of assets evicted to stay within the budget
+     * @return the eviction count
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AssetCache[" + entries.size() + " assets, " + estimatedBytes / 1024 + "KB of "
+            + budgetBytes / 1024 + "KB, " + hits + " hits, " + misses + " misses, " + evictions + " evictions]";
+    }
+}
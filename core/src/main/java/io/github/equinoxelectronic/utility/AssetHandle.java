@@ -0,0 +1,43 @@
+package io.github.equinoxelectronic.utility;
+
+/**
+ * A typed reference to an asset, resolved once from its path.
+ *
+ * Fetching an asset through a handle with {@link AssetManager#get(AssetHandle)} is a plain
+ * array read, so handles should be used instead of paths anywhere an asset is looked up
+ * every frame. A handle stays valid when assets are reloaded, and can be resolved before
+ * the asset has finished loading.
+ * @param <T> the type of the asset
+ */
+public final class AssetHandle<T> {
+    final AssetStore<T> store;
+    final int index;
+    final String path;
+
+    AssetHandle(AssetStore<T> store, int index, String path) {
+        this.store = store;
+        this.index = index;
+        this.path = path;
+    }
+
+    /**
+     * Gets the index of the asset in the storage for its type
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the path the handle was resolved from
+     * @return the path to the asset
+     */
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "AssetHandle[" + path + " #" + index + "]";
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds the assets to load.
+ *
+ * Assets are listed in the {@code assets.txt} index written by the {@code generateAssetList}
+ * Gradle task, which works the same from the assets folder, from a jar and from a native image,
+ * and needs a single read instead of one directory listing per folder. Walking the directory
+ * is only a fallback for development, when no index has been generated yet.
+ */
+public class AssetIndex {
+    private static final Log logger = new Log("AssetIndex");
+
+    /** The name of the index file written by the Gradle build */
+    public static final String INDEX_FILE = "assets.txt";
+
+    private AssetIndex() {
+    }
+
+    /**
+     * Finds every asset in the specified directory
+     * @param directoryPath the asset directory
+     * @return the files keyed by asset path, or null if neither an index nor the directory was found
+     */
+    public static Map<String, FileHandle> find(String directoryPath) {
+        if (directoryPath == null || directoryPath.isEmpty()) {
+            logger.error("Directory path is null or empty");
+            return null;
+        }
+
+        long start = System.nanoTime();
+        File directory = new File(directoryPath);
+        FileHandle indexFile = null;
+        String prefix = "";
+
+        if (new File(directory, INDEX_FILE).exists()) {
+            // Running from the project root, with the index next to the assets
+            indexFile = Gdx.files.absolute(new File(directory, INDEX_FILE).getAbsolutePath());
+            prefix = directory.getAbsolutePath() + "/";
+        } else if (!directory.isDirectory() && Gdx.files.internal(INDEX_FILE).exists()) {
+            // Running from inside the assets folder, or from a jar or native image
+            indexFile = Gdx.files.internal(INDEX_FILE);
+        }
+
+        Map<String, FileHandle> files;
+        if (indexFile != null) {
+            Array<String> paths = read(indexFile);
+            files = new LinkedHashMap<>(paths.size * 2);
+            for (String path : paths) {
+                files.put(path, Gdx.files.getFileHandle(prefix + path, indexFile.type()));
+            }
+            logger.info("Found {} assets in {} in {}ms", files.size(), indexFile.path(),
+                (System.nanoTime() - start) / 1_000_000);
+        } else if (directory.isDirectory()) {
+            files = walk(directory);
+            logger.info("No {} found, walked {} for {} assets in {}ms", INDEX_FILE, directoryPath, files.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        } else {
+            logger.error("Directory does not exist or is not a directory: {}", directoryPath);
+            return null;
+        }
+        return files;
+    }
+
+    /**
+     * Reads the asset paths from an index file
+     * @param indexFile the index file
+     * @return the asset paths, relative to the folder the index is in
+     */
+    public static Array<String> read(FileHandle indexFile) {
+        try (Reader reader = indexFile.reader(8192, "UTF-8")) {
+            return parse(reader);
+        } catch (IOException e) {
+            logger.error("Could not read asset index: {}", indexFile.path(), e);
+            return new Array<>(String.class);
+        }
+    }
+
+    /**
+     * Parses an index, one path per line
+     * @param reader the index contents
+     * @return the asset paths
+     * @throws IOException if the index could not be read
+     */
+    public static Array<String> parse(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        Array<String> paths = new Array<>(String.class);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.equals(INDEX_FILE)) {
+                // The index is written with the build machine's separator
+                paths.add(line.replace('\\', '/'));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Finds every file in a directory by walking it recursively. An index file at the top is left out, as it is when reading the index
+     * @param directory the directory to walk
+     * @return the files keyed by asset path
+     */
+    public static Map<String, FileHandle> walk(File directory) {
+        Map<String, FileHandle> files = new LinkedHashMap<>();
+        walkRecursively(directory, "", files);
+        return files;
+    }
+
+    /**
+     * Recursively finds files in a directory
+     * @param directory the directory to search
+     * @param path the current path prefix
+     * @param files the map to add the files to
+     */
+    private static void walkRecursively(File directory, String path, Map<String, FileHandle> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+
+        for (File file : children) {
+            String filePath = path.isEmpty() ? file.getName() : path + "/" + file.getName();
+
+            if (file.isDirectory()) {
+                walkRecursively(file, filePath, files);
+            } else if (!filePath.equals(INDEX_FILE)) {
+                files.put(filePath, new FileHandle(file));
+            }
+        }
+    }
+}
@@ -1,28 +1,70 @@
 package io.github.equinoxelectronic.utility;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+import io.github.equinoxelectronic.data.DefinitionRegistry;
+import io.github.equinoxelectronic.data.DefinitionSet;
+import io.github.equinoxelectronic.logging.Log;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A simplified asset manager that loads all assets at startup.
+ * Assets can be loaded directly with {@link #loadAssets(String)}, or in the background
+ * with {@link #loadAssetsAsync(String)} while the game keeps rendering.
  */
 public class AssetManager {
     // Singleton instance
     private static AssetManager instance;
 
     // Logger for debugging
-    private static final Logger logger = new Logger("AssetManager", Logger.DEBUG);
+    private static final Log logger = new Log("AssetManager");
 
     // Map to store all loaded assets
     private HashMap<String, Object> assets;
 
+    // Dense per-type storage, looked up through handles
+    private final AssetStore<TextureRegion> textures = new AssetStore<>(TextureRegion.class);
+    private final AssetStore<Sound> sounds = new AssetStore<>(Sound.class);
+    private final AssetStore<Music> music = new AssetStore<>(Music.class);
+    private final AssetStore<String> texts = new AssetStore<>(String.class);
+
+    // Pairs up shader sources and owns the compiled programs
+    private final ShaderLibrary shaders = new ShaderLibrary();
+
+    // The background load in progress, if any
+    private AsyncAssetLoader loader;
+
+    // Files that can be loaded on first access, and the cache tracking them (lazy mode only)
+    private Map<String, FileHandle> lazyFiles;
+    private AssetCache cache;
+    // The shader files loaded for each resident program in lazy mode, cached as one entry named after the program
+    private final HashMap<String, ArrayList<String>> shaderUnits = new HashMap<>();
+
+    // Reloads assets when their files change, in development only
+    private AssetWatcher watcher;
+
+    // The pack assets are read from instead of the asset directory, if one is open
+    private AssetPack pack;
+
+    // Settings for packing small images into shared pages, or null to give every image its own texture
+    private AtlasPacker.Settings atlasSettings;
+    // Atlases owning textures shared by many regions
+    private final Array<TextureAtlas> atlases = new Array<>();
+    private final ObjectSet<Texture> atlasPages = new ObjectSet<>();
+
     /**
      * Private constructor to prevent instantiation
      */
@@ -46,77 +88,638 @@ public class AssetManager {
      * @param directoryPath the directory to load assets from
      */
     public void loadAssets(String directoryPath) {
-        logger.info("Loading assets from: " + directoryPath);
+        logger.info("Loading assets from: {}", directoryPath);
 
-        if (directoryPath == null || directoryPath.isEmpty()) {
-            logger.error("Directory path is null or empty");
+        Map<String, FileHandle> files = findAssets(directoryPath);
+        if (files == null) {
             return;
         }
 
-        File directory = new File(directoryPath);
-        if (!directory.exists() || !directory.isDirectory()) {
-            logger.error("Directory does not exist or is not a directory: " + directoryPath);
-            return;
+        // Clear existing assets
+        cancelLoading();
+        disableLazyLoading();
+        clearAssets();
+
+        AtlasPacker packer = createAtlasPacker(files);
+        for (Map.Entry<String, FileHandle> entry : files.entrySet()) {
+            String path = entry.getKey();
+            if (packer != null && packer.isCached(path)) {
+                putAsset(path, packer.getCachedRegion(path));
+                continue;
+            }
+
+            Object decoded = ObjectConverter.decode(path, entry.getValue());
+            if (packer != null && packer.accepts(decoded)) {
+                packer.pack(path, decoded);
+            } else {
+                putAsset(path, ObjectConverter.finish(decoded));
+            }
+        }
+
+        TextureAtlas atlas = finishAtlas(packer);
+        if (atlas != null) {
+            for (TextureAtlas.AtlasRegion region : atlas.getRegions()) {
+                putAsset(region.name, region);
+            }
+        }
+
+        logger.info("Loaded {} assets", assets.size());
+        shaders.warmUp();
+
+        // Debug: print all loaded assets
+        if (logger.isDebugEnabled()) {
+            for (Map.Entry<String, Object> entry : assets.entrySet()) {
+                logger.debug("Loaded asset: {} ({})", entry.getKey(), entry.getValue().getClass().getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Starts loading all assets from the specified directory in the background.
+     * Files are decoded on worker threads; call {@link #update()} once per frame on the GL thread
+     * to finish them. Assets become available one by one as they are finished.
+     * @param directoryPath the directory to load assets from
+     * @return the loader, for progress and per-asset futures, or null if the directory is invalid
+     */
+    public AsyncAssetLoader loadAssetsAsync(String directoryPath) {
+        return loadAssetsAsync(directoryPath, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Starts loading all assets from the specified directory in the background.
+     * @param directoryPath the directory to load assets from
+     * @param threads the number of worker threads to decode with
+     * @return the loader, for progress and per-asset futures, or null if the directory is invalid
+     */
+    public AsyncAssetLoader loadAssetsAsync(String directoryPath, int threads) {
+        logger.info("Loading assets asynchronously from: {}", directoryPath);
+
+        Map<String, FileHandle> files = findAssets(directoryPath);
+        if (files == null) {
+            return null;
         }
 
         // Clear existing assets
-        assets.clear();
+        cancelLoading();
+        disableLazyLoading();
+        clearAssets();
+
+        loader = new AsyncAssetLoader(this, files, createAtlasPacker(files), threads);
+        return loader;
+    }
 
-        // Load all assets recursively
-        loadAssetsRecursively(directory, "");
+    /**
+     * Enables packing small images into shared atlas pages for the following loads, so sprites
+     * can be drawn without switching textures. Packing does not apply to lazy loading.
+     * @param settings the packing settings, or null to give every image its own texture
+     */
+    public void setAtlasSettings(AtlasPacker.Settings settings) {
+        this.atlasSettings = settings;
+    }
 
-        logger.info("Loaded " + assets.size() + " assets");
+    /**
+     * Gets the atlas packing settings
+     * @return the settings, or null if packing is disabled
+     */
+    public AtlasPacker.Settings getAtlasSettings() {
+        return atlasSettings;
+    }
 
-        // Debug: print all loaded assets
-        for (String key : assets.keySet()) {
-            logger.debug("Loaded asset: " + key + " (" + assets.get(key).getClass().getSimpleName() + ")");
+    /**
+     * Creates an atlas packer for a load if packing is enabled
+     * @param files the files being loaded
+     * @return the packer, or null if packing is disabled
+     */
+    private AtlasPacker createAtlasPacker(Map<String, FileHandle> files) {
+        if (atlasSettings == null) {
+            return null;
+        }
+        AtlasPacker packer = new AtlasPacker(atlasSettings, files);
+        if (packer.getCachedAtlas() != null) {
+            addAtlas(packer.getCachedAtlas());
+        }
+        return packer;
+    }
+
+    /**
+     * Uploads the pages of an atlas packer and takes ownership of them
+     * @param packer the packer, or null
+     * @return the newly packed atlas, or null if nothing was packed
+     */
+    TextureAtlas finishAtlas(AtlasPacker packer) {
+        if (packer == null) {
+            return null;
+        }
+        TextureAtlas atlas = packer.finish();
+        if (atlas != null) {
+            addAtlas(atlas);
         }
+        return atlas;
     }
 
     /**
-     * Recursively loads assets from a directory
-     * @param directory the directory to load from
-     * @param path the current path prefix
+     * Takes ownership of an atlas, so its pages are disposed once rather than per region
+     * @param atlas the atlas
      */
-    private void loadAssetsRecursively(File directory, String path) {
-        File[] files = directory.listFiles();
+    private void addAtlas(TextureAtlas atlas) {
+        atlases.add(atlas);
+        for (Texture page : atlas.getTextures()) {
+            atlasPages.add(page);
+        }
+    }
+
+    /**
+     * Prepares all assets in the specified directory to be loaded on first access instead of
+     * up front. Once the estimated memory used by resident assets exceeds the budget, the least
+     * recently used ones are disposed and will be loaded again the next time they are requested.
+     *
+     * In this mode, assets should be fetched again each time they are used rather than kept
+     * around, because a kept reference may have been disposed by an eviction. Shader files are
+     * loaded and evicted per program: the vertex, fragment and .glsl files of the program together
+     * with every chunk they include. Evicting a program disposes its compiled variants, which are
+     * compiled again the next time the program is asked for. Music that is playing is never
+     * evicted; it is treated as recently used instead, so the cache may go over its budget.
+     * @param directoryPath the directory to load assets from
+     * @param budgetBytes the memory budget in bytes
+     * @return the cache, for hit/miss/eviction counters, or null if the directory is invalid
+     */
+    public AssetCache loadAssetsLazy(String directoryPath, long budgetBytes) {
+        logger.info("Loading assets lazily from: {} with a budget of {}KB", directoryPath, budgetBytes / 1024);
+
+        Map<String, FileHandle> files = findAssets(directoryPath);
         if (files == null) {
+            return null;
+        }
+
+        // Unload existing assets, they may not fit in the budget
+        dispose();
+
+        lazyFiles = files;
+        cache = new AssetCache(budgetBytes, this::evict);
+
+        logger.info("Found {} assets", files.size());
+        return cache;
+    }
+
+    /**
+     * Gets the cache used in lazy mode
+     * @return the cache, or null if assets are not loaded lazily
+     */
+    public AssetCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Leaves lazy mode, disposing the resident assets, since they were only kept in check by the cache
+     */
+    private void disableLazyLoading() {
+        if (cache == null) {
             return;
         }
+        dispose();
+        lazyFiles = null;
+        cache = null;
+    }
+
+    /**
+     * Looks up an asset, loading it first if it is not resident in lazy mode
+     * @param path the path to the asset
+     * @return the asset, or null if not found
+     */
+    private Object fetch(String path) {
+        Object asset = assets.get(path);
+        if (cache == null) {
+            return asset;
+        }
+        if (ShaderLibrary.isShaderFile(path)) {
+            fetchShader(ShaderLibrary.programName(path));
+            return assets.get(path);
+        }
+        if (asset != null) {
+            cache.recordHit(path);
+            return asset;
+        }
+
+        FileHandle file = lazyFiles.get(path);
+        if (file == null) {
+            return null;
+        }
+        cache.recordMiss();
+        asset = ObjectConverter.finish(ObjectConverter.decode(path, file));
+        putAsset(path, asset);
+        cache.admit(path, AssetCache.estimateBytes(asset, file));
+        return asset;
+    }
 
-        for (File file : files) {
-            String filePath = path.isEmpty() ? file.getName() : path + "/" + file.getName();
+    /**
+     * Loads every shader file a program needs if they are not resident, in lazy mode.
+     * The files are admitted to the cache as one entry named after the program, since a program
+     * cannot be compiled from only some of them.
+     * @param program the program name
+     */
+    private void fetchShader(String program) {
+        if (shaderUnits.containsKey(program)) {
+            cache.recordHit(program);
+            return;
+        }
+        ArrayList<String> files = new ArrayList<>();
+        for (String path : new String[] { program + ".vert", program + ".frag", program + ".glsl" }) {
+            if (lazyFiles.containsKey(path)) {
+                files.add(path);
+            }
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        cache.recordMiss();
 
-            if (file.isDirectory()) {
-                loadAssetsRecursively(file, filePath);
+        long bytes = 0;
+        // Chunks are added to the list as they are found, so their own includes are followed too
+        for (int i = 0; i < files.size(); i++) {
+            String path = files.get(i);
+            FileHandle file = lazyFiles.get(path);
+            // Chunks shared with another resident program are already loaded
+            String code = shaders.getSource(path);
+            if (code == null && !assets.containsKey(path)) {
+                putAsset(path, ObjectConverter.finish(ObjectConverter.decode(path, file)));
+                code = shaders.getSource(path);
+            }
+            // Files that could not be decoded are kept as they are and count at their size
+            bytes += code != null ? 2L * code.length() : file.length();
+            if (code != null) {
+                for (String target : ShaderLibrary.findIncludeTargets(code)) {
+                    String chunk = ShaderLibrary.findInclude(path, target, lazyFiles.keySet());
+                    if (chunk != null && !files.contains(chunk)) {
+                        files.add(chunk);
+                    }
+                }
+            }
+        }
+        shaderUnits.put(program, files);
+        cache.admit(program, bytes);
+    }
+
+    /**
+     * Unloads an asset that was evicted from the cache. Music that is playing is kept.
+     * @param path the path to the asset, or the program name for shaders
+     * @return false if the asset was kept
+     */
+    private boolean evict(String path) {
+        ArrayList<String> shaderFiles = shaderUnits.remove(path);
+        if (shaderFiles == null) {
+            Object asset = assets.get(path);
+            if (asset instanceof Music && ((Music) asset).isPlaying()) {
+                return false;
+            }
+            logger.debug("Evicting asset: {}", path);
+            disposeAsset(removeAsset(path));
+            return true;
+        }
+        logger.debug("Evicting asset: {}", path);
+        for (String file : shaderFiles) {
+            if (!isShaderFileResident(file)) {
+                removeAsset(file);
+            }
+        }
+        // The compiled programs are what the budget mostly stands for; they are compiled again on the next use
+        shaders.unload(path);
+        return true;
+    }
+
+    /**
+     * Checks if a shader file is still needed by a resident program in lazy mode
+     * @param path the path to the shader file
+     * @return true if a resident program loaded it
+     */
+    private boolean isShaderFileResident(String path) {
+        for (ArrayList<String> files : shaderUnits.values()) {
+            if (files.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finishes background-loaded assets, spending at most
+     * {@link AsyncAssetLoader#DEFAULT_FRAME_BUDGET_NANOS} on the GL thread.
+     * @return true if there is no load or shader warm-up in progress
+     */
+    public boolean update() {
+        return update(AsyncAssetLoader.DEFAULT_FRAME_BUDGET_NANOS);
+    }
+
+    /**
+     * Finishes background-loaded assets until the time budget is used up, then swaps in assets
+     * that changed on disk if hot reload is enabled, and compiles the shaders that were loaded
+     * ({@link ShaderLibrary#warmUp(long)}) within what is left of the budget.
+     * Must be called on the GL thread.
+     * @param budgetNanos the time this call may take, in nanoseconds
+     * @return true if there is no load or shader warm-up in progress
+     */
+    public boolean update(long budgetNanos) {
+        long start = System.nanoTime();
+        if (loader != null) {
+            if (!loader.update(budgetNanos)) {
+                return false;
+            }
+            loader = null;
+        }
+        if (watcher != null) {
+            watcher.update(budgetNanos - (System.nanoTime() - start));
+        }
+        return shaders.warmUp(budgetNanos - (System.nanoTime() - start));
+    }
+
+    /**
+     * Gets the progress of the background load in progress
+     * @return a value between 0 and 1, or 1 if nothing is loading
+     */
+    public float getProgress() {
+        return loader == null ? 1f : loader.getProgress();
+    }
+
+    /**
+     * Stops the background load in progress, if any
+     */
+    private void cancelLoading() {
+        if (loader != null) {
+            loader.cancel();
+            loader = null;
+        }
+    }
+
+    /**
+     * Starts watching the asset directory and reloading assets whose files change.
+     * Meant for development; it does not apply to assets read from a pack.
+     * @param directoryPath the directory assets were loaded from
+     * @return the watcher, or null if the directory could not be watched
+     */
+    public AssetWatcher enableHotReload(String directoryPath) {
+        disableHotReload();
+        if (pack != null) {
+            logger.error("Hot reload does not work with assets read from a pack");
+            return null;
+        }
+        File directory = new File(directoryPath);
+        if (!directory.isDirectory()) {
+            // Running from inside the assets folder, where internal files are read from the working directory
+            directory = new File("").getAbsoluteFile();
+        }
+        try {
+            watcher = new AssetWatcher(this, directory);
+        } catch (IOException e) {
+            logger.error("Could not watch asset directory: {}", directory, e);
+        }
+        return watcher;
+    }
+
+    /**
+     * Stops reloading assets whose files change
+     */
+    public void disableHotReload() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Reads all following loads from a pack baked by the {@code packAssets} Gradle task instead
+     * of from the asset directory. The pack is memory-mapped when it is a file on disk.
+     * @param packFile the pack file
+     */
+    public void openAssetPack(FileHandle packFile) {
+        pack = AssetPack.open(packFile);
+    }
+
+    /**
+     * Gets the pack assets are read from
+     * @return the pack, or null if assets are read from the asset directory
+     */
+    public AssetPack getAssetPack() {
+        return pack;
+    }
+
+    /**
+     * Finds every asset in the specified directory, or in the open asset pack.
+     * See {@link AssetIndex#find(String)} for how the directory is searched.
+     * @param directoryPath the directory to search
+     * @return the files keyed by asset path, or null if the directory is invalid
+     */
+    private Map<String, FileHandle> findAssets(String directoryPath) {
+        if (pack != null) {
+            return pack.getFiles();
+        }
+        return AssetIndex.find(directoryPath);
+    }
+
+    /**
+     * Adds or replaces an asset
+     * @param path the path to the asset
+     * @param asset the asset
+     */
+    void putAsset(String path, Object asset) {
+        if (asset instanceof ObjectConverter.ShaderSource) {
+            // The shader library owns shader sources, they are not kept with the other assets
+            shaders.addSource(path, ((ObjectConverter.ShaderSource) asset).code);
+            return;
+        }
+        Object previous = assets.put(path, asset);
+        if (previous instanceof DefinitionSet) {
+            DefinitionRegistry.getInstance().remove((DefinitionSet<?>) previous);
+        }
+        if (asset instanceof DefinitionSet) {
+            DefinitionRegistry.getInstance().add((DefinitionSet<?>) asset);
+        }
+        AssetStore<?> previousStore = storeFor(previous);
+        if (previousStore != null) {
+            previousStore.remove(path);
+        }
+        AssetStore<?> store = storeFor(asset);
+        if (store != null) {
+            putInStore(store, path, asset);
+        }
+    }
+
+    /**
+     * Replaces an asset with a newly loaded version and disposes the old one.
+     * Handles to the asset see the new version from the next lookup.
+     * In lazy mode, assets that are not resident are left to load on their next access.
+     * @param path the path to the asset
+     * @param asset the new version, which is disposed if it is not used
+     * @return true if the asset was replaced
+     */
+    boolean replaceAsset(String path, Object asset) {
+        Object previous = assets.get(path);
+        if (cache != null && previous == null && shaders.getSource(path) == null) {
+            disposeAsset(asset);
+            return false;
+        }
+        putAsset(path, asset);
+        if (previous != null && previous != asset) {
+            disposeAsset(previous);
+        }
+        // Shader files stay accounted for in their program's entry
+        if (cache != null && lazyFiles.containsKey(path) && !ShaderLibrary.isShaderFile(path)) {
+            cache.admit(path, AssetCache.estimateBytes(asset, lazyFiles.get(path)));
+        }
+        return true;
+    }
+
+    /**
+     * Removes an asset without disposing it
+     * @param path the path to the asset
+     * @return the removed asset, or null if there was none
+     */
+    Object removeAsset(String path) {
+        shaders.removeSource(path);
+        Object asset = assets.remove(path);
+        if (asset instanceof DefinitionSet) {
+            DefinitionRegistry.getInstance().remove((DefinitionSet<?>) asset);
+        }
+        AssetStore<?> store = storeFor(asset);
+        if (store != null) {
+            store.remove(path);
+        }
+        return asset;
+    }
+
+    /**
+     * Removes every asset without disposing them, except shader programs which are compiled
+     * again from the new sources. Existing handles stay valid.
+     */
+    private void clearAssets() {
+        assets.clear();
+        textures.clear();
+        sounds.clear();
+        music.clear();
+        shaders.clear();
+        texts.clear();
+        shaderUnits.clear();
+        DefinitionRegistry.getInstance().clear();
+    }
+
+    /**
+     * Gets the typed storage an asset belongs in
+     * @param asset the asset
+     * @return the store, or null if assets of this type are only kept in the path map
+     */
+    private AssetStore<?> storeFor(Object asset) {
+        if (textures.accepts(asset)) {
+            return textures;
+        } else if (sounds.accepts(asset)) {
+            return sounds;
+        } else if (music.accepts(asset)) {
+            return music;
+        } else if (texts.accepts(asset)) {
+            return texts;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void putInStore(AssetStore<T> store, String path, Object asset) {
+        store.set(path, (T) asset);
+    }
+
+    /**
+     * Resolves a path to a texture region handle. This can be done before the asset has loaded.
+     * @param path the path to the texture region
+     * @return the handle
+     */
+    public AssetHandle<TextureRegion> getTextureHandle(String path) {
+        return textures.resolve(path);
+    }
+
+    /**
+     * Resolves a path to a sound handle. This can be done before the asset has loaded.
+     * @param path the path to the sound
+     * @return the handle
+     */
+    public AssetHandle<Sound> getSoundHandle(String path) {
+        return sounds.resolve(path);
+    }
+
+    /**
+     * Resolves a path to a music handle. This can be done before the asset has loaded.
+     * @param path the path to the music
+     * @return the handle
+     */
+    public AssetHandle<Music> getMusicHandle(String path) {
+        return music.resolve(path);
+    }
+
+    /**
+     * Resolves a path to a shader handle. This can be done before the asset has loaded.
+     * The vertex, fragment and program name all resolve to the same program.
+     * @param path the path to the shader, with or without its extension
+     * @return the handle
+     */
+    public AssetHandle<ShaderProgram> getShaderHandle(String path) {
+        return shaders.getHandle(ShaderLibrary.programName(path));
+    }
+
+    /**
+     * Gets the shader library, to request variants with defines or look at compile times and failures
+     * @return the shader library
+     */
+    public ShaderLibrary getShaderLibrary() {
+        return shaders;
+    }
+
+    /**
+     * Resolves a path to a text file handle. This can be done before the asset has loaded.
+     * @param path the path to the text file
+     * @return the handle
+     */
+    public AssetHandle<String> getTextHandle(String path) {
+        return texts.resolve(path);
+    }
+
+    /**
+     * Gets an asset through its handle. Outside of lazy mode this is a single array read.
+     * @param handle the handle to the asset
+     * @param <T> the type of the asset
+     * @return the asset, or null if it is not loaded or is of a different type
+     */
+    public <T> T get(AssetHandle<T> handle) {
+        if (cache != null) {
+            // Lazy mode still goes through the path to load the asset and keep the LRU order
+            if (shaders.owns(handle)) {
+                fetchShader(ShaderLibrary.variantProgram(handle.path));
             } else {
-                Object asset = ObjectConverter.convert(file);
-                assets.put(filePath, asset);
+                fetch(handle.path);
             }
         }
+        return handle.store.get(handle.index);
     }
 
     /**
-     * Gets an asset by its path
+     * Gets an asset by its path. Shader files are not assets of their own, get their programs
+     * with {@link #getShader(String)} and their sources from {@link #getShaderLibrary()}.
      * @param path the path to the asset
      * @return the asset, or null if not found
      */
     public Object getAsset(String path) {
-        return assets.get(path);
+        return fetch(path);
     }
 
     /**
-     * Gets a texture region by its path
+     * Gets a texture region by its path.
+     * Prefer resolving a handle once with {@link #getTextureHandle(String)} for assets used every frame.
      * @param path the path to the texture region
      * @return the texture region, or null if not found
      */
     public TextureRegion getTextureRegion(String path) {
-        Object asset = assets.get(path);
-        if (asset instanceof TextureRegion) {
-            return (TextureRegion) asset;
+        if (cache != null) {
+            fetch(path);
         }
-        logger.error("Asset is not a TextureRegion: " + path);
-        return null;
+        TextureRegion asset = textures.get(path);
+        if (asset == null) {
+            logger.error("Asset is not a TextureRegion: {}", path);
+        }
+        return asset;
     }
 
     /**
@@ -125,24 +728,35 @@ public class AssetManager {
      * @return the sound, or null if not found
      */
     public Sound getSound(String path) {
-        Object asset = assets.get(path);
-        if (asset instanceof Sound) {
-            return (Sound) asset;
+        if (cache != null) {
+            fetch(path);
         }
-        return null;
+        return sounds.get(path);
     }
 
     /**
-     * Gets a shader by its path
-     * @param path the path to the shader
-     * @return the shader, or null if not found
+     * Gets a streamed music track by its path. Audio files in a {@code music} folder or longer than
+     * {@link ObjectConverter#STREAM_AUDIO_SECONDS} are loaded as music instead of as sounds.
+     * @param path the path to the music
+     * @return the music, or null if not found
+     */
+    public Music getMusic(String path) {
+        if (cache != null) {
+            fetch(path);
+        }
+        return music.get(path);
+    }
+
+    /**
+     * Gets a shader program by the path to one of its files
+     * @param path the path to the shader, with or without its extension
+     * @return the program, or null if not found or it failed to compile
      */
     public ShaderProgram getShader(String path) {
-        Object asset = assets.get(path);
-        if (asset instanceof ShaderProgram) {
-            return (ShaderProgram) asset;
+        if (cache != null) {
+            fetchShader(ShaderLibrary.programName(path));
         }
-        return null;
+        return shaders.get(ShaderLibrary.programName(path));
     }
 
     /**
@@ -151,15 +765,15 @@ public class AssetManager {
      * @return the text content, or null if not found
      */
     public String getText(String path) {
-        Object asset = assets.get(path);
-        if (asset instanceof String) {
-            return (String) asset;
+        if (cache != null) {
+            fetch(path);
         }
-        return null;
+        return texts.get(path);
     }
 
     /**
-     * Gets all loaded assets
+     * Gets all loaded assets. In lazy mode this only contains the resident assets.
+     * Shader sources are kept by the {@link #getShaderLibrary() shader library} instead.
      * @return a map of all loaded assets
      */
     public HashMap<String, Object> getAllAssets() {
@@ -170,15 +784,39 @@ public class AssetManager {
      * Disposes all disposable assets
      */
     public void dispose() {
+        cancelLoading();
         for (Object asset : assets.values()) {
-            if (asset instanceof Texture) {
-                ((Texture) asset).dispose();
-            } else if (asset instanceof Sound) {
-                ((Sound) asset).dispose();
-            } else if (asset instanceof ShaderProgram) {
-                ((ShaderProgram) asset).dispose();
+            disposeAsset(asset);
+        }
+        clearAssets();
+        for (TextureAtlas atlas : atlases) {
+            atlas.dispose();
+        }
+        atlases.clear();
+        atlasPages.clear();
+        if (cache != null) {
+            logger.info("Disposed {}", cache);
+            cache.clear();
+        }
+    }
+
+    /**
+     * Disposes a single asset if it holds native resources
+     * @param asset the asset to dispose
+     */
+    private void disposeAsset(Object asset) {
+        if (asset instanceof TextureRegion) {
+            Texture texture = ((TextureRegion) asset).getTexture();
+            // Atlas pages are shared by many regions and disposed with their atlas
+            if (texture != null && !atlasPages.contains(texture)) {
+                texture.dispose();
             }
+        } else if (asset instanceof Texture) {
+            ((Texture) asset).dispose();
+        } else if (asset instanceof Sound) {
+            ((Sound) asset).dispose();
+        } else if (asset instanceof Music) {
+            ((Music) asset).dispose();
         }
-        assets.clear();
     }
 }
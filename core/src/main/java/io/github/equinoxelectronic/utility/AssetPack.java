@@ -0,0 +1,218 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single file holding every asset, baked by the {@code packAssets} Gradle task.
+ *
+ * The pack is memory-mapped when it is a file on disk, or read into one direct buffer when it
+ * is inside a jar. Assets are handed to the decoders as slices of that buffer, so nothing is
+ * copied on the way. Images are stored as raw RGBA8888 pixels and uploaded straight from the
+ * mapped memory, unless they are small enough for the {@link AtlasPacker}, which copies them into
+ * its pages. JSON is stored minified.
+ *
+ * Layout (big-endian): magic, version, entry count, data start, then per entry the path,
+ * type, offset from the data start, length, width and height, followed by the data section.
+ */
+public class AssetPack {
+    private static final Log logger = new Log("AssetPack");
+
+    /** The name the Gradle task gives the pack */
+    public static final String DEFAULT_NAME = "assets.pack";
+
+    private static final int MAGIC = 0x4348504B; // "CHPK"
+    private static final int VERSION = 1;
+
+    /** The original file bytes */
+    public static final byte TYPE_RAW = 0;
+    /** Raw RGBA8888 pixels, top row first */
+    public static final byte TYPE_PIXELS = 1;
+    /** Minified JSON */
+    public static final byte TYPE_JSON = 2;
+
+    private final ByteBuffer data;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private AssetPack(ByteBuffer data) throws IOException {
+        this.data = data;
+        readIndex();
+    }
+
+    /**
+     * Opens a pack, memory-mapping it if it is a file on disk
+     * @param file the pack file
+     * @return the opened pack
+     */
+    public static AssetPack open(FileHandle file) {
+        long start = System.nanoTime();
+        try {
+            ByteBuffer buffer;
+            boolean mapped = file.file().exists();
+            if (mapped) {
+                try (FileChannel channel = FileChannel.open(file.file().toPath(), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } else {
+                // Inside a jar there is nothing to map, so read the whole pack in one go
+                byte[] bytes = file.readBytes();
+                buffer = ByteBuffer.allocateDirect(bytes.length);
+                buffer.put(bytes);
+                buffer.flip();
+            }
+
+            AssetPack pack = new AssetPack(buffer);
+            logger.info("Opened {} ({} assets, {}KB, {}) in {}ms", file.path(), pack.entries.size(), buffer.capacity() / 1024,
+                mapped ? "mapped" : "read", (System.nanoTime() - start) / 1_000_000);
+            return pack;
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not open asset pack: " + file.path(), e);
+        }
+    }
+
+    /**
+     * Reads the index at the start of the pack
+     */
+    private void readIndex() throws IOException {
+        DataInputStream input = new DataInputStream(new SliceInputStream(data.duplicate()));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not an asset pack");
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported asset pack version: " + version);
+        }
+
+        int count = input.readInt();
+        long dataStart = input.readLong();
+        for (int i = 0; i < count; i++) {
+            String path = input.readUTF();
+            byte type = input.readByte();
+            long offset = dataStart + input.readLong();
+            int length = input.readInt();
+            int width = input.readInt();
+            int height = input.readInt();
+            // Also keeps the offset in int range, since a buffer can't be bigger than that
+            if (offset < 0 || length < 0 || offset + length > data.capacity()) {
+                throw new IOException("Asset outside of pack: " + path);
+            }
+            entries.put(path, new Entry(path, type, (int) offset, length, width, height));
+        }
+    }
+
+    /**
+     * Gets a file handle for every asset in the pack
+     * @return the file handles keyed by asset path, in pack order
+     */
+    public Map<String, FileHandle> getFiles() {
+        Map<String, FileHandle> files = new LinkedHashMap<>();
+        for (Entry entry : entries.values()) {
+            files.put(entry.path, new PackedFileHandle(this, entry));
+        }
+        return files;
+    }
+
+    /**
+     * Gets the number of assets in the pack
+     * @return the number of assets
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the bytes of an asset without copying them. Safe to call from any thread.
+     * @param entry the asset
+     * @return a read-only view of the asset's bytes
+     */
+    ByteBuffer slice(Entry entry) {
+        ByteBuffer slice = data.duplicate();
+        slice.position(entry.offset);
+        slice.limit(entry.offset + entry.length);
+        return slice.slice();
+    }
+
+    /**
+     * Decodes an asset that was pre-processed when the pack was baked
+     * @param entry the asset
+     * @return the decoded asset, or null if it is stored as-is and needs the normal decoders
+     */
+    Object decodePrebaked(Entry entry) {
+        switch (entry.type) {
+            case TYPE_PIXELS:
+                return new PackedTextureData(entry.width, entry.height, slice(entry));
+            default:
+                // Minified JSON is read by the normal decoders too, so definitions still get their types
+                return null;
+        }
+    }
+
+    /**
+     * The location of one asset in the pack
+     */
+    static class Entry {
+        final String path;
+        final byte type;
+        final int offset;
+        final int length;
+        final int width;
+        final int height;
+
+        Entry(String path, byte type, int offset, int length, int width, int height) {
+            this.path = path;
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Reads a byte buffer as a stream, without copying it
+     */
+    static class SliceInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        SliceInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.min(count, buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
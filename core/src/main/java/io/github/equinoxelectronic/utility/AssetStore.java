@@ -0,0 +1,108 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import java.util.Arrays;
+
+/**
+ * Dense storage for all assets of one type.
+ *
+ * Every path gets a slot the first time it is resolved or stored, and keeps that slot for the
+ * lifetime of the store, so {@link AssetHandle}s stay valid when assets are unloaded or
+ * replaced. Unloaded assets simply leave their slot empty.
+ * @param <T> the type of the assets
+ */
+class AssetStore<T> {
+    private final Class<T> type;
+    private final ObjectIntMap<String> indices = new ObjectIntMap<>();
+    private T[] items;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    AssetStore(Class<T> type) {
+        this.type = type;
+        this.items = (T[]) java.lang.reflect.Array.newInstance(type, 64);
+    }
+
+    /**
+     * Gets a handle to the slot for a path, creating the slot if needed
+     * @param path the path to the asset
+     * @return the handle
+     */
+    AssetHandle<T> resolve(String path) {
+        return new AssetHandle<>(this, slot(path), path);
+    }
+
+    /**
+     * Gets the asset in a slot
+     * @param index the slot index
+     * @return the asset, or null if the slot is empty
+     */
+    T get(int index) {
+        return items[index];
+    }
+
+    /**
+     * Gets the asset for a path
+     * @param path the path to the asset
+     * @return the asset, or null if there is none
+     */
+    T get(String path) {
+        int index = indices.get(path, -1);
+        return index < 0 ? null : items[index];
+    }
+
+    /**
+     * Stores an asset in the slot for its path
+     * @param path the path to the asset
+     * @param asset the asset
+     */
+    void set(String path, T asset) {
+        items[slot(path)] = asset;
+    }
+
+    /**
+     * Empties the slot for a path
+     * @param path the path to the asset
+     */
+    void remove(String path) {
+        int index = indices.get(path, -1);
+        if (index >= 0) {
+            items[index] = null;
+        }
+    }
+
+    /**
+     * Empties every slot, keeping existing handles valid
+     */
+    void clear() {
+        Arrays.fill(items, 0, size, null);
+    }
+
+    /**
+     * Checks if assets of this store's type can hold the given asset
+     * @param asset the asset
+     * @return true if the asset is of this store's type
+     */
+    boolean accepts(Object asset) {
+        return type.isInstance(asset);
+    }
+
+    /**
+     * Gets the slot for a path, creating it if needed
+     * @param path the path to the asset
+     * @return the slot index
+     */
+    private int slot(String path) {
+        int index = indices.get(path, -1);
+        if (index >= 0) {
+            return index;
+        }
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        index = size++;
+        indices.put(path, index);
+        return index;
+    }
+}
@@ -0,0 +1,271 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads assets when their files change on disk, for iterating on art and balance without
+ * restarting the game. Meant for development only.
+ *
+ * A background thread watches the asset directory. Once a file has had no new writes for
+ * {@link #DEBOUNCE_MILLIS}, it is decoded on that thread and queued; {@link #update(long)} then
+ * finishes it on the GL thread and swaps it into the {@link AssetManager}, which disposes the
+ * old version. Handles to the asset stay valid and see the new version from the next lookup.
+ */
+public class AssetWatcher {
+    private static final Log logger = new Log("AssetWatcher");
+
+    /**
+     * How long a file must go without writes before it is reloaded, so a burst of writes from an
+     * editor or exporter only triggers one reload
+     */
+    public static final long DEBOUNCE_MILLIS = 100;
+
+    /**
+     * Called on the GL thread every time an asset has been reloaded.
+     */
+    public interface Listener {
+        void assetReloaded(String path, Object asset);
+    }
+
+    private final AssetManager manager;
+    private final Path root;
+    private final WatchService watchService;
+    private final Thread thread;
+    private final Array<Listener> listeners = new Array<>();
+
+    // Directory of every watch key, to resolve the changed files
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    // Time of the last write to each changed file, only touched by the watcher thread
+    private final Map<String, Long> changes = new HashMap<>();
+    // Decoded files waiting for the GL thread
+    private final ConcurrentLinkedQueue<Reloaded> reloaded = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+
+    /**
+     * Starts watching a directory
+     * @param manager the asset manager to reload assets into
+     * @param root the directory asset paths are relative to
+     * @throws IOException if the directory could not be watched
+     */
+    AssetWatcher(AssetManager manager, File root) throws IOException {
+        this.manager = manager;
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerRecursively(this.root);
+
+        running = true;
+        thread = new Thread(this::watch, "asset-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching {} ({} directories) for changes", this.root, directories.size());
+    }
+
+    /**
+     * Watches a directory and every directory inside it
+     * @param directory the directory
+     * @throws IOException if a directory could not be watched
+     */
+    private void registerRecursively(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                synchronized (directories) {
+                    directories.put(key, dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Collects file system events and decodes files once their writes have settled.
+     * Runs on the watcher thread.
+     */
+    private void watch() {
+        while (running) {
+            WatchKey key;
+            try {
+                // Wake up at least once per debounce period while changes are settling
+                key = changes.isEmpty() ? watchService.take() : watchService.poll(DEBOUNCE_MILLIS / 2, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (key != null) {
+                collect(key);
+            }
+            decodeSettled();
+        }
+    }
+
+    /**
+     * Records the files changed in the events of a watch key
+     * @param key the watch key
+     */
+    private void collect(WatchKey key) {
+        Path directory;
+        synchronized (directories) {
+            directory = directories.get(key);
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (Files.isDirectory(file)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    try {
+                        registerRecursively(file);
+                    } catch (IOException e) {
+                        logger.error("Could not watch new directory: {}", file, e);
+                    }
+                }
+                continue;
+            }
+            changes.put(root.relativize(file).toString().replace('\\', '/'), System.nanoTime());
+        }
+        if (!key.reset()) {
+            synchronized (directories) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Decodes every changed file that has not been written to for the debounce period
+     */
+    private void decodeSettled() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Long>> iterator = changes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> change = iterator.next();
+            if (now - change.getValue() < TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MILLIS)) {
+                continue;
+            }
+            iterator.remove();
+            String path = change.getKey();
+            if (path.equals(AssetIndex.INDEX_FILE)) {
+                continue;
+            }
+
+            File file = root.resolve(path).toFile();
+            Object decoded;
+            try {
+                decoded = ObjectConverter.decode(path, new FileHandle(file));
+            } catch (Exception e) {
+                logger.error("Could not decode changed asset: {}", path, e);
+                continue;
+            }
+            // Undecodable files are either still being written or not assets at all, like editor temp files
+            if (decoded instanceof File) {
+                logger.debug("Ignoring change to {}", path);
+                continue;
+            }
+            reloaded.add(new Reloaded(path, decoded, change.getValue()));
+        }
+    }
+
+    /**
+     * Swaps reloaded assets into the asset manager until the time budget is used up.
+     * At least one asset is swapped per call. Must be called on the GL thread.
+     * @param budgetNanos the time this call may take, in nanoseconds
+     */
+    public void update(long budgetNanos) {
+        long start = System.nanoTime();
+        Reloaded next;
+        while ((next = reloaded.poll()) != null) {
+            long swapStart = System.nanoTime();
+            Object asset;
+            try {
+                asset = ObjectConverter.finish(next.decoded);
+            } catch (Exception e) {
+                logger.error("Could not finish reloaded asset: {}", next.path, e);
+                ObjectConverter.discard(next.decoded);
+                continue;
+            }
+            if (manager.replaceAsset(next.path, asset)) {
+                long end = System.nanoTime();
+                logger.info("Reloaded {} {}ms after the last write ({}us on the GL thread)", next.path,
+                    (end - next.changedAt) / 1_000_000, (end - swapStart) / 1000);
+                for (Listener listener : listeners) {
+                    listener.assetReloaded(next.path, asset);
+                }
+            }
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is told about every reloaded asset
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets the directory being watched
+     * @return the absolute path of the directory
+     */
+    public File getRoot() {
+        return root.toFile();
+    }
+
+    /**
+     * Stops watching and drops any reload that has not been swapped in yet
+     */
+    public void stop() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.error("Could not close watch service", e);
+        }
+        thread.interrupt();
+        Reloaded next;
+        while ((next = reloaded.poll()) != null) {
+            ObjectConverter.discard(next.decoded);
+        }
+    }
+
+    /**
+     * A decoded file waiting for the GL thread
+     */
+    private static class Reloaded {
+        final String path;
+        final Object decoded;
+        // When the last write to the file was seen, in System.nanoTime()
+        final long changedAt;
+
+        Reloaded(String path, Object decoded, long changedAt) {
+            this.path = path;
+            this.decoded = decoded;
+            this.changedAt = changedAt;
+        }
+    }
+}
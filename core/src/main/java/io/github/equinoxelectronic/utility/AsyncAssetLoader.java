@@ -0,0 +1,290 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a set of assets in the background.
+ *
+ * File reads and decoding ({@link ObjectConverter#decode(FileHandle)}) run on a pool of worker
+ * threads. Only the OpenGL part ({@link ObjectConverter#finish(Object)}) runs on the GL thread,
+ * inside {@link #update(long)}, which stops once the given time budget is used up so the window
+ * keeps drawing frames while loading.
+ *
+ * When atlas packing is enabled, small images are packed as they arrive and only become
+ * available once every file has been decoded and the atlas pages have been uploaded.
+ */
+public class AsyncAssetLoader {
+    private static final Log logger = new Log("AsyncAssetLoader");
+
+    /**
+     * Default time the GL thread may spend finishing assets per frame (4 milliseconds)
+     */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 4_000_000L;
+
+    /**
+     * Called on the GL thread every time an asset has been fully loaded.
+     */
+    public interface Listener {
+        void assetLoaded(String path, Object asset);
+    }
+
+    private final AssetManager manager;
+    private final ExecutorService executor;
+    // Packs small images into shared pages, or null if packing is disabled
+    private final AtlasPacker packer;
+    private boolean atlasFinished;
+
+    // Decoded assets waiting for the GL thread
+    private final ConcurrentLinkedQueue<Decoded> decoded = new ConcurrentLinkedQueue<>();
+    // One future per asset, created up front so callers can ask for any asset straight away
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> futures = new ConcurrentHashMap<>();
+    private final Array<Listener> listeners = new Array<>();
+
+    private final AtomicInteger decodedCount = new AtomicInteger();
+    private final int total;
+    private int finished;
+    private volatile boolean cancelled;
+    private final long startTime;
+
+    /**
+     * Starts decoding the given files on a worker pool.
+     * @param manager the asset manager that receives the finished assets
+     * @param files the files to load, keyed by asset path
+     * @param packer the atlas packer, or null to give every image its own texture
+     * @param threads the number of worker threads
+     */
+    AsyncAssetLoader(AssetManager manager, Map<String, FileHandle> files, AtlasPacker packer, int threads) {
+        this.manager = manager;
+        this.packer = packer;
+        this.total = files.size();
+        this.startTime = System.nanoTime();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "asset-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (String path : files.keySet()) {
+            futures.put(path, new CompletableFuture<>());
+        }
+        for (Map.Entry<String, FileHandle> entry : files.entrySet()) {
+            final String path = entry.getKey();
+            final FileHandle file = entry.getValue();
+            executor.execute(() -> decodeFile(path, file));
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Decodes a single file on a worker thread.
+     * @param path the asset path
+     * @param file the file to decode
+     */
+    private void decodeFile(String path, FileHandle file) {
+        if (cancelled) {
+            return;
+        }
+        Object result = null;
+        try {
+            // Images from an up to date saved atlas are already on the GPU
+            result = packer != null && packer.isCached(path) ? packer.getCachedRegion(path) : ObjectConverter.decode(path, file);
+        } catch (Exception e) {
+            logger.error("Could not decode asset: {}", path, e);
+        } finally {
+            // Errors still reach the pool, but the file has to be counted or loading never finishes
+            enqueue(path, result != null ? result : file.file());
+        }
+    }
+
+    /**
+     * Hands a decoded asset to the GL thread, or discards it if loading was cancelled.
+     * @param path the asset path
+     * @param result the decoded asset
+     */
+    private void enqueue(String path, Object result) {
+        if (cancelled) {
+            ObjectConverter.discard(result);
+            return;
+        }
+        Decoded entry = new Decoded(path, result);
+        decoded.add(entry);
+        decodedCount.incrementAndGet();
+        // cancel() may have drained the queue just before the add, in which case nobody else will discard it
+        if (cancelled && decoded.remove(entry)) {
+            ObjectConverter.discard(result);
+        }
+    }
+
+    /**
+     * Finishes decoded assets on the GL thread until the time budget is used up.
+     * At least one asset is finished per call, so loading always makes progress.
+     * @param budgetNanos the time this call may take, in nanoseconds
+     * @return true once every asset has been loaded
+     */
+    public boolean update(long budgetNanos) {
+        long start = System.nanoTime();
+        Decoded next;
+        while (!cancelled && (next = decoded.poll()) != null) {
+            if (isPacking() && packer.accepts(next.asset)) {
+                packer.pack(next.path, next.asset);
+                if (System.nanoTime() - start >= budgetNanos) {
+                    break;
+                }
+                continue;
+            }
+
+            Object asset;
+            try {
+                asset = ObjectConverter.finish(next.asset);
+            } catch (Exception e) {
+                logger.error("Could not finish asset: {}", next.path, e);
+                ObjectConverter.discard(next.asset);
+                asset = next.asset;
+            }
+            complete(next.path, asset);
+
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+
+        // Every other asset is done, so the atlas can be uploaded
+        if (!cancelled && isPacking() && finished + packer.getPackedCount() == total) {
+            TextureAtlas atlas = manager.finishAtlas(packer);
+            atlasFinished = true;
+            if (atlas != null) {
+                for (TextureAtlas.AtlasRegion region : atlas.getRegions()) {
+                    complete(region.name, region);
+                }
+            }
+        }
+
+        if (isDone()) {
+            logger.info("Loaded {} assets in {}ms", total, (System.nanoTime() - startTime) / 1_000_000);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if images are still being packed into an atlas
+     * @return true if the atlas has not been uploaded yet
+     */
+    private boolean isPacking() {
+        return packer != null && !atlasFinished;
+    }
+
+    /**
+     * Hands a finished asset to the asset manager, the listeners and its future
+     * @param path the path to the asset
+     * @param asset the finished asset
+     */
+    private void complete(String path, Object asset) {
+        manager.putAsset(path, asset);
+        finished++;
+
+        for (Listener listener : listeners) {
+            listener.assetLoaded(path, asset);
+        }
+        futures.get(path).complete(asset);
+    }
+
+    /**
+     * Gets the loading progress. Decoding and finishing each count for half of an asset.
+     * @return a value between 0 and 1
+     */
+    public float getProgress() {
+        if (total == 0) {
+            return 1f;
+        }
+        int handled = finished + (isPacking() ? packer.getPackedCount() : 0);
+        return (decodedCount.get() + handled) / (2f * total);
+    }
+
+    /**
+     * Checks if every asset has been loaded
+     * @return true if loading is complete
+     */
+    public boolean isDone() {
+        return finished == total;
+    }
+
+    /**
+     * Gets a future that completes on the GL thread once the given asset is loaded.
+     * @param path the path to the asset
+     * @return the future, or null if the asset is not part of this load
+     */
+    public CompletableFuture<Object> getFuture(String path) {
+        return futures.get(path);
+    }
+
+    /**
+     * Adds a listener that is told about every asset as it finishes loading.
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets the number of assets in this load
+     * @return the total number of assets
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the number of assets that have been fully loaded
+     * @return the number of finished assets
+     */
+    public int getFinished() {
+        return finished;
+    }
+
+    /**
+     * Stops loading and releases anything that was decoded but not finished.
+     * Assets that were already finished stay in the asset manager.
+     */
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+        Decoded next;
+        while ((next = decoded.poll()) != null) {
+            ObjectConverter.discard(next.asset);
+        }
+        if (isPacking()) {
+            packer.dispose();
+            atlasFinished = true;
+        }
+        for (CompletableFuture<Object> future : futures.values()) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * A decoded asset waiting for the GL thread
+     */
+    private static class Decoded {
+        final String path;
+        final Object asset;
+
+        Decoded(String path, Object asset) {
+            this.path = path;
+            this.asset = asset;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.PixmapPackerIO;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.ObjectMap;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Packs small images into shared atlas pages while assets are loading, so sprites drawn
+ * together can share a texture instead of each binding their own.
+ *
+ * Images are added with {@link #pack(String, Pixmap)} as they are decoded, and
+ * {@link #finish()} uploads the pages once every image has been added. If a cache file is set,
+ * the packed atlas is saved there and reused on the next start as long as the images and
+ * settings have not changed.
+ */
+public class AtlasPacker {
+    private static final Log logger = new Log("AtlasPacker");
+
+    /**
+     * Settings for atlas packing
+     */
+    public static class Settings {
+        /** Size of each atlas page in pixels */
+        public int pageWidth = 2048;
+        public int pageHeight = 2048;
+        /** Empty pixels between packed images */
+        public int padding = 2;
+        /** Repeats the edge pixels of each image into its padding to avoid bleeding when filtering */
+        public boolean duplicateBorder = true;
+        /** Images wider or taller than this are not packed */
+        public int maxImageSize = 256;
+        public Texture.TextureFilter minFilter = Texture.TextureFilter.Nearest;
+        public Texture.TextureFilter magFilter = Texture.TextureFilter.Nearest;
+        /** Where to save the packed atlas so later starts can skip packing, or null to always pack */
+        public FileHandle cacheFile;
+    }
+
+    private final Settings settings;
+    private final String signature;
+    private PixmapPacker packer;
+    private int packedCount;
+
+    // Regions from a saved atlas that is still up to date, keyed by asset path
+    private final ObjectMap<String, TextureRegion> cachedRegions = new ObjectMap<>();
+    private TextureAtlas cachedAtlas;
+
+    /**
+     * Creates a packer for one load. If an up to date atlas was saved before, it is loaded
+     * right away, so this must be called on the GL thread.
+     * @param settings the packing settings
+     * @param files the files being loaded, keyed by asset path
+     */
+    public AtlasPacker(Settings settings, Map<String, FileHandle> files) {
+        this.settings = settings;
+        this.signature = computeSignature(settings, files);
+        loadCache();
+    }
+
+    /**
+     * Checks if an asset can be taken from the saved atlas without decoding it
+     * @param path the path to the asset
+     * @return true if the saved atlas has this asset
+     */
+    public boolean isCached(String path) {
+        return cachedRegions.containsKey(path);
+    }
+
+    /**
+     * Gets an asset from the saved atlas
+     * @param path the path to the asset
+     * @return the region, or null if the saved atlas does not have this asset
+     */
+    public TextureRegion getCachedRegion(String path) {
+        return cachedRegions.get(path);
+    }
+
+    /**
+     * Checks if a decoded asset is an image small enough to be packed
+     * @param decoded the result of {@link ObjectConverter#decode(FileHandle)}
+     * @return true if the asset should be packed
+     */
+    public boolean accepts(Object decoded) {
+        int width;
+        int height;
+        if (decoded instanceof Pixmap) {
+            width = ((Pixmap) decoded).getWidth();
+            height = ((Pixmap) decoded).getHeight();
+        } else if (decoded instanceof PackedTextureData) {
+            width = ((PackedTextureData) decoded).getWidth();
+            height = ((PackedTextureData) decoded).getHeight();
+        } else {
+            return false;
+        }
+        return width <= settings.maxImageSize && height <= settings.maxImageSize
+            && width <= settings.pageWidth - settings.padding * 2
+            && height <= settings.pageHeight - settings.padding * 2;
+    }
+
+    /**
+     * Packs an image that {@link #accepts(Object)} returned true for. Images from an
+     * {@link AssetPack} are copied into a pixmap first.
+     * @param path the path to the asset
+     * @param decoded the decoded image
+     */
+    public void pack(String path, Object decoded) {
+        if (decoded instanceof PackedTextureData) {
+            pack(path, ((PackedTextureData) decoded).toPixmap());
+        } else {
+            pack(path, (Pixmap) decoded);
+        }
+    }
+
+    /**
+     * Packs an image into the atlas and disposes the pixmap.
+     * @param path the path to the asset
+     * @param pixmap the decoded image
+     */
+    public void pack(String path, Pixmap pixmap) {
+        if (packer == null) {
+            packer = new PixmapPacker(settings.pageWidth, settings.pageHeight, Pixmap.Format.RGBA8888,
+                settings.padding, settings.duplicateBorder, new PixmapPacker.SkylineStrategy());
+        }
+        packer.pack(path, pixmap);
+        pixmap.dispose();
+        packedCount++;
+    }
+
+    /**
+     * Gets the number of images waiting in the packer
+     * @return the number of packed images
+     */
+    public int getPackedCount() {
+        return packedCount;
+    }
+
+    /**
+     * Uploads the packed pages and saves them to the cache file if one is set.
+     * Must be called on the GL thread.
+     * @return the atlas holding every packed image, or null if nothing was packed
+     */
+    public TextureAtlas finish() {
+        if (packer == null) {
+            return null;
+        }
+
+        TextureAtlas atlas = packer.generateTextureAtlas(settings.minFilter, settings.magFilter, false);
+        logger.info("Packed {} images into {} atlas pages", packedCount, packer.getPages().size);
+
+        if (settings.cacheFile != null) {
+            saveCache();
+        }
+        packer.dispose();
+        packer = null;
+        return atlas;
+    }
+
+    /**
+     * Releases images that were packed but never finished, for example when loading is cancelled
+     */
+    public void dispose() {
+        if (packer != null) {
+            packer.dispose();
+            packer = null;
+        }
+    }
+
+    /**
+     * Gets the atlas loaded from the cache file
+     * @return the saved atlas, or null if there was no up to date one
+     */
+    public TextureAtlas getCachedAtlas() {
+        return cachedAtlas;
+    }
+
+    /**
+     * Loads the saved atlas if its signature matches the current images and settings
+     */
+    private void loadCache() {
+        if (settings.cacheFile == null || !settings.cacheFile.exists()) {
+            return;
+        }
+        FileHandle signatureFile = getSignatureFile();
+        if (!signatureFile.exists() || !signature.equals(signatureFile.readString("UTF-8"))) {
+            logger.info("Saved atlas is out of date, repacking");
+            return;
+        }
+
+        try {
+            cachedAtlas = new TextureAtlas(settings.cacheFile);
+        } catch (Exception e) {
+            logger.error("Could not load saved atlas: {}", settings.cacheFile, e);
+            return;
+        }
+        for (TextureAtlas.AtlasRegion region : cachedAtlas.getRegions()) {
+            cachedRegions.put(region.name, region);
+        }
+        logger.info("Loaded {} images from saved atlas {}", cachedRegions.size, settings.cacheFile);
+    }
+
+    /**
+     * Saves the packed pages and the signature they were packed for
+     */
+    private void saveCache() {
+        try {
+            PixmapPackerIO.SaveParameters parameters = new PixmapPackerIO.SaveParameters();
+            parameters.minFilter = settings.minFilter;
+            parameters.magFilter = settings.magFilter;
+            new PixmapPackerIO().save(settings.cacheFile, packer, parameters);
+            getSignatureFile().writeString(signature, false, "UTF-8");
+            logger.info("Saved atlas to {}", settings.cacheFile);
+        } catch (Exception e) {
+            logger.error("Could not save atlas: {}", settings.cacheFile, e);
+        }
+    }
+
+    private FileHandle getSignatureFile() {
+        return settings.cacheFile.sibling(settings.cacheFile.name() + ".sig");
+    }
+
+    /**
+     * Computes a checksum of the packing settings and the name, size and modification time of
+     * every file, so a saved atlas is only reused when nothing has changed
+     */
+    private static String computeSignature(Settings settings, Map<String, FileHandle> files) {
+        List<String> paths = new ArrayList<>(files.keySet());
+        Collections.sort(paths);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(settings.pageWidth).append('x').append(settings.pageHeight)
+            .append(',').append(settings.padding).append(',').append(settings.duplicateBorder)
+            .append(',').append(settings.maxImageSize)
+            .append(',').append(settings.minFilter).append(',').append(settings.magFilter).append('\n');
+        for (String path : paths) {
+            FileHandle file = files.get(path);
+            if (!ObjectConverter.isImage(file)) {
+                continue;
+            }
+            builder.append(path).append(',').append(file.length()).append(',').append(file.lastModified()).append('\n');
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        return Long.toHexString(crc.getValue()) + "-" + paths.size();
+    }
+}
@@ -4,30 +4,87 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.google.gson.Gson;
+import io.github.equinoxelectronic.data.Definition;
+import io.github.equinoxelectronic.data.DefinitionRegistry;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import java.io.FileReader;
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.Reader;
 
 /**
  * This class converts a file into an object that can be used by the game.
+ *
+ * Conversion happens in two steps so it can be split across threads:
+ * {@link #decode(FileHandle)} does the file reading and CPU-side decoding and is safe to call
+ * from any thread, while {@link #finish(Object)} creates the OpenGL textures and the sounds and
+ * must be called on the GL thread. Shaders are not compiled here: their sources go to the {@link ShaderLibrary},
+ * which pairs them up and compiles them during its warm-up.
  */
 public class ObjectConverter {
+    /**
+     * Audio longer than this many seconds is streamed as {@link Music} rather than decoded into a {@link Sound}
+     */
+    public static final float STREAM_AUDIO_SECONDS = 10f;
+
+    // Assumed bitrate of compressed audio (128 kbit/s) when estimating its duration
+    private static final int COMPRESSED_AUDIO_BYTES_PER_SECOND = 16000;
+    // Size of a canonical wav header
+    private static final int WAV_HEADER_BYTES = 44;
+
+    // Gson is thread-safe and expensive to create, so one instance is shared by every load
+    private static final Gson GSON = new Gson();
+    // Created on first use, since most games have no xml assets
+    private static volatile JAXBContext xmlContext;
+
     /**
      * Converts a file into an object that can be used by the game.
+     * Must be called on the GL thread.
      * @param file The file to convert.
      * @return The converted object.
      */
     public static Object convert(File file) {
-        switch (file.getName().substring(file.getName().lastIndexOf(".") + 1)) {
+        return finish(decode(new FileHandle(file)));
+    }
+
+    /**
+     * Reads and decodes a file without touching OpenGL. Images are returned as a {@link Pixmap}
+     * (or {@link TextureData} when baked into a pack), audio as an {@link AudioSource} and shaders as a {@link ShaderSource}; pass the result to {@link #finish(Object)} on the
+     * GL thread to turn those into their final form. JSON files under {@code definitions/} are parsed
+     * into a {@link io.github.equinoxelectronic.data.DefinitionSet}.
+     * Prefer {@link #decode(String, FileHandle)} for assets, this judges the file by its full path.
+     * @param file The file to decode.
+     * @return The decoded object, or the original {@link File} if it could not be decoded.
+     */
+    public static Object decode(FileHandle file) {
+        return decode(file.path(), file);
+    }
+
+    /**
+     * Reads and decodes an asset without touching OpenGL, see {@link #decode(FileHandle)}.
+     * @param path The asset path, relative to the assets root, which decides how audio is loaded.
+     * @param file The file to decode.
+     * @return The decoded object, or the original {@link File} if it could not be decoded.
+     */
+    public static Object decode(String path, FileHandle file) {
+        // Assets baked into a pack may already be decoded
+        if (file instanceof PackedFileHandle) {
+            Object prebaked = ((PackedFileHandle) file).decodePrebaked();
+            if (prebaked != null) {
+                return prebaked;
+            }
+        }
+
+        switch (file.extension()) {
             case "png":
             case "jpg":
             case "jpeg":
@@ -37,52 +94,224 @@ public class ObjectConverter {
             case "dds":
             case "hdr":
                 try {
-                    Texture texture = new Texture(new FileHandle(file.getAbsolutePath()));
-                    return new TextureRegion(texture);
+                    return new Pixmap(file);
                 } catch (Exception e) {
-                    System.err.println("COULD NOT CONVERT IMAGE! "+file.getName() + "\n" + e.getMessage());
-                    return file;
+                    System.err.println("COULD NOT CONVERT IMAGE! "+file.name() + "\n" + e.getMessage());
+                    return file.file();
                 }
 
             case "json":
-                try {
-                    return new Gson().fromJson(new FileReader(file), Object.class);
+                // Game definitions are parsed straight into their classes
+                Class<? extends Definition> definitionType = DefinitionRegistry.getInstance().typeFor(file);
+                if (definitionType != null) {
+                    try {
+                        return DefinitionRegistry.parse(file, definitionType);
+                    } catch (Exception e) {
+                        System.err.println("COULD NOT PARSE DEFINITIONS! " + file.path() + "\n" + e.getMessage());
+                        return file.file();
+                    }
+                }
+                try (Reader reader = file.reader(8192, "UTF-8")) {
+                    return GSON.fromJson(reader, Object.class);
                 } catch (Exception e) {
-                    return file;
+                    return file.file();
                 }
             case "wav":
             case "mp3":
             case "ogg":
                 try {
-                    return Gdx.audio.newSound(Gdx.files.absolute(file.getPath()));
+                    // The audio backend is not thread-safe, so the sound is only created in finish
+                    return new AudioSource(file, isStreamedAudio(path, file));
                 } catch (Exception e) {
-                    return file;
+                    return file.file();
                 }
             case "glsl":
             case "vert":
             case "frag":
                 try {
-                    String shaderCode = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
-                    return new ShaderProgram(shaderCode, shaderCode);
+                    return new ShaderSource(file.name(), file.readString("UTF-8"));
                 } catch (Exception e) {
-                    return file;
+                    return file.file();
                 }
             case "txt":
                 try {
-                    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                    return file.readString("UTF-8");
                 } catch (Exception e) {
-                    return file;
+                    return file.file();
                 }
             case "xml":
-                try {
-                    JAXBContext context = JAXBContext.newInstance(Object.class);
-                    Unmarshaller unmarshaller = context.createUnmarshaller();
-                    return unmarshaller.unmarshal(file);
+                // Read through the handle, files in a pack have no File on disk
+                try (InputStream input = file.read()) {
+                    Unmarshaller unmarshaller = getXmlContext().createUnmarshaller();
+                    return unmarshaller.unmarshal(input);
                 } catch (Exception e) {
-                    return file;
+                    return file.file();
+                }
+
+            default: return file.file();
+        }
+    }
+
+    /**
+     * Gets the JAXB context shared by every xml load, creating it on first use
+     * @return the context
+     * @throws JAXBException if the context could not be created
+     */
+    private static JAXBContext getXmlContext() throws JAXBException {
+        JAXBContext context = xmlContext;
+        if (context == null) {
+            synchronized (ObjectConverter.class) {
+                context = xmlContext;
+                if (context == null) {
+                    context = JAXBContext.newInstance(Object.class);
+                    xmlContext = context;
+                }
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Checks if a file is an image, judging by its extension
+     * @param file The file to check.
+     * @return True if {@link #decode(FileHandle)} would decode it as an image.
+     */
+    public static boolean isImage(FileHandle file) {
+        switch (file.extension()) {
+            case "png":
+            case "jpg":
+            case "jpeg":
+            case "bmp":
+            case "tga":
+            case "gif":
+            case "dds":
+            case "hdr":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if an audio file should be streamed as {@link Music} instead of loaded as a {@link Sound}.
+     * Files in a {@code music} folder are always streamed; anything else is streamed if it is
+     * estimated to be longer than {@link #STREAM_AUDIO_SECONDS}.
+     * @param path The asset path, relative to the assets root, so folders above the assets don't count.
+     * @param file The audio file.
+     * @return True if the file should be streamed.
+     */
+    public static boolean isStreamedAudio(String path, FileHandle file) {
+        if (("/" + path).contains("/music/")) {
+            return true;
+        }
+        return estimateAudioSeconds(file) > STREAM_AUDIO_SECONDS;
+    }
+
+    /**
+     * Estimates how long an audio file plays for. Wav files are measured from their header,
+     * compressed files are assumed to be 128 kbit/s.
+     * @param file The audio file.
+     * @return The estimated duration in seconds.
+     */
+    public static float estimateAudioSeconds(FileHandle file) {
+        long length = file.length();
+        if ("wav".equals(file.extension())) {
+            int byteRate = readWavByteRate(file);
+            if (byteRate > 0) {
+                return (length - WAV_HEADER_BYTES) / (float) byteRate;
+            }
+        }
+        return length / (float) COMPRESSED_AUDIO_BYTES_PER_SECOND;
+    }
+
+    /**
+     * Reads the byte rate from a wav header
+     * @param file The wav file.
+     * @return The bytes per second, or 0 if the header could not be read.
+     */
+    private static int readWavByteRate(FileHandle file) {
+        byte[] header = new byte[32];
+        try (InputStream input = file.read()) {
+            int read = 0;
+            while (read < header.length) {
+                int count = input.read(header, read, header.length - read);
+                if (count < 0) {
+                    return 0;
                 }
+                read += count;
+            }
+        } catch (Exception e) {
+            return 0;
+        }
+        // Little-endian int at offset 28 of the RIFF header
+        return (header[28] & 0xFF) | (header[29] & 0xFF) << 8 | (header[30] & 0xFF) << 16 | (header[31] & 0xFF) << 24;
+    }
+
+    /**
+     * Turns the result of {@link #decode(FileHandle)} into its final form by uploading images and creating sounds.
+     * Anything that does not need OpenGL is returned unchanged.
+     * Must be called on the GL thread.
+     * @param decoded The decoded object.
+     * @return The finished object.
+     */
+    public static Object finish(Object decoded) {
+        if (decoded instanceof Pixmap) {
+            // The texture data disposes the pixmap once it has been uploaded
+            Texture texture = new Texture(new PixmapTextureData((Pixmap) decoded, null, false, true));
+            return new TextureRegion(texture);
+        }
+        if (decoded instanceof TextureData) {
+            return new TextureRegion(new Texture((TextureData) decoded));
+        }
+        if (decoded instanceof AudioSource) {
+            AudioSource audio = (AudioSource) decoded;
+            try {
+                // Long tracks are streamed instead of being decoded into memory up front
+                if (audio.streamed) {
+                    return Gdx.audio.newMusic(audio.file);
+                }
+                return Gdx.audio.newSound(audio.file);
+            } catch (Exception e) {
+                return audio.file.file();
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Releases anything {@link #decode(FileHandle)} allocated that will never be finished,
+     * for example when loading is cancelled.
+     * @param decoded The decoded object to discard.
+     */
+    public static void discard(Object decoded) {
+        if (decoded instanceof Pixmap) {
+            ((Pixmap) decoded).dispose();
+        }
+    }
+
+    /**
+     * An audio file waiting to be turned into a {@link Music} (if streamed) or a {@link Sound} by {@link #finish(Object)}.
+     */
+    public static class AudioSource {
+        public final FileHandle file;
+        public final boolean streamed;
+
+        public AudioSource(FileHandle file, boolean streamed) {
+            this.file = file;
+            this.streamed = streamed;
+        }
+    }
+
+    /**
+     * The source code of one shader file, to be compiled by the {@link ShaderLibrary}.
+     */
+    public static class ShaderSource {
+        public final String name;
+        public final String code;
 
-            default: return file;
+        public ShaderSource(String name, String code) {
+            this.name = name;
+            this.code = code;
         }
     }
 }
@@ -0,0 +1,77 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A file handle for an asset inside an {@link AssetPack}.
+ *
+ * Reads come straight from the pack's buffer, so assets stored as-is (audio, shaders, text)
+ * can go through the same decoders as loose files.
+ */
+public class PackedFileHandle extends FileHandle {
+    private final AssetPack pack;
+    private final AssetPack.Entry entry;
+
+    PackedFileHandle(AssetPack pack, AssetPack.Entry entry) {
+        super(entry.path, Files.FileType.Classpath);
+        this.pack = pack;
+        this.entry = entry;
+    }
+
+    /**
+     * Decodes the asset if it was pre-processed when the pack was baked
+     * @return the decoded asset, or null if the normal decoders should be used
+     */
+    Object decodePrebaked() {
+        return pack.decodePrebaked(entry);
+    }
+
+    /**
+     * Gets the asset's bytes without copying them
+     * @return a read-only view of the bytes
+     */
+    public ByteBuffer slice() {
+        return pack.slice(entry);
+    }
+
+    @Override
+    public InputStream read() {
+        return new AssetPack.SliceInputStream(pack.slice(entry));
+    }
+
+    @Override
+    public byte[] readBytes() {
+        byte[] bytes = new byte[entry.length];
+        pack.slice(entry).get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public long length() {
+        return entry.length;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return false;
+    }
+
+    @Override
+    public long lastModified() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return entry.path + " (packed)";
+    }
+}
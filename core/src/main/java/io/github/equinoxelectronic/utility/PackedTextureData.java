@@ -0,0 +1,97 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Texture data made of raw RGBA8888 pixels from an {@link AssetPack}.
+ * The pixels are uploaded straight from the pack's buffer, without going through a Pixmap.
+ */
+public class PackedTextureData implements TextureData {
+    private final int width;
+    private final int height;
+    private final ByteBuffer pixels;
+
+    /**
+     * @param width the width in pixels
+     * @param height the height in pixels
+     * @param pixels the RGBA8888 pixels, top row first; must be a direct buffer
+     */
+    public PackedTextureData(int width, int height, ByteBuffer pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Copies the pixels into a new Pixmap, for images that are packed into an atlas rather than uploaded on their own
+     * @return the pixmap, owned by the caller
+     */
+    public Pixmap toPixmap() {
+        Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        ByteBuffer target = pixmap.getPixels();
+        target.put(pixels.duplicate());
+        target.position(0);
+        return pixmap;
+    }
+
+    @Override
+    public TextureDataType getType() {
+        return TextureDataType.Custom;
+    }
+
+    @Override
+    public boolean isPrepared() {
+        return true;
+    }
+
+    @Override
+    public void prepare() {
+    }
+
+    @Override
+    public Pixmap consumePixmap() {
+        throw new GdxRuntimeException("PackedTextureData is uploaded directly and has no Pixmap");
+    }
+
+    @Override
+    public boolean disposePixmap() {
+        return false;
+    }
+
+    @Override
+    public void consumeCustomData(int target) {
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+        Gdx.gl.glTexImage2D(target, 0, GL20.GL_RGBA, width, height, 0, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, pixels);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Pixmap.Format getFormat() {
+        return Pixmap.Format.RGBA8888;
+    }
+
+    @Override
+    public boolean useMipMaps() {
+        return false;
+    }
+
+    @Override
+    public boolean isManaged() {
+        return false;
+    }
+}
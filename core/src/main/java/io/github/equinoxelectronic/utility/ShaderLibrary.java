@@ -0,0 +1,626 @@
+package io.github.equinoxelectronic.utility;
+
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds and owns every shader program.
+ *
+ * Shader files are registered as sources while assets load, and programs are compiled later in
+ * an explicit warm-up phase ({@link #warmUp(long)}), so no program is compiled the first time it
+ * is used mid-game. Sources are paired up by name:
+ * - {@code name.vert} and {@code name.frag} make up the program {@code name}
+ * - a {@code name.glsl} file with a {@code main} function is a program on its own, compiled once
+ *   per stage with {@code VERTEX} or {@code FRAGMENT} defined
+ * - any other {@code .glsl} file is a chunk that other sources pull in with {@code #include "file.glsl"}
+ *
+ * Variants of a program are requested with {@link #require(String, String...)} and a set of
+ * preprocessor defines. Variants that end up with identical source share one compiled program.
+ */
+public class ShaderLibrary {
+    private static final Log logger = new Log("ShaderLibrary");
+
+    // Shader source code keyed by asset path
+    private final HashMap<String, String> sources = new HashMap<>();
+    // Every program variant that should be compiled, keyed by variant name
+    private final LinkedHashMap<String, Variant> variants = new LinkedHashMap<>();
+    // Variants waiting for the warm-up
+    private final Array<Variant> pending = new Array<>();
+    // Compiled programs keyed by their preprocessed source, so identical variants are compiled once
+    private final HashMap<String, ShaderProgram> compiled = new HashMap<>();
+    // Compiled programs keyed by variant name, looked up through handles
+    private final AssetStore<ShaderProgram> programs = new AssetStore<>(ShaderProgram.class);
+    // One result per compile since the last clear
+    private final Array<CompileResult> results = new Array<>();
+    // Index of the first result of the warm-up in progress, which may be spread over several frames
+    private int warmUpStart = -1;
+
+    /**
+     * Gets the name of the program a shader file belongs to
+     * @param path the path to the shader file
+     * @return the path without its shader extension
+     */
+    public static String programName(String path) {
+        if (isShaderFile(path)) {
+            return path.substring(0, path.length() - 5);
+        }
+        return path;
+    }
+
+    /**
+     * Checks if a path is a shader file, judging by its extension
+     * @param path the path
+     * @return true for .vert, .frag and .glsl files
+     */
+    public static boolean isShaderFile(String path) {
+        return path.endsWith(".vert") || path.endsWith(".frag") || path.endsWith(".glsl");
+    }
+
+    /**
+     * Gets the program a variant was made from
+     * @param name the variant name, see {@link #variantName(String, String...)}
+     * @return the program name
+     */
+    static String variantProgram(String name) {
+        int defines = name.indexOf('[');
+        return defines < 0 ? name : name.substring(0, defines);
+    }
+
+    /**
+     * Gets the name of a variant of a program
+     * @param program the program name
+     * @param defines the defines, in any order
+     * @return the program name, followed by the sorted defines in brackets if there are any
+     */
+    public static String variantName(String program, String... defines) {
+        if (defines.length == 0) {
+            return program;
+        }
+        String[] sorted = defines.clone();
+        Arrays.sort(sorted);
+        StringBuilder name = new StringBuilder(program).append('[');
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0) {
+                name.append(',');
+            }
+            name.append(sorted[i]);
+        }
+        return name.append(']').toString();
+    }
+
+    /**
+     * Registers the source of a shader file. Programs it is part of are compiled again at the next warm-up.
+     * @param path the path to the shader file
+     * @param code the source code
+     */
+    public void addSource(String path, String code) {
+        String previous = sources.put(path, code);
+        if (code.equals(previous)) {
+            return;
+        }
+        if (isProgramSource(path, code)) {
+            String program = programName(path);
+            if (!variants.containsKey(program)) {
+                variants.put(program, new Variant(program, program, new String[0], false));
+            }
+            requeue(program);
+        } else if (previous != null) {
+            // A chunk changed, and any program may include it
+            requeue(null);
+        }
+    }
+
+    /**
+     * Gets the source of a shader file
+     * @param path the path to the shader file
+     * @return the source code, or null if it is not loaded
+     */
+    public String getSource(String path) {
+        return sources.get(path);
+    }
+
+    /**
+     * Forgets the source of a shader file. Programs that were already compiled from it stay usable.
+     * @param path the path to the shader file
+     */
+    public void removeSource(String path) {
+        sources.remove(path);
+    }
+
+    /**
+     * Disposes the compiled variants of a program, after its sources were unloaded. Variants
+     * requested with {@link #require(String, String...)} stay requested, and are compiled again
+     * once the sources are added back; until then their handles give null.
+     * @param program the program name
+     */
+    public void unload(String program) {
+        Iterator<Variant> iterator = variants.values().iterator();
+        while (iterator.hasNext()) {
+            Variant variant = iterator.next();
+            if (!variant.program.equals(program)) {
+                continue;
+            }
+            programs.remove(variant.name);
+            if (variant.pending) {
+                variant.pending = false;
+                pending.removeValue(variant, true);
+            }
+            if (!variant.requested) {
+                iterator.remove();
+            }
+        }
+        // Programs shared with variants of other programs stay
+        disposeUnused();
+    }
+
+    /**
+     * Requests a variant of a program, to be compiled at the next warm-up.
+     * This can be done before the sources have loaded.
+     * @param program the program name, the path to its files without the extension
+     * @param defines preprocessor defines, either {@code NAME} or {@code NAME=VALUE}
+     * @return the handle to the variant
+     */
+    public AssetHandle<ShaderProgram> require(String program, String... defines) {
+        String name = variantName(program, defines);
+        Variant variant = variants.get(name);
+        if (variant == null) {
+            variant = new Variant(name, program, defines.clone(), true);
+            variants.put(name, variant);
+            queue(variant);
+        } else {
+            variant.requested = true;
+        }
+        return programs.resolve(name);
+    }
+
+    /**
+     * Resolves a variant name to a handle. This can be done before the program has been compiled.
+     * @param name the variant name, see {@link #variantName(String, String...)}
+     * @return the handle
+     */
+    public AssetHandle<ShaderProgram> getHandle(String name) {
+        return programs.resolve(name);
+    }
+
+    /**
+     * Checks if a handle refers to a program of this library
+     * @param handle the handle
+     * @return true for handles from {@link #getHandle(String)} and {@link #require(String, String...)}
+     */
+    boolean owns(AssetHandle<?> handle) {
+        return handle.store == programs;
+    }
+
+    /**
+     * Gets a compiled program. A variant that has not been warmed up yet is compiled right away,
+     * which is logged since it can cause a hitch.
+     * @param name the variant name, see {@link #variantName(String, String...)}
+     * @return the program, or null if it does not exist or failed to compile
+     */
+    public ShaderProgram get(String name) {
+        Variant variant = variants.get(name);
+        if (variant != null && variant.pending) {
+            logger.info("Compiling shader outside of warm-up: {}", name);
+            compile(variant);
+        }
+        return programs.get(name);
+    }
+
+    /**
+     * Compiles every pending variant. Must be called on the GL thread.
+     * @return the number of variants compiled
+     */
+    public int warmUp() {
+        int count = pending.size;
+        warmUp(Long.MAX_VALUE);
+        return count;
+    }
+
+    /**
+     * Compiles pending variants until the time budget is used up.
+     * At least one variant is compiled per call, so the warm-up always makes progress.
+     * Must be called on the GL thread.
+     * @param budgetNanos the time this call may take, in nanoseconds
+     * @return true once no variant is pending
+     */
+    public boolean warmUp(long budgetNanos) {
+        if (pending.size == 0) {
+            return true;
+        }
+        long start = System.nanoTime();
+        if (warmUpStart < 0) {
+            warmUpStart = results.size;
+        }
+        do {
+            compile(pending.first());
+        } while (pending.size > 0 && System.nanoTime() - start < budgetNanos);
+
+        if (pending.size == 0) {
+            disposeUnused();
+            logWarmUp(warmUpStart);
+            warmUpStart = -1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compiles a variant, or reuses a program compiled from the same source.
+     * If compiling fails, the variant keeps the program it had before, if any.
+     * @param variant the variant to compile
+     */
+    private void compile(Variant variant) {
+        variant.pending = false;
+        pending.removeValue(variant, true);
+
+        String vertex;
+        String fragment;
+        try {
+            vertex = buildStage(variant, true);
+            fragment = buildStage(variant, false);
+        } catch (IllegalArgumentException e) {
+            results.add(new CompileResult(variant.name, 0, false, false, e.getMessage()));
+            return;
+        }
+
+        String key = vertex + '\0' + fragment;
+        ShaderProgram program = compiled.get(key);
+        if (program != null) {
+            programs.set(variant.name, program);
+            results.add(new CompileResult(variant.name, 0, true, true, ""));
+            return;
+        }
+
+        long start = System.nanoTime();
+        program = new ShaderProgram(vertex, fragment);
+        if (program.isCompiled()) {
+            // Drivers may defer part of the work until a program is first bound
+            program.bind();
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (!program.isCompiled()) {
+            String log = program.getLog();
+            program.dispose();
+            results.add(new CompileResult(variant.name, nanos, false, false, log));
+            return;
+        }
+        compiled.put(key, program);
+        programs.set(variant.name, program);
+        results.add(new CompileResult(variant.name, nanos, true, false, program.getLog()));
+    }
+
+    /**
+     * Builds the full source of one stage of a variant
+     * @param variant the variant
+     * @param vertexStage true for the vertex stage, false for the fragment stage
+     * @return the preprocessed source
+     * @throws IllegalArgumentException if a source or an include is missing
+     */
+    private String buildStage(Variant variant, boolean vertexStage) {
+        String path = variant.program + (vertexStage ? ".vert" : ".frag");
+        if (!sources.containsKey(path)) {
+            path = variant.program + ".glsl";
+        }
+        String code = sources.get(path);
+        if (code == null) {
+            throw new IllegalArgumentException("No " + (vertexStage ? "vertex" : "fragment") + " source for " + variant.program);
+        }
+
+        StringBuilder body = new StringBuilder(code.length() * 2);
+        expandIncludes(path, code, new HashSet<String>(), body);
+
+        StringBuilder defines = new StringBuilder();
+        if (path.endsWith(".glsl")) {
+            defines.append("#define ").append(vertexStage ? "VERTEX" : "FRAGMENT").append('\n');
+        }
+        for (String define : variant.defines) {
+            defines.append("#define ").append(define.replace('=', ' ')).append('\n');
+        }
+
+        // Defines have to come after #version, which must be the first statement
+        String source = body.toString();
+        int versionStart = 0;
+        while (versionStart < source.length() && Character.isWhitespace(source.charAt(versionStart))) {
+            versionStart++;
+        }
+        if (!source.startsWith("#version", versionStart)) {
+            return defines + source;
+        }
+        int versionEnd = source.indexOf('\n', versionStart) + 1;
+        return source.substring(0, versionEnd) + defines + source.substring(versionEnd);
+    }
+
+    /**
+     * Copies a source into a builder, replacing {@code #include} lines with the included chunks.
+     * Each chunk is included at most once per stage.
+     * @param path the path to the source
+     * @param code the source code
+     * @param included the chunks already included in this stage
+     * @param out the builder to append to
+     * @throws IllegalArgumentException if an included chunk is missing
+     */
+    private void expandIncludes(String path, String code, Set<String> included, StringBuilder out) {
+        included.add(path);
+        int lineStart = 0;
+        while (lineStart < code.length()) {
+            int lineEnd = code.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = code.length();
+            }
+            String line = code.substring(lineStart, lineEnd);
+            String trimmed = line.trim();
+            if (trimmed.startsWith("#include")) {
+                String chunk = resolveInclude(path, trimmed.substring("#include".length()).trim());
+                if (!included.contains(chunk)) {
+                    expandIncludes(chunk, sources.get(chunk), included, out);
+                }
+            } else {
+                out.append(line).append('\n');
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Finds the chunk an include refers to among the loaded sources
+     * @param from the path to the including file
+     * @param target the include target, in quotes or angle brackets
+     * @return the path to the chunk
+     * @throws IllegalArgumentException if no such chunk was loaded
+     */
+    private String resolveInclude(String from, String target) {
+        String chunk = findInclude(from, target, sources.keySet());
+        if (chunk == null) {
+            throw new IllegalArgumentException("Could not find " + includeName(target) + " included from " + from);
+        }
+        return chunk;
+    }
+
+    /**
+     * Finds the chunk an include refers to: relative to the including file, then from the asset
+     * root, then by file name anywhere
+     * @param from the path to the including file
+     * @param target the include target, in quotes or angle brackets
+     * @param paths the paths of every shader file to look in
+     * @return the path to the chunk, or null if it is not among the paths
+     */
+    static String findInclude(String from, String target, Collection<String> paths) {
+        String name = includeName(target);
+        int slash = from.lastIndexOf('/');
+        String relative = slash < 0 ? name : from.substring(0, slash + 1) + name;
+        if (paths.contains(relative)) {
+            return relative;
+        }
+        if (paths.contains(name)) {
+            return name;
+        }
+        for (String path : paths) {
+            if (path.endsWith("/" + name)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    private static String includeName(String target) {
+        return target.replaceAll("^[\"<]|[\">]$", "");
+    }
+
+    /**
+     * Lists the targets of the {@code #include} lines in a source, without resolving them
+     * @param code the source code
+     * @return the include targets, in quotes or angle brackets
+     */
+    static List<String> findIncludeTargets(String code) {
+        List<String> targets = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < code.length()) {
+            int lineEnd = code.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = code.length();
+            }
+            String trimmed = code.substring(lineStart, lineEnd).trim();
+            if (trimmed.startsWith("#include")) {
+                targets.add(trimmed.substring("#include".length()).trim());
+            }
+            lineStart = lineEnd + 1;
+        }
+        return targets;
+    }
+
+    /**
+     * Checks if a source is a program of its own rather than a chunk
+     * @param path the path to the shader file
+     * @param code the source code
+     * @return true for vertex and fragment sources, and for .glsl files with a main function
+     */
+    private static boolean isProgramSource(String path, String code) {
+        return !path.endsWith(".glsl") || code.matches("(?s).*\\bvoid\\s+main\\s*\\(.*");
+    }
+
+    /**
+     * Queues variants to be compiled at the next warm-up
+     * @param program the program whose variants to queue, or null for every variant
+     */
+    private void requeue(String program) {
+        for (Variant variant : variants.values()) {
+            if (program == null || variant.program.equals(program)) {
+                queue(variant);
+            }
+        }
+    }
+
+    private void queue(Variant variant) {
+        if (!variant.pending) {
+            variant.pending = true;
+            pending.add(variant);
+        }
+    }
+
+    /**
+     * Disposes programs that no variant uses anymore after being recompiled
+     */
+    private void disposeUnused() {
+        Set<ShaderProgram> used = new HashSet<>();
+        for (Variant variant : variants.values()) {
+            ShaderProgram program = programs.get(variant.name);
+            if (program != null) {
+                used.add(program);
+            }
+        }
+        Iterator<ShaderProgram> iterator = compiled.values().iterator();
+        while (iterator.hasNext()) {
+            ShaderProgram program = iterator.next();
+            if (!used.contains(program)) {
+                program.dispose();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Logs the outcome of a warm-up
+     * @param firstResult the index of the first result of this warm-up
+     */
+    private void logWarmUp(int firstResult) {
+        int count = 0;
+        int shared = 0;
+        long nanos = 0;
+        for (int i = firstResult; i < results.size; i++) {
+            CompileResult result = results.get(i);
+            count++;
+            nanos += result.nanos;
+            if (result.shared) {
+                shared++;
+            }
+            if (!result.compiled) {
+                logger.error("Shader failed to compile: {}\n{}", result.name, result.log);
+            } else {
+                logger.debug("Compiled shader {} in {}us{}", result.name, result.nanos / 1000, result.shared ? " (shared)" : "");
+            }
+        }
+        logger.info("Warmed up {} shader variants ({} shared) in {}ms", count, shared, nanos / 1_000_000);
+    }
+
+    /**
+     * Gets the result of every compile since the last clear, in order
+     * @return the compile results
+     */
+    public Array<CompileResult> getCompileResults() {
+        return results;
+    }
+
+    /**
+     * Gets the compiles that failed since the last clear, with their logs
+     * @return the failed compile results
+     */
+    public Array<CompileResult> getFailedCompiles() {
+        Array<CompileResult> failed = new Array<>();
+        for (CompileResult result : results) {
+            if (!result.compiled) {
+                failed.add(result);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Gets the number of variants waiting for the warm-up
+     * @return the number of pending variants
+     */
+    public int getPendingCount() {
+        return pending.size;
+    }
+
+    /**
+     * Gets the names of every known variant
+     * @return the variant names
+     */
+    public Set<String> getVariantNames() {
+        return variants.keySet();
+    }
+
+    /**
+     * Disposes every program and forgets every source. Requested variants stay requested and are
+     * compiled again at the next warm-up; existing handles stay valid.
+     */
+    public void clear() {
+        for (ShaderProgram program : compiled.values()) {
+            program.dispose();
+        }
+        compiled.clear();
+        programs.clear();
+        sources.clear();
+        results.clear();
+        pending.clear();
+        warmUpStart = -1;
+
+        Iterator<Map.Entry<String, Variant>> iterator = variants.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Variant variant = iterator.next().getValue();
+            variant.pending = false;
+            if (variant.requested) {
+                queue(variant);
+            } else {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * The outcome of compiling one variant
+     */
+    public static class CompileResult {
+        public final String name;
+        public final long nanos;
+        public final boolean compiled;
+        // True if an identical variant was already compiled and its program was reused
+        public final boolean shared;
+        public final String log;
+
+        public CompileResult(String name, long nanos, boolean compiled, boolean shared, String log) {
+            this.name = name;
+            this.nanos = nanos;
+            this.compiled = compiled;
+            this.shared = shared;
+            this.log = log;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + (compiled ? "compiled in " + nanos / 1000 + "us" + (shared ? " (shared)" : "") : "failed\n" + log);
+        }
+    }
+
+    /**
+     * A program together with a set of defines
+     */
+    private static class Variant {
+        final String name;
+        final String program;
+        final String[] defines;
+        // True if asked for with require(), rather than only found among the sources
+        boolean requested;
+        boolean pending;
+
+        Variant(String name, String program, String[] defines, boolean requested) {
+            this.name = name;
+            this.program = program;
+            this.defines = defines;
+            this.requested = requested;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.equinoxelectronic.world;
+
+/**
+ * The kinds of land the {@link WorldGenerator} places, each drawn as one terrain type.
+ */
+public enum Biome {
+    OCEAN("ocean"),
+    PLAINS("plains"),
+    FOREST("forest"),
+    HILLS("hills"),
+    MOUNTAINS("mountains"),
+    DESERT("desert");
+
+    private final String terrain;
+
+    Biome(String terrain) {
+        this.terrain = terrain;
+    }
+
+    /**
+     * Gets the id of the terrain definition tiles of this biome get
+     * @return the terrain id
+     */
+    public String getTerrain() {
+        return terrain;
+    }
+}
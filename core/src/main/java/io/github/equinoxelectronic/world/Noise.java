@@ -0,0 +1,91 @@
+package io.github.equinoxelectronic.world;
+
+/**
+ * Seeded two dimensional gradient noise, for generating terrain.
+ *
+ * Every value is computed from the seed and the coordinates alone, with no tables or state, so
+ * the same seed always gives the same world and any number of threads can sample one instance
+ * at the same time.
+ */
+public final class Noise {
+    // Eight evenly spread unit gradients
+    private static final float[] GRADIENTS_X = { 1f, -1f, 0f, 0f, 0.70710677f, -0.70710677f, 0.70710677f, -0.70710677f };
+    private static final float[] GRADIENTS_Y = { 0f, 0f, 1f, -1f, 0.70710677f, 0.70710677f, -0.70710677f, -0.70710677f };
+    // Gradient noise with unit gradients stays within +-sqrt(2)/2, scaled up to +-1
+    private static final float SCALE = 1.4142135f;
+
+    private final int seed;
+
+    /**
+     * Creates noise for a seed
+     * @param seed the seed; different seeds give unrelated noise
+     */
+    public Noise(long seed) {
+        this.seed = (int) (seed ^ (seed >>> 32));
+    }
+
+    /**
+     * Samples the noise, which varies smoothly with about one hill or valley per unit
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return a value between -1 and 1
+     */
+    public float sample(float x, float y) {
+        int x0 = floor(x);
+        int y0 = floor(y);
+        float fx = x - x0;
+        float fy = y - y0;
+        float u = fade(fx);
+        float v = fade(fy);
+
+        float n00 = gradient(x0, y0, fx, fy);
+        float n10 = gradient(x0 + 1, y0, fx - 1f, fy);
+        float n01 = gradient(x0, y0 + 1, fx, fy - 1f);
+        float n11 = gradient(x0 + 1, y0 + 1, fx - 1f, fy - 1f);
+        float bottom = n00 + (n10 - n00) * u;
+        float top = n01 + (n11 - n01) * u;
+        return (bottom + (top - bottom) * v) * SCALE;
+    }
+
+    /**
+     * Samples several octaves of the noise on top of each other, each at twice the frequency and
+     * half the strength of the one before, for detail at every scale
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param octaves the number of octaves, 1 for the same as {@link #sample(float, float)}
+     * @return a value between -1 and 1
+     */
+    public float fractal(float x, float y, int octaves) {
+        float sum = 0f;
+        float amplitude = 1f;
+        float total = 0f;
+        for (int octave = 0; octave < octaves; octave++) {
+            // Offset every octave so they don't all line up at the origin
+            sum += sample(x + octave * 19.19f, y + octave * 7.31f) * amplitude;
+            total += amplitude;
+            amplitude *= 0.5f;
+            x *= 2f;
+            y *= 2f;
+        }
+        return sum / total;
+    }
+
+    private float gradient(int x, int y, float dx, float dy) {
+        int hash = seed ^ x * 0x27d4eb2d ^ y * 0x165667b1;
+        hash *= 0x2c1b3c6d;
+        hash ^= hash >>> 15;
+        hash *= 0x297a2d39;
+        hash ^= hash >>> 12;
+        int index = hash & 7;
+        return GRADIENTS_X[index] * dx + GRADIENTS_Y[index] * dy;
+    }
+
+    private static float fade(float t) {
+        return t * t * t * (t * (t * 6f - 15f) + 10f);
+    }
+
+    private static int floor(float value) {
+        int truncated = (int) value;
+        return value < truncated ? truncated - 1 : truncated;
+    }
+}
@@ -0,0 +1,430 @@
+package io.github.equinoxelectronic.world;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * A {@link SpatialIndex} that splits a square area into quadrants until each holds only a few entities.
+ *
+ * Unlike the {@link SpatialHash} it adapts to how entities are spread out, so it answers large
+ * queries over clustered entities (armies gathered in a few places on a big map) without visiting
+ * empty cells. Moving entities costs more than in the hash, since leaving a quadrant means walking
+ * the tree again. Nodes and entities live in flat arrays, and children of empty quadrants are
+ * merged back and reused, so updates and queries don't allocate once the arrays have grown.
+ * Entities outside the area are kept in a separate list that every query checks.
+ */
+public class QuadTree implements SpatialIndex {
+    private static final int NONE = -1;
+    // nodeOf value for entities outside the tree's area
+    private static final int OUTSIDE = -2;
+    private static final int LEAF_CAPACITY = 16;
+    private static final int MAX_DEPTH = 16;
+
+    // Per node. Children of a node are always four consecutive nodes, starting at firstChild.
+    private float[] nodeX = new float[64];
+    private float[] nodeY = new float[64];
+    private float[] nodeSize = new float[64];
+    private int[] firstChild = new int[64];
+    private int[] parent = new int[64];
+    private int[] depth = new int[64];
+    private int[] head = new int[64];
+    private int[] count = new int[64];
+    private int nodeCount;
+    private final IntArray freeBlocks = new IntArray();
+
+    // Per entity, indexed by id; nodeOf is NONE for ids not in the index
+    private float[] xs;
+    private float[] ys;
+    private int[] next;
+    private int[] previous;
+    private int[] nodeOf;
+    private int outsideHead = NONE;
+    private int size;
+
+    // Nodes still to visit during a query
+    private final int[] stack = new int[MAX_DEPTH * 3 + 4];
+
+    /**
+     * Creates an empty tree covering a square area
+     * @param x the left edge of the area in meters
+     * @param y the bottom edge of the area in meters
+     * @param size the width and height of the area in meters
+     * @param expectedEntities roughly how many entities will be in the index
+     */
+    public QuadTree(float x, float y, float size, int expectedEntities) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " + size);
+        }
+        int capacity = Math.max(16, expectedEntities);
+        xs = new float[capacity];
+        ys = new float[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        nodeOf = new int[capacity];
+        Arrays.fill(nodeOf, NONE);
+        createRoot(x, y, size);
+    }
+
+    private void createRoot(float x, float y, float size) {
+        nodeCount = 1;
+        freeBlocks.clear();
+        nodeX[0] = x;
+        nodeY[0] = y;
+        nodeSize[0] = size;
+        firstChild[0] = NONE;
+        parent[0] = NONE;
+        depth[0] = 0;
+        head[0] = NONE;
+        count[0] = 0;
+    }
+
+    @Override
+    public void insert(int id, float x, float y) {
+        update(id, x, y);
+    }
+
+    @Override
+    public void update(int id, float x, float y) {
+        if (id >= nodeOf.length) {
+            grow(id + 1);
+        }
+        int node = nodeOf[id];
+        xs[id] = x;
+        ys[id] = y;
+        if (node >= 0 && inside(node, x, y)) {
+            return;
+        }
+        if (node == OUTSIDE && !inside(0, x, y)) {
+            return;
+        }
+        if (node != NONE) {
+            unlink(id);
+        } else {
+            size++;
+        }
+        link(id, x, y);
+    }
+
+    @Override
+    public void remove(int id) {
+        if (contains(id)) {
+            unlink(id);
+            nodeOf[id] = NONE;
+            size--;
+        }
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return id >= 0 && id < nodeOf.length && nodeOf[id] != NONE;
+    }
+
+    private boolean inside(int node, float x, float y) {
+        float left = nodeX[node];
+        float bottom = nodeY[node];
+        float size = nodeSize[node];
+        return x >= left && x < left + size && y >= bottom && y < bottom + size;
+    }
+
+    /**
+     * Adds an entity to the leaf containing it, splitting the leaf if it gets too full
+     */
+    private void link(int id, float x, float y) {
+        if (!inside(0, x, y)) {
+            next[id] = outsideHead;
+            previous[id] = NONE;
+            if (outsideHead != NONE) {
+                previous[outsideHead] = id;
+            }
+            outsideHead = id;
+            nodeOf[id] = OUTSIDE;
+            return;
+        }
+        int node = 0;
+        while (firstChild[node] != NONE) {
+            node = childAt(node, x, y);
+        }
+        addToNode(node, id);
+        if (count[node] > LEAF_CAPACITY && depth[node] < MAX_DEPTH) {
+            split(node);
+        }
+    }
+
+    private int childAt(int node, float x, float y) {
+        float half = nodeSize[node] / 2f;
+        int quadrant = (x >= nodeX[node] + half ? 1 : 0) | (y >= nodeY[node] + half ? 2 : 0);
+        return firstChild[node] + quadrant;
+    }
+
+    private void addToNode(int node, int id) {
+        int first = head[node];
+        next[id] = first;
+        previous[id] = NONE;
+        if (first != NONE) {
+            previous[first] = id;
+        }
+        head[node] = id;
+        count[node]++;
+        nodeOf[id] = node;
+    }
+
+    private void split(int node) {
+        int child = allocateChildren();
+        float half = nodeSize[node] / 2f;
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            int index = child + quadrant;
+            nodeX[index] = nodeX[node] + ((quadrant & 1) != 0 ? half : 0);
+            nodeY[index] = nodeY[node] + ((quadrant & 2) != 0 ? half : 0);
+            nodeSize[index] = half;
+            firstChild[index] = NONE;
+            parent[index] = node;
+            depth[index] = depth[node] + 1;
+            head[index] = NONE;
+            count[index] = 0;
+        }
+        firstChild[node] = child;
+
+        int id = head[node];
+        head[node] = NONE;
+        count[node] = 0;
+        while (id != NONE) {
+            int following = next[id];
+            addToNode(childAt(node, xs[id], ys[id]), id);
+            id = following;
+        }
+        // Everything may have landed in the same quadrant
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            int index = child + quadrant;
+            if (count[index] > LEAF_CAPACITY && depth[index] < MAX_DEPTH) {
+                split(index);
+            }
+        }
+    }
+
+    private int allocateChildren() {
+        if (freeBlocks.size > 0) {
+            return freeBlocks.pop();
+        }
+        if (nodeCount + 4 > firstChild.length) {
+            int capacity = firstChild.length * 2;
+            nodeX = Arrays.copyOf(nodeX, capacity);
+            nodeY = Arrays.copyOf(nodeY, capacity);
+            nodeSize = Arrays.copyOf(nodeSize, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            head = Arrays.copyOf(head, capacity);
+            count = Arrays.copyOf(count, capacity);
+        }
+        int child = nodeCount;
+        nodeCount += 4;
+        return child;
+    }
+
+    /**
+     * Removes an entity from its node, merging quadrants that became empty back into their parent
+     */
+    private void unlink(int id) {
+        int before = previous[id];
+        int after = next[id];
+        int node = nodeOf[id];
+        if (before != NONE) {
+            next[before] = after;
+        } else if (node == OUTSIDE) {
+            outsideHead = after;
+        } else {
+            head[node] = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        }
+        if (node == OUTSIDE) {
+            return;
+        }
+        count[node]--;
+
+        int merge = parent[node];
+        while (merge != NONE && isEmptyLeafBlock(firstChild[merge])) {
+            freeBlocks.add(firstChild[merge]);
+            firstChild[merge] = NONE;
+            merge = parent[merge];
+        }
+    }
+
+    private boolean isEmptyLeafBlock(int child) {
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            if (count[child + quadrant] != 0 || firstChild[child + quadrant] != NONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int query(float minX, float minY, float maxX, float maxY, IntArray out) {
+        int added = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            float left = nodeX[node];
+            float bottom = nodeY[node];
+            float size = nodeSize[node];
+            if (left > maxX || bottom > maxY || left + size < minX || bottom + size < minY) {
+                continue;
+            }
+            boolean contained = left >= minX && bottom >= minY && left + size <= maxX && bottom + size <= maxY;
+            if (firstChild[node] != NONE) {
+                for (int quadrant = 0; quadrant < 4; quadrant++) {
+                    stack[top++] = firstChild[node] + quadrant;
+                }
+                continue;
+            }
+            for (int id = head[node]; id != NONE; id = next[id]) {
+                if (contained || (xs[id] >= minX && xs[id] <= maxX && ys[id] >= minY && ys[id] <= maxY)) {
+                    out.add(id);
+                    added++;
+                }
+            }
+        }
+        for (int id = outsideHead; id != NONE; id = next[id]) {
+            if (xs[id] >= minX && xs[id] <= maxX && ys[id] >= minY && ys[id] <= maxY) {
+                out.add(id);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public int queryRadius(float x, float y, float radius, IntArray out) {
+        float radius2 = radius * radius;
+        int added = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (distance2(node, x, y) > radius2) {
+                continue;
+            }
+            if (firstChild[node] != NONE) {
+                for (int quadrant = 0; quadrant < 4; quadrant++) {
+                    stack[top++] = firstChild[node] + quadrant;
+                }
+                continue;
+            }
+            for (int id = head[node]; id != NONE; id = next[id]) {
+                float dx = xs[id] - x;
+                float dy = ys[id] - y;
+                if (dx * dx + dy * dy <= radius2) {
+                    out.add(id);
+                    added++;
+                }
+            }
+        }
+        for (int id = outsideHead; id != NONE; id = next[id]) {
+            float dx = xs[id] - x;
+            float dy = ys[id] - y;
+            if (dx * dx + dy * dy <= radius2) {
+                out.add(id);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public int nearest(float x, float y, float maxDistance) {
+        int best = NONE;
+        float bestDistance2 = maxDistance * maxDistance;
+        for (int id = outsideHead; id != NONE; id = next[id]) {
+            float dx = xs[id] - x;
+            float dy = ys[id] - y;
+            float distance2 = dx * dx + dy * dy;
+            if (distance2 <= bestDistance2) {
+                best = id;
+                bestDistance2 = distance2;
+            }
+        }
+
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            // The search radius shrinks as closer entities are found, pruning more of the tree
+            if (distance2(node, x, y) > bestDistance2) {
+                continue;
+            }
+            int child = firstChild[node];
+            if (child != NONE) {
+                // Visit the quadrant containing the point last pushed, so first popped
+                int closest = childAt(node, x, y) - child;
+                for (int quadrant = 0; quadrant < 4; quadrant++) {
+                    if (quadrant != closest) {
+                        stack[top++] = child + quadrant;
+                    }
+                }
+                stack[top++] = child + closest;
+                continue;
+            }
+            for (int id = head[node]; id != NONE; id = next[id]) {
+                float dx = xs[id] - x;
+                float dy = ys[id] - y;
+                float distance2 = dx * dx + dy * dy;
+                if (distance2 <= bestDistance2) {
+                    best = id;
+                    bestDistance2 = distance2;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the squared distance from a point to the closest point of a node
+     */
+    private float distance2(int node, float x, float y) {
+        float left = nodeX[node];
+        float bottom = nodeY[node];
+        float size = nodeSize[node];
+        float dx = x < left ? left - x : x > left + size ? x - left - size : 0;
+        float dy = y < bottom ? bottom - y : y > bottom + size ? y - bottom - size : 0;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Gets the number of nodes in use, including merged ones waiting to be reused
+     * @return the node count
+     */
+    public int getNodeCount() {
+        return nodeCount - freeBlocks.size * 4;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        createRoot(nodeX[0], nodeY[0], nodeSize[0]);
+        Arrays.fill(nodeOf, NONE);
+        outsideHead = NONE;
+        size = 0;
+    }
+
+    /**
+     * Grows the per-entity arrays to fit an id
+     */
+    private void grow(int minimum) {
+        int capacity = Math.max(minimum, nodeOf.length * 2);
+        int oldCapacity = nodeOf.length;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        next = Arrays.copyOf(next, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        nodeOf = Arrays.copyOf(nodeOf, capacity);
+        Arrays.fill(nodeOf, oldCapacity, capacity, NONE);
+    }
+}
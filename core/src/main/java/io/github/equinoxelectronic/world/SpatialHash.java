@@ -0,0 +1,293 @@
+package io.github.equinoxelectronic.world;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * A {@link SpatialIndex} that sorts entities into square cells of a uniform grid.
+ *
+ * The grid has no bounds: cells are hashed into a fixed number of buckets, and each bucket holds
+ * its entities in a linked list threaded through flat arrays indexed by entity id. Moving an
+ * entity within its cell only updates its position; moving it to another cell unlinks and relinks
+ * it, which is constant time. This suits many entities moving every frame. Pick a cell size
+ * around the size of a typical query, such as a few times the picking radius.
+ */
+public class SpatialHash implements SpatialIndex {
+    private static final int NONE = -1;
+
+    private final float cellSize;
+    private final float inverseCellSize;
+    private final int[] buckets;
+    private final int mask;
+
+    // Per entity, indexed by id; bucketOf is NONE for ids not in the index
+    private float[] xs;
+    private float[] ys;
+    private int[] cellXs;
+    private int[] cellYs;
+    private int[] next;
+    private int[] previous;
+    private int[] bucketOf;
+    private int size;
+
+    /**
+     * Creates an empty index
+     * @param cellSize the width and height of a cell in meters
+     * @param expectedEntities roughly how many entities will be in the index, used to size the hash table
+     */
+    public SpatialHash(float cellSize, int expectedEntities) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1f / cellSize;
+        this.buckets = new int[MathUtils.nextPowerOfTwo(Math.max(64, expectedEntities))];
+        this.mask = buckets.length - 1;
+        Arrays.fill(buckets, NONE);
+
+        int capacity = Math.max(16, expectedEntities);
+        xs = new float[capacity];
+        ys = new float[capacity];
+        cellXs = new int[capacity];
+        cellYs = new int[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        bucketOf = new int[capacity];
+        Arrays.fill(bucketOf, NONE);
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private int bucket(int cellX, int cellY) {
+        return (cellX * 73856093 ^ cellY * 19349663) & mask;
+    }
+
+    @Override
+    public void insert(int id, float x, float y) {
+        update(id, x, y);
+    }
+
+    @Override
+    public void update(int id, float x, float y) {
+        if (id >= bucketOf.length) {
+            grow(id + 1);
+        }
+        int cellX = cell(x);
+        int cellY = cell(y);
+        xs[id] = x;
+        ys[id] = y;
+        if (bucketOf[id] != NONE) {
+            if (cellXs[id] == cellX && cellYs[id] == cellY) {
+                return;
+            }
+            unlink(id);
+        } else {
+            size++;
+        }
+        cellXs[id] = cellX;
+        cellYs[id] = cellY;
+        int bucket = bucket(cellX, cellY);
+        int head = buckets[bucket];
+        next[id] = head;
+        previous[id] = NONE;
+        if (head != NONE) {
+            previous[head] = id;
+        }
+        buckets[bucket] = id;
+        bucketOf[id] = bucket;
+    }
+
+    @Override
+    public void remove(int id) {
+        if (contains(id)) {
+            unlink(id);
+            bucketOf[id] = NONE;
+            size--;
+        }
+    }
+
+    private void unlink(int id) {
+        int before = previous[id];
+        int after = next[id];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            buckets[bucketOf[id]] = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        }
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return id >= 0 && id < bucketOf.length && bucketOf[id] != NONE;
+    }
+
+    @Override
+    public int query(float minX, float minY, float maxX, float maxY, IntArray out) {
+        int startX = cell(minX);
+        int startY = cell(minY);
+        int endX = cell(maxX);
+        int endY = cell(maxY);
+        int added = 0;
+        if ((long) (endX - startX + 1) * (endY - startY + 1) > buckets.length) {
+            // Visiting every cell would take longer than visiting every entity
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                for (int id = buckets[bucket]; id != NONE; id = next[id]) {
+                    float x = xs[id];
+                    float y = ys[id];
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        out.add(id);
+                        added++;
+                    }
+                }
+            }
+            return added;
+        }
+        for (int cellY = startY; cellY <= endY; cellY++) {
+            for (int cellX = startX; cellX <= endX; cellX++) {
+                // Other cells can share the bucket, so entities are checked against the cell too
+                for (int id = buckets[bucket(cellX, cellY)]; id != NONE; id = next[id]) {
+                    float x = xs[id];
+                    float y = ys[id];
+                    if (cellXs[id] == cellX && cellYs[id] == cellY
+                        && x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        out.add(id);
+                        added++;
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public int queryRadius(float x, float y, float radius, IntArray out) {
+        int start = out.size;
+        query(x - radius, y - radius, x + radius, y + radius, out);
+        // Drop the corners of the square that are outside the circle
+        float radius2 = radius * radius;
+        int kept = start;
+        for (int i = start; i < out.size; i++) {
+            int id = out.items[i];
+            float dx = xs[id] - x;
+            float dy = ys[id] - y;
+            if (dx * dx + dy * dy <= radius2) {
+                out.items[kept++] = id;
+            }
+        }
+        out.size = kept;
+        return kept - start;
+    }
+
+    @Override
+    public int nearest(float x, float y, float maxDistance) {
+        int best = NONE;
+        float bestDistance2 = maxDistance * maxDistance;
+        int centerX = cell(x);
+        int centerY = cell(y);
+        int rings = (int) Math.ceil(maxDistance * inverseCellSize);
+        if ((long) (2 * rings + 1) * (2 * rings + 1) > buckets.length) {
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                for (int id = buckets[bucket]; id != NONE; id = next[id]) {
+                    float dx = xs[id] - x;
+                    float dy = ys[id] - y;
+                    float distance2 = dx * dx + dy * dy;
+                    if (distance2 <= bestDistance2) {
+                        best = id;
+                        bestDistance2 = distance2;
+                    }
+                }
+            }
+            return best;
+        }
+
+        // Search outwards ring by ring; every cell in a ring is at least (ring - 1) cells away
+        for (int ring = 0; ring <= rings; ring++) {
+            if (ring > 1) {
+                float ringDistance = (ring - 1) * cellSize;
+                if (ringDistance * ringDistance > bestDistance2) {
+                    break;
+                }
+            }
+            for (int cellY = centerY - ring; cellY <= centerY + ring; cellY++) {
+                boolean edgeRow = cellY == centerY - ring || cellY == centerY + ring;
+                int step = edgeRow || ring == 0 ? 1 : 2 * ring;
+                for (int cellX = centerX - ring; cellX <= centerX + ring; cellX += step) {
+                    for (int id = buckets[bucket(cellX, cellY)]; id != NONE; id = next[id]) {
+                        if (cellXs[id] != cellX || cellYs[id] != cellY) {
+                            continue;
+                        }
+                        float dx = xs[id] - x;
+                        float dy = ys[id] - y;
+                        float distance2 = dx * dx + dy * dy;
+                        if (distance2 <= bestDistance2) {
+                            best = id;
+                            bestDistance2 = distance2;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the position an entity was last inserted or updated at
+     * @param id the entity id, which must be in the index
+     * @return the x position in meters
+     */
+    public float getX(int id) {
+        return xs[id];
+    }
+
+    /**
+     * Gets the position an entity was last inserted or updated at
+     * @param id the entity id, which must be in the index
+     * @return the y position in meters
+     */
+    public float getY(int id) {
+        return ys[id];
+    }
+
+    /**
+     * Gets the size of the cells
+     * @return the width and height of a cell in meters
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(buckets, NONE);
+        Arrays.fill(bucketOf, NONE);
+        size = 0;
+    }
+
+    /**
+     * Grows the per-entity arrays to fit an id
+     */
+    private void grow(int minimum) {
+        int capacity = Math.max(minimum, bucketOf.length * 2);
+        int oldCapacity = bucketOf.length;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        cellXs = Arrays.copyOf(cellXs, capacity);
+        cellYs = Arrays.copyOf(cellYs, capacity);
+        next = Arrays.copyOf(next, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+        Arrays.fill(bucketOf, oldCapacity, capacity, NONE);
+    }
+}
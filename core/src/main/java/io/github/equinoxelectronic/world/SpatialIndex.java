@@ -0,0 +1,82 @@
+package io.github.equinoxelectronic.world;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Finds entities by position, in the meter coordinates used by the renderer.
+ *
+ * Entities are points identified by a non-negative int id chosen by the caller, such as their
+ * index in an entity store. Queries write ids into a caller's IntArray and never allocate once
+ * that array has grown, so they can run every frame. Implementations are not thread safe.
+ */
+public interface SpatialIndex {
+    /**
+     * Adds an entity, or moves it if it is already in the index
+     * @param id the entity id
+     * @param x the x position in meters
+     * @param y the y position in meters
+     */
+    void insert(int id, float x, float y);
+
+    /**
+     * Moves an entity, adding it if it is not in the index yet
+     * @param id the entity id
+     * @param x the new x position in meters
+     * @param y the new y position in meters
+     */
+    void update(int id, float x, float y);
+
+    /**
+     * Removes an entity; does nothing if it is not in the index
+     * @param id the entity id
+     */
+    void remove(int id);
+
+    /**
+     * Checks if an entity is in the index
+     * @param id the entity id
+     * @return true if it was inserted and not removed since
+     */
+    boolean contains(int id);
+
+    /**
+     * Finds every entity inside a rectangle, for example the area the camera sees
+     * @param minX the left edge in meters
+     * @param minY the bottom edge in meters
+     * @param maxX the right edge in meters
+     * @param maxY the top edge in meters
+     * @param out the array the ids are added to; it is not cleared first
+     * @return the number of ids added
+     */
+    int query(float minX, float minY, float maxX, float maxY, IntArray out);
+
+    /**
+     * Finds every entity within a distance of a point
+     * @param x the x position in meters
+     * @param y the y position in meters
+     * @param radius the distance in meters
+     * @param out the array the ids are added to; it is not cleared first
+     * @return the number of ids added
+     */
+    int queryRadius(float x, float y, float radius, IntArray out);
+
+    /**
+     * Finds the entity closest to a point, for example the one under the mouse
+     * @param x the x position in meters
+     * @param y the y position in meters
+     * @param maxDistance how far away an entity may be, in meters
+     * @return the id of the closest entity, or -1 if none is within maxDistance
+     */
+    int nearest(float x, float y, float maxDistance);
+
+    /**
+     * Gets the number of entities in the index
+     * @return the entity count
+     */
+    int size();
+
+    /**
+     * Removes every entity
+     */
+    void clear();
+}
@@ -0,0 +1,192 @@
+package io.github.equinoxelectronic.world;
+
+import java.util.Arrays;
+
+/**
+ * The terrain of the world, one tile per {@link #TILE_SIZE} meters.
+ *
+ * Tiles are stored as the index of their {@link io.github.equinoxelectronic.data.TerrainDefinition}
+ * in a flat array, row by row from the bottom-left corner, which matches the meter coordinate
+ * system used by the renderer. The map is split into square chunks of {@link #CHUNK_SIZE} tiles;
+ * every change to a tile bumps the version of its chunk, so anything built from the tiles
+ * (render geometry, navigation data) can tell which chunks are out of date.
+ */
+public class TileMap {
+    /** Size of a tile in meters */
+    public static final float TILE_SIZE = 0.25f;
+    /** Width and height of a chunk in tiles */
+    public static final int CHUNK_SIZE = 32;
+
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final int chunksY;
+    private final short[] tiles;
+    private final int[] chunkVersions;
+    private int version;
+
+    /**
+     * Creates a map with every tile set to terrain 0
+     * @param width the width in tiles
+     * @param height the height in tiles
+     */
+    public TileMap(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Map size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.tiles = new short[width * height];
+        this.chunkVersions = new int[chunksX * chunksY];
+    }
+
+    /**
+     * Gets the terrain of a tile
+     * @param x the tile column
+     * @param y the tile row, from the bottom
+     * @return the terrain index
+     */
+    public int getTile(int x, int y) {
+        return tiles[y * width + x];
+    }
+
+    /**
+     * Sets the terrain of a tile
+     * @param x the tile column
+     * @param y the tile row, from the bottom
+     * @param terrain the terrain index
+     */
+    public void setTile(int x, int y, int terrain) {
+        int index = y * width + x;
+        if (tiles[index] != terrain) {
+            tiles[index] = (short) terrain;
+            chunkVersions[(y / CHUNK_SIZE) * chunksX + x / CHUNK_SIZE]++;
+            version++;
+        }
+    }
+
+    /**
+     * Sets every tile in a rectangle to the same terrain
+     * @param x the leftmost tile column
+     * @param y the bottom tile row
+     * @param rectWidth the width in tiles
+     * @param rectHeight the height in tiles
+     * @param terrain the terrain index
+     */
+    public void fill(int x, int y, int rectWidth, int rectHeight, int terrain) {
+        int endX = Math.min(width, x + rectWidth);
+        int endY = Math.min(height, y + rectHeight);
+        for (int row = Math.max(0, y); row < endY; row++) {
+            int start = row * width;
+            Arrays.fill(tiles, start + Math.max(0, x), start + endX, (short) terrain);
+        }
+        markChanged(x, y, rectWidth, rectHeight);
+    }
+
+    /**
+     * Marks the chunks covering a rectangle as changed, after writing to {@link #getTiles()} directly
+     * @param x the leftmost tile column
+     * @param y the bottom tile row
+     * @param rectWidth the width in tiles
+     * @param rectHeight the height in tiles
+     */
+    public void markChanged(int x, int y, int rectWidth, int rectHeight) {
+        int startX = Math.max(0, x) / CHUNK_SIZE;
+        int startY = Math.max(0, y) / CHUNK_SIZE;
+        int endX = (Math.min(width, x + rectWidth) - 1) / CHUNK_SIZE;
+        int endY = (Math.min(height, y + rectHeight) - 1) / CHUNK_SIZE;
+        for (int chunkY = startY; chunkY <= endY; chunkY++) {
+            for (int chunkX = startX; chunkX <= endX; chunkX++) {
+                chunkVersions[chunkY * chunksX + chunkX]++;
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Gets the tiles for bulk reads and writes, row by row from the bottom.
+     * Call {@link #markChanged(int, int, int, int)} after writing to it.
+     * @return the tile array
+     */
+    public short[] getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Gets the version of a chunk, which changes every time one of its tiles does
+     * @param chunkX the chunk column
+     * @param chunkY the chunk row
+     * @return the chunk version
+     */
+    public int getChunkVersion(int chunkX, int chunkY) {
+        return chunkVersions[chunkY * chunksX + chunkX];
+    }
+
+    /**
+     * Gets the version of the whole map, which changes every time any tile does
+     * @return the map version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks if a tile position is inside the map
+     * @param x the tile column
+     * @param y the tile row
+     * @return true if the tile exists
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Gets the width of the map
+     * @return the width in tiles
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the map
+     * @return the height in tiles
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of chunk columns
+     * @return the number of chunks along the x axis
+     */
+    public int getChunksX() {
+        return chunksX;
+    }
+
+    /**
+     * Gets the number of chunk rows
+     * @return the number of chunks along the y axis
+     */
+    public int getChunksY() {
+        return chunksY;
+    }
+
+    /**
+     * Gets the width of the map in meters
+     * @return the world width
+     */
+    public float getWorldWidth() {
+        return width * TILE_SIZE;
+    }
+
+    /**
+     * Gets the height of the map in meters
+     * @return the world height
+     */
+    public float getWorldHeight() {
+        return height * TILE_SIZE;
+    }
+}
@@ -0,0 +1,349 @@
+package io.github.equinoxelectronic.world;
+
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.logging.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A world being generated in the background by a {@link WorldGenerator}.
+ *
+ * Chunks are generated on a pool of worker threads into buffers of their own, nearest to the
+ * focus first. Only copying a finished chunk into the {@link TileMap} happens on the render
+ * thread, inside {@link #update(long)}, which stops once its time budget is used up. Copying
+ * bumps the chunk's version, so the tile map renderer draws chunks as they arrive.
+ *
+ * The height and resource layers are kept here, next to the map. A chunk's part of them is
+ * valid once the chunk has been copied.
+ */
+public class WorldGeneration {
+    private static final Log logger = new Log("WorldGeneration");
+
+    /**
+     * Default time the render thread may spend copying chunks per frame (2 milliseconds)
+     */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 2_000_000L;
+
+    /**
+     * Called on the render thread every time a chunk has been copied into the map.
+     */
+    public interface Listener {
+        void chunkGenerated(int chunkX, int chunkY);
+    }
+
+    private final WorldGenerator generator;
+    private final TileMap map;
+    private final ExecutorService executor;
+    private final float[] heights;
+    private final byte[] resources;
+
+    // Generated chunks waiting for the render thread
+    private final ConcurrentLinkedQueue<Chunk> generated = new ConcurrentLinkedQueue<>();
+    private final Array<Listener> listeners = new Array<>();
+
+    private final AtomicInteger generatedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    // The first thing a generator threw, kept so callers can tell a failed world from a finished one
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final int total;
+    private int finished;
+    private volatile boolean cancelled;
+    private final long startTime;
+    private long elapsedNanos;
+
+    /**
+     * Starts generating every chunk of a map on a worker pool
+     * @param generator the generator
+     * @param map the map to fill
+     * @param threads the number of worker threads
+     * @param focusChunkX the chunk column to generate first
+     * @param focusChunkY the chunk row to generate first
+     */
+    WorldGeneration(WorldGenerator generator, TileMap map, int threads, int focusChunkX, int focusChunkY) {
+        this.generator = generator;
+        this.map = map;
+        this.heights = new float[map.getWidth() * map.getHeight()];
+        this.resources = new byte[map.getWidth() * map.getHeight()];
+        this.total = map.getChunksX() * map.getChunksY();
+        this.startTime = System.nanoTime();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "world-generator-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Sort chunks by distance to the focus, packed as distance in the high bits and index in the low bits
+        long[] queue = new long[total];
+        for (int i = 0; i < total; i++) {
+            long dx = i % map.getChunksX() - focusChunkX;
+            long dy = i / map.getChunksX() - focusChunkY;
+            queue[i] = (dx * dx + dy * dy) << 32 | i;
+        }
+        Arrays.sort(queue);
+        for (long entry : queue) {
+            final int index = (int) entry;
+            executor.execute(() -> generateChunk(index % map.getChunksX(), index / map.getChunksX()));
+        }
+        executor.shutdown();
+        logger.info("Generating {}x{} world with seed {} on {} threads", map.getWidth(), map.getHeight(), generator.getSeed(),
+            Math.max(1, threads));
+    }
+
+    /**
+     * Generates a single chunk on a worker thread
+     * @param chunkX the chunk column
+     * @param chunkY the chunk row
+     */
+    private void generateChunk(int chunkX, int chunkY) {
+        if (cancelled) {
+            return;
+        }
+        Chunk chunk = new Chunk(chunkX, chunkY,
+            Math.min(TileMap.CHUNK_SIZE, map.getWidth() - chunkX * TileMap.CHUNK_SIZE),
+            Math.min(TileMap.CHUNK_SIZE, map.getHeight() - chunkY * TileMap.CHUNK_SIZE));
+        try {
+            generator.generate(chunk.startX(), chunk.startY(), chunk.width, chunk.height, map.getWidth(), map.getHeight(),
+                chunk.tiles, chunk.heights, chunk.resources);
+        } catch (Throwable e) {
+            failedCount.incrementAndGet();
+            error.compareAndSet(null, e);
+            logger.error("Could not generate chunk {}, {}", chunkX, chunkY, e);
+        } finally {
+            // Leave a failed chunk at its default terrain rather than stall the whole world
+            generated.add(chunk);
+            generatedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Copies generated chunks into the map on the render thread until the time budget is used up.
+     * At least one chunk is copied per call, so generation always makes progress.
+     * @param budgetNanos the time this call may take, in nanoseconds
+     * @return true once every chunk has been copied
+     */
+    public boolean update(long budgetNanos) {
+        long start = System.nanoTime();
+        Chunk next;
+        while (!cancelled && (next = generated.poll()) != null) {
+            copy(next);
+            finished++;
+            for (Listener listener : listeners) {
+                listener.chunkGenerated(next.chunkX, next.chunkY);
+            }
+            if (finished == total) {
+                elapsedNanos = System.nanoTime() - startTime;
+                logger.info("Generated {} chunks in {}ms", total, elapsedNanos / 1_000_000);
+                if (failedCount.get() > 0) {
+                    logger.error("{} chunks could not be generated and were left empty", failedCount.get(), error.get());
+                }
+            }
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        return isDone();
+    }
+
+    /**
+     * Copies generated chunks into the map using the {@link #DEFAULT_FRAME_BUDGET_NANOS default budget}
+     * @return true once every chunk has been copied
+     */
+    public boolean update() {
+        return update(DEFAULT_FRAME_BUDGET_NANOS);
+    }
+
+    /**
+     * Waits for every chunk and copies them all into the map, for tests, benchmarks and tools.
+     * Must be called on the thread that would otherwise call {@link #update(long)}.
+     */
+    public void finish() {
+        while (!cancelled && !isDone()) {
+            try {
+                executor.awaitTermination(10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            update(Long.MAX_VALUE);
+        }
+    }
+
+    private void copy(Chunk chunk) {
+        int startX = chunk.startX();
+        int startY = chunk.startY();
+        int width = map.getWidth();
+        short[] tiles = map.getTiles();
+        for (int row = 0; row < chunk.height; row++) {
+            int source = row * chunk.width;
+            int target = (startY + row) * width + startX;
+            System.arraycopy(chunk.tiles, source, tiles, target, chunk.width);
+            System.arraycopy(chunk.heights, source, heights, target, chunk.width);
+            System.arraycopy(chunk.resources, source, resources, target, chunk.width);
+        }
+        map.markChanged(startX, startY, chunk.width, chunk.height);
+    }
+
+    /**
+     * Gets the generation progress
+     * @return the fraction of chunks copied into the map, between 0 and 1
+     */
+    public float getProgress() {
+        return total == 0 ? 1f : (float) finished / total;
+    }
+
+    /**
+     * Checks if every chunk has been copied into the map
+     * @return true if generation is complete
+     */
+    public boolean isDone() {
+        return finished == total;
+    }
+
+    /**
+     * Gets the number of chunks the worker threads have finished, copied or not
+     * @return the chunk count
+     */
+    public int getGenerated() {
+        return generatedCount.get();
+    }
+
+    /**
+     * Gets the number of chunks whose generator threw. They are still counted as finished, with default terrain.
+     * @return the chunk count
+     */
+    public int getFailed() {
+        return failedCount.get();
+    }
+
+    /**
+     * Gets the first exception or error thrown while generating a chunk
+     * @return the failure, or null if every chunk generated so far succeeded
+     */
+    public Throwable getError() {
+        return error.get();
+    }
+
+    /**
+     * Gets the number of chunks copied into the map
+     * @return the chunk count
+     */
+    public int getFinished() {
+        return finished;
+    }
+
+    /**
+     * Gets the number of chunks in the map
+     * @return the chunk count
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the time from starting until the last chunk was copied
+     * @return the time in nanoseconds, or 0 while still generating
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the height of a tile
+     * @param x the tile column
+     * @param y the tile row
+     * @return the height from 0 to 1, or 0 if its chunk has not been copied yet
+     */
+    public float getHeight(int x, int y) {
+        return heights[y * map.getWidth() + x];
+    }
+
+    /**
+     * Gets the resource on a tile
+     * @param x the tile column
+     * @param y the tile row
+     * @return one of the RESOURCE constants of {@link WorldGenerator}
+     */
+    public byte getResource(int x, int y) {
+        return resources[y * map.getWidth() + x];
+    }
+
+    /**
+     * Gets the height layer for bulk reads, laid out like {@link TileMap#getTiles()}
+     * @return the heights
+     */
+    public float[] getHeights() {
+        return heights;
+    }
+
+    /**
+     * Gets the resource layer for bulk reads, laid out like {@link TileMap#getTiles()}
+     * @return the resources
+     */
+    public byte[] getResources() {
+        return resources;
+    }
+
+    /**
+     * Gets the map being filled
+     * @return the map
+     */
+    public TileMap getMap() {
+        return map;
+    }
+
+    /**
+     * Adds a listener that is told about every chunk as it is copied into the map
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops generating. Chunks already copied stay in the map.
+     */
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+        generated.clear();
+    }
+
+    /**
+     * A generated chunk waiting for the render thread
+     */
+    private static class Chunk {
+        final int chunkX;
+        final int chunkY;
+        final int width;
+        final int height;
+        final short[] tiles;
+        final float[] heights;
+        final byte[] resources;
+
+        Chunk(int chunkX, int chunkY, int width, int height) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+            this.width = width;
+            this.height = height;
+            this.tiles = new short[width * height];
+            this.heights = new float[width * height];
+            this.resources = new byte[width * height];
+        }
+
+        int startX() {
+            return chunkX * TileMap.CHUNK_SIZE;
+        }
+
+        int startY() {
+            return chunkY * TileMap.CHUNK_SIZE;
+        }
+    }
+}
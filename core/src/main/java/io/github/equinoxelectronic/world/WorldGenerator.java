@@ -0,0 +1,213 @@
+package io.github.equinoxelectronic.world;
+
+import io.github.equinoxelectronic.data.DefinitionRegistry;
+import io.github.equinoxelectronic.data.DefinitionTable;
+import io.github.equinoxelectronic.data.TerrainDefinition;
+
+/**
+ * Generates the terrain, height and resources of a world from a seed.
+ *
+ * Every tile is computed from the seed and its position alone, using {@link Noise} for the
+ * elevation, moisture and the placement of resources, so any part of the map can be generated
+ * on its own and in any order. {@link #start(TileMap, int, int, int)} uses that to generate
+ * chunks in parallel and stream them into a map, with the same result for any number of threads.
+ */
+public class WorldGenerator {
+    /** No resource on the tile */
+    public static final byte RESOURCE_NONE = 0;
+    /** Timber, found in forests */
+    public static final byte RESOURCE_WOOD = 1;
+    /** Stone, found in hills and mountains and now and then on open land */
+    public static final byte RESOURCE_STONE = 2;
+    /** Metal ore, found in hills and mountains */
+    public static final byte RESOURCE_ORE = 3;
+    /** Fishing grounds, found in shallow water */
+    public static final byte RESOURCE_FISH = 4;
+
+    private static final Biome[] BIOMES = Biome.values();
+
+    private final long seed;
+    private final Noise elevation;
+    private final Noise moisture;
+    private final Noise detail;
+
+    private float featureSize = 192f;
+    private float seaLevel = 0.47f;
+    private float hillLevel = 0.6f;
+    private float mountainLevel = 0.68f;
+    // Terrain index of every biome
+    private final int[] terrain = new int[BIOMES.length];
+
+    /**
+     * Creates a generator. Biomes get the terrain definitions with their ids if those are loaded,
+     * otherwise the terrain with the biome's ordinal as index.
+     * @param seed the seed; the same seed always gives the same world
+     */
+    public WorldGenerator(long seed) {
+        this.seed = seed;
+        this.elevation = new Noise(seed);
+        this.moisture = new Noise(seed * 31 + 1);
+        this.detail = new Noise(seed * 31 * 31 + 2);
+
+        DefinitionTable<TerrainDefinition> table = DefinitionRegistry.getInstance().getTable(TerrainDefinition.class);
+        for (Biome biome : BIOMES) {
+            int index = table == null ? -1 : table.indexOf(biome.getTerrain());
+            terrain[biome.ordinal()] = index < 0 ? biome.ordinal() : index;
+        }
+    }
+
+    /**
+     * Starts generating a map in the background, nearest chunks first. The map is filled as
+     * {@link WorldGeneration#update(long)} is called on the render thread.
+     * @param map the map to fill, of any size
+     * @param threads the number of worker threads
+     * @param focusX the tile column to generate first, usually where the camera starts
+     * @param focusY the tile row to generate first
+     * @return the running generation
+     */
+    public WorldGeneration start(TileMap map, int threads, int focusX, int focusY) {
+        return new WorldGeneration(this, map, threads, focusX / TileMap.CHUNK_SIZE, focusY / TileMap.CHUNK_SIZE);
+    }
+
+    /**
+     * Generates a rectangle of a map. Safe to call from several threads at once.
+     * @param startX the leftmost tile column
+     * @param startY the bottom tile row
+     * @param width the width of the rectangle in tiles
+     * @param height the height of the rectangle in tiles
+     * @param mapWidth the width of the whole map in tiles, as the edges of the map are sea
+     * @param mapHeight the height of the whole map in tiles
+     * @param tiles receives the terrain index of every tile, row by row from the bottom
+     * @param heights receives the height of every tile, from 0 to 1
+     * @param resources receives the resource on every tile, one of the RESOURCE constants
+     */
+    public void generate(int startX, int startY, int width, int height, int mapWidth, int mapHeight,
+                         short[] tiles, float[] heights, byte[] resources) {
+        float scale = 1f / featureSize;
+        for (int row = 0; row < height; row++) {
+            int y = startY + row;
+            float ny = y * scale;
+            // 0 in the middle row of the map, 1 at the top and bottom; colder towards the edges
+            float latitude = Math.abs((y + 0.5f) / mapHeight * 2f - 1f);
+            for (int column = 0; column < width; column++) {
+                int x = startX + column;
+                float nx = x * scale;
+                float edgeX = Math.abs((x + 0.5f) / mapWidth * 2f - 1f);
+
+                float elevationValue = elevation.fractal(nx, ny, 6) * 0.5f + 0.5f;
+                // Sink the outer edge of the map into the sea, so the world doesn't end on land
+                float edge = Math.max(edgeX, latitude);
+                if (edge > 0.8f) {
+                    elevationValue -= (edge - 0.8f) * 2.5f;
+                }
+                float moistureValue = moisture.fractal(nx * 2f, ny * 2f, 3) * 0.5f + 0.5f;
+                float temperature = 1f - latitude * 0.7f - Math.max(0f, elevationValue - seaLevel) * 2f;
+                float detailValue = detail.sample(x * 0.15f, y * 0.15f);
+
+                Biome biome = getBiome(elevationValue, moistureValue, temperature);
+                int index = row * width + column;
+                tiles[index] = (short) terrain[biome.ordinal()];
+                heights[index] = Math.max(0f, Math.min(1f, elevationValue));
+                resources[index] = getResource(biome, elevationValue, detailValue);
+            }
+        }
+    }
+
+    /**
+     * Picks the biome of a tile
+     * @param height the height, from 0 to 1
+     * @param moisture the moisture, from 0 to 1
+     * @param temperature the temperature, 1 at a warm coast and lower further north, south and up
+     * @return the biome
+     */
+    public Biome getBiome(float height, float moisture, float temperature) {
+        if (height < seaLevel) {
+            return Biome.OCEAN;
+        }
+        if (height >= mountainLevel) {
+            return Biome.MOUNTAINS;
+        }
+        if (height >= hillLevel) {
+            return Biome.HILLS;
+        }
+        if (temperature > 0.6f && moisture < 0.42f) {
+            return Biome.DESERT;
+        }
+        if (moisture > 0.52f) {
+            return Biome.FOREST;
+        }
+        return Biome.PLAINS;
+    }
+
+    private byte getResource(Biome biome, float height, float detail) {
+        switch (biome) {
+            case OCEAN:
+                return height > seaLevel - 0.04f && detail > 0.4f ? RESOURCE_FISH : RESOURCE_NONE;
+            case FOREST:
+                return detail > 0.2f ? RESOURCE_WOOD : RESOURCE_NONE;
+            case HILLS:
+            case MOUNTAINS:
+                if (detail > 0.45f) {
+                    return RESOURCE_ORE;
+                }
+                return detail < -0.4f ? RESOURCE_STONE : RESOURCE_NONE;
+            default:
+                return detail > 0.7f ? RESOURCE_STONE : RESOURCE_NONE;
+        }
+    }
+
+    /**
+     * Sets the terrain tiles of a biome get
+     * @param biome the biome
+     * @param terrain the terrain index
+     */
+    public void setTerrain(Biome biome, int terrain) {
+        this.terrain[biome.ordinal()] = terrain;
+    }
+
+    /**
+     * Gets the terrain tiles of a biome get
+     * @param biome the biome
+     * @return the terrain index
+     */
+    public int getTerrain(Biome biome) {
+        return terrain[biome.ordinal()];
+    }
+
+    /**
+     * Sets the size of continents and seas. Must not be changed while a generation is running.
+     * @param tiles the rough distance between the middles of two continents, in tiles
+     */
+    public void setFeatureSize(float tiles) {
+        this.featureSize = Math.max(1f, tiles);
+    }
+
+    /**
+     * Sets the heights at which land, hills and mountains start. Must not be changed while a
+     * generation is running.
+     * @param seaLevel the height below which tiles are sea
+     * @param hillLevel the height from which land is hills
+     * @param mountainLevel the height from which land is mountains
+     */
+    public void setLevels(float seaLevel, float hillLevel, float mountainLevel) {
+        this.seaLevel = seaLevel;
+        this.hillLevel = hillLevel;
+        this.mountainLevel = mountainLevel;
+    }
+
+    /**
+     * Gets the height below which tiles are sea
+     * @return the sea level, from 0 to 1
+     */
+    public float getSeaLevel() {
+        return seaLevel;
+    }
+
+    /**
+     * Gets the seed the world is generated from
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.equinoxelectronic.lwjgl3;
 
 import io.github.equinoxelectronic.Chancellor;
+import io.github.equinoxelectronic.logging.Log;
 
 import javax.swing.*;
 import java.awt.*;
@@ -21,7 +22,7 @@ public class ErrorDialog {
      */
     public static void showErrorDialog(String errorMessage, Throwable throwable) {
         System.err.println("Displaying error dialog.");
-        String stackTrace = getStackTraceAsString(throwable);
+        String stackTrace = getStackTraceAsString(throwable) + getRecentLog();
         // Handle null error messages
         final String displayMessage = errorMessage != null ? errorMessage : "Unknown error occurred";
 
@@ -98,4 +99,15 @@ public class ErrorDialog {
         throwable.printStackTrace(pw);
         return sw.toString();
     }
+
+    /**
+     * Gets the last lines logged before the crash, to paste along with the stack trace
+     */
+    private static String getRecentLog() {
+        StringBuilder log = new StringBuilder("\nRecent log:\n");
+        for (String line : Log.getRecentLines()) {
+            log.append(line).append('\n');
+        }
+        return log.toString();
+    }
 }
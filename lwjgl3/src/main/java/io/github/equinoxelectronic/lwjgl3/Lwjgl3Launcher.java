@@ -6,6 +6,9 @@ import io.github.equinoxelectronic.Chancellor;
 
 /** Launches the desktop (LWJGL3) application. */
 public class Lwjgl3Launcher {
+    /** System property that selects a GL30 context instead of ANGLE's OpenGL ES 2.0 */
+    public static final String GL30_PROPERTY = "chancellor.gl30";
+
     public static void main(String[] args) {
         if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
 
@@ -55,7 +58,13 @@ public class Lwjgl3Launcher {
         //// This uses the dependency `com.badlogicgames.gdx:gdx-lwjgl3-angle` to function.
         //// You can choose to remove the following line and the mentioned dependency if you want; they
         //// are not intended for games that use GL30 (which is compatibility with OpenGL ES 3.0).
-        configuration.setOpenGLEmulation(Lwjgl3ApplicationConfiguration.GLEmulation.ANGLE_GLES20, 0, 0);
+        //// Start with -Dchancellor.gl30=true to get a GL30 context instead, which lets the
+        //// InstancedRenderer draw units with instancing rather than through the SpriteBatch.
+        if (Boolean.getBoolean(GL30_PROPERTY)) {
+            configuration.setOpenGLEmulation(Lwjgl3ApplicationConfiguration.GLEmulation.GL30, 3, 2);
+        } else {
+            configuration.setOpenGLEmulation(Lwjgl3ApplicationConfiguration.GLEmulation.ANGLE_GLES20, 0, 0);
+        }
 
         return configuration;
     }
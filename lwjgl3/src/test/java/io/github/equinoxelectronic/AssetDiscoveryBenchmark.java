@@ -0,0 +1,83 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import io.github.equinoxelectronic.logging.Log;
+import io.github.equinoxelectronic.utility.AssetIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compares {@link AssetIndex#find(String)} walking a directory against reading its assets.txt index,
+ * on two identical generated trees of empty files, only one of which has an index.
+ * Pass the number of files as the first argument (defaults to 10000).
+ */
+public class AssetDiscoveryBenchmark {
+    private static final int RUNS = 15;
+
+    public static void main(String[] args) throws IOException {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        // find resolves the index entries through Gdx.files, which needs no window
+        Gdx.files = new Lwjgl3Files();
+        File walkDirectory = Files.createTempDirectory("chancellor-walk").toFile();
+        File indexDirectory = Files.createTempDirectory("chancellor-index").toFile();
+
+        System.out.println("Generating " + fileCount + " files in " + walkDirectory + " and " + indexDirectory + "...");
+        File indexFile = new File(indexDirectory, AssetIndex.INDEX_FILE);
+        try (Writer index = Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < fileCount; i++) {
+                // Spread the files over nested folders like a real asset tree
+                String path = "group" + (i % 10) + "/folder" + (i % 100) + "/asset" + i + ".png";
+                for (File directory : new File[] { walkDirectory, indexDirectory }) {
+                    File file = new File(directory, path);
+                    file.getParentFile().mkdirs();
+                    file.createNewFile();
+                }
+                index.write(path);
+                index.write('\n');
+            }
+        }
+
+        // find logs every discovery, which would be timed along with it
+        int level = Log.getLevel();
+        Log.setLevel(Log.ERROR);
+        long[] walkTimes = new long[RUNS];
+        long[] indexTimes = new long[RUNS];
+        int walked = 0;
+        int indexed = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Map<String, FileHandle> files = AssetIndex.find(walkDirectory.getPath());
+            walkTimes[run] = System.nanoTime() - start;
+            walked = files.size();
+
+            start = System.nanoTime();
+            files = AssetIndex.find(indexDirectory.getPath());
+            indexTimes[run] = System.nanoTime() - start;
+            indexed = files.size();
+        }
+        Log.setLevel(level);
+
+        System.out.println("Directory walk: " + walked + " files, median " + median(walkTimes) / 1000 + "us");
+        System.out.println("assets.txt:     " + indexed + " files, median " + median(indexTimes) / 1000 + "us ("
+            + indexFile.length() / 1024 + "KB index)");
+        System.out.println("Speedup:        " + String.format("%.1fx", median(walkTimes) / (double) median(indexTimes)));
+        System.out.println("Note: both runs are with a warm file system cache; a cold walk costs one listing per folder.");
+
+        new FileHandle(walkDirectory).deleteDirectory();
+        new FileHandle(indexDirectory).deleteDirectory();
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import io.github.equinoxelectronic.utility.AssetManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares serial and asynchronous asset loading on a generated folder of images.
+ * Pass the number of images as the first argument (defaults to 3000).
+ */
+public class AssetLoadingBenchmark extends ApplicationAdapter {
+    private final int imageCount;
+
+    public AssetLoadingBenchmark(int imageCount) {
+        this.imageCount = imageCount;
+    }
+
+    @Override
+    public void create() {
+        File directory;
+        try {
+            directory = Files.createTempDirectory("chancellor-assets").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        System.out.println("Generating " + imageCount + " images in " + directory + "...");
+        generateImages(directory);
+
+        AssetManager assetManager = AssetManager.getInstance();
+
+        // Serial: everything on this thread
+        long start = System.nanoTime();
+        assetManager.loadAssets(directory.getPath());
+        long serial = System.nanoTime() - start;
+        assetManager.dispose();
+
+        // Parallel: decode on workers, upload here under the default frame budget
+        start = System.nanoTime();
+        assetManager.loadAssetsAsync(directory.getPath());
+        int frames = 0;
+        long longestFrame = 0;
+        boolean done = false;
+        while (!done) {
+            long frameStart = System.nanoTime();
+            done = assetManager.update();
+            longestFrame = Math.max(longestFrame, System.nanoTime() - frameStart);
+            frames++;
+        }
+        long parallel = System.nanoTime() - start;
+        assetManager.dispose();
+
+        System.out.println("Serial:   " + serial / 1_000_000 + "ms (window frozen the whole time)");
+        System.out.println("Parallel: " + parallel / 1_000_000 + "ms over " + frames
+            + " update calls, longest " + longestFrame / 1_000 + "us");
+        System.out.println("Speedup:  " + String.format("%.2fx", (double) serial / parallel));
+
+        new FileHandle(directory).deleteDirectory();
+        Gdx.app.exit();
+    }
+
+    /**
+     * Writes a mix of small and medium images into nested folders.
+     * @param directory the folder to write to
+     */
+    private void generateImages(File directory) {
+        Random random = new Random(42);
+        for (int i = 0; i < imageCount; i++) {
+            int size = i % 10 == 0 ? 256 : 32 + random.nextInt(64);
+            Pixmap pixmap = new Pixmap(size, size, Pixmap.Format.RGBA8888);
+            pixmap.setColor(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f);
+            pixmap.fill();
+            pixmap.setColor(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f);
+            pixmap.fillCircle(size / 2, size / 2, size / 3);
+
+            FileHandle file = new FileHandle(new File(directory, "folder" + (i % 20) + "/image" + i + ".png"));
+            PixmapIO.writePNG(file, pixmap);
+            pixmap.dispose();
+        }
+    }
+
+    public static void main(String[] args) {
+        int imageCount = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(800, 600);
+        new Lwjgl3Application(new AssetLoadingBenchmark(imageCount), config);
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.Array;
+import io.github.equinoxelectronic.utility.AssetManager;
+import io.github.equinoxelectronic.utility.AtlasPacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Draws a scene of a few thousand mixed sprites with and without atlas packing and reports
+ * the draw calls and texture binds it took.
+ * Pass the number of sprites as the first argument (defaults to 3000).
+ */
+public class AtlasPackingBenchmark extends ApplicationAdapter {
+    private static final int IMAGE_COUNT = 300;
+
+    private final int spriteCount;
+    private SpriteBatch batch;
+    private GLProfiler profiler;
+
+    public AtlasPackingBenchmark(int spriteCount) {
+        this.spriteCount = spriteCount;
+    }
+
+    @Override
+    public void create() {
+        File directory;
+        try {
+            directory = Files.createTempDirectory("chancellor-atlas").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        generateImages(directory);
+
+        batch = new SpriteBatch(8191);
+        profiler = new GLProfiler(Gdx.graphics);
+        AssetManager assetManager = AssetManager.getInstance();
+
+        assetManager.setAtlasSettings(null);
+        assetManager.loadAssets(directory.getPath());
+        drawScene("Separate textures", assetManager);
+        assetManager.dispose();
+
+        AtlasPacker.Settings settings = new AtlasPacker.Settings();
+        // Kept outside the asset folder so the saved pages are not loaded as assets themselves
+        File cacheDirectory = new File(directory.getPath() + "-cache");
+        settings.cacheFile = new FileHandle(new File(cacheDirectory, "sprites.atlas"));
+        assetManager.setAtlasSettings(settings);
+
+        long start = System.nanoTime();
+        assetManager.loadAssets(directory.getPath());
+        System.out.println("Load with packing:     " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        drawScene("Atlas pages", assetManager);
+        assetManager.dispose();
+
+        start = System.nanoTime();
+        assetManager.loadAssets(directory.getPath());
+        System.out.println("Load from saved atlas: " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        assetManager.dispose();
+        assetManager.setAtlasSettings(null);
+
+        batch.dispose();
+        new FileHandle(directory).deleteDirectory();
+        new FileHandle(cacheDirectory).deleteDirectory();
+        Gdx.app.exit();
+    }
+
+    /**
+     * Draws the same random selection of sprites and prints the GL counters
+     * @param label the name of the run
+     * @param assetManager the asset manager holding the images
+     */
+    private void drawScene(String label, AssetManager assetManager) {
+        Array<TextureRegion> regions = new Array<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            regions.add(assetManager.getTextureRegion("sprites/sprite" + i + ".png"));
+        }
+
+        Random random = new Random(7);
+        profiler.enable();
+        profiler.reset();
+        batch.begin();
+        for (int i = 0; i < spriteCount; i++) {
+            TextureRegion region = regions.get(random.nextInt(regions.size));
+            batch.draw(region, random.nextInt(Gdx.graphics.getWidth()), random.nextInt(Gdx.graphics.getHeight()));
+        }
+        batch.end();
+        System.out.println(label + ": " + spriteCount + " sprites, " + batch.renderCalls + " batch flushes, "
+            + profiler.getDrawCalls() + " draw calls, " + profiler.getTextureBindings() + " texture binds");
+        profiler.disable();
+    }
+
+    /**
+     * Writes a mix of differently sized sprite images
+     * @param directory the folder to write to
+     */
+    private void generateImages(File directory) {
+        Random random = new Random(42);
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            int width = 16 + random.nextInt(48);
+            int height = 16 + random.nextInt(48);
+            Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+            pixmap.setColor(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f);
+            pixmap.fill();
+            PixmapIO.writePNG(new FileHandle(new File(directory, "sprites/sprite" + i + ".png")), pixmap);
+            pixmap.dispose();
+        }
+    }
+
+    public static void main(String[] args) {
+        int spriteCount = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(800, 600);
+        new Lwjgl3Application(new AtlasPackingBenchmark(spriteCount), config);
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Measures the memory used by a set of long tracks loaded fully as Sounds versus streamed as Music.
+ * Resident memory is read from /proc, so the native numbers are only available on Linux.
+ * Pass the number of tracks and their length in seconds as arguments (defaults to 4 and 120).
+ */
+public class AudioMemoryBenchmark extends ApplicationAdapter {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int CHANNELS = 2;
+
+    private final int trackCount;
+    private final int trackSeconds;
+
+    public AudioMemoryBenchmark(int trackCount, int trackSeconds) {
+        this.trackCount = trackCount;
+        this.trackSeconds = trackSeconds;
+    }
+
+    @Override
+    public void create() {
+        File directory;
+        Array<FileHandle> tracks = new Array<>();
+        try {
+            directory = Files.createTempDirectory("chancellor-audio").toFile();
+            for (int i = 0; i < trackCount; i++) {
+                File track = new File(directory, "track" + i + ".wav");
+                writeWav(track, 220f + i * 55f);
+                tracks.add(new FileHandle(track));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.out.println("Generated " + trackCount + " tracks of " + trackSeconds + "s ("
+            + tracks.first().length() / (1024 * 1024) + "MB each)");
+
+        // Fully decoded into OpenAL buffers
+        long[] before = measure();
+        long start = System.nanoTime();
+        Array<Sound> sounds = new Array<>();
+        for (FileHandle track : tracks) {
+            sounds.add(Gdx.audio.newSound(track));
+        }
+        long soundTime = System.nanoTime() - start;
+        long[] afterSounds = measure();
+        for (Sound sound : sounds) {
+            sound.dispose();
+        }
+
+        // Streamed a few buffers at a time
+        long[] beforeMusic = measure();
+        start = System.nanoTime();
+        Array<Music> music = new Array<>();
+        for (FileHandle track : tracks) {
+            music.add(Gdx.audio.newMusic(track));
+        }
+        long musicTime = System.nanoTime() - start;
+        long[] afterMusic = measure();
+        for (Music track : music) {
+            track.dispose();
+        }
+
+        print("Sound", soundTime, before, afterSounds);
+        print("Music", musicTime, beforeMusic, afterMusic);
+
+        new FileHandle(directory).deleteDirectory();
+        Gdx.app.exit();
+    }
+
+    private void print(String label, long nanos, long[] before, long[] after) {
+        String resident = before[1] < 0 ? "n/a" : (after[1] - before[1]) / 1024 + "MB";
+        System.out.println(label + ": loaded in " + nanos / 1_000_000 + "ms, heap +" + (after[0] - before[0]) / (1024 * 1024)
+            + "MB, resident +" + resident);
+    }
+
+    /**
+     * Measures heap usage after a GC and the resident set size
+     * @return heap bytes and resident kilobytes (or -1 if unavailable)
+     */
+    private static long[] measure() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        long resident = -1;
+        File status = new File("/proc/self/status");
+        if (status.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(status))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("VmRSS:")) {
+                        resident = Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            } catch (IOException ignored) {
+                // Resident size stays unavailable
+            }
+        }
+        return new long[] { heap, resident };
+    }
+
+    /**
+     * Writes a 16-bit stereo sine wave
+     * @param file the file to write
+     * @param frequency the tone frequency in hertz
+     */
+    private void writeWav(File file, float frequency) throws IOException {
+        int frames = SAMPLE_RATE * trackSeconds;
+        int dataBytes = frames * CHANNELS * 2;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeBytes("RIFF");
+            out.writeInt(Integer.reverseBytes(36 + dataBytes));
+            out.writeBytes("WAVEfmt ");
+            out.writeInt(Integer.reverseBytes(16));
+            out.writeShort(Short.reverseBytes((short) 1));
+            out.writeShort(Short.reverseBytes((short) CHANNELS));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE * CHANNELS * 2));
+            out.writeShort(Short.reverseBytes((short) (CHANNELS * 2)));
+            out.writeShort(Short.reverseBytes((short) 16));
+            out.writeBytes("data");
+            out.writeInt(Integer.reverseBytes(dataBytes));
+            for (int i = 0; i < frames; i++) {
+                short sample = (short) (Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE) * 8000);
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    out.writeShort(Short.reverseBytes(sample));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int trackCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int trackSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(320, 240);
+        new Lwjgl3Application(new AudioMemoryBenchmark(trackCount, trackSeconds), config);
+    }
+}
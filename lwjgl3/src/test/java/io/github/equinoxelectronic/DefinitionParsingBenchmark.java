@@ -0,0 +1,158 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.google.gson.Gson;
+import io.github.equinoxelectronic.data.DefinitionRegistry;
+import io.github.equinoxelectronic.data.DefinitionTable;
+import io.github.equinoxelectronic.data.UnitDefinition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares parsing a large set of unit definitions into untyped Gson objects, the way every JSON
+ * asset used to be loaded, against parsing them into typed tables with the {@link DefinitionRegistry}.
+ * Reports parse time, retained heap and id lookup time.
+ * Pass the number of definitions as the first argument (defaults to 50000).
+ */
+public class DefinitionParsingBenchmark {
+    private static final int FILES = 50;
+    private static final int RUNS = 7;
+    private static final int LOOKUPS = 10000;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        File directory = Files.createTempDirectory("chancellor-definitions").toFile();
+        Array<FileHandle> files = generate(directory, count);
+        System.out.println("Generated " + count + " unit definitions in " + FILES + " files");
+
+        String[] ids = new String[LOOKUPS];
+        Random random = new Random(1);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = "unit" + random.nextInt(count);
+        }
+
+        long[] untypedTimes = new long[RUNS];
+        long[] typedTimes = new long[RUNS];
+        long untypedHeap = 0;
+        long typedHeap = 0;
+        long untypedLookup = 0;
+        long typedLookup = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long before = usedHeap();
+            long start = System.nanoTime();
+            List<Object> untyped = new ArrayList<>();
+            for (FileHandle file : files) {
+                try (Reader reader = file.reader("UTF-8")) {
+                    untyped.add(new Gson().fromJson(reader, Object.class));
+                }
+            }
+            untypedTimes[run] = System.nanoTime() - start;
+            untypedHeap = usedHeap() - before;
+
+            // Without a typed table, finding a definition means scanning the parsed maps
+            start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < 100; i++) {
+                found += findUntyped(untyped, ids[i]) != null ? 1 : 0;
+            }
+            untypedLookup = (System.nanoTime() - start) / 100;
+            check(found == 100);
+            untyped = null;
+
+            before = usedHeap();
+            start = System.nanoTime();
+            DefinitionTable<UnitDefinition> table = new DefinitionTable<>(UnitDefinition.class);
+            for (FileHandle file : files) {
+                for (UnitDefinition unit : DefinitionRegistry.parse(file, UnitDefinition.class).definitions) {
+                    table.add(unit);
+                }
+            }
+            typedTimes[run] = System.nanoTime() - start;
+            typedHeap = usedHeap() - before;
+
+            start = System.nanoTime();
+            found = 0;
+            for (String id : ids) {
+                found += table.get(id) != null ? 1 : 0;
+            }
+            typedLookup = (System.nanoTime() - start) / LOOKUPS;
+            check(found == LOOKUPS);
+        }
+
+        System.out.println("Untyped Gson: parse median " + median(untypedTimes) / 1_000_000 + "ms, retained "
+            + untypedHeap / 1024 + "KB, lookup " + untypedLookup + "ns");
+        System.out.println("Typed tables: parse median " + median(typedTimes) / 1_000_000 + "ms, retained "
+            + typedHeap / 1024 + "KB, lookup " + typedLookup + "ns");
+
+        new FileHandle(directory).deleteDirectory();
+    }
+
+    /**
+     * Writes the definitions as JSON arrays spread over several files
+     */
+    private static Array<FileHandle> generate(File directory, int count) throws IOException {
+        Array<FileHandle> files = new Array<>();
+        Random random = new Random(0);
+        int perFile = (count + FILES - 1) / FILES;
+        for (int f = 0; f < FILES; f++) {
+            File file = new File(directory, "units" + f + ".json");
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                writer.write("[\n");
+                int end = Math.min(count, (f + 1) * perFile);
+                for (int i = f * perFile; i < end; i++) {
+                    writer.write("{\"id\":\"unit" + i + "\",\"name\":\"Unit " + i + "\",\"cost\":" + random.nextInt(500)
+                        + ",\"upkeep\":" + random.nextInt(10) + ",\"attack\":" + random.nextInt(20)
+                        + ",\"defense\":" + random.nextInt(20) + ",\"movement\":" + (1 + random.nextInt(4))
+                        + ",\"requires\":\"barracks\"}");
+                    writer.write(i + 1 < end ? ",\n" : "\n");
+                }
+                writer.write("]\n");
+            }
+            files.add(new FileHandle(file));
+        }
+        return files;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object findUntyped(List<Object> files, String id) {
+        for (Object file : files) {
+            for (Object definition : (List<Object>) file) {
+                if (id.equals(((Map<String, Object>) definition).get("id"))) {
+                    return definition;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition) {
+        if (!condition) {
+            throw new IllegalStateException("Lookup failed");
+        }
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
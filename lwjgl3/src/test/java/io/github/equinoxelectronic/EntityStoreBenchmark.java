@@ -0,0 +1,165 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.entities.EntityStore;
+import io.github.equinoxelectronic.entities.FloatColumn;
+import io.github.equinoxelectronic.entities.IntColumn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares updating a large population stored in an {@link EntityStore} against one object per
+ * entity in a list. Every frame each entity moves and ages, and 1% of the entities die and are
+ * replaced. Reports the update time per frame, the churn time and the heap used by each.
+ * Pass the number of entities as the first argument (defaults to 1000000).
+ */
+public class EntityStoreBenchmark {
+    private static final int FRAMES = 100;
+    private static final float DELTA = 1f / 30f;
+
+    /**
+     * The object-per-entity baseline
+     */
+    private static class Citizen {
+        float x;
+        float y;
+        float velocityX;
+        float velocityY;
+        float age;
+        int home;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int churn = count / 100;
+        System.out.println(count + " entities, " + churn + " replaced per frame");
+
+        for (int run = 0; run < 2; run++) {
+            objects(count, churn, run == 1);
+            columns(count, churn, run == 1);
+        }
+    }
+
+    private static void objects(int count, int churn, boolean print) {
+        long before = usedHeap();
+        Random random = new Random(3);
+        List<Citizen> citizens = new ArrayList<>(count);
+        List<Object> garbage = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            citizens.add(createCitizen(random));
+            // Other allocations in between, as in a running game, so citizens don't end up next to each other
+            garbage.add(new float[random.nextInt(8)]);
+        }
+        garbage.clear();
+        // Entities get created and destroyed in any order over time
+        Collections.shuffle(citizens, random);
+        long heap = usedHeap() - before;
+
+        long update = 0;
+        long replace = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < citizens.size(); i++) {
+                Citizen citizen = citizens.get(i);
+                citizen.x += citizen.velocityX * DELTA;
+                citizen.y += citizen.velocityY * DELTA;
+                citizen.age += DELTA;
+            }
+            update += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < churn; i++) {
+                int victim = random.nextInt(citizens.size());
+                int last = citizens.size() - 1;
+                citizens.set(victim, citizens.get(last));
+                citizens.remove(last);
+                citizens.add(createCitizen(random));
+            }
+            replace += System.nanoTime() - start;
+        }
+        if (print) {
+            System.out.println("Objects: update " + update / FRAMES / 1000 + "us/frame, churn " + replace / FRAMES / 1000
+                + "us/frame, heap " + heap / 1024 / 1024 + "MB");
+        }
+    }
+
+    private static Citizen createCitizen(Random random) {
+        Citizen citizen = new Citizen();
+        citizen.x = random.nextFloat() * 256f;
+        citizen.y = random.nextFloat() * 256f;
+        citizen.velocityX = random.nextFloat() - 0.5f;
+        citizen.velocityY = random.nextFloat() - 0.5f;
+        citizen.home = random.nextInt(1000);
+        return citizen;
+    }
+
+    private static void columns(int count, int churn, boolean print) {
+        long before = usedHeap();
+        Random random = new Random(3);
+        EntityStore store = new EntityStore(count);
+        FloatColumn x = store.addFloatColumn("x", 0f);
+        FloatColumn y = store.addFloatColumn("y", 0f);
+        FloatColumn velocityX = store.addFloatColumn("velocityX", 0f);
+        FloatColumn velocityY = store.addFloatColumn("velocityY", 0f);
+        FloatColumn age = store.addFloatColumn("age", 0f);
+        IntColumn home = store.addIntColumn("home", 0);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = createCitizen(store, random, x, y, velocityX, velocityY, home);
+        }
+        long heap = usedHeap() - before;
+
+        long update = 0;
+        long replace = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            long start = System.nanoTime();
+            float[] xs = x.getData();
+            float[] ys = y.getData();
+            float[] velocityXs = velocityX.getData();
+            float[] velocityYs = velocityY.getData();
+            float[] ages = age.getData();
+            int size = store.size();
+            for (int i = 0; i < size; i++) {
+                xs[i] += velocityXs[i] * DELTA;
+                ys[i] += velocityYs[i] * DELTA;
+                ages[i] += DELTA;
+            }
+            update += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < churn; i++) {
+                // Entities are usually destroyed by id, from whatever refers to them
+                int victim = random.nextInt(count);
+                store.destroy(ids[victim]);
+                ids[victim] = createCitizen(store, random, x, y, velocityX, velocityY, home);
+            }
+            replace += System.nanoTime() - start;
+        }
+        if (print) {
+            System.out.println("Columns: update " + update / FRAMES / 1000 + "us/frame, churn " + replace / FRAMES / 1000
+                + "us/frame, heap " + heap / 1024 / 1024 + "MB");
+        }
+    }
+
+    private static int createCitizen(EntityStore store, Random random, FloatColumn x, FloatColumn y,
+                                     FloatColumn velocityX, FloatColumn velocityY, IntColumn home) {
+        int id = store.create();
+        int index = store.indexOf(id);
+        x.set(index, random.nextFloat() * 256f);
+        y.set(index, random.nextFloat() * 256f);
+        velocityX.set(index, random.nextFloat() - 0.5f);
+        velocityY.set(index, random.nextFloat() - 0.5f);
+        home.set(index, random.nextInt(1000));
+        return id;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.navigation.FlowField;
+import io.github.equinoxelectronic.navigation.FlowFields;
+import io.github.equinoxelectronic.navigation.MovementCosts;
+import io.github.equinoxelectronic.navigation.Pathfinder;
+import io.github.equinoxelectronic.world.TileMap;
+import io.github.equinoxelectronic.world.WorldGenerator;
+
+import java.util.Random;
+
+/**
+ * Compares moving 1000 and 10000 units to one target on a generated 1024x1024 map with a path
+ * per unit (hierarchical A*) against one shared {@link FlowField}. Also measures repairing the
+ * field after the terrain changes against building it again, and checks that the repaired
+ * field is the same as a new one.
+ * Pass the map size in tiles as the first argument (defaults to 1024).
+ */
+public class FlowFieldBenchmark {
+    // Ocean, plains, forest, hills, mountains, desert, like the terrain definitions
+    private static final int[] COSTS = { 0, 10, 20, 20, 0, 10 };
+    private static final int[] UNITS = { 1000, 10000 };
+    private static final int MOUNTAINS = 4;
+    private static final int PLAINS = 1;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        TileMap map = new TileMap(size, size);
+        new WorldGenerator(42L).start(map, Runtime.getRuntime().availableProcessors(), size / 2, size / 2).finish();
+        MovementCosts costs = new MovementCosts(COSTS);
+        Random random = new Random(3);
+
+        int targetX;
+        int targetY;
+        do {
+            targetX = size / 4 + random.nextInt(size / 2);
+            targetY = size / 4 + random.nextInt(size / 2);
+        } while (!costs.isPassable(map.getTile(targetX, targetY)));
+
+        FlowFields fields = new FlowFields(map, costs, FlowFields.DEFAULT_CACHE_SIZE);
+        // Warm up
+        for (int i = 0; i < 3; i++) {
+            fields.clear();
+            fields.get(targetX, targetY);
+        }
+        fields.clear();
+        long start = System.nanoTime();
+        FlowField field = fields.get(targetX, targetY);
+        long buildTime = System.nanoTime() - start;
+        System.out.println(size + "x" + size + " map, flow field built in " + buildTime / 1000 + "us");
+
+        Pathfinder pathfinder = new Pathfinder(map, costs, Pathfinder.DEFAULT_CACHE_SIZE);
+        pathfinder.updateGraph();
+        for (int units : UNITS) {
+            int[] positions = new int[units * 2];
+            for (int i = 0; i < positions.length; i += 2) {
+                do {
+                    positions[i] = random.nextInt(size);
+                    positions[i + 1] = random.nextInt(size);
+                } while (!field.isReachable(positions[i], positions[i + 1]));
+            }
+
+            pathfinder.clearCache();
+            start = System.nanoTime();
+            for (int i = 0; i < positions.length; i += 2) {
+                pathfinder.findPath(positions[i], positions[i + 1], targetX, targetY);
+            }
+            long pathTime = System.nanoTime() - start;
+
+            // One steering step for every unit, as a tick would do
+            int[] moved = new int[positions.length];
+            start = System.nanoTime();
+            for (int i = 0; i < positions.length; i += 2) {
+                moved[i] = positions[i] + field.getStepX(positions[i], positions[i + 1]);
+                moved[i + 1] = positions[i + 1] + field.getStepY(positions[i], positions[i + 1]);
+            }
+            long stepTime = System.nanoTime() - start;
+
+            // Every unit all the way to the target, checking the steps add up to the field's cost
+            start = System.nanoTime();
+            long steps = 0;
+            int arrived = 0;
+            for (int i = 0; i < positions.length; i += 2) {
+                int x = positions[i];
+                int y = positions[i + 1];
+                while (field.getDirection(x, y) != FlowField.NONE) {
+                    int stepX = field.getStepX(x, y);
+                    int stepY = field.getStepY(x, y);
+                    if (field.getCost(x + stepX, y + stepY) >= field.getCost(x, y)) {
+                        break;
+                    }
+                    x += stepX;
+                    y += stepY;
+                    steps++;
+                }
+                arrived += x == targetX && y == targetY ? 1 : 0;
+            }
+            long walkTime = System.nanoTime() - start;
+
+            System.out.println(units + " units: A* per unit " + pathTime / 1_000_000 + "ms, flow field "
+                + buildTime / 1_000_000 + "ms (" + String.format("%.1f", (double) pathTime / buildTime) + "x faster), "
+                + "steering a tick " + stepTime / 1000 + "us, following to the target "
+                + walkTime / 1_000_000 + "ms for " + steps + " steps, " + arrived + "/" + units + " arrived");
+        }
+
+        // Buildings going up here and there only touch a chunk or two each
+        long repairTime = 0;
+        int buildings = 0;
+        while (buildings < 50) {
+            int x = random.nextInt(size - 2);
+            int y = random.nextInt(size - 2);
+            if (!field.isReachable(x, y) || Math.abs(x - targetX) < 3 && Math.abs(y - targetY) < 3) {
+                continue;
+            }
+            map.fill(x, y, 2, 2, MOUNTAINS);
+            start = System.nanoTime();
+            fields.get(targetX, targetY);
+            repairTime += System.nanoTime() - start;
+            buildings++;
+        }
+        System.out.println(buildings + " buildings: repaired in " + repairTime / buildings / 1000 + "us each on average, "
+            + describe(map, costs, field));
+
+        // A mountain range across the middle makes the way longer for much of the map
+        map.fill(size / 2 - 64, size / 2, 128, 3, MOUNTAINS);
+        start = System.nanoTime();
+        fields.get(targetX, targetY);
+        System.out.println("Mountain range: repaired in " + (System.nanoTime() - start) / 1000 + "us, "
+            + describe(map, costs, field));
+
+        // Draining a stretch of sea opens a shorter way
+        map.fill(size / 2 - 20, size / 2 - 40, 40, 40, PLAINS);
+        start = System.nanoTime();
+        fields.get(targetX, targetY);
+        System.out.println("Drained sea: repaired in " + (System.nanoTime() - start) / 1000 + "us, "
+            + describe(map, costs, field));
+        System.out.println(fields.getBuilds() + " builds, " + fields.getRepairs() + " repairs");
+    }
+
+    /**
+     * Compares a repaired field with one built from scratch
+     */
+    private static String describe(TileMap map, MovementCosts costs, FlowField repaired) {
+        FlowField rebuilt = new FlowFields(map, costs, 1).get(repaired.getTargetX(), repaired.getTargetY());
+        int different = 0;
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < map.getWidth(); x++) {
+                if (repaired.getCost(x, y) != rebuilt.getCost(x, y)) {
+                    different++;
+                }
+            }
+        }
+        return different == 0 ? "same as a new field" : different + " TILES DIFFERENT from a new field";
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.rendering.Renderer;
+import io.github.equinoxelectronic.simulation.GameLoop;
+
+import java.util.Random;
+
+/**
+ * Drives the {@link GameLoop} with simulated frame times at several frame rates and game speeds,
+ * and reports how many ticks ran per frame, how far game time drifted from real time (including
+ * the interpolation alpha), and what happens when ticks get slower than real time.
+ * No window is opened; ticks do a fixed amount of busy work instead, and frames take the
+ * simulated frame time or the time the ticks really took, whichever is longer.
+ */
+public class GameLoopBenchmark {
+    private static final float SECONDS = 10f;
+    private static final int[] FRAME_RATES = { 30, 60, 144, 240 };
+
+    public static void main(String[] args) {
+        System.out.println("Tick rate " + GameLoop.DEFAULT_TICK_RATE + "Hz, " + SECONDS + "s of frames each");
+        for (float speed : GameLoop.SPEEDS) {
+            for (int frameRate : FRAME_RATES) {
+                run(frameRate, speed, 20000, SECONDS);
+            }
+        }
+        // Ticks taking 20ms at 5x speed need 3s of work per second: the loop has to drop ticks
+        // instead of making every frame longer than the last
+        run(60, 5f, 20000000, 2f);
+    }
+
+    private static void run(int frameRate, float speed, long tickWorkNanos, float seconds) {
+        GameLoop loop = new GameLoop();
+        loop.setSpeed(speed);
+        loop.addSimulation(delta -> {
+            long end = System.nanoTime() + tickWorkNanos;
+            while (System.nanoTime() < end) {
+                // Busy work
+            }
+        });
+
+        Random random = new Random(7);
+        int frames = (int) (seconds * frameRate);
+        int minTicks = Integer.MAX_VALUE;
+        int maxTicks = 0;
+        double realTime = 0;
+        long start = System.nanoTime();
+        long frameStart = start;
+        for (int frame = 0; frame < frames; frame++) {
+            // Frame times jitter by up to 20%, like a real vsynced frame, unless the ticks took even longer
+            float frameDelta = (1f / frameRate) * (0.8f + random.nextFloat() * 0.4f);
+            long now = System.nanoTime();
+            frameDelta = Math.max(frameDelta, (now - frameStart) / 1e9f);
+            frameStart = now;
+            realTime += frameDelta;
+            loop.update(frameDelta);
+            minTicks = Math.min(minTicks, loop.getTicksLastFrame());
+            maxTicks = Math.max(maxTicks, loop.getTicksLastFrame());
+        }
+        long wall = System.nanoTime() - start;
+
+        double gameTime = (loop.getTotalTicks() + Renderer.getInterpolationAlpha()) / loop.getTickRate();
+        double drift = gameTime - realTime * speed;
+        System.out.println(frameRate + "fps at " + speed + "x: " + loop.getTotalTicks() + " ticks, " + minTicks + "-"
+            + maxTicks + " per frame, " + loop.getDroppedTicks() + " dropped, game time drift "
+            + String.format("%.4f", drift) + "s, tick " + loop.getAverageTickNanos() / 1000 + "us, ran in "
+            + wall / 1000000 + "ms");
+    }
+}
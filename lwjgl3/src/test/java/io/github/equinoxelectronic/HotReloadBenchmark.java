@@ -0,0 +1,133 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import io.github.equinoxelectronic.utility.AssetHandle;
+import io.github.equinoxelectronic.utility.AssetManager;
+import io.github.equinoxelectronic.utility.AssetWatcher;
+import io.github.equinoxelectronic.utility.AsyncAssetLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Loads a few thousand images, then repeatedly rewrites one of them and measures how long it
+ * takes to show up through its handle, and how much of that time is spent on the GL thread.
+ * Pass the number of images as the first argument (defaults to 3000).
+ */
+public class HotReloadBenchmark extends ApplicationAdapter {
+    private static final int RELOADS = 10;
+    private static final String TARGET = "images/image0.png";
+
+    private final int imageCount;
+    private final Random random = new Random(3);
+    private File directory;
+    private AssetHandle<TextureRegion> handle;
+
+    private final long[] latencies = new long[RELOADS];
+    private final long[] swapTimes = new long[RELOADS];
+    private int reloads;
+    private long writtenAt;
+    private boolean reloaded;
+
+    public HotReloadBenchmark(int imageCount) {
+        this.imageCount = imageCount;
+    }
+
+    @Override
+    public void create() {
+        try {
+            directory = Files.createTempDirectory("chancellor-reload").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (int i = 0; i < imageCount; i++) {
+            writeImage(new FileHandle(new File(directory, "images/image" + i + ".png")));
+        }
+
+        AssetManager assetManager = AssetManager.getInstance();
+        assetManager.loadAssets(directory.getPath());
+        handle = assetManager.getTextureHandle(TARGET);
+
+        AssetWatcher watcher = assetManager.enableHotReload(directory.getPath());
+        watcher.addListener((path, asset) -> {
+            if (path.equals(TARGET) && reloads < RELOADS && assetManager.get(handle) == asset) {
+                latencies[reloads] = System.nanoTime() - writtenAt;
+                reloaded = true;
+            }
+        });
+        System.out.println("Loaded " + assetManager.getAllAssets().size() + " assets, watching " + watcher.getRoot());
+    }
+
+    @Override
+    public void render() {
+        AssetManager assetManager = AssetManager.getInstance();
+        long start = System.nanoTime();
+        assetManager.update(AsyncAssetLoader.DEFAULT_FRAME_BUDGET_NANOS);
+        long updateTime = System.nanoTime() - start;
+
+        if (reloaded) {
+            swapTimes[reloads] = updateTime;
+            reloads++;
+            reloaded = false;
+            writtenAt = 0;
+        }
+
+        if (reloads == RELOADS) {
+            System.out.println("Write to visible: median " + median(latencies) / 1_000_000 + "ms (includes the "
+                + AssetWatcher.DEBOUNCE_MILLIS + "ms debounce)");
+            System.out.println("GL thread per reload: median " + median(swapTimes) / 1000 + "us, max "
+                + max(swapTimes) / 1000 + "us");
+            assetManager.disableHotReload();
+            assetManager.dispose();
+            new FileHandle(directory).deleteDirectory();
+            Gdx.app.exit();
+            reloads++;
+        } else if (reloads < RELOADS && writtenAt == 0) {
+            // Overwritten in a burst of writes, like an image editor saving, which should reload once
+            FileHandle target = new FileHandle(new File(directory, TARGET));
+            for (int i = 0; i < 3; i++) {
+                writeImage(target);
+            }
+            writtenAt = System.nanoTime();
+        }
+    }
+
+    private void writeImage(FileHandle file) {
+        Pixmap pixmap = new Pixmap(64, 64, Pixmap.Format.RGBA8888);
+        pixmap.setColor(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f);
+        pixmap.fill();
+        PixmapIO.writePNG(file, pixmap);
+        pixmap.dispose();
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long max(long[] times) {
+        long max = 0;
+        for (long time : times) {
+            max = Math.max(max, time);
+        }
+        return max;
+    }
+
+    public static void main(String[] args) {
+        int imageCount = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(320, 240);
+        new Lwjgl3Application(new HotReloadBenchmark(imageCount), config);
+    }
+}
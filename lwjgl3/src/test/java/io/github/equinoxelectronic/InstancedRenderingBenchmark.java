@@ -0,0 +1,161 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import io.github.equinoxelectronic.rendering.InstancedRenderer;
+import io.github.equinoxelectronic.rendering.Renderer;
+
+import java.util.Random;
+
+/**
+ * Stress test for unit drawing: finds how many moving units can be drawn per frame while
+ * staying at 60 FPS, once with the {@link InstancedRenderer} using instancing and once with it
+ * falling back to the SpriteBatch. Runs in a GL30 context so both paths are available.
+ * Pass "gles20" as the first argument to run in the ANGLE context the game uses by default,
+ * where only the fallback can be measured.
+ */
+public class InstancedRenderingBenchmark extends ApplicationAdapter {
+    private static final long FRAME_BUDGET = 1_000_000_000L / 60;
+    private static final int FRAMES = 30;
+    private static final int MAX_UNITS = 1 << 22;
+    private static final int REGIONS = 16;
+    private static final int BATCH_SIZE = 16384;
+    private static final float UNIT_SIZE = 0.2f;
+
+    private TextureRegion[] regions;
+    private SpriteBatch batch;
+    private OrthographicCamera camera;
+    private float[] positions;
+    private float[] velocities;
+    private int[] kinds;
+    private float[] tints;
+
+    @Override
+    public void create() {
+        // One page with a square per unit kind, like a unit atlas
+        Pixmap pixmap = new Pixmap(16 * REGIONS, 16, Pixmap.Format.RGBA8888);
+        Random random = new Random(13);
+        regions = new TextureRegion[REGIONS];
+        for (int i = 0; i < REGIONS; i++) {
+            pixmap.setColor(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f);
+            pixmap.fillRectangle(i * 16 + 2, 2, 12, 12);
+        }
+        Texture texture = new Texture(pixmap);
+        pixmap.dispose();
+        for (int i = 0; i < REGIONS; i++) {
+            regions[i] = new TextureRegion(texture, i * 16, 0, 16, 16);
+        }
+
+        positions = new float[MAX_UNITS * 2];
+        velocities = new float[MAX_UNITS * 2];
+        kinds = new int[MAX_UNITS];
+        tints = new float[MAX_UNITS];
+        float[] nationColors = { Color.RED.toFloatBits(), Color.BLUE.toFloatBits(), Color.WHITE.toFloatBits(), Color.GOLD.toFloatBits() };
+        for (int i = 0; i < MAX_UNITS; i++) {
+            positions[i * 2] = random.nextFloat() * Renderer.WORLD_WIDTH;
+            positions[i * 2 + 1] = random.nextFloat() * Renderer.WORLD_HEIGHT;
+            velocities[i * 2] = (random.nextFloat() - 0.5f) * 0.01f;
+            velocities[i * 2 + 1] = (random.nextFloat() - 0.5f) * 0.01f;
+            kinds[i] = random.nextInt(REGIONS);
+            tints[i] = nationColors[random.nextInt(nationColors.length)];
+        }
+
+        batch = new SpriteBatch(8191);
+        camera = new OrthographicCamera(Renderer.WORLD_WIDTH, Renderer.WORLD_HEIGHT);
+        camera.position.set(Renderer.WORLD_WIDTH / 2f, Renderer.WORLD_HEIGHT / 2f, 0);
+        camera.update();
+
+        System.out.println(Gdx.graphics.getGLVersion().getDebugVersionString().split("\n")[0]
+            + ", GL30 " + (Gdx.gl30 != null ? "available" : "not available"));
+        if (Gdx.gl30 != null) {
+            measure(true);
+        }
+        measure(false);
+
+        batch.dispose();
+        texture.dispose();
+        Gdx.app.exit();
+    }
+
+    /**
+     * Doubles the unit count until a frame no longer fits in 1/60s, then narrows down the limit
+     */
+    private void measure(boolean instanced) {
+        InstancedRenderer renderer = new InstancedRenderer(regions, UNIT_SIZE, UNIT_SIZE, BATCH_SIZE, instanced);
+        String name = renderer.isInstanced() ? "Instanced" : "SpriteBatch";
+
+        int low = 0;
+        int high = 1024;
+        while (high <= MAX_UNITS && frameTime(renderer, high) <= FRAME_BUDGET) {
+            low = high;
+            high *= 2;
+        }
+        high = Math.min(high, MAX_UNITS);
+        while (high - low > Math.max(256, low / 50)) {
+            int middle = (low + high) >>> 1;
+            if (frameTime(renderer, middle) <= FRAME_BUDGET) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        frameTime(renderer, Math.max(low, 1));
+        System.out.println(name + ": " + low + " units per frame at 60 FPS ("
+            + renderer.getDrawCalls() / FRAMES + " draw calls per frame)");
+        renderer.dispose();
+    }
+
+    /**
+     * Moves and draws the given number of units for a few frames
+     * @return the average frame time in nanoseconds
+     */
+    private long frameTime(InstancedRenderer renderer, int units) {
+        renderer.resetStats();
+        // Warm-up frame, so buffers are allocated before timing
+        drawFrame(renderer, units);
+        Gdx.gl.glFinish();
+        renderer.resetStats();
+
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            drawFrame(renderer, units);
+        }
+        Gdx.gl.glFinish();
+        return (System.nanoTime() - start) / FRAMES;
+    }
+
+    private void drawFrame(InstancedRenderer renderer, int units) {
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        for (int i = 0; i < units; i++) {
+            float x = positions[i * 2] += velocities[i * 2];
+            float y = positions[i * 2 + 1] += velocities[i * 2 + 1];
+            if (renderer.getRemaining() == 0) {
+                renderer.render(camera.combined, batch);
+            }
+            renderer.add(x, y, kinds[i], tints[i]);
+        }
+        renderer.render(camera.combined, batch);
+    }
+
+    public static void main(String[] args) {
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(1280, 720);
+        config.useVsync(false);
+        if (args.length > 0 && args[0].equals("gles20")) {
+            config.setOpenGLEmulation(Lwjgl3ApplicationConfiguration.GLEmulation.ANGLE_GLES20, 0, 0);
+        } else {
+            config.setOpenGLEmulation(Lwjgl3ApplicationConfiguration.GLEmulation.GL30, 3, 2);
+        }
+        new Lwjgl3Application(new InstancedRenderingBenchmark(), config);
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.logging.Log;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures what the debug messages logged every frame cost the render thread: bytes allocated and
+ * time per frame, with messages concatenated by the caller as before, with {@link Log} at the
+ * default level, and with {@link Log} printing debug messages. Printing goes to a discarded stream.
+ * Pass the number of frames as an argument (defaults to 200000).
+ */
+public class LoggingBenchmark {
+    private static final Log logger = new Log("LoggingBenchmark");
+    // Frames run between emptying the ring, which the drain thread does between real frames
+    private static final int FRAMES_PER_FLUSH = 100;
+
+    private static int debugLevel = Log.INFO;
+    private static long sink;
+
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        for (int run = 0; run < 2; run++) {
+            boolean report = run == 1;
+            Log.setLevel(Log.INFO);
+            measure(out, report, "Concatenated, debug off", frames, LoggingBenchmark::concatenatedFrame);
+            measure(out, report, "Log, debug off", frames, LoggingBenchmark::logFrame);
+            Log.setLevel(Log.DEBUG);
+            measure(out, report, "Log, debug on", frames, LoggingBenchmark::logFrame);
+            Log.setLevel(Log.INFO);
+        }
+        Log.flush();
+        System.setOut(out);
+        out.println("(" + sink + ")");
+    }
+
+    private static void measure(PrintStream out, boolean report, String name, int frames, Frame frame) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        long nanos = 0;
+        for (int i = 0; i < frames; i += FRAMES_PER_FLUSH) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int j = i; j < i + FRAMES_PER_FLUSH; j++) {
+                frame.run(j);
+            }
+            nanos += System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            // Printing happens on the drain thread in the game, so it isn't counted here
+            Log.flush();
+        }
+        if (report) {
+            out.printf("%-24s %8.1f bytes/frame %8.1f ns/frame%n", name, (double) allocated / frames,
+                nanos / (double) frames);
+        }
+    }
+
+    /**
+     * The messages logged every frame by the renderer, the game loop and the asset cache,
+     * built by the caller before the level is checked, as with libGDX's logger
+     */
+    private static void concatenatedFrame(int frame) {
+        float x = frame * 0.5f;
+        float y = frame * 0.25f;
+        long resident = frame & 255;
+        long behind = frame & 3;
+        String path = (frame & 1) == 0 ? "units/knight.png" : "units/archer.png";
+        debug("Logo drawn at world coordinates: (" + x + "m, " + y + "m)");
+        debug("Logo size: 2m x 2m");
+        debug("Released chunk meshes, " + resident + " resident");
+        debug("Simulation fell behind, dropped " + behind + " ticks (last tick took " + frame / 1000 + "us)");
+        debug("Evicting asset: " + path);
+    }
+
+    private static void debug(String message) {
+        if (debugLevel >= Log.DEBUG) {
+            sink += message.length();
+        }
+    }
+
+    /**
+     * The same messages, as they're logged now
+     */
+    private static void logFrame(int frame) {
+        float x = frame * 0.5f;
+        float y = frame * 0.25f;
+        long resident = frame & 255;
+        long behind = frame & 3;
+        String path = (frame & 1) == 0 ? "units/knight.png" : "units/archer.png";
+        logger.debug("Logo drawn at world coordinates: ({}m, {}m)", x, y);
+        logger.debug("Logo size: 2m x 2m");
+        logger.debug("Released chunk meshes, {} resident", resident);
+        logger.debug("Simulation fell behind, dropped {} ticks (last tick took {}us)", behind, frame / 1000);
+        logger.debug("Evicting asset: {}", path);
+    }
+
+    private interface Frame {
+        void run(int frame);
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.simulation.ParallelSimulation;
+import io.github.equinoxelectronic.simulation.RegionUpdater;
+import io.github.equinoxelectronic.simulation.SimulationState;
+
+import java.util.Random;
+
+/**
+ * Measures how the {@link ParallelSimulation} scales from 1 to 8 threads on a large world, and
+ * checks that every thread count produces exactly the same world. Each tick, every entity steers
+ * towards the centre of its region, wanders a little and bounces off the world edges.
+ * Also reports how long the render thread spends in endFrame(), which should stay near zero.
+ * Pass the number of entities as the first argument (defaults to 1000000).
+ */
+public class ParallelSimulationBenchmark {
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int VELOCITY_X = 2;
+    private static final int VELOCITY_Y = 3;
+    private static final int FIELDS = 4;
+    private static final float WORLD_SIZE = 1024f;
+    private static final float REGION_SIZE = 32f;
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+    private static final int WARM_UP_TICKS = 20;
+    private static final int TICKS = 100;
+    private static final float DELTA = 1f / 30f;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        System.out.println(count + " entities, " + Runtime.getRuntime().availableProcessors() + " cores available");
+
+        long baseline = 0;
+        long expectedChecksum = 0;
+        for (int threads : THREADS) {
+            ParallelSimulation simulation = new ParallelSimulation(new Flocking(), FIELDS, X, Y, WORLD_SIZE, WORLD_SIZE,
+                REGION_SIZE, threads);
+            populate(simulation, count);
+
+            for (int i = 0; i < WARM_UP_TICKS; i++) {
+                simulation.tick(DELTA);
+                simulation.endFrame();
+                simulation.flush();
+            }
+
+            long frameNanos = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < TICKS; i++) {
+                simulation.tick(DELTA);
+                long frameStart = System.nanoTime();
+                simulation.endFrame();
+                frameNanos += System.nanoTime() - frameStart;
+                simulation.flush();
+            }
+            long time = (System.nanoTime() - start) / TICKS;
+
+            long checksum = checksum(simulation.getCurrent());
+            if (threads == THREADS[0]) {
+                baseline = time;
+                expectedChecksum = checksum;
+            }
+            System.out.println(threads + " threads: " + time / 1000 + "us/tick, speedup "
+                + String.format("%.2f", (double) baseline / time) + "x, endFrame " + frameNanos / TICKS / 1000
+                + "us, " + (checksum == expectedChecksum ? "same result" : "DIFFERENT RESULT"));
+            simulation.dispose();
+        }
+    }
+
+    private static void populate(ParallelSimulation simulation, int count) {
+        SimulationState state = simulation.beginEdit();
+        state.setCount(count);
+        Random random = new Random(29);
+        for (int i = 0; i < count; i++) {
+            state.getField(X)[i] = random.nextFloat() * WORLD_SIZE;
+            state.getField(Y)[i] = random.nextFloat() * WORLD_SIZE;
+            state.getField(VELOCITY_X)[i] = random.nextFloat() - 0.5f;
+            state.getField(VELOCITY_Y)[i] = random.nextFloat() - 0.5f;
+            state.getIds()[i] = i;
+        }
+        simulation.endEdit();
+    }
+
+    private static long checksum(SimulationState state) {
+        long checksum = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            float[] values = state.getField(field);
+            for (int id = 0; id < state.getCount(); id++) {
+                checksum = checksum * 31 + Float.floatToIntBits(values[state.indexOf(id)]);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Steers every entity towards the centre of its region
+     */
+    private static class Flocking implements RegionUpdater {
+        @Override
+        public void update(int region, SimulationState previous, SimulationState next, int[] sources, int start,
+                           int end, float delta) {
+            float[] x = previous.getField(X);
+            float[] y = previous.getField(Y);
+            float[] velocityX = previous.getField(VELOCITY_X);
+            float[] velocityY = previous.getField(VELOCITY_Y);
+            float[] nextX = next.getField(X);
+            float[] nextY = next.getField(Y);
+            float[] nextVelocityX = next.getField(VELOCITY_X);
+            float[] nextVelocityY = next.getField(VELOCITY_Y);
+
+            float centerX = 0;
+            float centerY = 0;
+            for (int i = start; i < end; i++) {
+                centerX += x[sources[i]];
+                centerY += y[sources[i]];
+            }
+            centerX /= end - start;
+            centerY /= end - start;
+
+            for (int i = start; i < end; i++) {
+                int entity = sources[i];
+                float wander = (float) Math.sin(x[entity] * 0.37f + y[entity] * 0.11f);
+                float vx = velocityX[entity] + ((centerX - x[entity]) * 0.01f + wander * 0.1f) * delta;
+                float vy = velocityY[entity] + ((centerY - y[entity]) * 0.01f - wander * 0.1f) * delta;
+                float px = x[entity] + vx * delta;
+                float py = y[entity] + vy * delta;
+                if (px < 0 || px > WORLD_SIZE) {
+                    vx = -vx;
+                }
+                if (py < 0 || py > WORLD_SIZE) {
+                    vy = -vy;
+                }
+                nextX[i] = px;
+                nextY[i] = py;
+                nextVelocityX[i] = vx;
+                nextVelocityY[i] = vy;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.navigation.MovementCosts;
+import io.github.equinoxelectronic.navigation.Path;
+import io.github.equinoxelectronic.navigation.PathRequest;
+import io.github.equinoxelectronic.navigation.Pathfinder;
+import io.github.equinoxelectronic.world.TileMap;
+import io.github.equinoxelectronic.world.WorldGenerator;
+
+import java.util.Random;
+
+/**
+ * Measures paths per second on a generated 1024x1024 map with hierarchical A* against plain A*
+ * over every tile, with and without the path cache, and how the request queue spreads a
+ * thousand searches over ticks with the default budget. Also checks that every path is made
+ * of passable neighboring tiles and reports how much longer hierarchical paths are.
+ * Pass the map size in tiles as the first argument (defaults to 1024).
+ */
+public class PathfindingBenchmark {
+    // Ocean, plains, forest, hills, mountains, desert, like the terrain definitions
+    private static final int[] COSTS = { 0, 10, 20, 20, 0, 10 };
+    private static final int PATHS = 1000;
+    private static final int EXACT_PATHS = 100;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        TileMap map = new TileMap(size, size);
+        new WorldGenerator(42L).start(map, Runtime.getRuntime().availableProcessors(), size / 2, size / 2).finish();
+        MovementCosts costs = new MovementCosts(COSTS);
+
+        Pathfinder pathfinder = new Pathfinder(map, costs, PATHS * 2);
+        long start = System.nanoTime();
+        pathfinder.updateGraph();
+        System.out.println(size + "x" + size + " map, cluster graph built in " + (System.nanoTime() - start) / 1_000_000
+            + "ms, " + pathfinder.getNodeCount() + " nodes");
+
+        // Random pairs of land tiles, some of them on different continents
+        Random random = new Random(7);
+        int[] pairs = new int[PATHS * 4];
+        for (int i = 0; i < pairs.length; i += 2) {
+            do {
+                pairs[i] = random.nextInt(size);
+                pairs[i + 1] = random.nextInt(size);
+            } while (!costs.isPassable(map.getTile(pairs[i], pairs[i + 1])));
+        }
+
+        // Warm up
+        for (int i = 0; i < pairs.length; i += 4) {
+            pathfinder.findPath(pairs[i], pairs[i + 1], pairs[i + 2], pairs[i + 3]);
+        }
+        pathfinder.clearCache();
+
+        Path[] hierarchical = new Path[PATHS];
+        int found = 0;
+        int broken = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < PATHS; i++) {
+            hierarchical[i] = pathfinder.findPath(pairs[i * 4], pairs[i * 4 + 1], pairs[i * 4 + 2], pairs[i * 4 + 3]);
+        }
+        long hierarchicalTime = System.nanoTime() - start;
+        for (Path path : hierarchical) {
+            if (path != null) {
+                found++;
+                broken += isValid(map, costs, path) ? 0 : 1;
+            }
+        }
+        report("hierarchical A*", PATHS, hierarchicalTime);
+        System.out.println("  " + found + " of " + PATHS + " found, " + broken + " broken");
+
+        start = System.nanoTime();
+        for (int i = 0; i < PATHS; i++) {
+            pathfinder.findPath(pairs[i * 4], pairs[i * 4 + 1], pairs[i * 4 + 2], pairs[i * 4 + 3]);
+        }
+        report("cached", PATHS, System.nanoTime() - start);
+
+        long longer = 0;
+        long optimal = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < EXACT_PATHS; i++) {
+            Path exact = pathfinder.findExactPath(pairs[i * 4], pairs[i * 4 + 1], pairs[i * 4 + 2], pairs[i * 4 + 3]);
+            if ((exact == null) != (hierarchical[i] == null)) {
+                broken++;
+            } else if (exact != null) {
+                longer += hierarchical[i].getCost();
+                optimal += exact.getCost();
+            }
+        }
+        report("plain A*", EXACT_PATHS, System.nanoTime() - start);
+        System.out.println("  hierarchical paths cost " + String.format("%.1f%%", 100.0 * (longer - optimal) / optimal)
+            + " more, " + broken + " disagreements");
+
+        // The same searches queued by a thousand units at once
+        pathfinder.clearCache();
+        PathRequest[] requests = new PathRequest[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            requests[i] = pathfinder.request(pairs[i * 4], pairs[i * 4 + 1], pairs[i * 4 + 2], pairs[i * 4 + 3]);
+        }
+        int ticks = 0;
+        long longestTick = 0;
+        while (pathfinder.getQueuedRequests() > 0) {
+            long tickStart = System.nanoTime();
+            pathfinder.tick(1f / 30f);
+            longestTick = Math.max(longestTick, System.nanoTime() - tickStart);
+            ticks++;
+        }
+        System.out.println("queued: " + PATHS + " requests over " + ticks + " ticks, longest tick "
+            + longestTick / 1000 + "us, " + (requests[PATHS - 1].isDone() ? "all done" : "NOT DONE"));
+
+        // Changing terrain rebuilds only the clusters around it
+        map.fill(size / 2, size / 2, 8, 8, 4);
+        start = System.nanoTime();
+        pathfinder.updateGraph();
+        System.out.println("rebuilt clusters after an edit in " + (System.nanoTime() - start) / 1000 + "us");
+    }
+
+    private static boolean isValid(TileMap map, MovementCosts costs, Path path) {
+        for (int i = 0; i < path.getLength(); i++) {
+            if (!costs.isPassable(map.getTile(path.getX(i), path.getY(i)))) {
+                return false;
+            }
+            if (i > 0 && (Math.abs(path.getX(i) - path.getX(i - 1)) > 1 || Math.abs(path.getY(i) - path.getY(i - 1)) > 1
+                || path.getTile(i) == path.getTile(i - 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void report(String name, int paths, long nanos) {
+        System.out.println(name + ": " + nanos / paths / 1000 + "us/path, "
+            + String.format("%.0f", paths / (nanos / 1e9)) + " paths/s");
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.profiling.Profiler;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Measures what the profiler adds to a frame: a frame of small jobs timed with every built-in
+ * scope, with the profiler disabled and enabled, against the same frame without any profiler
+ * calls. Reports the bytes allocated per frame while recording, then exports the history to
+ * CSV and checks it. Runs without a window, so no GL calls are counted.
+ * Pass the number of frames as an argument (defaults to 200000).
+ */
+public class ProfilerBenchmark {
+    private static final int RUNS = 3;
+    private static final int[] SCOPES = {
+        Profiler.ASSETS, Profiler.WORLD, Profiler.AUTOSAVE, Profiler.SIMULATION,
+        Profiler.TERRAIN, Profiler.RENDER_QUEUE, Profiler.BATCH_FLUSH
+    };
+
+    private static final int[] data = new int[512];
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i * 31;
+        }
+
+        long best = Long.MAX_VALUE;
+        long bestDisabled = Long.MAX_VALUE;
+        long bestEnabled = Long.MAX_VALUE;
+        long allocated = 0;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                plainFrame();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                profiledFrame();
+            }
+            bestDisabled = Math.min(bestDisabled, System.nanoTime() - start);
+
+            Profiler.setEnabled(true);
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                profiledFrame();
+            }
+            bestEnabled = Math.min(bestEnabled, System.nanoTime() - start);
+            allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            Profiler.setEnabled(false);
+        }
+
+        System.out.printf("No profiler calls   %7.1f ns/frame%n", best / (double) frames);
+        System.out.printf("Profiler disabled   %7.1f ns/frame%n", bestDisabled / (double) frames);
+        System.out.printf("Profiler enabled    %7.1f ns/frame, %.2f bytes/frame%n", bestEnabled / (double) frames,
+            allocated / (double) frames);
+
+        float[] percentiles = { 50f, 95f, 99f, 100f };
+        long[] times = new long[percentiles.length];
+        int count = Profiler.getFramePercentiles(percentiles, times);
+        StringBuilder text = new StringBuilder("Frame times over ").append(count).append(" frames: p50 ");
+        Profiler.appendMillis(text, times[0]).append(", p95 ");
+        Profiler.appendMillis(text, times[1]).append(", p99 ");
+        Profiler.appendMillis(text, times[2]).append(", max ");
+        Profiler.appendMillis(text, times[3]).append(" ms");
+        System.out.println(text);
+
+        Path file = Files.createTempFile("profile", ".csv");
+        Profiler.exportCsv(file);
+        List<String> lines = Files.readAllLines(file);
+        int columns = lines.get(0).split(",").length;
+        boolean valid = lines.size() == Profiler.HISTORY_SIZE + 1;
+        for (int i = 1; i < lines.size() && valid; i++) {
+            valid = lines.get(i).split(",").length == columns;
+        }
+        System.out.println("CSV export: " + (lines.size() - 1) + " frames, " + columns + " columns, "
+            + (valid ? "valid" : "INVALID") + "\n  " + lines.get(0) + "\n  " + lines.get(lines.size() - 1));
+        Files.delete(file);
+        System.out.println("(" + sink + ")");
+    }
+
+    private static void plainFrame() {
+        for (int i = 0; i < SCOPES.length; i++) {
+            work(i);
+        }
+    }
+
+    private static void profiledFrame() {
+        Profiler.beginFrame();
+        for (int i = 0; i < SCOPES.length; i++) {
+            Profiler.begin(SCOPES[i]);
+            work(i);
+            Profiler.end(SCOPES[i]);
+        }
+        Profiler.endFrame();
+    }
+
+    /**
+     * A small job standing in for the work a scope measures
+     */
+    private static void work(int job) {
+        long sum = 0;
+        for (int i = job; i < data.length; i += 4) {
+            sum += data[i];
+        }
+        sink += sum;
+    }
+}
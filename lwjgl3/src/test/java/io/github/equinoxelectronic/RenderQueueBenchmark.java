@@ -0,0 +1,117 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import io.github.equinoxelectronic.rendering.RenderQueue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws a scene of sprites with interleaved textures over a few layers, once in submission
+ * order straight through the SpriteBatch and once through the {@link RenderQueue}, and reports
+ * flushes, texture switches and frame time for both.
+ * Pass the number of sprites as the first argument (defaults to 10000).
+ */
+public class RenderQueueBenchmark extends ApplicationAdapter {
+    private static final int TEXTURES = 8;
+    private static final int LAYERS = 4;
+    private static final int FRAMES = 200;
+
+    private final int spriteCount;
+
+    public RenderQueueBenchmark(int spriteCount) {
+        this.spriteCount = spriteCount;
+    }
+
+    @Override
+    public void create() {
+        TextureRegion[] regions = new TextureRegion[TEXTURES];
+        Random random = new Random(5);
+        for (int i = 0; i < TEXTURES; i++) {
+            Pixmap pixmap = new Pixmap(16, 16, Pixmap.Format.RGBA8888);
+            pixmap.setColor(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f);
+            pixmap.fill();
+            regions[i] = new TextureRegion(new Texture(pixmap));
+            pixmap.dispose();
+        }
+
+        // Each sprite picks a random texture and layer, like units of several kinds mixed on the map
+        int[] textures = new int[spriteCount];
+        int[] layers = new int[spriteCount];
+        float[] positions = new float[spriteCount * 2];
+        for (int i = 0; i < spriteCount; i++) {
+            textures[i] = random.nextInt(TEXTURES);
+            layers[i] = random.nextInt(LAYERS);
+            positions[i * 2] = random.nextFloat() * Gdx.graphics.getWidth();
+            positions[i * 2 + 1] = random.nextFloat() * Gdx.graphics.getHeight();
+        }
+        // Direct drawing must follow layer order itself, so the sprites are pre-sorted by layer only
+        Integer[] order = new Integer[spriteCount];
+        for (int i = 0; i < spriteCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(layers[a], layers[b]));
+
+        SpriteBatch batch = new SpriteBatch(8191);
+        GLProfiler profiler = new GLProfiler(Gdx.graphics);
+        profiler.enable();
+
+        profiler.reset();
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+            batch.begin();
+            for (Integer i : order) {
+                batch.draw(regions[textures[i]], positions[i * 2], positions[i * 2 + 1], 16, 16);
+            }
+            batch.end();
+        }
+        Gdx.gl.glFinish();
+        long direct = (System.nanoTime() - start) / FRAMES;
+        System.out.println("Direct: " + batch.renderCalls + " flushes, " + profiler.getTextureBindings() / FRAMES
+            + " texture binds per frame, " + direct / 1000 + "us/frame");
+
+        RenderQueue queue = new RenderQueue();
+        profiler.reset();
+        long sortTotal = 0;
+        start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+            batch.begin();
+            for (int i = 0; i < spriteCount; i++) {
+                queue.draw(regions[textures[i]], positions[i * 2], positions[i * 2 + 1], 16, 16, layers[i]);
+            }
+            queue.flush(batch);
+            batch.end();
+            sortTotal += queue.getSortNanos();
+        }
+        Gdx.gl.glFinish();
+        long queued = (System.nanoTime() - start) / FRAMES;
+        System.out.println("Queued: " + queue + ", " + profiler.getTextureBindings() / FRAMES
+            + " texture binds per frame, " + queued / 1000 + "us/frame (sort " + sortTotal / FRAMES / 1000 + "us)");
+
+        profiler.disable();
+        batch.dispose();
+        for (TextureRegion region : regions) {
+            region.getTexture().dispose();
+        }
+        Gdx.app.exit();
+    }
+
+    public static void main(String[] args) {
+        int spriteCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(800, 600);
+        config.useVsync(false);
+        new Lwjgl3Application(new RenderQueueBenchmark(spriteCount), config);
+    }
+}
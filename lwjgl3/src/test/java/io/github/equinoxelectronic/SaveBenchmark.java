@@ -0,0 +1,151 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.entities.EntityStore;
+import io.github.equinoxelectronic.entities.FloatColumn;
+import io.github.equinoxelectronic.entities.IntColumn;
+import io.github.equinoxelectronic.entities.ShortColumn;
+import io.github.equinoxelectronic.save.SaveFile;
+import io.github.equinoxelectronic.save.SaveWriter;
+import io.github.equinoxelectronic.world.TileMap;
+import io.github.equinoxelectronic.world.WorldGeneration;
+import io.github.equinoxelectronic.world.WorldGenerator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures saving and loading a generated world with a million entities: the pause on the game
+ * thread, the time on the writer thread, file sizes with and without compression, incremental
+ * saves after a few chunks change, and loading. Checks that everything loads back the same.
+ * Pass the map size in tiles and the entity count as arguments (defaults to 2048 and 1000000).
+ */
+public class SaveBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int entityCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        TileMap map = new TileMap(size, size);
+        WorldGeneration world = new WorldGenerator(42L).start(map, Runtime.getRuntime().availableProcessors(), size / 2, size / 2);
+        world.finish();
+        EntityStore store = createStore(entityCount);
+        Random random = new Random(1);
+        FloatColumn x = store.getColumn("x");
+        FloatColumn y = store.getColumn("y");
+        IntColumn owner = store.getColumn("owner");
+        ShortColumn type = store.getColumn("type");
+        for (int i = 0; i < entityCount; i++) {
+            store.create();
+            x.set(i, random.nextFloat() * map.getWorldWidth());
+            y.set(i, random.nextFloat() * map.getWorldHeight());
+            owner.set(i, random.nextInt(64));
+            type.set(i, (short) random.nextInt(20));
+        }
+        // Some churn, so ids have generations and free slots to keep
+        for (int i = 0; i < entityCount / 10; i++) {
+            store.destroy(store.getId(random.nextInt(store.size())));
+        }
+
+        Path directory = Files.createTempDirectory("chancellor-save");
+        System.out.println(size + "x" + size + " map, " + store.size() + " entities, raw "
+            + (map.getTiles().length * 7L + store.getWriteSize()) / 1024 / 1024 + "MB");
+        for (boolean compressed : new boolean[] { false, true }) {
+            Path file = directory.resolve(compressed ? "compressed.sav" : "raw.sav");
+            SaveWriter writer = new SaveWriter(file);
+            writer.setCompressed(compressed);
+            writer.save(map, world.getHeights(), world.getResources(), store);
+            writer.finish();
+            report((compressed ? "Compressed" : "Uncompressed") + " full save", writer);
+            for (int run = 0; run < RUNS; run++) {
+                incremental(writer, map, world, store, random);
+            }
+            report("  incremental save", writer);
+            load(file, map, world, store);
+            writer.dispose();
+        }
+    }
+
+    private static EntityStore createStore(int capacity) {
+        EntityStore store = new EntityStore(capacity);
+        store.addFloatColumn("x", 0f);
+        store.addFloatColumn("y", 0f);
+        store.addIntColumn("owner", -1);
+        store.addShortColumn("type", (short) 0);
+        return store;
+    }
+
+    /**
+     * Changes a few chunks and moves every entity, as a few minutes of play would, then saves again
+     */
+    private static void incremental(SaveWriter writer, TileMap map, WorldGeneration world, EntityStore store, Random random) {
+        for (int i = 0; i < 20; i++) {
+            map.fill(random.nextInt(map.getWidth() - 8), random.nextInt(map.getHeight() - 8), 8, 8, 1);
+        }
+        float[] x = ((FloatColumn) store.getColumn("x")).getData();
+        for (int i = 0; i < store.size(); i++) {
+            x[i] += 0.5f;
+        }
+        writer.save(map, world.getHeights(), world.getResources(), store);
+        writer.finish();
+    }
+
+    private static void report(String name, SaveWriter writer) {
+        System.out.println(name + ": game thread " + writer.getLastSnapshotNanos() / 1000 + "us, writer thread "
+            + writer.getLastWriteNanos() / 1_000_000 + "ms, " + writer.getLastChunksWritten() + " chunks, "
+            + writer.getLastBytesWritten() / 1024 + "KB written, file " + writer.getFileSize() / 1024 + "KB");
+    }
+
+    private static void load(Path file, TileMap map, WorldGeneration world, EntityStore store) {
+        long best = Long.MAX_VALUE;
+        TileMap loadedMap = null;
+        float[] heights = null;
+        byte[] resources = null;
+        EntityStore loadedStore = null;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            SaveFile save = SaveFile.open(file);
+            loadedMap = new TileMap(save.getWidth(), save.getHeight());
+            heights = new float[save.getWidth() * save.getHeight()];
+            resources = new byte[heights.length];
+            save.readWorld(loadedMap, heights, resources);
+            loadedStore = createStore(16);
+            save.readEntities(loadedStore);
+            save.dispose();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        boolean same = Arrays.equals(map.getTiles(), loadedMap.getTiles())
+            && Arrays.equals(world.getHeights(), heights)
+            && Arrays.equals(world.getResources(), resources)
+            && loadedStore.size() == store.size();
+        String[] names = { "x", "y", "owner", "type" };
+        for (int i = 0; i < store.size() && same; i++) {
+            int id = store.getId(i);
+            int index = loadedStore.indexOf(id);
+            same = index == i;
+        }
+        for (String name : names) {
+            same &= columnEquals(store, loadedStore, name);
+        }
+        // Ids created after loading must match the ones the original store would hand out
+        same &= store.create() == loadedStore.create();
+        store.destroy(store.getId(store.size() - 1));
+        System.out.println("  load: " + best / 1_000_000 + "ms, " + (same ? "same world and entities" : "DIFFERENT"));
+    }
+
+    private static boolean columnEquals(EntityStore a, EntityStore b, String name) {
+        Object first = a.getColumn(name);
+        Object second = b.getColumn(name);
+        if (first instanceof FloatColumn) {
+            return Arrays.equals(Arrays.copyOf(((FloatColumn) first).getData(), a.size()),
+                Arrays.copyOf(((FloatColumn) second).getData(), b.size()));
+        } else if (first instanceof IntColumn) {
+            return Arrays.equals(Arrays.copyOf(((IntColumn) first).getData(), a.size()),
+                Arrays.copyOf(((IntColumn) second).getData(), b.size()));
+        }
+        return Arrays.equals(Arrays.copyOf(((ShortColumn) first).getData(), a.size()),
+            Arrays.copyOf(((ShortColumn) second).getData(), b.size()));
+    }
+}
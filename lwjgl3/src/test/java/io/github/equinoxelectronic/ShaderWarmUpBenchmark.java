@@ -0,0 +1,104 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import io.github.equinoxelectronic.utility.ShaderLibrary;
+
+/**
+ * Compiles a set of shader variants through the {@link ShaderLibrary} and reports the compile
+ * time of each, how many were shared, and the failures. A deliberately broken program is
+ * included to show the failure report.
+ * Pass the number of variants as the first argument (defaults to 16).
+ */
+public class ShaderWarmUpBenchmark extends ApplicationAdapter {
+    private static final String COMMON =
+        "vec4 tint(vec4 color) {\n"
+            + "#ifdef GRAYSCALE\n"
+            + "    float gray = dot(color.rgb, vec3(0.299, 0.587, 0.114));\n"
+            + "    color.rgb = vec3(gray);\n"
+            + "#endif\n"
+            + "    return color * TINT;\n"
+            + "}\n";
+
+    private static final String VERTEX =
+        "attribute vec4 a_position;\n"
+            + "attribute vec2 a_texCoord0;\n"
+            + "uniform mat4 u_projTrans;\n"
+            + "varying vec2 v_texCoords;\n"
+            + "void main() {\n"
+            + "    v_texCoords = a_texCoord0;\n"
+            + "    gl_Position = u_projTrans * a_position;\n"
+            + "}\n";
+
+    private static final String FRAGMENT =
+        "#ifdef GL_ES\n"
+            + "precision mediump float;\n"
+            + "#endif\n"
+            + "#ifndef TINT\n"
+            + "#define TINT 1.0\n"
+            + "#endif\n"
+            + "#include \"common.glsl\"\n"
+            + "varying vec2 v_texCoords;\n"
+            + "uniform sampler2D u_texture;\n"
+            + "void main() {\n"
+            + "    gl_FragColor = tint(texture2D(u_texture, v_texCoords));\n"
+            + "}\n";
+
+    private final int variantCount;
+
+    public ShaderWarmUpBenchmark(int variantCount) {
+        this.variantCount = variantCount;
+    }
+
+    @Override
+    public void create() {
+        ShaderProgram.pedantic = false;
+        ShaderLibrary library = new ShaderLibrary();
+        library.addSource("shaders/common.glsl", COMMON);
+        library.addSource("shaders/sprite.vert", VERTEX);
+        library.addSource("shaders/sprite.frag", FRAGMENT);
+        // Same source under another name, compiled once and shared
+        library.addSource("shaders/copy.vert", VERTEX);
+        library.addSource("shaders/copy.frag", FRAGMENT);
+        library.addSource("shaders/broken.vert", VERTEX);
+        library.addSource("shaders/broken.frag", "void main() { gl_FragColor = undefined; }\n");
+
+        for (int i = 0; i < variantCount; i++) {
+            String tint = "TINT=" + (1f - i / (float) (variantCount * 2));
+            if (i % 2 == 0) {
+                library.require("shaders/sprite", tint);
+            } else {
+                library.require("shaders/sprite", tint, "GRAYSCALE");
+            }
+        }
+
+        long start = System.nanoTime();
+        int count = library.warmUp();
+        long nanos = System.nanoTime() - start;
+
+        for (ShaderLibrary.CompileResult result : library.getCompileResults()) {
+            System.out.println("  " + result);
+        }
+        System.out.println("Warmed up " + count + " variants in " + nanos / 1_000_000 + "ms, "
+            + library.getFailedCompiles().size + " failed");
+
+        // After the warm-up, getting a program is a lookup
+        start = System.nanoTime();
+        ShaderProgram program = library.get(ShaderLibrary.variantName("shaders/sprite", "TINT=1.0"));
+        System.out.println("First use after warm-up: " + (System.nanoTime() - start) / 1000 + "us ("
+            + (program != null ? "compiled" : "missing") + ")");
+
+        library.clear();
+        Gdx.app.exit();
+    }
+
+    public static void main(String[] args) {
+        int variantCount = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(320, 240);
+        new Lwjgl3Application(new ShaderWarmUpBenchmark(variantCount), config);
+    }
+}
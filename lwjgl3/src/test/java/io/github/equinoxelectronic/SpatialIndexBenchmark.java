@@ -0,0 +1,172 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.utils.IntArray;
+import io.github.equinoxelectronic.rendering.Renderer;
+import io.github.equinoxelectronic.world.QuadTree;
+import io.github.equinoxelectronic.world.SpatialHash;
+import io.github.equinoxelectronic.world.SpatialIndex;
+
+import java.util.Random;
+
+/**
+ * Measures update and query throughput of the {@link SpatialHash} and {@link QuadTree} with many
+ * moving entities on a 256m map, half of them spread out and half gathered in a few armies.
+ * Queries are checked against a brute force scan, which is also timed for comparison.
+ * Pass the number of entities as the first argument (defaults to 100000).
+ */
+public class SpatialIndexBenchmark {
+    private static final float MAP_SIZE = 256f;
+    private static final int FRAMES = 60;
+    private static final int QUERIES = 2000;
+    private static final float RADIUS = 2f;
+    private static final float PICK_DISTANCE = 0.5f;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Random random = new Random(23);
+        float[] positions = new float[count * 2];
+        float[] velocities = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                positions[i * 2] = random.nextFloat() * MAP_SIZE;
+                positions[i * 2 + 1] = random.nextFloat() * MAP_SIZE;
+            } else {
+                int army = i % 16;
+                positions[i * 2] = 20f + (army % 4) * 60f + (float) random.nextGaussian() * 3f;
+                positions[i * 2 + 1] = 20f + (army / 4) * 60f + (float) random.nextGaussian() * 3f;
+            }
+            velocities[i * 2] = (random.nextFloat() - 0.5f) * 0.05f;
+            velocities[i * 2 + 1] = (random.nextFloat() - 0.5f) * 0.05f;
+        }
+
+        float[] queries = new float[QUERIES * 2];
+        for (int i = 0; i < QUERIES; i++) {
+            // Half the queries look at an army, like a player following the fighting
+            int source = random.nextInt(count);
+            queries[i * 2] = positions[source * 2];
+            queries[i * 2 + 1] = positions[source * 2 + 1];
+        }
+
+        System.out.println(count + " entities");
+        run("SpatialHash", new SpatialHash(2f, count), positions.clone(), velocities, queries);
+        run("QuadTree", new QuadTree(-MAP_SIZE / 2f, -MAP_SIZE / 2f, MAP_SIZE * 2f, count), positions.clone(), velocities, queries);
+        bruteForce(positions.clone(), queries);
+    }
+
+    private static void run(String name, SpatialIndex index, float[] positions, float[] velocities, float[] queries) {
+        int count = positions.length / 2;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            index.insert(i, positions[i * 2], positions[i * 2 + 1]);
+        }
+        long insert = System.nanoTime() - start;
+
+        // Warm up, then time a number of frames where everything moves
+        for (int frame = 0; frame < FRAMES; frame++) {
+            move(index, positions, velocities);
+        }
+        start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            move(index, positions, velocities);
+        }
+        long update = (System.nanoTime() - start) / FRAMES;
+
+        IntArray out = new IntArray(1024);
+        float halfWidth = Renderer.WORLD_WIDTH / 2f;
+        float halfHeight = Renderer.WORLD_HEIGHT / 2f;
+        long found = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                out.clear();
+                found += index.query(queries[i * 2] - halfWidth, queries[i * 2 + 1] - halfHeight,
+                    queries[i * 2] + halfWidth, queries[i * 2 + 1] + halfHeight, out);
+            }
+        }
+        long view = (System.nanoTime() - start) / QUERIES;
+        check(name + " view", found, countInRectangles(positions, queries, halfWidth, halfHeight));
+
+        long inRadius = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            inRadius = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                out.clear();
+                inRadius += index.queryRadius(queries[i * 2], queries[i * 2 + 1], RADIUS, out);
+            }
+        }
+        long radius = (System.nanoTime() - start) / QUERIES;
+        check(name + " radius", inRadius, countInRadius(positions, queries));
+
+        int picked = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            picked = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                if (index.nearest(queries[i * 2] + 0.1f, queries[i * 2 + 1] + 0.1f, PICK_DISTANCE) >= 0) {
+                    picked++;
+                }
+            }
+        }
+        long nearest = (System.nanoTime() - start) / QUERIES;
+
+        System.out.println(name + ": insert " + insert / 1000 + "us, update all " + update / 1000 + "us/frame ("
+            + update / count + "ns each), view query " + view / 1000 + "us (" + found / QUERIES + " found), radius query "
+            + radius / 1000 + "us (" + inRadius / QUERIES + " found), pick " + nearest + "ns (" + picked + "/" + QUERIES + " hit)");
+    }
+
+    private static void move(SpatialIndex index, float[] positions, float[] velocities) {
+        for (int i = 0; i < positions.length / 2; i++) {
+            float x = positions[i * 2] += velocities[i * 2];
+            float y = positions[i * 2 + 1] += velocities[i * 2 + 1];
+            index.update(i, x, y);
+        }
+    }
+
+    private static void bruteForce(float[] positions, float[] queries) {
+        float halfWidth = Renderer.WORLD_WIDTH / 2f;
+        float halfHeight = Renderer.WORLD_HEIGHT / 2f;
+        countInRectangles(positions, queries, halfWidth, halfHeight);
+        long start = System.nanoTime();
+        long found = countInRectangles(positions, queries, halfWidth, halfHeight);
+        System.out.println("Brute force: view query " + (System.nanoTime() - start) / QUERIES / 1000 + "us ("
+            + found / QUERIES + " found)");
+    }
+
+    private static long countInRectangles(float[] positions, float[] queries, float halfWidth, float halfHeight) {
+        long found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float minX = queries[q * 2] - halfWidth;
+            float maxX = queries[q * 2] + halfWidth;
+            float minY = queries[q * 2 + 1] - halfHeight;
+            float maxY = queries[q * 2 + 1] + halfHeight;
+            for (int i = 0; i < positions.length; i += 2) {
+                if (positions[i] >= minX && positions[i] <= maxX && positions[i + 1] >= minY && positions[i + 1] <= maxY) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static long countInRadius(float[] positions, float[] queries) {
+        long found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            for (int i = 0; i < positions.length; i += 2) {
+                float dx = positions[i] - queries[q * 2];
+                float dy = positions[i + 1] - queries[q * 2 + 1];
+                if (dx * dx + dy * dy <= RADIUS * RADIUS) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static void check(String name, long found, long expected) {
+        if (found != expected) {
+            throw new IllegalStateException(name + " found " + found + " entities, brute force found " + expected);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.equinoxelectronic;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import io.github.equinoxelectronic.rendering.Renderer;
+import io.github.equinoxelectronic.rendering.TileMapRenderer;
+import io.github.equinoxelectronic.world.TileMap;
+
+import java.util.Random;
+
+/**
+ * Measures the frame time of drawing a 1024x1024 tile map at several zoom levels with the
+ * chunked {@link TileMapRenderer}, against drawing every visible tile through a SpriteBatch.
+ * Pass the map size in tiles as the first argument (defaults to 1024).
+ */
+public class TileMapBenchmark extends ApplicationAdapter {
+    private static final float[] ZOOMS = { 0.5f, 1f, 4f, 16f, 64f };
+    private static final int FRAMES = 120;
+    // Drawing every tile through the batch is only measured while it finishes in reasonable time
+    private static final int MAX_BATCH_TILES = 300000;
+
+    private final int size;
+
+    public TileMapBenchmark(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public void create() {
+        TileMap map = new TileMap(size, size);
+        Random random = new Random(11);
+        // Patches of terrain, like a generated world
+        for (int i = 0; i < size * size / 256; i++) {
+            map.fill(random.nextInt(size), random.nextInt(size), 4 + random.nextInt(24), 4 + random.nextInt(24), random.nextInt(6));
+        }
+        Color[] colors = { Color.NAVY, Color.OLIVE, Color.FOREST, Color.TAN, Color.GRAY, Color.GOLDENROD };
+
+        OrthographicCamera camera = new OrthographicCamera(Renderer.WORLD_WIDTH, Renderer.WORLD_HEIGHT);
+        TileMapRenderer renderer = new TileMapRenderer(map);
+        renderer.setTerrainColors(colors);
+
+        SpriteBatch batch = new SpriteBatch(8191);
+        Pixmap pixel = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
+        pixel.setColor(Color.WHITE);
+        pixel.fill();
+        Texture white = new Texture(pixel);
+        pixel.dispose();
+
+        System.out.println(size + "x" + size + " tiles, " + map.getChunksX() * map.getChunksY() + " chunks, "
+            + Gdx.graphics.getWidth() + "x" + Gdx.graphics.getHeight() + " window");
+        for (float zoom : ZOOMS) {
+            camera.zoom = zoom;
+
+            // The first frame at a zoom level builds the chunks, so it is measured separately
+            moveCamera(camera, map, 0);
+            long start = System.nanoTime();
+            renderer.render(camera);
+            Gdx.gl.glFinish();
+            long firstFrame = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int drawn = 0;
+            for (int frame = 0; frame < FRAMES; frame++) {
+                moveCamera(camera, map, frame);
+                Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+                renderer.render(camera);
+                drawn += renderer.getChunksDrawn();
+            }
+            Gdx.gl.glFinish();
+            long chunked = (System.nanoTime() - start) / FRAMES;
+
+            String mode = renderer.isOverviewDrawn() ? "overview" : drawn / FRAMES + " chunks";
+            String line = "zoom " + zoom + ": chunked " + chunked / 1000 + "us/frame (" + mode + ", first frame "
+                + firstFrame / 1000 + "us, " + renderer.getResidentChunks() + " resident)";
+
+            int visibleTiles = (int) Math.min((long) size * size,
+                (long) (camera.viewportWidth * zoom / TileMap.TILE_SIZE + 1) * (long) (camera.viewportHeight * zoom / TileMap.TILE_SIZE + 1));
+            if (visibleTiles <= MAX_BATCH_TILES) {
+                start = System.nanoTime();
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    moveCamera(camera, map, frame);
+                    Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+                    drawWithBatch(batch, white, camera, map, colors);
+                }
+                Gdx.gl.glFinish();
+                line += ", batch " + (System.nanoTime() - start) / FRAMES / 1000 + "us/frame (" + visibleTiles + " tiles)";
+            } else {
+                line += ", batch skipped (" + visibleTiles + " tiles)";
+            }
+            System.out.println(line);
+        }
+
+        renderer.dispose();
+        batch.dispose();
+        white.dispose();
+        Gdx.app.exit();
+    }
+
+    /**
+     * Pans the camera across the middle of the map
+     */
+    private void moveCamera(OrthographicCamera camera, TileMap map, int frame) {
+        float x = map.getWorldWidth() / 2f + (frame - FRAMES / 2f) * camera.zoom * 0.05f;
+        camera.position.set(x, map.getWorldHeight() / 2f, 0);
+        camera.update();
+    }
+
+    /**
+     * Draws every visible tile as its own sprite, the way it would be done without the tile renderer
+     */
+    private void drawWithBatch(SpriteBatch batch, Texture white, OrthographicCamera camera, TileMap map, Color[] colors) {
+        float halfWidth = camera.viewportWidth * camera.zoom / 2f;
+        float halfHeight = camera.viewportHeight * camera.zoom / 2f;
+        int startX = Math.max(0, (int) ((camera.position.x - halfWidth) / TileMap.TILE_SIZE));
+        int startY = Math.max(0, (int) ((camera.position.y - halfHeight) / TileMap.TILE_SIZE));
+        int endX = Math.min(map.getWidth() - 1, (int) ((camera.position.x + halfWidth) / TileMap.TILE_SIZE));
+        int endY = Math.min(map.getHeight() - 1, (int) ((camera.position.y + halfHeight) / TileMap.TILE_SIZE));
+
+        batch.setProjectionMatrix(camera.combined);
+        batch.begin();
+        for (int y = startY; y <= endY; y++) {
+            for (int x = startX; x <= endX; x++) {
+                batch.setColor(colors[map.getTile(x, y)]);
+                batch.draw(white, x * TileMap.TILE_SIZE, y * TileMap.TILE_SIZE, TileMap.TILE_SIZE, TileMap.TILE_SIZE);
+            }
+        }
+        batch.end();
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setWindowedMode(1280, 720);
+        config.useVsync(false);
+        new Lwjgl3Application(new TileMapBenchmark(size), config);
+    }
+}
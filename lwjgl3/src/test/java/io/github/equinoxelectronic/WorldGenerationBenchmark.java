@@ -0,0 +1,96 @@
+package io.github.equinoxelectronic;
+
+import io.github.equinoxelectronic.world.Biome;
+import io.github.equinoxelectronic.world.TileMap;
+import io.github.equinoxelectronic.world.WorldGeneration;
+import io.github.equinoxelectronic.world.WorldGenerator;
+
+/**
+ * Measures how long the {@link WorldGenerator} takes to generate maps of several sizes on 1 to
+ * 8 threads, and checks that every thread count produces exactly the same map. Chunks are
+ * streamed with {@link WorldGeneration#update(long)} like in the game, and the longest time one
+ * update call took is reported, which is what a frame would spend on generation.
+ * Pass the largest map size in tiles as the first argument (defaults to 4096).
+ */
+public class WorldGenerationBenchmark {
+    private static final long SEED = 1867L;
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        System.out.println(Runtime.getRuntime().availableProcessors() + " cores available");
+
+        // Warm up the generator before measuring
+        WorldGenerator generator = new WorldGenerator(SEED);
+        generator.start(new TileMap(512, 512), 1, 0, 0).finish();
+
+        for (int size = 512; size <= maxSize; size *= 2) {
+            long baseline = 0;
+            long expectedChecksum = 0;
+            for (int threads : THREADS) {
+                TileMap map = new TileMap(size, size);
+                long start = System.nanoTime();
+                WorldGeneration generation = generator.start(map, threads, size / 2, size / 2);
+                long longestUpdate = 0;
+                while (!generation.isDone()) {
+                    long updateStart = System.nanoTime();
+                    generation.update();
+                    longestUpdate = Math.max(longestUpdate, System.nanoTime() - updateStart);
+                    // Leave the cores to the workers between frames, like a render thread waiting on vsync
+                    sleep();
+                }
+                long time = System.nanoTime() - start;
+
+                long checksum = checksum(map, generation);
+                if (threads == THREADS[0]) {
+                    baseline = time;
+                    expectedChecksum = checksum;
+                }
+                System.out.println(size + "x" + size + ", " + threads + " threads: " + time / 1_000_000 + "ms, speedup "
+                    + String.format("%.2f", (double) baseline / time) + "x, longest update "
+                    + longestUpdate / 1000 + "us, " + (checksum == expectedChecksum ? "same result" : "DIFFERENT RESULT"));
+                if (threads == THREADS[0] && size == 512) {
+                    printBiomes(generator, map);
+                }
+            }
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long checksum(TileMap map, WorldGeneration generation) {
+        long checksum = 0;
+        short[] tiles = map.getTiles();
+        float[] heights = generation.getHeights();
+        byte[] resources = generation.getResources();
+        for (int i = 0; i < tiles.length; i++) {
+            checksum = checksum * 31 + tiles[i];
+            checksum = checksum * 31 + Float.floatToIntBits(heights[i]);
+            checksum = checksum * 31 + resources[i];
+        }
+        return checksum;
+    }
+
+    private static void printBiomes(WorldGenerator generator, TileMap map) {
+        int[] counts = new int[Biome.values().length];
+        for (short tile : map.getTiles()) {
+            for (Biome biome : Biome.values()) {
+                if (generator.getTerrain(biome) == tile) {
+                    counts[biome.ordinal()]++;
+                }
+            }
+        }
+        StringBuilder builder = new StringBuilder("  biomes:");
+        for (Biome biome : Biome.values()) {
+            builder.append(' ').append(biome).append(' ')
+                .append(String.format("%.1f%%", 100f * counts[biome.ordinal()] / map.getTiles().length));
+        }
+        System.out.println(builder);
+    }
+}